@@ -0,0 +1,123 @@
+package org.odk.collect.android.benchmark;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.javarosawrapper.FormController.InstanceMetadata;
+import org.odk.collect.android.utilities.EncryptionUtils;
+import org.odk.collect.android.utilities.EncryptionUtils.EncryptedFormInformation;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Measures the throughput and peak heap use of encrypting a submission with large attachments.
+ * Heap use is sampled while the encryption runs and should stay far below the size of the
+ * attachments. Results are written to logcat with the tag {@link #TAG}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class EncryptionBenchmark {
+
+    private static final String TAG = "EncryptionBenchmark";
+    private static final int ATTACHMENT_COUNT = 4;
+    private static final int ATTACHMENT_SIZE = 32 * 1024 * 1024;
+
+    private File instanceDir;
+    private File instanceXml;
+    private File submissionXml;
+    private PublicKey publicKey;
+
+    @Before
+    public void setup() throws IOException, NoSuchAlgorithmException {
+        instanceDir = File.createTempFile("encryption", "");
+        instanceDir.delete();
+        instanceDir.mkdirs();
+        instanceXml = new File(instanceDir, "instance.xml");
+        submissionXml = new File(instanceDir, "submission.xml");
+
+        String xml = "<data id=\"benchmark\"><meta><instanceID>uuid:benchmark</instanceID></meta></data>";
+        FileUtils.writeStringToFile(instanceXml, xml, "UTF-8");
+        FileUtils.writeStringToFile(submissionXml, xml, "UTF-8");
+
+        Random random = new Random(0);
+        byte[] chunk = new byte[1024 * 1024];
+        for (int i = 0; i < ATTACHMENT_COUNT; i++) {
+            try (FileOutputStream out = new FileOutputStream(new File(instanceDir, "video" + i + ".mp4"))) {
+                for (int written = 0; written < ATTACHMENT_SIZE; written += chunk.length) {
+                    random.nextBytes(chunk);
+                    out.write(chunk);
+                }
+            }
+        }
+
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        publicKey = keyPairGenerator.generateKeyPair().getPublic();
+    }
+
+    @After
+    public void teardown() throws IOException {
+        FileUtils.deleteDirectory(instanceDir);
+    }
+
+    @Test
+    public void generateEncryptedSubmission_withLargeAttachments() throws Exception {
+        EncryptedFormInformation formInfo = EncryptionUtils.createEncryptedFormInformation("benchmark", null,
+                new InstanceMetadata("uuid:benchmark", null, null), publicKey);
+
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        long baselineHeap = runtime.totalMemory() - runtime.freeMemory();
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong peakHeap = new AtomicLong(baselineHeap);
+        Thread sampler = new Thread(() -> {
+            while (running.get()) {
+                long heap = runtime.totalMemory() - runtime.freeMemory();
+                if (heap > peakHeap.get()) {
+                    peakHeap.set(heap);
+                }
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        sampler.start();
+
+        long start = System.nanoTime();
+        EncryptionUtils.generateEncryptedSubmission(instanceXml, submissionXml, formInfo);
+        long nanos = System.nanoTime() - start;
+
+        running.set(false);
+        sampler.join();
+
+        double megabytes = ATTACHMENT_COUNT * (double) ATTACHMENT_SIZE / (1024 * 1024);
+        Log.i(TAG, String.format("Encrypted %.0f MB in %d ms: %.1f MB/s", megabytes, nanos / 1_000_000, megabytes / (nanos / 1_000_000_000.0)));
+        Log.i(TAG, String.format("Peak heap above baseline: %.1f MB", (peakHeap.get() - baselineHeap) / (1024.0 * 1024)));
+
+        for (int i = 0; i < ATTACHMENT_COUNT; i++) {
+            File encryptedFile = new File(instanceDir, "video" + i + ".mp4.enc");
+            assertThat(encryptedFile.exists(), is(true));
+            assertThat(encryptedFile.length(), greaterThan((long) ATTACHMENT_SIZE));
+        }
+    }
+}
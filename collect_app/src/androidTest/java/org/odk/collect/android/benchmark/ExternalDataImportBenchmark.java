@@ -0,0 +1,147 @@
+package org.odk.collect.android.benchmark;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.external.ExternalDataTableWriter;
+import org.odk.collect.android.external.ExternalDataUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Compares the rows per second of importing an external data set with the table writer against
+ * the previous approach of building {@link ContentValues} and resolving column names for every
+ * row. Results are written to logcat with the tag {@link #TAG}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ExternalDataImportBenchmark {
+
+    private static final String TAG = "ExternalDataImportBenchmark";
+    private static final String TABLE_NAME = ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME;
+    private static final int ROW_COUNT = 50_000;
+    private static final String[] HEADER = {"household_key", "name", "village", "district", "label::English", "label::French", "members", "notes"};
+
+    private String[][] rows;
+    private File legacyDbFile;
+    private File bulkDbFile;
+
+    @Before
+    public void setup() throws IOException {
+        rows = new String[ROW_COUNT][];
+        for (int i = 0; i < ROW_COUNT; i++) {
+            rows[i] = new String[]{
+                    "hh" + i, "Name " + i, "Village " + (i % 500), "District " + (i % 20),
+                    "Household " + i, "Ménage " + i, String.valueOf(i % 12), "Some notes about household " + i
+            };
+        }
+
+        legacyDbFile = File.createTempFile("legacy", ".db");
+        bulkDbFile = File.createTempFile("bulk", ".db");
+    }
+
+    @After
+    public void teardown() {
+        SQLiteDatabase.deleteDatabase(legacyDbFile);
+        SQLiteDatabase.deleteDatabase(bulkDbFile);
+    }
+
+    @Test
+    public void bulkInsert_comparedToContentValuesPerRow() {
+        SQLiteDatabase legacyDb = openDatabase(legacyDbFile);
+        createTable(legacyDb);
+        long legacyStart = System.nanoTime();
+        legacyDb.beginTransaction();
+        try {
+            insertWithContentValues(legacyDb);
+            legacyDb.setTransactionSuccessful();
+        } finally {
+            legacyDb.endTransaction();
+        }
+        long legacyNanos = System.nanoTime() - legacyStart;
+
+        SQLiteDatabase bulkDb = openDatabase(bulkDbFile);
+        createTable(bulkDb);
+        long bulkStart = System.nanoTime();
+        insertWithTableWriter(bulkDb);
+        long bulkNanos = System.nanoTime() - bulkStart;
+
+        Log.i(TAG, String.format("ContentValues per row: %.0f rows/s", rowsPerSecond(legacyNanos)));
+        Log.i(TAG, String.format("Table writer: %.0f rows/s", rowsPerSecond(bulkNanos)));
+        Log.i(TAG, String.format("Speed up: %.2fx", (double) legacyNanos / bulkNanos));
+
+        assertThat(DatabaseUtils.queryNumEntries(legacyDb, TABLE_NAME), is((long) ROW_COUNT));
+        assertThat(DatabaseUtils.queryNumEntries(bulkDb, TABLE_NAME), is((long) ROW_COUNT));
+
+        legacyDb.close();
+        bulkDb.close();
+    }
+
+    private void insertWithContentValues(SQLiteDatabase db) {
+        Map<String, String> columnNamesCache = new HashMap<>();
+        for (int rowIndex = 0; rowIndex < rows.length; rowIndex++) {
+            String[] row = rows[rowIndex];
+            ContentValues values = new ContentValues();
+            values.put(ExternalDataUtil.SORT_COLUMN_NAME, rowIndex + 1);
+            for (int i = 0; i < row.length; i++) {
+                values.put(ExternalDataUtil.toSafeColumnName(HEADER[i].trim(), columnNamesCache), row[i]);
+            }
+            db.insertOrThrow(TABLE_NAME, null, values);
+        }
+    }
+
+    private void insertWithTableWriter(SQLiteDatabase db) {
+        String[] safeColumnNames = new String[HEADER.length];
+        for (int i = 0; i < HEADER.length; i++) {
+            safeColumnNames[i] = ExternalDataUtil.toSafeColumnName(HEADER[i].trim());
+        }
+
+        try (ExternalDataTableWriter writer = new ExternalDataTableWriter(db, TABLE_NAME, safeColumnNames)) {
+            for (int rowIndex = 0; rowIndex < rows.length; rowIndex++) {
+                writer.insert(rows[rowIndex], rowIndex + 1);
+            }
+            writer.finish();
+        }
+    }
+
+    /**
+     * Opens the database with the same settings as ExternalSQLiteOpenHelper uses for an import so
+     * both approaches are measured like for like.
+     */
+    private static SQLiteDatabase openDatabase(File dbFile) {
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(dbFile, null);
+        try (Cursor cursor = db.rawQuery("PRAGMA journal_mode=MEMORY", null)) {
+            cursor.moveToFirst();
+        }
+        db.execSQL("PRAGMA synchronous=OFF");
+        return db;
+    }
+
+    private static void createTable(SQLiteDatabase db) {
+        StringBuilder sql = new StringBuilder("CREATE TABLE ").append(TABLE_NAME).append(" (");
+        for (String column : HEADER) {
+            sql.append(ExternalDataUtil.toSafeColumnName(column)).append(" text collate nocase, ");
+        }
+        sql.append(ExternalDataUtil.SORT_COLUMN_NAME).append(" real, ");
+        sql.append(ExternalDataTableWriter.ROW_HASH_COLUMN_NAME).append(" integer)");
+        db.execSQL(sql.toString());
+    }
+
+    private static double rowsPerSecond(long nanos) {
+        return ROW_COUNT / (nanos / 1_000_000_000.0);
+    }
+}
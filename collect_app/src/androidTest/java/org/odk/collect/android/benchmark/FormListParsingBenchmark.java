@@ -0,0 +1,177 @@
+package org.odk.collect.android.benchmark;
+
+import android.os.Build;
+import android.os.Debug;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.javarosa.xform.parse.XFormParser;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.kxml2.io.KXmlParser;
+import org.kxml2.kdom.Document;
+import org.kxml2.kdom.Element;
+import org.odk.collect.android.openrosa.OpenRosaResponseParserImpl;
+import org.odk.collect.forms.FormListItem;
+import org.xmlpull.v1.XmlPullParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Compares parsing a form list of {@link #FORM_COUNT} forms with the streaming parser against
+ * parsing it into a document tree first, as form lists used to be. Time and bytes allocated
+ * (where the runtime reports them) are written to logcat with the tag {@link #TAG}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FormListParsingBenchmark {
+
+    private static final String TAG = "FormListParsingBenchmark";
+    private static final int FORM_COUNT = 5000;
+    private static final int RUNS = 5;
+    private static final String NAMESPACE_XFORMS_LIST = "http://openrosa.org/xforms/xformsList";
+
+    private final OpenRosaResponseParserImpl parser = new OpenRosaResponseParserImpl();
+    private byte[] formList;
+
+    @Before
+    public void setup() {
+        formList = buildFormList().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void parseFormList_streamingComparedWithDocumentTree() throws Exception {
+        // Warm up both paths so class loading and JIT aren't measured
+        assertThat(parseWithStream().size(), is(FORM_COUNT));
+        assertThat(parseWithDocument().size(), is(FORM_COUNT));
+
+        long streamMillis = 0;
+        long streamBytes = 0;
+        long documentMillis = 0;
+        long documentBytes = 0;
+        for (int i = 0; i < RUNS; i++) {
+            long allocatedBefore = getBytesAllocated();
+            long start = System.nanoTime();
+            parseWithStream();
+            streamMillis += (System.nanoTime() - start) / 1_000_000;
+            streamBytes += getBytesAllocated() - allocatedBefore;
+
+            allocatedBefore = getBytesAllocated();
+            start = System.nanoTime();
+            parseWithDocument();
+            documentMillis += (System.nanoTime() - start) / 1_000_000;
+            documentBytes += getBytesAllocated() - allocatedBefore;
+        }
+
+        boolean allocationsReported = getBytesAllocated() >= 0;
+        Log.i(TAG, String.format("Form list of %d forms (%d KB)", FORM_COUNT, formList.length / 1024));
+        Log.i(TAG, String.format("Streaming: %d ms, %s allocated", streamMillis / RUNS, formatBytes(allocationsReported, streamBytes / RUNS)));
+        Log.i(TAG, String.format("Document tree: %d ms, %s allocated", documentMillis / RUNS, formatBytes(allocationsReported, documentBytes / RUNS)));
+    }
+
+    private List<FormListItem> parseWithStream() throws Exception {
+        return parser.parseFormList(new ByteArrayInputStream(formList));
+    }
+
+    private List<FormListItem> parseWithDocument() throws Exception {
+        try (InputStreamReader reader = new InputStreamReader(new ByteArrayInputStream(formList), StandardCharsets.UTF_8)) {
+            Document document = new Document();
+            KXmlParser kxmlParser = new KXmlParser();
+            kxmlParser.setInput(reader);
+            kxmlParser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+            document.parse(kxmlParser);
+            return parseFormList(document);
+        }
+    }
+
+    /**
+     * Reads the form list from a document tree the way it was read before the streaming parser.
+     */
+    private static List<FormListItem> parseFormList(Document document) {
+        Element xformsElement = document.getRootElement();
+        if (!xformsElement.getName().equals("xforms") || !isXformsListNamespacedElement(xformsElement)) {
+            return null;
+        }
+
+        List<FormListItem> formList = new ArrayList<>();
+        for (int i = 0; i < xformsElement.getChildCount(); ++i) {
+            if (xformsElement.getType(i) != Element.ELEMENT) {
+                continue;
+            }
+            Element xformElement = xformsElement.getElement(i);
+            if (!isXformsListNamespacedElement(xformElement) || !xformElement.getName().equalsIgnoreCase("xform")) {
+                continue;
+            }
+
+            Map<String, String> fields = new HashMap<>();
+            for (int j = 0; j < xformElement.getChildCount(); ++j) {
+                if (xformElement.getType(j) != Element.ELEMENT) {
+                    continue;
+                }
+                Element child = xformElement.getElement(j);
+                if (!isXformsListNamespacedElement(child)) {
+                    continue;
+                }
+                String text = XFormParser.getXMLText(child, true);
+                if (text != null && !text.trim().isEmpty()) {
+                    fields.put(child.getName(), text);
+                }
+            }
+
+            String formId = fields.get("formID");
+            String formName = fields.get("name");
+            String downloadUrl = fields.get("downloadUrl");
+            if (formId == null || downloadUrl == null || formName == null) {
+                return null;
+            }
+
+            formList.add(new FormListItem(downloadUrl, formId, fields.get("version"), fields.get("hash"), formName, fields.get("manifestUrl")));
+        }
+
+        return formList;
+    }
+
+    private static boolean isXformsListNamespacedElement(Element e) {
+        return e.getNamespace().equalsIgnoreCase(NAMESPACE_XFORMS_LIST);
+    }
+
+    /**
+     * @return the bytes allocated by the runtime so far or -1 if it doesn't report them
+     */
+    private static long getBytesAllocated() {
+        String bytes = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M
+                ? Debug.getRuntimeStat("art.gc.bytes-allocated")
+                : null;
+        return bytes != null ? Long.parseLong(bytes) : -1;
+    }
+
+    private static String formatBytes(boolean reported, long bytes) {
+        return reported ? (bytes / 1024) + " KB" : "unknown";
+    }
+
+    private static String buildFormList() {
+        StringBuilder xml = new StringBuilder("<xforms xmlns=\"http://openrosa.org/xforms/xformsList\">\n");
+        for (int i = 0; i < FORM_COUNT; i++) {
+            xml.append("<xform>\n")
+                    .append("<formID>form-").append(i).append("</formID>\n")
+                    .append("<name>Form number ").append(i).append("</name>\n")
+                    .append("<version>2021").append(i % 100).append("</version>\n")
+                    .append("<hash>md5:").append(String.format("%032x", i)).append("</hash>\n")
+                    .append("<descriptionText>A form used to measure parsing of large form lists</descriptionText>\n")
+                    .append("<downloadUrl>https://example.com/formXml?formId=form-").append(i).append("</downloadUrl>\n")
+                    .append("<manifestUrl>https://example.com/xformsManifest?formId=form-").append(i).append("</manifestUrl>\n")
+                    .append("</xform>\n");
+        }
+        return xml.append("</xforms>").toString();
+    }
+}
@@ -0,0 +1,114 @@
+package org.odk.collect.android.benchmark;
+
+import android.util.Log;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.database.forms.DatabaseFormsRepository;
+import org.odk.collect.android.utilities.FormsDirDiskFormsSynchronizer;
+import org.odk.collect.forms.FormsRepository;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Measures syncing a forms directory of {@link #FORM_COUNT} synthetic forms with the forms
+ * database: adding all of them, a sync where nothing changed and a sync where a few forms changed.
+ * Results are written to logcat with the tag {@link #TAG}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FormsDirSyncBenchmark {
+
+    private static final String TAG = "FormsDirSyncBenchmark";
+    private static final int FORM_COUNT = 1000;
+    private static final int CHANGED_FORM_COUNT = 10;
+    private static final int QUESTION_COUNT = 50;
+
+    private File rootDir;
+    private File formsDir;
+    private File cacheDir;
+    private FormsRepository formsRepository;
+
+    @Before
+    public void setup() throws IOException {
+        rootDir = File.createTempFile("forms-sync", "");
+        rootDir.delete();
+        formsDir = new File(rootDir, "forms");
+        cacheDir = new File(rootDir, ".cache");
+        File dbDir = new File(rootDir, "metadata");
+        formsDir.mkdirs();
+        cacheDir.mkdirs();
+        dbDir.mkdirs();
+
+        for (int i = 0; i < FORM_COUNT; i++) {
+            writeForm(i, "Form " + i);
+        }
+
+        formsRepository = new DatabaseFormsRepository(ApplicationProvider.getApplicationContext(),
+                dbDir.getAbsolutePath(), formsDir.getAbsolutePath(), cacheDir.getAbsolutePath(), System::currentTimeMillis);
+    }
+
+    @After
+    public void teardown() throws IOException {
+        FileUtils.deleteDirectory(rootDir);
+    }
+
+    @Test
+    public void synchronize_withManyForms() throws IOException {
+        FormsDirDiskFormsSynchronizer synchronizer = new FormsDirDiskFormsSynchronizer(formsRepository,
+                formsDir.getAbsolutePath(), cacheDir.getAbsolutePath());
+
+        long firstSync = time(synchronizer);
+        assertThat(formsRepository.getAll().size(), is(FORM_COUNT));
+
+        long unchangedSync = time(synchronizer);
+
+        for (int i = 0; i < CHANGED_FORM_COUNT; i++) {
+            writeForm(i, "Changed form " + i);
+        }
+        long changedSync = time(synchronizer);
+        assertThat(formsRepository.getOneByPath(new File(formsDir, "form0.xml").getAbsolutePath()).getDisplayName(), is("Changed form 0"));
+
+        Log.i(TAG, String.format("First sync of %d forms: %d ms", FORM_COUNT, firstSync));
+        Log.i(TAG, String.format("Sync with no changes: %d ms", unchangedSync));
+        Log.i(TAG, String.format("Sync with %d changed forms: %d ms", CHANGED_FORM_COUNT, changedSync));
+    }
+
+    private static long time(FormsDirDiskFormsSynchronizer synchronizer) {
+        long start = System.nanoTime();
+        synchronizer.synchronize();
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private void writeForm(int index, String title) throws IOException {
+        StringBuilder instance = new StringBuilder();
+        StringBuilder binds = new StringBuilder();
+        StringBuilder body = new StringBuilder();
+        for (int q = 0; q < QUESTION_COUNT; q++) {
+            instance.append("<q").append(q).append("/>");
+            binds.append("<bind nodeset=\"/data/q").append(q).append("\" type=\"")
+                    .append(q == QUESTION_COUNT - 1 ? "geopoint" : "string").append("\"/>\n");
+            body.append("<input ref=\"/data/q").append(q).append("\"><label>Question ").append(q).append("</label></input>\n");
+        }
+
+        String xform = "<?xml version=\"1.0\"?>\n" +
+                "<h:html xmlns=\"http://www.w3.org/2002/xforms\" xmlns:h=\"http://www.w3.org/1999/xhtml\" xmlns:orx=\"http://openrosa.org/xforms\">\n" +
+                "<h:head><h:title>" + title + "</h:title><model>\n" +
+                "<instance><data id=\"form" + index + "\" orx:version=\"1\">" + instance + "</data></instance>\n" +
+                binds +
+                "</model></h:head>\n" +
+                "<h:body>\n" + body + "</h:body>\n" +
+                "</h:html>";
+
+        FileUtils.writeStringToFile(new File(formsDir, "form" + index + ".xml"), xform, "UTF-8");
+    }
+}
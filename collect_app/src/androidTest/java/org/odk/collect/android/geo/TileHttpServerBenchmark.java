@@ -0,0 +1,195 @@
+package org.odk.collect.android.geo;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Replays a trace of panning and zooming around an offline basemap against a
+ * {@link TileHttpServer} serving a synthetic .mbtiles file, with as many client
+ * threads as a map view typically uses. Results are written to logcat with the
+ * tag {@link #TAG}. This lives next to the server rather than in the benchmark
+ * package because the server is package-private.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TileHttpServerBenchmark {
+
+    private static final String TAG = "TileHttpServerBenchmark";
+    private static final int MIN_ZOOM = 10;
+    private static final int MAX_ZOOM = 14;
+    private static final int TILE_BYTES = 20 * 1024;
+    private static final int VIEWPORT_COLUMNS = 4;
+    private static final int VIEWPORT_ROWS = 6;
+    private static final int FRAME_COUNT = 300;
+    private static final int CLIENT_THREADS = 4;
+
+    private File mbtiles;
+    private TileHttpServer server;
+    private List<List<int[]>> frames;
+
+    @Before
+    public void setup() throws IOException {
+        frames = buildTrace();
+        mbtiles = File.createTempFile("basemap", ".mbtiles");
+        mbtiles.delete();
+        writeMbtiles(mbtiles, frames);
+
+        server = new TileHttpServer();
+        server.addSource("basemap", new MbtilesFile(mbtiles));
+        server.start();
+    }
+
+    @After
+    public void teardown() {
+        server.destroy();
+        SQLiteDatabase.deleteDatabase(mbtiles);
+    }
+
+    @Test
+    public void replayPanAndZoomTrace() throws Exception {
+        String urlTemplate = server.getUrlTemplate("basemap");
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENT_THREADS);
+
+        long start = System.nanoTime();
+        int tileCount = 0;
+        for (List<int[]> frame : frames) {
+            List<Future<Integer>> responses = new ArrayList<>();
+            for (int[] tile : frame) {
+                String url = urlTemplate
+                    .replace("{z}", Integer.toString(tile[0]))
+                    .replace("{x}", Integer.toString(tile[1]))
+                    .replace("{y}", Integer.toString(tile[2]));
+                responses.add(clients.submit(() -> fetch(url)));
+            }
+            for (Future<Integer> response : responses) {
+                assertThat(response.get(), is(TILE_BYTES));
+                tileCount++;
+            }
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        clients.shutdown();
+
+        Log.i(TAG, String.format("Served %d tiles for %d frames in %d ms", tileCount, frames.size(), elapsedMillis));
+        Log.i(TAG, "Server metrics: " + server.getMetrics());
+    }
+
+    private static int fetch(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try (InputStream input = connection.getInputStream()) {
+            byte[] buffer = new byte[8192];
+            int total = 0;
+            for (int read = input.read(buffer); read != -1; read = input.read(buffer)) {
+                total += read;
+            }
+            return total;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Builds a list of frames, each being the {zoom, x, y} tiles visible in the viewport:
+     * the viewport pans one tile at a time in a random direction, and now and
+     * then zooms in or out, so many tiles are requested again as it wanders.
+     */
+    private static List<List<int[]>> buildTrace() {
+        Random random = new Random(0);
+        List<List<int[]>> frames = new ArrayList<>();
+        int zoom = 12;
+        int left = 1 << (zoom - 1);
+        int top = 1 << (zoom - 1);
+
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            int move = random.nextInt(10);
+            if (move == 0 && zoom < MAX_ZOOM) {
+                zoom++;
+                left *= 2;
+                top *= 2;
+            } else if (move == 1 && zoom > MIN_ZOOM) {
+                zoom--;
+                left /= 2;
+                top /= 2;
+            } else {
+                left += random.nextInt(3) - 1;
+                top += random.nextInt(3) - 1;
+            }
+
+            List<int[]> frame = new ArrayList<>();
+            for (int x = left; x < left + VIEWPORT_COLUMNS; x++) {
+                for (int y = top; y < top + VIEWPORT_ROWS; y++) {
+                    frame.add(new int[] {zoom, x, y});
+                }
+            }
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    /**
+     * Writes an .mbtiles file with a tile at every coordinate in the trace. Like
+     * many real files, it stores each distinct image once and exposes the tiles
+     * through a view.
+     */
+    private static void writeMbtiles(File file, List<List<int[]>> frames) {
+        byte[] tile = new byte[TILE_BYTES];
+        tile[0] = (byte) 0x89;
+        tile[1] = 'P';
+        tile[2] = 'N';
+        tile[3] = 'G';
+
+        try (SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(file, null)) {
+            db.execSQL("CREATE TABLE metadata (name text, value text)");
+            db.execSQL("CREATE TABLE map (zoom_level integer, tile_column integer, tile_row integer, tile_id text)");
+            db.execSQL("CREATE UNIQUE INDEX map_index ON map (zoom_level, tile_column, tile_row)");
+            db.execSQL("CREATE TABLE images (tile_id text PRIMARY KEY, tile_data blob)");
+            db.execSQL("CREATE VIEW tiles AS SELECT map.zoom_level AS zoom_level, map.tile_column AS tile_column, " +
+                "map.tile_row AS tile_row, images.tile_data AS tile_data FROM map JOIN images ON images.tile_id = map.tile_id");
+            db.execSQL("INSERT INTO metadata VALUES ('name', 'basemap'), ('format', 'png')");
+
+            db.beginTransaction();
+            try {
+                ContentValues image = new ContentValues();
+                image.put("tile_id", "tile");
+                image.put("tile_data", tile);
+                db.insert("images", null, image);
+
+                ContentValues values = new ContentValues();
+                values.put("tile_id", "tile");
+                for (List<int[]> frame : frames) {
+                    for (int[] coordinates : frame) {
+                        int zoom = coordinates[0];
+                        values.put("zoom_level", zoom);
+                        values.put("tile_column", coordinates[1]);
+                        values.put("tile_row", (1 << zoom) - 1 - coordinates[2]);
+                        db.insertWithOnConflict("map", null, values, SQLiteDatabase.CONFLICT_IGNORE);
+                    }
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+    }
+}
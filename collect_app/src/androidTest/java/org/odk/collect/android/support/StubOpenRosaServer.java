@@ -68,6 +68,21 @@ public class StubOpenRosaServer implements OpenRosaHttpInterface {
         }
     }
 
+    @NonNull
+    @Override
+    public HttpGetResult executeRangeGetRequest(@NonNull URI uri, long offset, @Nullable HttpCredentialsInterface credentials) throws Exception {
+        // Ranges aren't supported so the whole resource is returned
+        return executeGetRequest(uri, null, credentials);
+    }
+
+    @NonNull
+    @Override
+    public HttpGetResult executeConditionalGetRequest(@NonNull URI uri, @Nullable String contentType, @Nullable HttpCredentialsInterface credentials,
+                                                      @Nullable String eTag, @Nullable String lastModified) throws Exception {
+        // Responses don't have validators so the whole resource is returned
+        return executeGetRequest(uri, contentType, credentials);
+    }
+
     @NonNull
     @Override
     public HttpHeadResult executeHeadRequest(@NonNull URI uri, @Nullable HttpCredentialsInterface credentials) throws Exception {
@@ -229,19 +229,28 @@ abstract class AppListActivity extends CollectAbstractActivity {
         updateAdapter();
     }
 
+    /**
+     * Checks the rows of the selected items. The cursor is only walked as far as the last selected
+     * item so that large lists don't have to be read in full when nothing (or little) is selected.
+     */
     protected void checkPreviouslyCheckedItems() {
         listView.clearChoices();
+        if (selectedInstances.isEmpty()) {
+            return;
+        }
+
         List<Integer> selectedPositions = new ArrayList<>();
         int listViewPosition = 0;
         Cursor cursor = listAdapter.getCursor();
         if (cursor != null && cursor.moveToFirst()) {
+            int idColumnIndex = cursor.getColumnIndex(DatabaseInstanceColumns._ID);
             do {
-                long instanceId = cursor.getLong(cursor.getColumnIndex(DatabaseInstanceColumns._ID));
+                long instanceId = cursor.getLong(idColumnIndex);
                 if (selectedInstances.contains(instanceId)) {
                     selectedPositions.add(listViewPosition);
                 }
                 listViewPosition++;
-            } while (cursor.moveToNext());
+            } while (selectedPositions.size() < selectedInstances.size() && cursor.moveToNext());
         }
 
         for (int position : selectedPositions) {
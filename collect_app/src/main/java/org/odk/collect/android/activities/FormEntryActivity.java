@@ -71,6 +71,7 @@ import org.odk.collect.android.audio.AudioControllerView;
 import org.odk.collect.android.audio.M4AAppender;
 import org.odk.collect.android.backgroundwork.InstanceSubmitScheduler;
 import org.odk.collect.android.dao.helpers.InstancesDaoHelper;
+import org.odk.collect.android.database.DatabaseConnection;
 import org.odk.collect.android.events.ReadPhoneStatePermissionRxEvent;
 import org.odk.collect.android.events.RxEventBus;
 import org.odk.collect.android.exception.JavaRosaException;
@@ -87,6 +88,7 @@ import org.odk.collect.android.formentry.QuitFormDialogFragment;
 import org.odk.collect.android.formentry.RecordingHandler;
 import org.odk.collect.android.formentry.RecordingWarningDialogFragment;
 import org.odk.collect.android.formentry.audit.AuditEvent;
+import org.odk.collect.android.formentry.audit.AuditEventFileWriter;
 import org.odk.collect.android.formentry.audit.AuditUtils;
 import org.odk.collect.android.formentry.audit.ChangesReasonPromptDialogFragment;
 import org.odk.collect.android.formentry.audit.IdentifyUserPromptDialogFragment;
@@ -130,7 +132,7 @@ import org.odk.collect.android.storage.StoragePathProvider;
 import org.odk.collect.android.storage.StorageSubdirectory;
 import org.odk.collect.android.tasks.FormLoaderTask;
 import org.odk.collect.android.tasks.SaveFormIndexTask;
-import org.odk.collect.android.tasks.SavePointTask;
+import org.odk.collect.android.tasks.SavePointWriter;
 import org.odk.collect.android.utilities.ActivityAvailability;
 import org.odk.collect.android.utilities.ApplicationConstants;
 import org.odk.collect.android.utilities.ContentUriHelper;
@@ -728,9 +730,20 @@ public class FormEntryActivity extends CollectAbstractActivity implements Animat
      * see previous questions.
      */
     private void nonblockingCreateSavePointData() {
+        nonblockingCreateSavePointData(false);
+    }
+
+    /**
+     * @param immediately whether to write the save-point right away instead of coalescing it
+     *                    with the ones requested shortly after
+     */
+    private void nonblockingCreateSavePointData(boolean immediately) {
         try {
-            SavePointTask savePointTask = new SavePointTask(this);
-            savePointTask.execute();
+            if (immediately) {
+                SavePointWriter.writeNow(this);
+            } else {
+                SavePointWriter.schedule(this);
+            }
 
             if (!allowMovingBackwards) {
                 FormController formController = getFormController();
@@ -739,7 +752,7 @@ public class FormEntryActivity extends CollectAbstractActivity implements Animat
                 }
             }
         } catch (Exception e) {
-            Timber.e("Could not schedule SavePointTask. Perhaps a lot of swiping is taking place?");
+            Timber.e("Could not schedule save-point. Perhaps a lot of swiping is taking place?");
         }
     }
 
@@ -766,7 +779,7 @@ public class FormEntryActivity extends CollectAbstractActivity implements Animat
                         formController.getXPath(waiting));
             }
             // save the instance to a temp path...
-            nonblockingCreateSavePointData();
+            nonblockingCreateSavePointData(true);
         }
         outState.putBoolean(NEWFORM, false);
         outState.putString(KEY_ERROR, errorMessage);
@@ -2082,6 +2095,11 @@ public class FormEntryActivity extends CollectAbstractActivity implements Animat
         releaseOdkView();
         compositeDisposable.dispose();
 
+        if (isFinishing()) {
+            Timber.i("Database connections after form session: %s", DatabaseConnection.getMetrics());
+            Timber.i("Audit events after form session: %s", AuditEventFileWriter.getMetrics());
+        }
+
         try {
             unregisterReceiver(locationProvidersReceiver);
         } catch (IllegalArgumentException e) {
@@ -24,7 +24,6 @@ import android.widget.TextView;
 
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.widget.Toolbar;
-import androidx.core.content.ContextCompat;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.DividerItemDecoration;
 import androidx.recyclerview.widget.LinearLayoutManager;
@@ -47,6 +46,7 @@ import org.odk.collect.android.formentry.ODKView;
 import org.odk.collect.android.formentry.repeats.DeleteRepeatDialogFragment;
 import org.odk.collect.android.javarosawrapper.FormController;
 import org.odk.collect.android.logic.HierarchyElement;
+import org.odk.collect.android.logic.HierarchyScreenCache;
 import org.odk.collect.android.utilities.DialogUtils;
 import org.odk.collect.android.utilities.FormEntryPromptUtils;
 import org.odk.collect.android.utilities.MultiClickGuard;
@@ -65,7 +65,8 @@ public class FormHierarchyActivity extends CollectAbstractActivity implements De
     public static final int RESULT_ADD_REPEAT = 2;
     /**
      * The questions and repeats at the current level.
-     * Recreated every time {@link #refreshView()} is called.
+     * Set every time {@link #refreshView()} is called, either by stepping through the form or from
+     * {@link HierarchyScreenCache} if the screen was already built and the form hasn't changed.
      */
     private List<HierarchyElement> elementsToDisplay;
 
@@ -162,18 +163,19 @@ public class FormHierarchyActivity extends CollectAbstractActivity implements De
         refreshView();
 
         // Scroll to the last question the user was looking at
-        // TODO: avoid another iteration through all displayed elements
         if (recyclerView != null && recyclerView.getAdapter() != null && recyclerView.getAdapter().getItemCount() > 0) {
             emptyView.setVisibility(View.GONE);
             recyclerView.post(() -> {
                 int position = 0;
-                // Iterate over all the elements currently displayed looking for a match with the
-                // startIndex which can either represent a question or a field list.
-                for (HierarchyElement hierarchyElement : elementsToDisplay) {
-                    FormIndex indexToCheck = hierarchyElement.getFormIndex();
+                boolean startIndexIsInFieldList = formController.indexIsInFieldList(startIndex);
+                String startIndexString = startIndex.toString();
+                // Look through the elements currently displayed for a match with the startIndex
+                // which can either represent a question or a field list.
+                for (int i = 0; i < elementsToDisplay.size(); i++) {
+                    FormIndex indexToCheck = elementsToDisplay.get(i).getFormIndex();
                     if (startIndex.equals(indexToCheck)
-                            || (formController.indexIsInFieldList(startIndex) && indexToCheck.toString().startsWith(startIndex.toString()))) {
-                        position = elementsToDisplay.indexOf(hierarchyElement);
+                            || (startIndexIsInFieldList && indexToCheck.toString().startsWith(startIndexString))) {
+                        position = i;
                         break;
                     }
                 }
@@ -491,8 +493,6 @@ public class FormHierarchyActivity extends CollectAbstractActivity implements De
             // in the event of an error.
             currentIndex = formController.getFormIndex();
 
-            elementsToDisplay = new ArrayList<>();
-
             jumpToHierarchyStartIndex();
             updateOptionsMenu();
 
@@ -506,116 +506,150 @@ public class FormHierarchyActivity extends CollectAbstractActivity implements De
                 groupPathTextView.setText(getCurrentPath());
             }
 
-            // Refresh the current event in case we did step forward.
-            event = formController.getEvent();
+            HierarchyScreenCache cache = HierarchyScreenCache.forFormController(formController);
+            String screenKey = screenIndex + "|" + (shouldShowRepeatGroupPicker() ? repeatGroupPickerIndex : "");
+            int revision = formController.getRevision();
+            elementsToDisplay = cache.get(screenKey, revision);
+            if (elementsToDisplay == null) {
+                elementsToDisplay = buildElements(formController);
+                cache.put(screenKey, revision, elementsToDisplay);
+            }
 
-            // Ref to the parent group that's currently being displayed.
-            //
-            // Because of the guard conditions below, we will skip
-            // everything until we exit this group.
-            TreeReference visibleGroupRef = null;
+            recyclerView.setAdapter(new HierarchyListAdapter(elementsToDisplay, this::onElementClick));
 
-            while (event != FormEntryController.EVENT_END_OF_FORM) {
-                // get the ref to this element
-                TreeReference currentRef = formController.getFormIndex().getReference();
+            formController.jumpToIndex(currentIndex);
 
-                // retrieve the current group
-                TreeReference curGroup = (visibleGroupRef == null) ? contextGroupRef : visibleGroupRef;
+            // Prevent a redundant middle screen (common on many forms
+            // that use presentation groups to display labels).
+            if (isDisplayingSingleGroup() && !screenIndex.isBeginningOfFormIndex()) {
+                if (isGoingUp) {
+                    // Back out once more.
+                    goUpLevel();
+                } else {
+                    // Enter automatically.
+                    formController.jumpToIndex(elementsToDisplay.get(0).getFormIndex());
+                    refreshView();
+                }
+            }
+        } catch (Exception e) {
+            Timber.e(e);
+            createErrorDialog(e.getMessage());
+        }
+    }
+
+    /**
+     * Builds the elements of the screen that {@link #jumpToHierarchyStartIndex()} has moved the
+     * FormController to. Groups and repeat instances that are shown as a single element are
+     * stepped over rather than through.
+     */
+    private List<HierarchyElement> buildElements(FormController formController) {
+        List<HierarchyElement> elementsToDisplay = new ArrayList<>();
+
+        // Refresh the current event in case we did step forward.
+        int event = formController.getEvent();
+
+        // Ref to the parent group that's currently being displayed.
+        //
+        // Because of the guard conditions below, we will skip
+        // everything until we exit this group.
+        TreeReference visibleGroupRef = null;
+
+        while (event != FormEntryController.EVENT_END_OF_FORM) {
+            // get the ref to this element
+            TreeReference currentRef = formController.getFormIndex().getReference();
+
+            // retrieve the current group
+            TreeReference curGroup = (visibleGroupRef == null) ? contextGroupRef : visibleGroupRef;
+
+            if (curGroup != null && !curGroup.isParentOf(currentRef, false)) {
+                // We have left the current group
+                if (visibleGroupRef == null) {
+                    // We are done.
+                    break;
+                } else {
+                    // exit the inner group
+                    visibleGroupRef = null;
+                }
+            }
 
-                if (curGroup != null && !curGroup.isParentOf(currentRef, false)) {
-                    // We have left the current group
-                    if (visibleGroupRef == null) {
-                        // We are done.
+            if (visibleGroupRef != null) {
+                // We're in a group within the one we want to list
+                // skip this question/group/repeat and move to the next index.
+                event =
+                        formController.stepToNextEvent(FormController.STEP_INTO_GROUP);
+                continue;
+            }
+
+            switch (event) {
+                case FormEntryController.EVENT_QUESTION: {
+                    // Nothing but repeat group instances should show up in the picker.
+                    if (shouldShowRepeatGroupPicker()) {
                         break;
-                    } else {
-                        // exit the inner group
-                        visibleGroupRef = null;
                     }
-                }
 
-                if (visibleGroupRef != null) {
-                    // We're in a group within the one we want to list
-                    // skip this question/group/repeat and move to the next index.
-                    event =
-                            formController.stepToNextEvent(FormController.STEP_INTO_GROUP);
-                    continue;
+                    FormEntryPrompt fp = formController.getQuestionPrompt();
+                    String label = fp.getShortText();
+                    String answerDisplay = FormEntryPromptUtils.getAnswerText(fp, this, formController);
+                    elementsToDisplay.add(
+                            new HierarchyElement(FormEntryPromptUtils.markQuestionIfIsRequired(label, fp.isRequired()), answerDisplay, 0,
+                                    HierarchyElement.Type.QUESTION, fp.getIndex()));
+                    break;
                 }
+                case FormEntryController.EVENT_GROUP: {
+                    if (!formController.isGroupRelevant()) {
+                        break;
+                    }
+                    // Nothing but repeat group instances should show up in the picker.
+                    if (shouldShowRepeatGroupPicker()) {
+                        break;
+                    }
 
-                switch (event) {
-                    case FormEntryController.EVENT_QUESTION: {
-                        // Nothing but repeat group instances should show up in the picker.
-                        if (shouldShowRepeatGroupPicker()) {
-                            break;
-                        }
+                    FormIndex index = formController.getFormIndex();
 
-                        FormEntryPrompt fp = formController.getQuestionPrompt();
-                        String label = fp.getShortText();
-                        String answerDisplay = FormEntryPromptUtils.getAnswerText(fp, this, formController);
-                        elementsToDisplay.add(
-                                new HierarchyElement(FormEntryPromptUtils.markQuestionIfIsRequired(label, fp.isRequired()), answerDisplay, null,
-                                        HierarchyElement.Type.QUESTION, fp.getIndex()));
+                    // Only display groups with a specific appearance attribute.
+                    if (!formController.isDisplayableGroup(index)) {
                         break;
                     }
-                    case FormEntryController.EVENT_GROUP: {
-                        if (!formController.isGroupRelevant()) {
-                            break;
-                        }
-                        // Nothing but repeat group instances should show up in the picker.
-                        if (shouldShowRepeatGroupPicker()) {
-                            break;
-                        }
 
-                        FormIndex index = formController.getFormIndex();
+                    // Don't render other groups' children.
+                    if (contextGroupRef != null && !contextGroupRef.isParentOf(currentRef, false)) {
+                        break;
+                    }
 
-                        // Only display groups with a specific appearance attribute.
-                        if (!formController.isDisplayableGroup(index)) {
-                            break;
-                        }
+                    visibleGroupRef = currentRef;
 
-                        // Don't render other groups' children.
-                        if (contextGroupRef != null && !contextGroupRef.isParentOf(currentRef, false)) {
-                            break;
-                        }
+                    FormEntryCaption caption = formController.getCaptionPrompt();
+                    HierarchyElement groupElement = new HierarchyElement(
+                            caption.getShortText(), getString(R.string.group_label),
+                            R.drawable.ic_folder_open,
+                            HierarchyElement.Type.VISIBLE_GROUP, caption.getIndex());
+                    elementsToDisplay.add(groupElement);
 
-                        visibleGroupRef = currentRef;
+                    // Skip to the next item outside the group.
+                    event = formController.stepOverGroup();
+                    continue;
+                }
+                case FormEntryController.EVENT_PROMPT_NEW_REPEAT: {
+                    // this would display the 'add new repeat' dialog
+                    // ignore it.
+                    break;
+                }
+                case FormEntryController.EVENT_REPEAT: {
+                    FormIndex repeatIndex = formController.getFormIndex();
 
-                        FormEntryCaption caption = formController.getCaptionPrompt();
-                        HierarchyElement groupElement = new HierarchyElement(
-                                caption.getShortText(), getString(R.string.group_label),
-                                ContextCompat.getDrawable(this, R.drawable.ic_folder_open),
-                                HierarchyElement.Type.VISIBLE_GROUP, caption.getIndex());
-                        elementsToDisplay.add(groupElement);
+                    // Don't render other groups' children.
+                    boolean isOutsideContextGroup = contextGroupRef != null && !contextGroupRef.isParentOf(currentRef, false);
 
-                        // Skip to the next item outside the group.
-                        event = formController.stepOverGroup();
-                        continue;
-                    }
-                    case FormEntryController.EVENT_PROMPT_NEW_REPEAT: {
-                        // this would display the 'add new repeat' dialog
-                        // ignore it.
-                        break;
-                    }
-                    case FormEntryController.EVENT_REPEAT: {
-                        if (!formController.isGroupRelevant()) {
-                            break;
-                        }
-
-                        visibleGroupRef = currentRef;
+                    // Don't render other groups' instances, and only show the header of each repeat
+                    // outside of the picker. These checks are cheaper than evaluating relevance.
+                    boolean isShown = shouldShowRepeatGroupPicker()
+                            ? currentRef.toString(false).equals(repeatGroupPickerIndex.getReference().toString(false))
+                            : repeatIndex.getElementMultiplicity() == 0;
 
+                    if (!isOutsideContextGroup && isShown && formController.isGroupRelevant()) {
                         FormEntryCaption fc = formController.getCaptionPrompt();
 
-                        // Don't render other groups' children.
-                        if (contextGroupRef != null && !contextGroupRef.isParentOf(currentRef, false)) {
-                            break;
-                        }
-
                         if (shouldShowRepeatGroupPicker()) {
-                            // Don't render other groups' instances.
-                            String repeatGroupPickerRef = repeatGroupPickerIndex.getReference().toString(false);
-                            if (!currentRef.toString(false).equals(repeatGroupPickerRef)) {
-                                break;
-                            }
-
                             int itemNumber = fc.getMultiplicity() + 1;
 
                             // e.g. `friends > 1`
@@ -629,48 +663,34 @@ public class FormHierarchyActivity extends CollectAbstractActivity implements De
                                     // e.g. `1. Alice`
                                     repeatLabel = itemNumber + ".\u200E " + itemLabel;
                                 }
+                                formController.jumpToIndex(repeatIndex);
                             }
 
                             HierarchyElement instance = new HierarchyElement(
                                     repeatLabel, null,
-                                    null, HierarchyElement.Type.REPEAT_INSTANCE, fc.getIndex());
+                                    0, HierarchyElement.Type.REPEAT_INSTANCE, fc.getIndex());
                             elementsToDisplay.add(instance);
-                        } else if (fc.getMultiplicity() == 0) {
+                        } else {
                             // Display the repeat header for the group.
                             HierarchyElement group = new HierarchyElement(
                                     fc.getShortText(), getString(R.string.repeatable_group_label),
-                                    ContextCompat.getDrawable(this, R.drawable.ic_repeat),
+                                    R.drawable.ic_repeat,
                                     HierarchyElement.Type.REPEATABLE_GROUP, fc.getIndex());
                             elementsToDisplay.add(group);
                         }
-
-                        break;
                     }
-                }
-
-                event = formController.stepToNextEvent(FormController.STEP_INTO_GROUP);
-            }
 
-            recyclerView.setAdapter(new HierarchyListAdapter(elementsToDisplay, this::onElementClick));
-
-            formController.jumpToIndex(currentIndex);
-
-            // Prevent a redundant middle screen (common on many forms
-            // that use presentation groups to display labels).
-            if (isDisplayingSingleGroup() && !screenIndex.isBeginningOfFormIndex()) {
-                if (isGoingUp) {
-                    // Back out once more.
-                    goUpLevel();
-                } else {
-                    // Enter automatically.
-                    formController.jumpToIndex(elementsToDisplay.get(0).getFormIndex());
-                    refreshView();
+                    // Skip to the next instance or whatever follows the repeat without visiting
+                    // the events inside this instance.
+                    event = formController.stepOverChildren();
+                    continue;
                 }
             }
-        } catch (Exception e) {
-            Timber.e(e);
-            createErrorDialog(e.getMessage());
+
+            event = formController.stepToNextEvent(FormController.STEP_INTO_GROUP);
         }
+
+        return elementsToDisplay;
     }
 
     /**
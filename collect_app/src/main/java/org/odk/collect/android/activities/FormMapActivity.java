@@ -38,6 +38,7 @@ import org.odk.collect.android.activities.viewmodels.FormMapViewModel.MappableFo
 import org.odk.collect.android.geo.MapFragment;
 import org.odk.collect.android.geo.MapPoint;
 import org.odk.collect.android.geo.MapProvider;
+import org.odk.collect.android.geo.PointClusterer;
 import org.odk.collect.android.injection.DaggerUtils;
 import org.odk.collect.android.preferences.keys.AdminKeys;
 import org.odk.collect.android.preferences.screens.MapsPreferencesFragment;
@@ -56,9 +57,13 @@ import org.odk.collect.forms.instances.InstancesRepository;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 import javax.inject.Inject;
 
@@ -72,6 +77,12 @@ public class FormMapActivity extends BaseGeoMapActivity {
 
     public static final String EXTRA_FORM_ID = "form_id";
 
+    /**
+     * The most markers to show one per instance. When more instances than this are in view, the
+     * ones that are close together are shown as a cluster instead.
+     */
+    private static final int MAX_INSTANCE_MARKERS = 200;
+
     private FormMapViewModel viewModel;
 
     @Inject
@@ -96,8 +107,31 @@ public class FormMapActivity extends BaseGeoMapActivity {
     final Map<Integer, MappableFormInstance> instancesByFeatureId = new HashMap<>();
 
     /**
-     * Points to be mapped. Note: kept separately from {@link #instancesByFeatureId} so we can
-     * quickly zoom to bounding box.
+     * Quick lookup of map feature IDs from instance database IDs, for the instances that have
+     * their own marker.
+     */
+    private final Map<Long, Integer> featureIdsByInstanceId = new HashMap<>();
+
+    /**
+     * The points in each cluster on the map by the cluster's feature ID, so that tapping a
+     * cluster can zoom to it.
+     */
+    private final Map<Integer, List<MapPoint>> clusterPointsByFeatureId = new HashMap<>();
+
+    /**
+     * The feature ID of each cluster on the map by the database IDs of the instances in it, so
+     * that clusters that are still in view after the viewport changes can be kept.
+     */
+    private final Map<Set<Long>, Integer> featureIdsByClusteredInstanceIds = new HashMap<>();
+
+    /**
+     * The instances to be mapped, indexed by location so that only the ones in view get markers.
+     */
+    private final PointClusterer<MappableFormInstance> clusterer = new PointClusterer<>();
+
+    /**
+     * Points to be mapped. Note: kept separately from {@link #clusterer} so we can quickly zoom
+     * to bounding box.
      */
     private final List<MapPoint> points = new ArrayList<>();
 
@@ -144,9 +178,12 @@ public class FormMapActivity extends BaseGeoMapActivity {
         summarySheet.addBottomSheetCallback(new BottomSheetBehavior.BottomSheetCallback() {
             @Override
             public void onStateChanged(@NonNull View bottomSheet, int newState) {
-                if (newState == BottomSheetBehavior.STATE_HIDDEN && viewModel.getSelectedSubmissionId() != -1) {
-                    updateSubmissionMarker(viewModel.getSelectedSubmissionId(), getSubmissionStatusFor(viewModel.getSelectedSubmissionId()), false);
-                    viewModel.setSelectedSubmissionId(-1);
+                if (newState == BottomSheetBehavior.STATE_HIDDEN && viewModel.getSelectedInstanceId() != -1) {
+                    Integer featureId = featureIdsByInstanceId.get(viewModel.getSelectedInstanceId());
+                    if (featureId != null) {
+                        updateSubmissionMarker(featureId, instancesByFeatureId.get(featureId).getStatus(), false);
+                    }
+                    viewModel.setSelectedInstanceId(-1);
                 }
             }
 
@@ -215,10 +252,12 @@ public class FormMapActivity extends BaseGeoMapActivity {
 
         map.setFeatureClickListener(this::onFeatureClicked);
         map.setClickListener(this::onClick);
+        map.setViewportChangeListener(this::updateMarkers);
         updateInstanceGeometry();
 
-        if (viewModel.getSelectedSubmissionId() != -1) {
-            onFeatureClicked(viewModel.getSelectedSubmissionId());
+        Integer selectedFeatureId = featureIdsByInstanceId.get(viewModel.getSelectedInstanceId());
+        if (selectedFeatureId != null) {
+            onFeatureClicked(selectedFeatureId);
         }
     }
 
@@ -246,25 +285,107 @@ public class FormMapActivity extends BaseGeoMapActivity {
     }
 
     /**
-     * Clears the existing features on the map and places features for the current form's instances.
+     * Reloads the current form's instances and places markers for them.
      */
     private void updateMapFeatures() {
         points.clear();
+        clusterer.clear();
+
+        // Instances may have moved or changed status so their markers can't be reused
         map.clearFeatures();
         instancesByFeatureId.clear();
+        featureIdsByInstanceId.clear();
+        clusterPointsByFeatureId.clear();
+        featureIdsByClusteredInstanceIds.clear();
 
         List<MappableFormInstance> instances = viewModel.getMappableFormInstances();
         for (MappableFormInstance instance : instances) {
             MapPoint point = new MapPoint(instance.getLatitude(), instance.getLongitude());
-            int featureId = map.addMarker(point, false, MapFragment.BOTTOM);
+            clusterer.add(point, instance);
+            points.add(point);
+        }
+
+        updateMarkers();
+    }
 
-            updateSubmissionMarker(featureId, instance.getStatus(), featureId == viewModel.getSelectedSubmissionId());
+    /**
+     * Places markers for the instances in view. If there are too many of them, nearby instances
+     * share a cluster marker. The selected instance always keeps its own marker. Markers that are
+     * still needed are kept so that only the ones that came into or went out of view are added
+     * or removed.
+     */
+    private void updateMarkers() {
+        Map<Long, MappableFormInstance> instancesInView = new LinkedHashMap<>();
+        Map<Set<Long>, PointClusterer.Cluster<MappableFormInstance>> clustersInView = new LinkedHashMap<>();
+
+        for (PointClusterer.Cluster<MappableFormInstance> cluster : clusterer.cluster(map.getVisibleBounds(), map.getZoom(), MAX_INSTANCE_MARKERS)) {
+            if (cluster.size() == 1) {
+                MappableFormInstance instance = cluster.getItems().get(0);
+                instancesInView.put(instance.getDatabaseId(), instance);
+            } else {
+                Set<Long> instanceIds = new HashSet<>();
+                for (MappableFormInstance instance : cluster.getItems()) {
+                    instanceIds.add(instance.getDatabaseId());
+                    if (instance.getDatabaseId() == viewModel.getSelectedInstanceId()) {
+                        instancesInView.put(instance.getDatabaseId(), instance);
+                    }
+                }
 
-            instancesByFeatureId.put(featureId, instance);
-            points.add(point);
+                clustersInView.put(instanceIds, cluster);
+            }
+        }
+
+        Iterator<Map.Entry<Long, Integer>> instanceMarkers = featureIdsByInstanceId.entrySet().iterator();
+        while (instanceMarkers.hasNext()) {
+            Map.Entry<Long, Integer> instanceMarker = instanceMarkers.next();
+            if (!instancesInView.containsKey(instanceMarker.getKey())) {
+                map.removeFeature(instanceMarker.getValue());
+                instancesByFeatureId.remove(instanceMarker.getValue());
+                instanceMarkers.remove();
+            }
+        }
+
+        Iterator<Map.Entry<Set<Long>, Integer>> clusterMarkers = featureIdsByClusteredInstanceIds.entrySet().iterator();
+        while (clusterMarkers.hasNext()) {
+            Map.Entry<Set<Long>, Integer> clusterMarker = clusterMarkers.next();
+            if (!clustersInView.containsKey(clusterMarker.getKey())) {
+                map.removeFeature(clusterMarker.getValue());
+                clusterPointsByFeatureId.remove(clusterMarker.getValue());
+                clusterMarkers.remove();
+            }
+        }
+
+        for (Map.Entry<Set<Long>, PointClusterer.Cluster<MappableFormInstance>> cluster : clustersInView.entrySet()) {
+            if (!featureIdsByClusteredInstanceIds.containsKey(cluster.getKey())) {
+                addClusterMarker(cluster.getKey(), cluster.getValue());
+            }
+        }
+
+        // Added after the clusters so that they are drawn on top
+        for (MappableFormInstance instance : instancesInView.values()) {
+            if (!featureIdsByInstanceId.containsKey(instance.getDatabaseId())) {
+                addInstanceMarker(instance);
+            }
         }
     }
 
+    private void addClusterMarker(Set<Long> instanceIds, PointClusterer.Cluster<MappableFormInstance> cluster) {
+        int featureId = map.addMarker(cluster.getCenter(), false, MapFragment.CENTER);
+        map.setMarkerIcon(featureId, R.drawable.ic_map_cluster, String.valueOf(cluster.size()));
+
+        clusterPointsByFeatureId.put(featureId, cluster.getPoints());
+        featureIdsByClusteredInstanceIds.put(instanceIds, featureId);
+    }
+
+    private void addInstanceMarker(MappableFormInstance instance) {
+        MapPoint point = new MapPoint(instance.getLatitude(), instance.getLongitude());
+        int featureId = map.addMarker(point, false, MapFragment.BOTTOM);
+        updateSubmissionMarker(featureId, instance.getStatus(), instance.getDatabaseId() == viewModel.getSelectedInstanceId());
+
+        instancesByFeatureId.put(featureId, instance);
+        featureIdsByInstanceId.put(instance.getDatabaseId(), featureId);
+    }
+
     private void updateSubmissionMarker(int featureId, String status, boolean enlarged) {
         int drawableId = getDrawableIdForStatus(status, enlarged);
         map.setMarkerIcon(featureId, drawableId);
@@ -281,26 +402,31 @@ public class FormMapActivity extends BaseGeoMapActivity {
     }
 
     /**
-     * Reacts to a tap on a feature by showing a submission summary.
+     * Reacts to a tap on a feature by showing a submission summary, or by zooming in if the
+     * feature is a cluster.
      */
     public void onFeatureClicked(int featureId) {
         summarySheet.setState(BottomSheetBehavior.STATE_HIDDEN);
 
-        if (!isSummaryForGivenSubmissionDisplayed(featureId)) {
-            removeEnlargedMarkerIfExist(featureId);
+        List<MapPoint> clusterPoints = clusterPointsByFeatureId.get(featureId);
+        if (clusterPoints != null) {
+            map.zoomToBoundingBox(clusterPoints, 0.8, true);
+            return;
+        }
 
-            FormMapViewModel.MappableFormInstance mappableFormInstance = instancesByFeatureId.get(featureId);
-            if (mappableFormInstance != null) {
-                map.zoomToPoint(new MapPoint(mappableFormInstance.getLatitude(), mappableFormInstance.getLongitude()), map.getZoom(), true);
-                updateSubmissionMarker(featureId, mappableFormInstance.getStatus(), true);
-                setUpSummarySheetDetails(mappableFormInstance);
-            }
-            viewModel.setSelectedSubmissionId(featureId);
+        FormMapViewModel.MappableFormInstance mappableFormInstance = instancesByFeatureId.get(featureId);
+        if (mappableFormInstance != null && !isSummaryForGivenSubmissionDisplayed(mappableFormInstance.getDatabaseId())) {
+            removeEnlargedMarkerIfExist(mappableFormInstance.getDatabaseId());
+
+            viewModel.setSelectedInstanceId(mappableFormInstance.getDatabaseId());
+            updateSubmissionMarker(featureId, mappableFormInstance.getStatus(), true);
+            setUpSummarySheetDetails(mappableFormInstance);
+            map.zoomToPoint(new MapPoint(mappableFormInstance.getLatitude(), mappableFormInstance.getLongitude()), map.getZoom(), true);
         }
     }
 
-    private boolean isSummaryForGivenSubmissionDisplayed(int newSubmissionId) {
-        return viewModel.getSelectedSubmissionId() == newSubmissionId && summarySheet.getState() != BottomSheetBehavior.STATE_HIDDEN;
+    private boolean isSummaryForGivenSubmissionDisplayed(long instanceId) {
+        return viewModel.getSelectedInstanceId() == instanceId && summarySheet.getState() != BottomSheetBehavior.STATE_HIDDEN;
     }
 
     protected void restoreFromInstanceState(Bundle state) {
@@ -399,16 +525,13 @@ public class FormMapActivity extends BaseGeoMapActivity {
         return new Intent(Intent.ACTION_EDIT, uri);
     }
 
-    private void removeEnlargedMarkerIfExist(int newSubmissionId) {
-        if (viewModel.getSelectedSubmissionId() != -1 && viewModel.getSelectedSubmissionId() != newSubmissionId) {
-            updateSubmissionMarker(viewModel.getSelectedSubmissionId(), getSubmissionStatusFor(viewModel.getSelectedSubmissionId()), false);
+    private void removeEnlargedMarkerIfExist(long newInstanceId) {
+        Integer selectedFeatureId = featureIdsByInstanceId.get(viewModel.getSelectedInstanceId());
+        if (selectedFeatureId != null && viewModel.getSelectedInstanceId() != newInstanceId) {
+            updateSubmissionMarker(selectedFeatureId, instancesByFeatureId.get(selectedFeatureId).getStatus(), false);
         }
     }
 
-    private String getSubmissionStatusFor(int submissionId) {
-        return instancesByFeatureId.get(submissionId).getStatus();
-    }
-
     /**
      * Build {@link FormMapViewModel} and its dependencies.
      */
@@ -11,7 +11,9 @@ import org.odk.collect.forms.instances.InstancesRepository;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import timber.log.Timber;
 
@@ -25,13 +27,23 @@ public class FormMapViewModel extends ViewModel {
      * The count of all filled instances of this form, including unmappable ones.
      */
     private int totalInstanceCount;
-    private int selectedSubmissionId = -1;
+
+    /**
+     * The database ID of the instance whose summary is shown or -1 if there isn't one.
+     */
+    private long selectedInstanceId = -1;
 
     /**
      * The filled instances of this form that can be mapped.
      */
     private List<MappableFormInstance> mappableFormInstances;
 
+    /**
+     * Parsed points by instance database ID, so that the geometry of an instance is only parsed
+     * again if it changes.
+     */
+    private final Map<Long, ParsedPoint> parsedPoints = new HashMap<>();
+
     private final InstancesRepository instancesRepository;
 
     public FormMapViewModel(Form form, InstancesRepository instancesRepository) {
@@ -48,10 +60,14 @@ public class FormMapViewModel extends ViewModel {
     }
 
     /**
-     * Returns the count of all filled instances of this form, including unmappable ones.
+     * Returns the count of all filled instances of this form, including unmappable ones, as of the
+     * last call to {@link #getMappableFormInstances()}.
      */
     public int getTotalInstanceCount() {
-        initializeFormInstances();
+        if (mappableFormInstances == null) {
+            initializeFormInstances();
+        }
+
         return totalInstanceCount;
     }
 
@@ -63,12 +79,12 @@ public class FormMapViewModel extends ViewModel {
         mappableFormInstances = getMappableFormInstances(instances);
     }
 
-    public int getSelectedSubmissionId() {
-        return selectedSubmissionId;
+    public long getSelectedInstanceId() {
+        return selectedInstanceId;
     }
 
-    public void setSelectedSubmissionId(int selectedSubmissionId) {
-        this.selectedSubmissionId = selectedSubmissionId;
+    public void setSelectedInstanceId(long selectedInstanceId) {
+        this.selectedInstanceId = selectedInstanceId;
     }
 
     /**
@@ -81,35 +97,55 @@ public class FormMapViewModel extends ViewModel {
 
     private List<MappableFormInstance> getMappableFormInstances(List<Instance> allInstances) {
         List<MappableFormInstance> mappableFormInstances = new ArrayList<>();
+        Map<Long, ParsedPoint> currentPoints = new HashMap<>();
+
         for (Instance instance : allInstances) {
-            if (instance.getGeometry() != null) {
-                try {
-                    JSONObject geometry = new JSONObject(instance.getGeometry());
-                    switch (instance.getGeometryType()) {
-                        case "Point":
-                            JSONArray coordinates = geometry.getJSONArray("coordinates");
-                            // In GeoJSON, longitude comes before latitude.
-                            Double lon = coordinates.getDouble(0);
-                            Double lat = coordinates.getDouble(1);
-
-                            mappableFormInstances.add(new MappableFormInstance(
-                                    instance.getDbId(),
-                                    lat, lon,
-                                    instance.getDisplayName(),
-                                    instance.getLastStatusChangeDate(),
-                                    instance.getStatus(),
-                                    getClickActionForInstance(instance)
-                            ));
-                    }
-                } catch (JSONException e) {
-                    Timber.w("Invalid JSON in instances table: %s", instance.getGeometry());
-                }
+            ParsedPoint point = getPoint(instance);
+            if (point != null) {
+                currentPoints.put(instance.getDbId(), point);
+
+                mappableFormInstances.add(new MappableFormInstance(
+                        instance.getDbId(),
+                        point.latitude, point.longitude,
+                        instance.getDisplayName(),
+                        instance.getLastStatusChangeDate(),
+                        instance.getStatus(),
+                        getClickActionForInstance(instance)
+                ));
             }
         }
 
+        // Drop the points of instances that have been deleted
+        parsedPoints.clear();
+        parsedPoints.putAll(currentPoints);
+
         return mappableFormInstances;
     }
 
+    /**
+     * Returns the point in the instance's geometry or null if it doesn't have one.
+     */
+    private ParsedPoint getPoint(Instance instance) {
+        String geometry = instance.getGeometry();
+        if (geometry == null || !"Point".equals(instance.getGeometryType())) {
+            return null;
+        }
+
+        ParsedPoint point = parsedPoints.get(instance.getDbId());
+        if (point != null && point.geometry.equals(geometry)) {
+            return point;
+        }
+
+        try {
+            JSONArray coordinates = new JSONObject(geometry).getJSONArray("coordinates");
+            // In GeoJSON, longitude comes before latitude.
+            return new ParsedPoint(geometry, coordinates.getDouble(1), coordinates.getDouble(0));
+        } catch (JSONException e) {
+            Timber.w("Invalid JSON in instances table: %s", geometry);
+            return null;
+        }
+    }
+
     private ClickAction getClickActionForInstance(Instance instance) {
         if (instance != null) {
             if (instance.getDeletedDate() != null) {
@@ -136,6 +172,18 @@ public class FormMapViewModel extends ViewModel {
         return instancesRepository.get(databaseId).getDeletedDate();
     }
 
+    private static class ParsedPoint {
+        final String geometry;
+        final double latitude;
+        final double longitude;
+
+        ParsedPoint(String geometry, double latitude, double longitude) {
+            this.geometry = geometry;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+    }
+
     public enum ClickAction {
         DELETED_TOAST, NOT_VIEWABLE_TOAST, OPEN_READ_ONLY, OPEN_EDIT, NONE
     }
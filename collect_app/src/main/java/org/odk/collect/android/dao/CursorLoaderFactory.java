@@ -12,8 +12,21 @@ import org.odk.collect.android.provider.FormsProviderAPI;
 import org.odk.collect.android.provider.InstanceProviderAPI;
 import org.odk.collect.forms.instances.Instance;
 
+import java.util.Arrays;
+
 public class CursorLoaderFactory {
 
+    private static final long UPDATE_THROTTLE_MILLIS = 1000;
+
+    // U+10FFFF, the last code point, which sorts after any other character in UTF-8
+    private static final String MAX_CHARACTER = "\uDBFF\uDFFF";
+
+    static final String INSTANCE_NAME_PREFIX_SELECTION = DatabaseInstanceColumns.DISPLAY_NAME + " >= ? COLLATE NOCASE and "
+            + DatabaseInstanceColumns.DISPLAY_NAME + " < ? COLLATE NOCASE";
+
+    private static final String FORM_NAME_PREFIX_SELECTION = DatabaseFormColumns.DISPLAY_NAME + " >= ? COLLATE NOCASE AND "
+            + DatabaseFormColumns.DISPLAY_NAME + " < ? COLLATE NOCASE";
+
     private final CurrentProjectProvider currentProjectProvider;
 
     public CursorLoaderFactory(CurrentProjectProvider currentProjectProvider) {
@@ -34,10 +47,8 @@ public class CursorLoaderFactory {
         } else {
             String selection =
                     DatabaseInstanceColumns.STATUS + " =? and "
-                            + DatabaseInstanceColumns.DISPLAY_NAME + " LIKE ?";
-            String[] selectionArgs = {
-                    Instance.STATUS_SUBMITTED,
-                    "%" + charSequence + "%"};
+                            + INSTANCE_NAME_PREFIX_SELECTION;
+            String[] selectionArgs = withPrefixArgs(charSequence, Instance.STATUS_SUBMITTED);
 
             cursorLoader = getInstancesCursorLoader(selection, selectionArgs, sortOrder);
         }
@@ -63,11 +74,10 @@ public class CursorLoaderFactory {
         } else {
             String selection = DatabaseInstanceColumns.STATUS + " !=? " +
                     "and " + DatabaseInstanceColumns.STATUS + " !=? " +
-                    "and " + DatabaseInstanceColumns.DISPLAY_NAME + " LIKE ?";
-            String[] selectionArgs = {
+                    "and " + INSTANCE_NAME_PREFIX_SELECTION;
+            String[] selectionArgs = withPrefixArgs(charSequence,
                     Instance.STATUS_SUBMITTED,
-                    Instance.STATUS_SUBMISSION_FAILED,
-                    "%" + charSequence + "%"};
+                    Instance.STATUS_SUBMISSION_FAILED);
 
             cursorLoader = getInstancesCursorLoader(selection, selectionArgs, sortOrder);
         }
@@ -88,8 +98,8 @@ public class CursorLoaderFactory {
         } else {
             String selection =
                     DatabaseInstanceColumns.DELETED_DATE + " IS NULL and "
-                            + DatabaseInstanceColumns.DISPLAY_NAME + " LIKE ?";
-            String[] selectionArgs = {"%" + charSequence + "%"};
+                            + INSTANCE_NAME_PREFIX_SELECTION;
+            String[] selectionArgs = withPrefixArgs(charSequence);
             cursorLoader = getInstancesCursorLoader(selection, selectionArgs, sortOrder);
         }
 
@@ -111,11 +121,10 @@ public class CursorLoaderFactory {
             String selection =
                     "(" + DatabaseInstanceColumns.STATUS + "=? or "
                             + DatabaseInstanceColumns.STATUS + "=?) and "
-                            + DatabaseInstanceColumns.DISPLAY_NAME + " LIKE ?";
-            String[] selectionArgs = {
+                            + INSTANCE_NAME_PREFIX_SELECTION;
+            String[] selectionArgs = withPrefixArgs(charSequence,
                     Instance.STATUS_COMPLETE,
-                    Instance.STATUS_SUBMISSION_FAILED,
-                    "%" + charSequence + "%"};
+                    Instance.STATUS_SUBMISSION_FAILED);
 
             cursorLoader = getInstancesCursorLoader(selection, selectionArgs, sortOrder);
         }
@@ -145,13 +154,12 @@ public class CursorLoaderFactory {
                     + DatabaseInstanceColumns.STATUS + "=? or "
                     + DatabaseInstanceColumns.STATUS + "=? or "
                     + DatabaseInstanceColumns.STATUS + "=?) and "
-                    + DatabaseInstanceColumns.DISPLAY_NAME + " LIKE ?";
+                    + INSTANCE_NAME_PREFIX_SELECTION;
 
-            String[] selectionArgs = {
+            String[] selectionArgs = withPrefixArgs(charSequence,
                     Instance.STATUS_COMPLETE,
                     Instance.STATUS_SUBMISSION_FAILED,
-                    Instance.STATUS_SUBMITTED,
-                    "%" + charSequence + "%"};
+                    Instance.STATUS_SUBMITTED);
 
             cursorLoader = getInstancesCursorLoader(selection, selectionArgs, sortOrder);
         }
@@ -169,26 +177,47 @@ public class CursorLoaderFactory {
             Uri formUri = newestByFormId ?
                     FormsProviderAPI.getContentNewestFormsByFormIdUri(currentProjectProvider.getCurrentProject().getUuid()) :
                     FormsProviderAPI.getUri(currentProjectProvider.getCurrentProject().getUuid());
-            cursorLoader = new CursorLoader(Collect.getInstance(), formUri, null, DatabaseFormColumns.DELETED_DATE + " IS NULL", new String[]{}, sortOrder);
+            cursorLoader = createCursorLoader(formUri, DatabaseFormColumns.DELETED_DATE + " IS NULL", new String[]{}, sortOrder);
         } else {
-            String selection = DatabaseFormColumns.DISPLAY_NAME + " LIKE ? AND " + DatabaseFormColumns.DELETED_DATE + " IS NULL";
-            String[] selectionArgs = {"%" + charSequence + "%"};
+            String selection = FORM_NAME_PREFIX_SELECTION + " AND " + DatabaseFormColumns.DELETED_DATE + " IS NULL";
+            String[] selectionArgs = withPrefixArgs(charSequence);
 
             Uri formUri = newestByFormId ?
                     FormsProviderAPI.getContentNewestFormsByFormIdUri(currentProjectProvider.getCurrentProject().getUuid()) :
                     FormsProviderAPI.getUri(currentProjectProvider.getCurrentProject().getUuid());
-            cursorLoader = new CursorLoader(Collect.getInstance(), formUri, null, selection, selectionArgs, sortOrder);
+            cursorLoader = createCursorLoader(formUri, selection, selectionArgs, sortOrder);
         }
         return cursorLoader;
     }
 
     private CursorLoader getInstancesCursorLoader(String selection, String[] selectionArgs, String sortOrder) {
-        return new CursorLoader(
-                Collect.getInstance(),
+        return createCursorLoader(
                 InstanceProviderAPI.getUri(currentProjectProvider.getCurrentProject().getUuid()),
-                null,
                 selection,
                 selectionArgs,
                 sortOrder);
     }
+
+    /**
+     * Background jobs (auto send, form updates, disk syncs) can change many rows one after the
+     * other, so reloads after a change are throttled rather than re-running the query each time.
+     */
+    private CursorLoader createCursorLoader(Uri uri, String selection, String[] selectionArgs, String sortOrder) {
+        CursorLoader cursorLoader = new CursorLoader(Collect.getInstance(), uri, null, selection, selectionArgs, sortOrder);
+        cursorLoader.setUpdateThrottle(UPDATE_THROTTLE_MILLIS);
+        return cursorLoader;
+    }
+
+    /**
+     * Returns the given arguments followed by the two bounds used by the name prefix selections.
+     * Every name starting with the prefix (ignoring the case of ASCII letters like the lists' sort
+     * order) sorts between them so the search can use the name index instead of scanning the
+     * whole table.
+     */
+    static String[] withPrefixArgs(CharSequence prefix, String... args) {
+        String[] selectionArgs = Arrays.copyOf(args, args.length + 2);
+        selectionArgs[args.length] = prefix.toString();
+        selectionArgs[args.length + 1] = prefix + MAX_CHARACTER;
+        return selectionArgs;
+    }
 }
@@ -1,15 +1,22 @@
 package org.odk.collect.android.database
 
 import android.content.Context
+import android.database.sqlite.SQLiteCursor
+import android.database.sqlite.SQLiteCursorDriver
 import android.database.sqlite.SQLiteDatabase
 import android.database.sqlite.SQLiteDatabase.CursorFactory
 import android.database.sqlite.SQLiteOpenHelper
+import android.database.sqlite.SQLiteQuery
+import android.os.SystemClock
 import timber.log.Timber
 
 /**
  * Allows access to a database file. The actual underlying connection (an instance of
  * [SQLiteOpenHelper] to this database will be reused for different instances of
- * [DatabaseConnection] that refer to the same file.
+ * [DatabaseConnection] that refer to the same file, including ones created on different threads.
+ *
+ * Databases are opened in write-ahead logging mode so that reads (list screens for example) can
+ * carry on while a background job is writing.
  *
  * @param migrator used to migrate or create the database automatically before access
  */
@@ -22,38 +29,182 @@ open class DatabaseConnection(
 ) {
 
     val writeableDatabase: SQLiteDatabase
-        get() = dbHelper.writableDatabase
+        get() = awaitDatabase { dbHelper.writableDatabase }
     val readableDatabase: SQLiteDatabase
-        get() = dbHelper.readableDatabase
+        get() = awaitDatabase { dbHelper.readableDatabase }
 
     private val dbHelper: SQLiteOpenHelper by lazy {
         getOpenHelper(path + name) {
             DatabaseMigratorSQLiteOpenHelper(
                 AltDatabasePathContext(path, context),
                 name,
-                null,
+                MeasuredCursorFactory(metricsRecorder),
                 databaseVersion,
                 migrator
             )
         }
     }
 
+    /**
+     * [SQLiteOpenHelper] blocks while another thread is opening or migrating the database so
+     * time spent here beyond a frame is recorded as a lock wait.
+     */
+    private fun awaitDatabase(getDatabase: () -> SQLiteDatabase): SQLiteDatabase {
+        val start = SystemClock.elapsedRealtime()
+        val database = getDatabase()
+        metricsRecorder.recordDatabaseAccess(path + name, SystemClock.elapsedRealtime() - start)
+        return database
+    }
+
     companion object {
 
+        const val LOCK_WAIT_THRESHOLD_MILLIS = 16L
+        const val SLOW_QUERY_THRESHOLD_MILLIS = 100L
+
         private val openHelpers = mutableMapOf<String, SQLiteOpenHelper>()
+        private val metricsRecorder = MetricsRecorder()
 
         private fun getOpenHelper(
             name: String,
             helperFactory: () -> SQLiteOpenHelper
         ): SQLiteOpenHelper {
-            return openHelpers.getOrPut(name, helperFactory)
+            return synchronized(openHelpers) {
+                openHelpers.getOrPut(name, helperFactory)
+            }
+        }
+
+        @JvmStatic
+        fun getMetrics(): DatabaseConnectionMetrics {
+            val openHelperCount = synchronized(openHelpers) { openHelpers.size }
+            return metricsRecorder.snapshot(openHelperCount)
         }
 
         @JvmStatic
         fun closeAll() {
-            openHelpers.forEach { (_, openHelper) -> openHelper.close() }
-            openHelpers.clear()
+            Timber.i("Closing database connections: %s", getMetrics())
+
+            synchronized(openHelpers) {
+                openHelpers.forEach { (_, openHelper) -> openHelper.close() }
+                openHelpers.clear()
+            }
+
+            metricsRecorder.reset()
+        }
+    }
+}
+
+/**
+ * How the shared database connections have been used since they were last closed.
+ *
+ * @property openHelpers the number of database files with an open connection
+ * @property lockWaits the number of times getting a database took longer than
+ * [DatabaseConnection.LOCK_WAIT_THRESHOLD_MILLIS]
+ * @property queries the number of queries that have been run
+ * @property slowQueries the number of queries that took longer than
+ * [DatabaseConnection.SLOW_QUERY_THRESHOLD_MILLIS] to return their first rows (this includes
+ * waiting for a connection)
+ */
+data class DatabaseConnectionMetrics(
+    val openHelpers: Int,
+    val lockWaits: Long,
+    val lockWaitMillis: Long,
+    val queries: Long,
+    val slowQueries: Long,
+    val slowestQueryMillis: Long
+)
+
+private class MetricsRecorder {
+
+    private var lockWaits = 0L
+    private var lockWaitMillis = 0L
+    private var queries = 0L
+    private var slowQueries = 0L
+    private var slowestQueryMillis = 0L
+
+    fun recordDatabaseAccess(database: String, millis: Long) {
+        if (millis > DatabaseConnection.LOCK_WAIT_THRESHOLD_MILLIS) {
+            Timber.w("Waited %d ms for %s", millis, database)
+
+            synchronized(this) {
+                lockWaits++
+                lockWaitMillis += millis
+            }
+        }
+    }
+
+    fun recordQuery(sql: String, millis: Long) {
+        val slow = millis > DatabaseConnection.SLOW_QUERY_THRESHOLD_MILLIS
+        if (slow) {
+            Timber.w("Slow query (%d ms): %s", millis, sql)
         }
+
+        synchronized(this) {
+            queries++
+            if (slow) {
+                slowQueries++
+            }
+            slowestQueryMillis = maxOf(slowestQueryMillis, millis)
+        }
+    }
+
+    @Synchronized
+    fun snapshot(openHelpers: Int): DatabaseConnectionMetrics {
+        return DatabaseConnectionMetrics(
+            openHelpers,
+            lockWaits,
+            lockWaitMillis,
+            queries,
+            slowQueries,
+            slowestQueryMillis
+        )
+    }
+
+    @Synchronized
+    fun reset() {
+        lockWaits = 0
+        lockWaitMillis = 0
+        queries = 0
+        slowQueries = 0
+        slowestQueryMillis = 0
+    }
+}
+
+/**
+ * Creates cursors that record how long their query took. [SQLiteCursor] only runs its query when
+ * the count is first needed (before the first move) so that's what gets timed.
+ */
+private class MeasuredCursorFactory(private val metricsRecorder: MetricsRecorder) : CursorFactory {
+
+    override fun newCursor(
+        db: SQLiteDatabase?,
+        masterQuery: SQLiteCursorDriver?,
+        editTable: String?,
+        query: SQLiteQuery?
+    ): SQLiteCursor {
+        return MeasuredCursor(masterQuery, editTable, query, metricsRecorder)
+    }
+}
+
+private class MeasuredCursor(
+    driver: SQLiteCursorDriver?,
+    editTable: String?,
+    query: SQLiteQuery?,
+    private val metricsRecorder: MetricsRecorder
+) : SQLiteCursor(driver, editTable, query) {
+
+    private val sql = query.toString()
+    private var measured = false
+
+    override fun getCount(): Int {
+        if (measured) {
+            return super.getCount()
+        }
+
+        measured = true
+        val start = SystemClock.elapsedRealtime()
+        val count = super.getCount()
+        metricsRecorder.recordQuery(sql, SystemClock.elapsedRealtime() - start)
+        return count
     }
 }
 
@@ -68,6 +219,12 @@ private class DatabaseMigratorSQLiteOpenHelper(
     private val databaseMigrator: DatabaseMigrator
 ) : SQLiteOpenHelper(context, name, cursorFactory, version) {
 
+    override fun onConfigure(db: SQLiteDatabase) {
+        if (!db.enableWriteAheadLogging()) {
+            Timber.w("Could not enable write-ahead logging for %s", db.path)
+        }
+    }
+
     override fun onCreate(db: SQLiteDatabase?) {
         databaseMigrator.onCreate(db)
     }
@@ -10,14 +10,15 @@ import org.jetbrains.annotations.NotNull;
 import org.odk.collect.android.database.DatabaseConnection;
 import org.odk.collect.android.database.DatabaseConstants;
 import org.odk.collect.android.utilities.FileUtils;
+import org.odk.collect.android.utilities.FormDefCache;
+import org.odk.collect.android.utilities.SQLiteUtils;
 import org.odk.collect.forms.Form;
 import org.odk.collect.forms.FormsRepository;
-import org.odk.collect.shared.strings.Md5;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Supplier;
@@ -37,6 +38,7 @@ import static org.odk.collect.android.database.forms.DatabaseFormColumns.JRCACHE
 import static org.odk.collect.android.database.forms.DatabaseFormColumns.JR_FORM_ID;
 import static org.odk.collect.android.database.forms.DatabaseFormColumns.JR_VERSION;
 import static org.odk.collect.android.database.forms.DatabaseFormColumns.MD5_HASH;
+import static org.odk.collect.android.utilities.ApplicationConstants.SQLITE_MAX_VARIABLE_NUMBER;
 import static org.odk.collect.shared.PathUtils.getRelativeFilePath;
 
 public class DatabaseFormsRepository implements FormsRepository {
@@ -68,12 +70,14 @@ public class DatabaseFormsRepository implements FormsRepository {
     @Nullable
     @Override
     public Form getLatestByFormIdAndVersion(String jrFormId, @Nullable String jrVersion) {
-        List<Form> all = getAllByFormIdAndVersion(jrFormId, jrVersion);
-        if (!all.isEmpty()) {
-            return all.stream().max(Comparator.comparingLong(Form::getDate)).get();
+        List<Form> latest;
+        if (jrVersion != null) {
+            latest = queryForForms(JR_FORM_ID + "=? AND " + JR_VERSION + "=?", new String[]{jrFormId, jrVersion}, DATE + " DESC", "1");
         } else {
-            return null;
+            latest = queryForForms(JR_FORM_ID + "=? AND " + JR_VERSION + " IS NULL", new String[]{jrFormId}, DATE + " DESC", "1");
         }
+
+        return !latest.isEmpty() ? latest.get(0) : null;
     }
 
     @Nullable
@@ -101,6 +105,21 @@ public class DatabaseFormsRepository implements FormsRepository {
         return queryForForms(null, null);
     }
 
+    @Override
+    public List<Form> getAllByMd5Hashes(Collection<String> hashes) {
+        return queryForFormsIn(MD5_HASH, new ArrayList<>(hashes));
+    }
+
+    @Override
+    public List<Form> getAllByPaths(Collection<String> paths) {
+        List<String> relativePaths = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            relativePaths.add(getRelativeFilePath(formsPath, path));
+        }
+
+        return queryForFormsIn(FORM_FILE_PATH, relativePaths);
+    }
+
     @Override
     public List<Form> getAllByFormIdAndVersion(String jrFormId, @Nullable String jrVersion) {
         if (jrVersion != null) {
@@ -134,7 +153,8 @@ public class DatabaseFormsRepository implements FormsRepository {
     public Form save(@NotNull Form form) {
         final ContentValues values = getValuesFromForm(form, formsPath);
 
-        String md5Hash = Md5.getMd5Hash(new File(form.getFormFilePath()));
+        // Shares the disk sync's index so the files it has just hashed aren't read again
+        String md5Hash = FormDefCache.getMd5Index(cachePath).getMd5Hash(new File(form.getFormFilePath()));
         values.put(MD5_HASH, md5Hash);
         values.put(FORM_MEDIA_PATH, getRelativeFilePath(formsPath, FileUtils.constructMediaPath(form.getFormFilePath())));
         values.put(JRCACHE_FILE_PATH, md5Hash + ".formdef");
@@ -156,6 +176,25 @@ public class DatabaseFormsRepository implements FormsRepository {
         }
     }
 
+    @Override
+    public List<Form> saveAll(@NotNull List<Form> forms) {
+        List<Form> savedForms = new ArrayList<>(forms.size());
+
+        SQLiteDatabase writeableDatabase = databaseConnection.getWriteableDatabase();
+        writeableDatabase.beginTransaction();
+        try {
+            for (Form form : forms) {
+                savedForms.add(save(form));
+            }
+
+            writeableDatabase.setTransactionSuccessful();
+        } finally {
+            writeableDatabase.endTransaction();
+        }
+
+        return savedForms;
+    }
+
     @Override
     public void delete(Long id) {
         String selection = _ID + "=?";
@@ -202,12 +241,34 @@ public class DatabaseFormsRepository implements FormsRepository {
     }
 
     private List<Form> queryForForms(String selection, String[] selectionArgs) {
-        try (Cursor cursor = queryAndReturnCursor(null, null, selection, selectionArgs, null, null)) {
+        return queryForForms(selection, selectionArgs, null, null);
+    }
+
+    private List<Form> queryForForms(String selection, String[] selectionArgs, String sortOrder, String limit) {
+        try (Cursor cursor = queryAndReturnCursor(null, null, selection, selectionArgs, sortOrder, null, limit)) {
             return getFormsFromCursor(cursor, formsPath, cachePath);
         }
     }
 
+    /**
+     * Returns the forms where the column has any of the values. The values are split into
+     * batches so that no query has more arguments than SQLite allows.
+     */
+    private List<Form> queryForFormsIn(String column, List<String> values) {
+        List<Form> forms = new ArrayList<>();
+        for (int start = 0; start < values.size(); start += SQLITE_MAX_VARIABLE_NUMBER) {
+            List<String> batch = values.subList(start, Math.min(values.size(), start + SQLITE_MAX_VARIABLE_NUMBER));
+            forms.addAll(queryForForms(SQLiteUtils.getInSelection(column, batch.size()), batch.toArray(new String[0])));
+        }
+
+        return forms;
+    }
+
     private Cursor queryAndReturnCursor(Map<String, String> projectionMap, String[] projection, String selection, String[] selectionArgs, String sortOrder, String groupBy) {
+        return queryAndReturnCursor(projectionMap, projection, selection, selectionArgs, sortOrder, groupBy, null);
+    }
+
+    private Cursor queryAndReturnCursor(Map<String, String> projectionMap, String[] projection, String selection, String[] selectionArgs, String sortOrder, String groupBy, String limit) {
         SQLiteDatabase readableDatabase = databaseConnection.getReadableDatabase();
         SQLiteQueryBuilder qb = new SQLiteQueryBuilder();
         qb.setTables(FORMS_TABLE_NAME);
@@ -216,7 +277,7 @@ public class DatabaseFormsRepository implements FormsRepository {
             qb.setProjectionMap(projectionMap);
         }
 
-        return qb.query(readableDatabase, projection, selection, selectionArgs, groupBy, null, sortOrder);
+        return qb.query(readableDatabase, projection, selection, selectionArgs, groupBy, null, sortOrder, limit);
     }
 
     private Long insertForm(ContentValues values) {
@@ -39,6 +39,8 @@ public class FormDatabaseMigrator implements DatabaseMigrator {
 
     public void onCreate(SQLiteDatabase db) {
         createFormsTableV10(db);
+        createIndexesV11(db);
+        createIndexesV12(db);
     }
 
     @SuppressWarnings({"checkstyle:FallThrough"})
@@ -61,12 +63,16 @@ public class FormDatabaseMigrator implements DatabaseMigrator {
                 upgradeToVersion9(db);
             case 9:
                 upgradeToVersion10(db);
+            case 10:
+                upgradeToVersion11(db);
+            case 11:
+                upgradeToVersion12(db);
         }
     }
 
     public void onDowngrade(SQLiteDatabase db) throws SQLException {
         SQLiteUtils.dropTable(db, FORMS_TABLE_NAME);
-        createFormsTableV10(db);
+        onCreate(db);
     }
 
     private void upgradeToVersion2(SQLiteDatabase db) {
@@ -237,6 +243,34 @@ public class FormDatabaseMigrator implements DatabaseMigrator {
         SQLiteUtils.dropTable(db, temporaryTable);
     }
 
+    private void upgradeToVersion11(SQLiteDatabase db) {
+        createIndexesV11(db);
+    }
+
+    /**
+     * Indexes the columns forms are looked up by: form ID and version (when checking for updates
+     * and opening instances), hash (when downloading) and file path (when syncing the forms dir).
+     */
+    private void createIndexesV11(SQLiteDatabase db) {
+        SQLiteUtils.createIndex(db, FORMS_TABLE_NAME + "_form_id_version_idx", FORMS_TABLE_NAME, JR_FORM_ID, JR_VERSION);
+        SQLiteUtils.createIndex(db, FORMS_TABLE_NAME + "_md5_hash_idx", FORMS_TABLE_NAME, MD5_HASH);
+        SQLiteUtils.createIndex(db, FORMS_TABLE_NAME + "_form_file_path_idx", FORMS_TABLE_NAME, FORM_FILE_PATH);
+    }
+
+    private void upgradeToVersion12(SQLiteDatabase db) {
+        createIndexesV12(db);
+    }
+
+    /**
+     * Indexes the columns the form lists are sorted and searched by. The name index uses the same
+     * collation as the lists so it can be used for both.
+     */
+    private void createIndexesV12(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + FORMS_TABLE_NAME + "_display_name_idx ON "
+                + FORMS_TABLE_NAME + " (" + DISPLAY_NAME + " COLLATE NOCASE)");
+        SQLiteUtils.createIndex(db, FORMS_TABLE_NAME + "_date_idx", FORMS_TABLE_NAME, DATE);
+    }
+
     private void createFormsTableV4(SQLiteDatabase db, String tableName) {
         db.execSQL("CREATE TABLE IF NOT EXISTS " + tableName + " ("
                 + _ID + " integer primary key, "
@@ -3,18 +3,21 @@ package org.odk.collect.android.database.instances;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
 
 import org.apache.commons.io.FileUtils;
 import org.odk.collect.android.database.DatabaseConnection;
 import org.odk.collect.android.database.DatabaseConstants;
+import org.odk.collect.android.utilities.SQLiteUtils;
 import org.odk.collect.forms.instances.Instance;
 import org.odk.collect.forms.instances.InstancesRepository;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.function.Supplier;
 
@@ -33,6 +36,7 @@ import static org.odk.collect.android.database.instances.DatabaseInstanceColumns
 import static org.odk.collect.android.database.instances.DatabaseInstanceColumns.LAST_STATUS_CHANGE_DATE;
 import static org.odk.collect.android.database.instances.DatabaseInstanceColumns.STATUS;
 import static org.odk.collect.android.database.instances.DatabaseInstanceColumns.SUBMISSION_URI;
+import static org.odk.collect.android.utilities.ApplicationConstants.SQLITE_MAX_VARIABLE_NUMBER;
 import static org.odk.collect.shared.PathUtils.getRelativeFilePath;
 
 /**
@@ -89,6 +93,25 @@ public final class DatabaseInstancesRepository implements InstancesRepository {
         }
     }
 
+    @Override
+    public List<Instance> getAllByPaths(Collection<String> instancePaths) {
+        List<String> relativePaths = new ArrayList<>(instancePaths.size());
+        for (String instancePath : instancePaths) {
+            relativePaths.add(getRelativeFilePath(instancesPath, instancePath));
+        }
+
+        // Split into batches so that no query has more arguments than SQLite allows
+        List<Instance> instances = new ArrayList<>();
+        for (int start = 0; start < relativePaths.size(); start += SQLITE_MAX_VARIABLE_NUMBER) {
+            List<String> batch = relativePaths.subList(start, Math.min(relativePaths.size(), start + SQLITE_MAX_VARIABLE_NUMBER));
+            try (Cursor cursor = query(null, SQLiteUtils.getInSelection(INSTANCE_FILE_PATH, batch.size()), batch.toArray(new String[0]), null)) {
+                instances.addAll(getInstancesFromCursor(cursor, instancesPath));
+            }
+        }
+
+        return instances;
+    }
+
     @Override
     public List<Instance> getAllNotDeleted() {
         try (Cursor cursor = query(null, DELETED_DATE + " IS NULL ", null, null)) {
@@ -105,9 +128,8 @@ public final class DatabaseInstancesRepository implements InstancesRepository {
 
     @Override
     public int getCountByStatus(String... status) {
-        try (Cursor cursorForAllByStatus = getCursorForAllByStatus(status)) {
-            return cursorForAllByStatus.getCount();
-        }
+        return (int) DatabaseUtils.queryNumEntries(databaseConnection.getReadableDatabase(), INSTANCES_TABLE_NAME,
+                SQLiteUtils.getInSelection(STATUS, status.length), status);
     }
 
 
@@ -205,12 +227,7 @@ public final class DatabaseInstancesRepository implements InstancesRepository {
     }
 
     private Cursor getCursorForAllByStatus(String[] status) {
-        StringBuilder selection = new StringBuilder(STATUS + "=?");
-        for (int i = 1; i < status.length; i++) {
-            selection.append(" or ").append(STATUS).append("=?");
-        }
-
-        return query(null, selection.toString(), status, null);
+        return query(null, SQLiteUtils.getInSelection(STATUS, status.length), status, null);
     }
 
     private Cursor query(String[] projection, String selection, String[] selectionArgs, String sortOrder) {
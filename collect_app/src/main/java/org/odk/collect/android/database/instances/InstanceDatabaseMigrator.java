@@ -38,6 +38,8 @@ public class InstanceDatabaseMigrator implements DatabaseMigrator {
     public void onCreate(SQLiteDatabase db) {
         createInstancesTableV5(db, INSTANCES_TABLE_NAME);
         upgradeToVersion6(db, INSTANCES_TABLE_NAME);
+        upgradeToVersion7(db);
+        upgradeToVersion8(db);
     }
 
     @SuppressWarnings({"checkstyle:FallThrough"})
@@ -53,6 +55,10 @@ public class InstanceDatabaseMigrator implements DatabaseMigrator {
                 upgradeToVersion5(db);
             case 5:
                 upgradeToVersion6(db, INSTANCES_TABLE_NAME);
+            case 6:
+                upgradeToVersion7(db);
+            case 7:
+                upgradeToVersion8(db);
                 break;
             default:
                 Timber.i("Unknown version %d", oldVersion);
@@ -65,6 +71,8 @@ public class InstanceDatabaseMigrator implements DatabaseMigrator {
         upgradeToVersion6(db, temporaryTableName);
 
         dropObsoleteColumns(db, CURRENT_VERSION_COLUMN_NAMES, temporaryTableName);
+        upgradeToVersion7(db);
+        upgradeToVersion8(db);
     }
 
     private void upgradeToVersion2(SQLiteDatabase db) {
@@ -133,6 +141,26 @@ public class InstanceDatabaseMigrator implements DatabaseMigrator {
         SQLiteUtils.addColumn(db, name, GEOMETRY_TYPE, "text");
     }
 
+    /**
+     * Indexes the columns instances are looked up by: status (for the send and edit lists and
+     * auto send), file path (when saving and syncing the instances dir) and form ID and version.
+     */
+    private void upgradeToVersion7(SQLiteDatabase db) {
+        SQLiteUtils.createIndex(db, INSTANCES_TABLE_NAME + "_status_idx", INSTANCES_TABLE_NAME, STATUS);
+        SQLiteUtils.createIndex(db, INSTANCES_TABLE_NAME + "_instance_file_path_idx", INSTANCES_TABLE_NAME, INSTANCE_FILE_PATH);
+        SQLiteUtils.createIndex(db, INSTANCES_TABLE_NAME + "_form_id_version_idx", INSTANCES_TABLE_NAME, JR_FORM_ID, JR_VERSION);
+    }
+
+    /**
+     * Indexes the columns the instance lists are sorted and searched by. The name index uses the
+     * same collation as the lists so it can be used for both.
+     */
+    private void upgradeToVersion8(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INSTANCES_TABLE_NAME + "_display_name_idx ON "
+                + INSTANCES_TABLE_NAME + " (" + DISPLAY_NAME + " COLLATE NOCASE)");
+        SQLiteUtils.createIndex(db, INSTANCES_TABLE_NAME + "_last_status_change_date_idx", INSTANCES_TABLE_NAME, LAST_STATUS_CHANGE_DATE);
+    }
+
     private void createInstancesTableV5(SQLiteDatabase db, String name) {
         db.execSQL("CREATE TABLE IF NOT EXISTS " + name + " ("
                 + _ID + " integer primary key, "
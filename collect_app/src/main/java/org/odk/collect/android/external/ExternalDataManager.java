@@ -18,6 +18,8 @@
 
 package org.odk.collect.android.external;
 
+import java.io.Closeable;
+
 /**
  * This class handles all DB connections for the function handlers
  * <p/>
@@ -39,5 +41,12 @@ public interface ExternalDataManager {
      */
     ExternalSQLiteOpenHelper getDatabase(String dataSetName, boolean required);
 
+    /**
+     * Registers something that holds on to the data sets' databases (like compiled statements)
+     * so that it is closed before they are. It stays registered after {@link #close()} as the
+     * databases are reopened when they are next used.
+     */
+    void addDatabaseUser(Closeable databaseUser);
+
     void close();
 }
@@ -23,9 +23,13 @@ import org.odk.collect.android.application.Collect;
 import org.odk.collect.android.exception.ExternalDataException;
 import org.odk.collect.android.utilities.TranslationHandler;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import timber.log.Timber;
 
@@ -38,6 +42,8 @@ public class ExternalDataManagerImpl implements ExternalDataManager {
 
     private final Map<String, ExternalSQLiteOpenHelper> dbMap = new HashMap<>();
 
+    private final List<Closeable> databaseUsers = new CopyOnWriteArrayList<>();
+
     private final File mediaFolder;
 
     public ExternalDataManagerImpl(File mediaFolder) {
@@ -64,8 +70,21 @@ public class ExternalDataManagerImpl implements ExternalDataManager {
         return sqLiteOpenHelper;
     }
 
+    @Override
+    public void addDatabaseUser(Closeable databaseUser) {
+        databaseUsers.add(databaseUser);
+    }
+
     @Override
     public void close() {
+        for (Closeable databaseUser : databaseUsers) {
+            try {
+                databaseUser.close();
+            } catch (IOException e) {
+                Timber.w(e);
+            }
+        }
+
         if (dbMap != null) {
             for (ExternalSQLiteOpenHelper externalSQLiteOpenHelper : dbMap.values()) {
                 Timber.w("Closing database handler:%s", externalSQLiteOpenHelper.toString());
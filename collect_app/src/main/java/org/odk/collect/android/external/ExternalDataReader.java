@@ -28,5 +28,8 @@ import java.util.Map;
  */
 public interface ExternalDataReader {
 
-    void doImport(Map<String, File> externalDataMap);
+    /**
+     * @return false if the import was cancelled before every data set had been imported
+     */
+    boolean doImport(Map<String, File> externalDataMap);
 }
@@ -21,11 +21,21 @@ package org.odk.collect.android.external;
 import android.database.sqlite.SQLiteDatabase;
 
 import org.apache.commons.io.FileUtils;
+import org.odk.collect.android.R;
+import org.odk.collect.android.application.Collect;
 import org.odk.collect.android.tasks.FormLoaderTask;
+import org.odk.collect.android.utilities.TranslationHandler;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import timber.log.Timber;
 
@@ -37,13 +47,31 @@ import timber.log.Timber;
 public class ExternalDataReaderImpl implements ExternalDataReader {
 
     private final FormLoaderTask formLoaderTask;
+    private final ExecutorService executor;
 
     public ExternalDataReaderImpl(FormLoaderTask formLoaderTask) {
+        this(formLoaderTask, null);
+    }
+
+    /**
+     * @param executor if not null, each data set is imported into its own database as a separate
+     *                 task on this executor and {@link #doImport(Map)} waits for all of them
+     */
+    public ExternalDataReaderImpl(FormLoaderTask formLoaderTask, ExecutorService executor) {
         this.formLoaderTask = formLoaderTask;
+        this.executor = executor;
     }
 
     @Override
-    public void doImport(Map<String, File> externalDataMap) {
+    public boolean doImport(Map<String, File> externalDataMap) {
+        if (executor == null) {
+            return doSerialImport(externalDataMap);
+        } else {
+            return doParallelImport(externalDataMap);
+        }
+    }
+
+    private boolean doSerialImport(Map<String, File> externalDataMap) {
         for (Map.Entry<String, File> stringFileEntry : externalDataMap.entrySet()) {
             String dataSetName = stringFileEntry.getKey();
             File dataSetFile = stringFileEntry.getValue();
@@ -51,9 +79,64 @@ public class ExternalDataReaderImpl implements ExternalDataReader {
                 continue;
             }
             if (!doImportDataSetAndContinue(dataSetName, dataSetFile)) {
-                return; // halt if import was cancelled
+                return false; // halt if import was cancelled
+            }
+        }
+        return true;
+    }
+
+    private boolean doParallelImport(Map<String, File> externalDataMap) {
+        CompletionService<Boolean> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<Boolean>> imports = new ArrayList<>();
+        for (Map.Entry<String, File> stringFileEntry : externalDataMap.entrySet()) {
+            String dataSetName = stringFileEntry.getKey();
+            File dataSetFile = stringFileEntry.getValue();
+            if (dataSetFile.exists()) {
+                imports.add(completionService.submit(() -> doImportDataSetAndContinue(dataSetName, dataSetFile)));
+            }
+        }
+
+        // Wait for every import to finish (or roll itself back if cancelled) before reporting
+        // the first failure so that no database is left half written
+        RuntimeException firstFailure = null;
+        for (int imported = 1; imported <= imports.size(); imported++) {
+            try {
+                if (!completionService.take().get()) {
+                    // Imports that are still running roll themselves back as the task is
+                    // cancelled. Ones that haven't started yet don't need to.
+                    cancelAll(imports, false);
+                    return false;
+                }
+                onProgress(TranslationHandler.getString(Collect.getInstance(), R.string.ext_import_data_sets_progress_message, imported, imports.size()));
+            } catch (ExecutionException e) {
+                if (firstFailure == null) {
+                    firstFailure = e.getCause() instanceof RuntimeException
+                            ? (RuntimeException) e.getCause()
+                            : new RuntimeException(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                cancelAll(imports, true);
+                Thread.currentThread().interrupt();
+                return false;
             }
         }
+
+        if (firstFailure != null) {
+            throw firstFailure;
+        }
+        return true;
+    }
+
+    private static void cancelAll(List<Future<Boolean>> imports, boolean mayInterruptIfRunning) {
+        for (Future<Boolean> dataSetImport : imports) {
+            dataSetImport.cancel(mayInterruptIfRunning);
+        }
+    }
+
+    private void onProgress(String message) {
+        if (formLoaderTask != null) {
+            formLoaderTask.publishExternalDataLoadingProgress(message);
+        }
     }
 
     private boolean doImportDataSetAndContinue(String dataSetName, File dataSetFile) {
@@ -62,6 +145,12 @@ public class ExternalDataReaderImpl implements ExternalDataReader {
         if (dbFile.exists()) {
             // Determine if we need to reimport
             if (ExternalSQLiteOpenHelper.shouldUpdateDBforDataSet(dbFile, dataSetFile)) {
+                // Try to apply only what changed before falling back to rebuilding the database.
+                // A cancelled delta import is rolled back so the database can be kept as it is.
+                if (new ExternalSQLiteOpenHelper(dbFile).importChangesFromCSV(dataSetFile, formLoaderTask)) {
+                    return formLoaderTask == null || !formLoaderTask.isCancelled();
+                }
+
                 boolean deleted = dbFile.delete();
                 if (!deleted) {
                     Timber.e("%s has changed but we could not delete the previous DB at %s",
@@ -0,0 +1,414 @@
+package org.odk.collect.android.external;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import org.javarosa.core.model.IFormElement;
+import org.javarosa.core.model.QuestionDef;
+import org.javarosa.xpath.expr.XPathExpression;
+import org.javarosa.xpath.expr.XPathFuncExpr;
+import org.javarosa.xpath.expr.XPathStringLiteral;
+import org.javarosa.xpath.parser.XPathParseTool;
+import org.javarosa.xpath.parser.XPathSyntaxException;
+import org.odk.collect.android.external.handler.ExternalDataHandlerSearch;
+import org.odk.collect.android.utilities.SQLiteUtils;
+import org.odk.collect.android.utilities.StringUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.regex.Matcher;
+
+import timber.log.Timber;
+
+/**
+ * Full-text search tables that let search() find candidate rows without scanning the whole
+ * external data table. Each searched column gets contentless FTS4 tables whose docids are the
+ * rowids of the external data table:
+ * <ul>
+ * <li>a {@link IndexType#WORDS} table of the column's values, used for startsWith and matches,
+ * where the start of the first queried word is known to be the start of a word</li>
+ * <li>a {@link IndexType#TRIGRAMS} table of every three character sequence of every word of the
+ * values, used for contains and endsWith where the queried value can start part way through a
+ * word</li>
+ * </ul>
+ * FTS matches whole tokens (or token prefixes) whereas search() matches arbitrary substrings with
+ * LIKE, so the indexes are only ever used to narrow down the rows the LIKE expression is evaluated
+ * on. The match queries are only built when every row the LIKE expression would match is
+ * guaranteed to be among the FTS matches.
+ */
+public final class ExternalDataSearchIndex {
+
+    public enum IndexType {
+        WORDS(ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME + "_fts_"),
+        TRIGRAMS(ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME + "_trigrams_");
+
+        private final String tablePrefix;
+
+        IndexType(String tablePrefix) {
+            this.tablePrefix = tablePrefix;
+        }
+
+        public String getTableName(String safeColumnName) {
+            return tablePrefix + safeColumnName;
+        }
+    }
+
+    private static final int GRAM_LENGTH = 3;
+
+    /**
+     * The index tables of each open database, so that a search doesn't have to look them up in
+     * sqlite_master every time. Cleared for a database file whenever its indexes change.
+     */
+    private static final Map<SQLiteDatabase, Set<String>> INDEX_TABLES = new WeakHashMap<>();
+
+    private ExternalDataSearchIndex() {
+
+    }
+
+    public static boolean exists(SQLiteDatabase db, String safeColumnName, IndexType type) {
+        return getIndexTables(db).contains(type.getTableName(safeColumnName));
+    }
+
+    /**
+     * Indexes the values of the column unless they already are.
+     */
+    public static void createIfNeeded(SQLiteDatabase db, String safeColumnName, IndexType type) {
+        if (exists(db, safeColumnName, type)) {
+            return;
+        }
+
+        String tableName = type.getTableName(safeColumnName);
+        db.beginTransaction();
+        try {
+            if (type == IndexType.WORDS) {
+                db.execSQL("CREATE VIRTUAL TABLE " + tableName + " USING fts4(content=\"\", value)");
+                db.execSQL("INSERT INTO " + tableName + " (docid, value) SELECT rowid, " + safeColumnName
+                        + " FROM " + ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME);
+            } else {
+                db.execSQL("CREATE VIRTUAL TABLE " + tableName + " USING fts4(content=\"\", grams)");
+                insertTrigrams(db, tableName, safeColumnName);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            clearIndexTables(db);
+        }
+    }
+
+    /**
+     * Contentless FTS tables don't support deletes or updates so the indexes are dropped whenever
+     * rows change. They are rebuilt the next time the form is loaded.
+     */
+    public static void dropAll(SQLiteDatabase db) {
+        for (String tableName : queryIndexTables(db)) {
+            db.execSQL("DROP TABLE IF EXISTS " + tableName);
+        }
+        clearIndexTables(db);
+    }
+
+    /**
+     * Creates indexes for every column that a search() appearance in the form queries, of the
+     * types its search type can use. Data sets that haven't been imported are skipped.
+     */
+    public static void createForForm(IFormElement formDef, File mediaFolder) {
+        for (Map.Entry<String, Map<String, Set<IndexType>>> entry : findSearchedColumns(formDef).entrySet()) {
+            File dbFile = new File(mediaFolder, entry.getKey() + ".db");
+            if (!dbFile.exists()) {
+                continue;
+            }
+
+            SQLiteDatabase db = SQLiteDatabase.openDatabase(dbFile.getAbsolutePath(), null, SQLiteDatabase.OPEN_READWRITE);
+            try {
+                if (!SQLiteUtils.doesTableExist(db, ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME)) {
+                    continue;
+                }
+
+                for (Map.Entry<String, Set<IndexType>> column : entry.getValue().entrySet()) {
+                    for (IndexType type : column.getValue()) {
+                        try {
+                            createIfNeeded(db, column.getKey(), type);
+                        } catch (Exception e) {
+                            // Searching falls back to scanning the table
+                            Timber.w(e, "Could not create search index for %s in %s", column.getKey(), dbFile.getName());
+                        }
+                    }
+                }
+            } finally {
+                db.close();
+            }
+        }
+    }
+
+    /**
+     * @return the safe names of the queried columns of every search() appearance in the form and
+     * the types of index the appearances' search types can use, keyed by normalized data set
+     * name. Only appearances whose data set and columns are literals are included. Both types
+     * are used if the search type isn't a literal.
+     */
+    static Map<String, Map<String, Set<IndexType>>> findSearchedColumns(IFormElement formDef) {
+        Map<String, Map<String, Set<IndexType>>> searchedColumns = new HashMap<>();
+        for (String appearance : findSearchAppearances(formDef, new ArrayList<>())) {
+            Matcher matcher = ExternalDataUtil.SEARCH_FUNCTION_REGEX.matcher(appearance.trim());
+            if (!matcher.find()) {
+                continue;
+            }
+
+            try {
+                XPathExpression expression = XPathParseTool.parseXPath(matcher.group(0));
+                if (!(expression instanceof XPathFuncExpr)) {
+                    continue;
+                }
+
+                XPathFuncExpr function = (XPathFuncExpr) expression;
+                if (!function.id.name.equalsIgnoreCase(ExternalDataHandlerSearch.HANDLER_NAME)
+                        || function.args.length < 4
+                        || !(function.args[0] instanceof XPathStringLiteral)
+                        || !(function.args[2] instanceof XPathStringLiteral)) {
+                    continue;
+                }
+
+                String dataSetName = ((XPathStringLiteral) function.args[0]).s.toLowerCase(Locale.US);
+                if (dataSetName.endsWith(".csv")) {
+                    dataSetName = dataSetName.substring(0, dataSetName.lastIndexOf(".csv"));
+                }
+
+                String queriedColumns = ((XPathStringLiteral) function.args[2]).s;
+                if (queriedColumns.trim().isEmpty()) {
+                    continue;
+                }
+
+                Set<IndexType> indexTypes = function.args[1] instanceof XPathStringLiteral
+                        ? getIndexTypes(((XPathStringLiteral) function.args[1]).s)
+                        : EnumSet.allOf(IndexType.class);
+
+                Map<String, Set<IndexType>> columns = searchedColumns.get(dataSetName);
+                if (columns == null) {
+                    columns = new HashMap<>();
+                    searchedColumns.put(dataSetName, columns);
+                }
+                for (String column : ExternalDataUtil.createListOfColumns(queriedColumns)) {
+                    Set<IndexType> columnIndexTypes = columns.get(column);
+                    if (columnIndexTypes == null) {
+                        columnIndexTypes = EnumSet.noneOf(IndexType.class);
+                        columns.put(column, columnIndexTypes);
+                    }
+                    columnIndexTypes.addAll(indexTypes);
+                }
+            } catch (XPathSyntaxException e) {
+                Timber.w(e);
+            }
+        }
+
+        return searchedColumns;
+    }
+
+    /**
+     * Mirrors ExternalDataSearchType, where anything that isn't a known keyword is a contains.
+     */
+    private static Set<IndexType> getIndexTypes(String searchType) {
+        String keyword = searchType.trim();
+        return keyword.equalsIgnoreCase("startsWith") || keyword.equalsIgnoreCase("matches")
+                ? EnumSet.of(IndexType.WORDS)
+                : EnumSet.of(IndexType.TRIGRAMS);
+    }
+
+    private static List<String> findSearchAppearances(IFormElement element, List<String> appearances) {
+        if (element instanceof QuestionDef) {
+            String appearance = ((QuestionDef) element).getAppearanceAttr();
+            if (appearance != null && appearance.contains(ExternalDataHandlerSearch.HANDLER_NAME + "(")) {
+                appearances.add(appearance);
+            }
+        }
+
+        if (element.getChildren() != null) {
+            for (IFormElement child : element.getChildren()) {
+                findSearchAppearances(child, appearances);
+            }
+        }
+
+        return appearances;
+    }
+
+    /**
+     * Builds an FTS query for the {@link IndexType#WORDS} index that matches at least every value
+     * that a LIKE search for the queried value would. Each word of the queried value becomes a
+     * term if its start is known to be the start of a word in the matching values: it follows a
+     * separator in the queried value, or it is the first word and the value is anchored at the
+     * start. Words that aren't known to end
+     * where the matching value's word ends become prefix terms.
+     *
+     * Words are split the way FTS's simple tokenizer does it: any ASCII character that isn't a
+     * letter or digit separates words.
+     *
+     * @param anchoredAtStart whether matching values have to start with the queried value
+     * @param anchoredAtEnd   whether matching values have to end with the queried value
+     * @return the query or null if the index can't be used to narrow down the rows
+     */
+    public static String buildMatchQuery(String queriedValue, boolean anchoredAtStart, boolean anchoredAtEnd) {
+        if (queriedValue == null || queriedValue.indexOf('%') != -1 || queriedValue.indexOf('_') != -1) {
+            // LIKE wildcards can stand in for word characters
+            return null;
+        }
+
+        StringBuilder query = new StringBuilder();
+        int length = queriedValue.length();
+        int i = 0;
+        while (i < length) {
+            if (!isWordCharacter(queriedValue.charAt(i))) {
+                i++;
+                continue;
+            }
+
+            int start = i;
+            while (i < length && isWordCharacter(queriedValue.charAt(i))) {
+                i++;
+            }
+
+            boolean startsWord = start > 0 || anchoredAtStart;
+            if (!startsWord) {
+                continue;
+            }
+
+            boolean endsWord = i < length || anchoredAtEnd;
+            if (query.length() > 0) {
+                query.append(' ');
+            }
+            for (int j = start; j < i; j++) {
+                query.append(toAsciiLowerCase(queriedValue.charAt(j)));
+            }
+            if (!endsWord) {
+                query.append('*');
+            }
+        }
+
+        return query.length() > 0 ? query.toString() : null;
+    }
+
+    /**
+     * Builds an FTS query for the {@link IndexType#TRIGRAMS} index that matches at least every
+     * value containing the queried value. Every word of the queried value is part of a word in a
+     * matching value so all of its trigrams have to be indexed for that value. Words shorter than
+     * a trigram can't be looked up.
+     *
+     * @return the query or null if the queried value has no word long enough to narrow down the
+     * rows
+     */
+    public static String buildTrigramMatchQuery(String queriedValue) {
+        if (queriedValue == null || queriedValue.indexOf('%') != -1 || queriedValue.indexOf('_') != -1) {
+            return null;
+        }
+
+        Set<String> trigrams = new LinkedHashSet<>();
+        addTrigrams(queriedValue, trigrams);
+        return trigrams.isEmpty() ? null : StringUtils.join(" ", trigrams);
+    }
+
+    /**
+     * @return the trigrams of every word of the value separated by spaces, as they are indexed
+     */
+    static String toIndexedTrigrams(String value) {
+        Set<String> trigrams = new LinkedHashSet<>();
+        addTrigrams(value, trigrams);
+        return StringUtils.join(" ", trigrams);
+    }
+
+    private static void addTrigrams(String value, Set<String> trigrams) {
+        int length = value.length();
+        int i = 0;
+        while (i < length) {
+            if (!isWordCharacter(value.charAt(i))) {
+                i++;
+                continue;
+            }
+
+            int start = i;
+            while (i < length && isWordCharacter(value.charAt(i))) {
+                i++;
+            }
+
+            for (int j = start; j + GRAM_LENGTH <= i; j++) {
+                StringBuilder trigram = new StringBuilder(GRAM_LENGTH);
+                for (int k = j; k < j + GRAM_LENGTH; k++) {
+                    trigram.append(toAsciiLowerCase(value.charAt(k)));
+                }
+                trigrams.add(trigram.toString());
+            }
+        }
+    }
+
+    private static void insertTrigrams(SQLiteDatabase db, String tableName, String safeColumnName) {
+        try (Cursor cursor = db.rawQuery("SELECT rowid, " + safeColumnName + " FROM " + ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME, null);
+             SQLiteStatement insert = db.compileStatement("INSERT INTO " + tableName + " (docid, grams) VALUES (?, ?)")) {
+            while (cursor.moveToNext()) {
+                if (cursor.isNull(1)) {
+                    continue;
+                }
+
+                insert.bindLong(1, cursor.getLong(0));
+                insert.bindString(2, toIndexedTrigrams(cursor.getString(1)));
+                insert.executeInsert();
+            }
+        }
+    }
+
+    private static synchronized Set<String> getIndexTables(SQLiteDatabase db) {
+        Set<String> tables = INDEX_TABLES.get(db);
+        if (tables == null) {
+            tables = queryIndexTables(db);
+            INDEX_TABLES.put(db, tables);
+        }
+        return tables;
+    }
+
+    /**
+     * Forgets the index tables of every open connection to the database's file, as the indexes
+     * are usually created on a different connection than the one searches use.
+     */
+    private static synchronized void clearIndexTables(SQLiteDatabase db) {
+        String path = db.getPath();
+        Iterator<SQLiteDatabase> databases = INDEX_TABLES.keySet().iterator();
+        while (databases.hasNext()) {
+            SQLiteDatabase cached = databases.next();
+            if (cached == db || (path != null && path.equals(cached.getPath()))) {
+                databases.remove();
+            }
+        }
+    }
+
+    private static Set<String> queryIndexTables(SQLiteDatabase db) {
+        Set<String> tables = new HashSet<>();
+        try (Cursor cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'table' AND sql LIKE 'CREATE VIRTUAL TABLE%'", null)) {
+            while (cursor.moveToNext()) {
+                String name = cursor.getString(0);
+                for (IndexType type : IndexType.values()) {
+                    if (name.startsWith(type.tablePrefix)) {
+                        tables.add(name);
+                    }
+                }
+            }
+        }
+        return tables;
+    }
+
+    private static boolean isWordCharacter(char c) {
+        return c >= 0x80 || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    /**
+     * The simple tokenizer only folds the case of ASCII letters (as does LIKE).
+     */
+    private static char toAsciiLowerCase(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+}
@@ -0,0 +1,228 @@
+package org.odk.collect.android.external;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import org.odk.collect.android.R;
+import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.exception.ExternalDataException;
+import org.odk.collect.android.utilities.TranslationHandler;
+
+import java.io.Closeable;
+
+/**
+ * Inserts and updates rows of an external data CSV in a table using precompiled statements whose
+ * parameters are rebound for every row. Column names are resolved once from the header and writes are
+ * grouped into transactions of {@link #BATCH_SIZE} rows. If the database is already in a
+ * transaction (as it is in {@link android.database.sqlite.SQLiteOpenHelper#onCreate}) the batches
+ * are nested in it and only committed along with it.
+ *
+ * Every row is stored with a hash of its contents in {@link #ROW_HASH_COLUMN_NAME} so that a
+ * later version of the CSV can be applied as a delta.
+ */
+public class ExternalDataTableWriter implements Closeable {
+
+    public static final int BATCH_SIZE = 1000;
+
+    /**
+     * Doesn't start with "c_" so it can never clash with a column from the CSV.
+     */
+    public static final String ROW_HASH_COLUMN_NAME = "_row_hash";
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final SQLiteDatabase db;
+    private final String tableName;
+    private final String columns;
+    private final SQLiteStatement insertStatement;
+    private SQLiteStatement updateStatement;
+
+    /**
+     * For each CSV column, the 1-based index of the statement parameter it is bound to or 0 if
+     * the column has no name and is skipped.
+     */
+    private final int[] parameterIndexes;
+    private final int sortColumnIndex;
+    private final int generatedSortParameterIndex;
+    private final int rowHashParameterIndex;
+
+    private int rowsInBatch;
+
+    /**
+     * @param safeColumnNames the safe column name for each CSV column or null for columns that
+     *                        should be skipped
+     */
+    public ExternalDataTableWriter(SQLiteDatabase db, String tableName, String[] safeColumnNames) {
+        this.db = db;
+        this.tableName = tableName;
+        this.parameterIndexes = new int[safeColumnNames.length];
+
+        StringBuilder columns = new StringBuilder();
+        int parameterCount = 0;
+        int sortColumnIndex = -1;
+        for (int i = 0; i < safeColumnNames.length; i++) {
+            if (safeColumnNames[i] == null) {
+                continue;
+            }
+
+            if (parameterCount > 0) {
+                columns.append(", ");
+            }
+            columns.append(safeColumnNames[i]);
+            parameterIndexes[i] = ++parameterCount;
+
+            if (safeColumnNames[i].equals(ExternalDataUtil.SORT_COLUMN_NAME)) {
+                sortColumnIndex = i;
+            }
+        }
+
+        this.sortColumnIndex = sortColumnIndex;
+        if (sortColumnIndex == -1) {
+            columns.append(", ").append(ExternalDataUtil.SORT_COLUMN_NAME);
+            generatedSortParameterIndex = ++parameterCount;
+        } else {
+            generatedSortParameterIndex = 0;
+        }
+
+        columns.append(", ").append(ROW_HASH_COLUMN_NAME);
+        rowHashParameterIndex = ++parameterCount;
+
+        this.columns = columns.toString();
+
+        StringBuilder sql = new StringBuilder()
+                .append("INSERT INTO ")
+                .append(tableName)
+                .append(" (")
+                .append(this.columns)
+                .append(") VALUES (");
+        for (int i = 0; i < parameterCount; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(')');
+
+        insertStatement = db.compileStatement(sql.toString());
+    }
+
+    /**
+     * @param row       the values of the row in CSV column order, which may be shorter than the header
+     * @param sortValue the value stored in the sort column when the CSV has no sort column of its
+     *                  own, usually the 1-based position of the row
+     * @return the rowid of the new row
+     */
+    public long insert(String[] row, double sortValue) {
+        beginBatchIfNeeded();
+        bindRow(insertStatement, row, sortValue);
+        long rowId = insertStatement.executeInsert();
+        endBatchIfFull();
+        return rowId;
+    }
+
+    /**
+     * Replaces all values of the row with the given rowid.
+     */
+    public void update(long rowId, String[] row, double sortValue) {
+        if (updateStatement == null) {
+            // Row value assignments (SET (a, b) = (?, ?)) need a newer SQLite than older devices have
+            updateStatement = db.compileStatement("UPDATE " + tableName + " SET "
+                    + columns.replace(",", " = ?,") + " = ? WHERE rowid = ?");
+        }
+
+        beginBatchIfNeeded();
+        bindRow(updateStatement, row, sortValue);
+        updateStatement.bindLong(rowHashParameterIndex + 1, rowId);
+        updateStatement.executeUpdateDelete();
+        endBatchIfFull();
+    }
+
+    /**
+     * Commits the rows written since the last full batch. Must be called once all rows have been
+     * written, otherwise they are rolled back by {@link #close()}.
+     */
+    public void finish() {
+        if (rowsInBatch > 0) {
+            commitBatch();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (rowsInBatch > 0) {
+            rowsInBatch = 0;
+            db.endTransaction();
+        }
+
+        insertStatement.close();
+        if (updateStatement != null) {
+            updateStatement.close();
+        }
+    }
+
+    /**
+     * @return a hash of the values of the columns that are stored, used to tell whether a row
+     * changed between two versions of a CSV
+     */
+    public long hashRow(String[] row) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < parameterIndexes.length; i++) {
+            if (parameterIndexes[i] == 0) {
+                continue;
+            }
+
+            String value = i < row.length && row[i] != null ? row[i] : "";
+            for (int j = 0; j < value.length(); j++) {
+                hash = (hash ^ value.charAt(j)) * FNV_PRIME;
+            }
+
+            // Separate values so that "a","bc" and "ab","c" hash differently
+            hash = (hash ^ 0xFFFF) * FNV_PRIME;
+        }
+
+        return hash;
+    }
+
+    private void bindRow(SQLiteStatement statement, String[] row, double sortValue) {
+        statement.clearBindings();
+        for (int i = 0; i < row.length && i < parameterIndexes.length; i++) {
+            int parameterIndex = parameterIndexes[i];
+            if (parameterIndex == 0) {
+                continue;
+            }
+
+            String value = row[i];
+            if (i == sortColumnIndex) {
+                try {
+                    statement.bindDouble(parameterIndex, Double.parseDouble(value));
+                } catch (NumberFormatException | NullPointerException e) {
+                    throw new ExternalDataException(TranslationHandler.getString(Collect.getInstance(), R.string.ext_sortBy_numeric_error, value));
+                }
+            } else if (value != null) {
+                statement.bindString(parameterIndex, value);
+            }
+        }
+
+        if (generatedSortParameterIndex != 0) {
+            statement.bindDouble(generatedSortParameterIndex, sortValue);
+        }
+
+        statement.bindLong(rowHashParameterIndex, hashRow(row));
+    }
+
+    private void beginBatchIfNeeded() {
+        if (rowsInBatch == 0) {
+            db.beginTransaction();
+        }
+    }
+
+    private void endBatchIfFull() {
+        if (++rowsInBatch == BATCH_SIZE) {
+            commitBatch();
+        }
+    }
+
+    private void commitBatch() {
+        rowsInBatch = 0;
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+}
@@ -22,6 +22,7 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 
 import org.odk.collect.android.R;
 import org.odk.collect.android.application.Collect;
@@ -34,14 +35,18 @@ import org.odk.collect.android.utilities.SQLiteUtils;
 import org.odk.collect.android.utilities.TranslationHandler;
 import org.odk.collect.shared.strings.Md5;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import au.com.bytecode.opencsv.CSVReader;
 import timber.log.Timber;
@@ -57,6 +62,8 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
     private static final char DELIMITING_CHAR = ",".charAt(0);
     private static final char QUOTE_CHAR = "\"".charAt(0);
     private static final char ESCAPE_CHAR = "\0".charAt(0);
+    private static final int PROGRESS_CHECK_INTERVAL_ROWS = 500;
+    private static final long PROGRESS_INTERVAL_MILLIS = 250;
 
     private File dataSetFile;
     private ExternalDataReader externalDataReader;
@@ -82,6 +89,199 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
         }
     }
 
+    /**
+     * Applies a changed CSV to the existing database of its data set instead of rebuilding it.
+     * Rows are matched on the first column whose name ends with "_key" or, if there is no such
+     * column, on a hash of their contents. Matched rows whose contents changed are updated,
+     * unmatched rows in the CSV are inserted and rows that are no longer in the CSV are deleted.
+     * If the CSV has no sort column, a matched row's generated sort value is only changed if the
+     * row moved relative to the rows before it, so inserting or deleting a line doesn't renumber
+     * the rows after it. All changes are applied in a single transaction
+     * which is rolled back if the import is cancelled.
+     *
+     * @return false if the changes can't be applied as a delta (because the columns changed or
+     * the database was created before rows were hashed) and the database has to be rebuilt
+     */
+    boolean importChangesFromCSV(File dataSetFile, FormLoaderTask formLoaderTask) {
+        this.dataSetFile = dataSetFile;
+        this.formLoaderTask = formLoaderTask;
+
+        SQLiteDatabase db = null;
+        CSVReader reader = null;
+        try {
+            db = getWritableDatabase();
+            reader = new CSVReader(new InputStreamReader(new FileInputStream(dataSetFile), "UTF-8"),
+                    DELIMITING_CHAR, QUOTE_CHAR, ESCAPE_CHAR);
+            String[] headerRow = reader.readNext();
+            if (!ExternalDataUtil.containsAnyData(headerRow)) {
+                return false;
+            }
+
+            headerRow[0] = removeByteOrderMark(headerRow[0]);
+
+            List<String> conflictingColumns = ExternalDataUtil.findMatchingColumnsAfterSafeningNames(headerRow);
+            if (conflictingColumns != null && !conflictingColumns.isEmpty()) {
+                return false;
+            }
+
+            String tableName = ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME;
+            Set<String> expectedColumns = new HashSet<>();
+            expectedColumns.add(ExternalDataUtil.SORT_COLUMN_NAME);
+            expectedColumns.add(ExternalDataTableWriter.ROW_HASH_COLUMN_NAME);
+
+            String[] safeColumnNames = new String[headerRow.length];
+            int keyColumnIndex = -1;
+            for (int i = 0; i < headerRow.length; i++) {
+                String columnName = headerRow[i].trim();
+                if (columnName.length() > 0) {
+                    safeColumnNames[i] = ExternalDataUtil.toSafeColumnName(columnName);
+                    expectedColumns.add(safeColumnNames[i]);
+
+                    if (keyColumnIndex == -1 && columnName.endsWith("_key")) {
+                        keyColumnIndex = i;
+                    }
+                }
+            }
+
+            if (!expectedColumns.equals(getColumnNames(db, tableName))) {
+                Timber.i("Columns of %s changed so it can't be imported as a delta", dataSetFile.getName());
+                return false;
+            }
+
+            boolean generatedSortColumn = !Arrays.asList(safeColumnNames).contains(ExternalDataUtil.SORT_COLUMN_NAME);
+            if (hasRowsWithoutHash(db, tableName)) {
+                return false;
+            }
+
+            onProgress(TranslationHandler.getString(Collect.getInstance(), R.string.ext_import_progress_message,
+                    dataSetFile.getName(), ""));
+
+            int inserted = 0;
+            int updated = 0;
+            int deleted;
+
+            db.beginTransaction();
+            try (ExternalDataTableWriter writer = new ExternalDataTableWriter(db, tableName, safeColumnNames);
+                 ExistingRows existingRows = new ExistingRows(db, tableName,
+                         keyColumnIndex == -1 ? ExternalDataTableWriter.ROW_HASH_COLUMN_NAME : safeColumnNames[keyColumnIndex],
+                         generatedSortColumn)) {
+                String[] row = reader.readNext();
+                Double lastSortValue = null;
+                while (row != null && !isCancelled()) {
+                    if (!ExternalDataUtil.containsAnyData(row)) {
+                        row = reader.readNext();
+                        continue;
+                    }
+
+                    if (row.length < headerRow.length) {
+                        row = ExternalDataUtil.fillUpNullValues(row, headerRow);
+                    }
+
+                    long rowHash = writer.hashRow(row);
+                    String rowIdentity = keyColumnIndex == -1 ? Long.toString(rowHash) : ExternalDataUtil.nullSafe(row[keyColumnIndex]);
+                    ExistingRow match = existingRows.take(rowIdentity);
+
+                    // Rows that are still in order keep their sort value. Only inserted and moved
+                    // rows get a new one, in the gap after the previous row.
+                    double sortValue = 0;
+                    if (generatedSortColumn) {
+                        sortValue = match != null && (lastSortValue == null || match.sortValue > lastSortValue)
+                                ? match.sortValue
+                                : existingRows.getSortValueAfter(lastSortValue);
+                        lastSortValue = sortValue;
+                    }
+
+                    if (match == null) {
+                        existingRows.markMatched(writer.insert(row, sortValue));
+                        inserted++;
+                    } else if (match.rowHash != rowHash || (generatedSortColumn && match.sortValue != sortValue)) {
+                        writer.update(match.rowId, row, sortValue);
+                        updated++;
+                    }
+
+                    row = reader.readNext();
+                }
+
+                if (isCancelled()) {
+                    Timber.w("User canceled reading data from %s", dataSetFile.toString());
+                    onProgress(TranslationHandler.getString(Collect.getInstance(), R.string.ext_import_cancelled_message));
+                    return true;
+                }
+
+                writer.finish();
+                deleted = existingRows.deleteUnmatched();
+
+                if (inserted + updated + deleted > 0) {
+                    ExternalDataSearchIndex.dropAll(db);
+                }
+
+                ContentValues metadata = new ContentValues();
+                metadata.put(ExternalDataUtil.COLUMN_MD5_HASH, Md5.getMd5Hash(dataSetFile));
+                db.update(ExternalDataUtil.EXTERNAL_METADATA_TABLE_NAME, metadata,
+                        ExternalDataUtil.COLUMN_DATASET_FILENAME + " = ?", new String[]{dataSetFile.getName()});
+
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+
+            Timber.i("Applied changes to %s: %d inserted, %d updated, %d deleted",
+                    dataSetFile.getName(), inserted, updated, deleted);
+            onProgress(TranslationHandler.getString(Collect.getInstance(), R.string.ext_import_completed_message));
+            return true;
+        } catch (Exception e) {
+            Timber.w(e, "Could not import %s as a delta", dataSetFile.getName());
+            return false;
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    Timber.e(e);
+                }
+            }
+            if (db != null) {
+                db.close();
+            }
+        }
+    }
+
+    private static boolean hasRowsWithoutHash(SQLiteDatabase db, String tableName) {
+        try (Cursor cursor = db.rawQuery("SELECT 1 FROM " + tableName + " WHERE "
+                + ExternalDataTableWriter.ROW_HASH_COLUMN_NAME + " IS NULL LIMIT 1", null)) {
+            return cursor.moveToFirst();
+        }
+    }
+
+    private static Set<String> getColumnNames(SQLiteDatabase db, String tableName) {
+        Set<String> columnNames = new HashSet<>();
+        try (Cursor cursor = db.rawQuery("PRAGMA table_info(" + tableName + ")", null)) {
+            int nameColumnIndex = cursor.getColumnIndex("name");
+            while (cursor.moveToNext()) {
+                columnNames.add(cursor.getString(nameColumnIndex));
+            }
+        }
+
+        return columnNames;
+    }
+
+    /**
+     * Imports keep the rollback journal in memory and don't sync writes to disk. That means a
+     * crash or power failure during (or shortly after) an import can leave the database corrupt
+     * or missing rows. That is only acceptable because a data set database is a cache that can
+     * be rebuilt from its CSV: one that fails the metadata check is deleted and imported again.
+     * Don't use these settings for anything that can't be rebuilt.
+     */
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        if (externalDataReader != null) {
+            try (Cursor cursor = db.rawQuery("PRAGMA journal_mode=MEMORY", null)) {
+                cursor.moveToFirst();
+            }
+            db.execSQL("PRAGMA synchronous=OFF");
+        }
+    }
+
     @Override
     public void onCreate(SQLiteDatabase db) {
         if (externalDataReader == null) {
@@ -167,6 +367,8 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
                 sb.append(", ");
                 sb.append(ExternalDataUtil.SORT_COLUMN_NAME).append(" real ");
             }
+            sb.append(", ");
+            sb.append(ExternalDataTableWriter.ROW_HASH_COLUMN_NAME).append(" integer ");
 
             sb.append(" );");
             String sql = sb.toString();
@@ -188,52 +390,51 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
             }
 
             // populate the database
-            String[] row = reader.readNext();
-            int rowCount = 0;
-            while (row != null && !isCancelled()) {
-                // SCTO-894 - first we should make sure that this is not an empty line
-                if (!ExternalDataUtil.containsAnyData(row)) {
-                    // yes, that is an empty row, ignore it
-                    row = reader.readNext();
-                    continue;
-                }
-
-                // SCTO-894 - then check if the row contains less values than the header
-                // we should not ignore the existing values in the row,
-                // we will just fill up the rest with empty strings
-                if (row.length < headerRow.length) {
-                    row = ExternalDataUtil.fillUpNullValues(row, headerRow);
-                }
-
-                ContentValues values = new ContentValues();
-                if (!sortColumnAlreadyPresent) {
-                    values.put(ExternalDataUtil.SORT_COLUMN_NAME, rowCount + 1);
+            String[] safeColumnNames = new String[headerRow.length];
+            for (int i = 0; i < headerRow.length; i++) {
+                String columnName = headerRow[i].trim();
+                if (columnName.length() > 0) {
+                    safeColumnNames[i] = ExternalDataUtil.toSafeColumnName(columnName, columnNamesCache);
                 }
+            }
 
-                for (int i = 0; i < row.length && i < headerRow.length; i++) {
-                    String columnName = headerRow[i].trim();
-                    String columnValue = row[i];
-                    if (columnName.length() == 0) {
+            try (ExternalDataTableWriter inserter = new ExternalDataTableWriter(db, tableName, safeColumnNames)) {
+                String[] row = reader.readNext();
+                int rowCount = 0;
+                long lastProgressTime = System.currentTimeMillis();
+                while (row != null && !isCancelled()) {
+                    // SCTO-894 - first we should make sure that this is not an empty line
+                    if (!ExternalDataUtil.containsAnyData(row)) {
+                        // yes, that is an empty row, ignore it
+                        row = reader.readNext();
                         continue;
                     }
-                    String safeColumnName = ExternalDataUtil.toSafeColumnName(columnName,
-                            columnNamesCache);
-                    if (safeColumnName.equals(ExternalDataUtil.SORT_COLUMN_NAME)) {
-                        try {
-                            values.put(safeColumnName, Double.parseDouble(columnValue));
-                        } catch (NumberFormatException e) {
-                            throw new ExternalDataException(TranslationHandler.getString(Collect.getInstance(), R.string.ext_sortBy_numeric_error, columnValue));
+
+                    // SCTO-894 - then check if the row contains less values than the header
+                    // we should not ignore the existing values in the row,
+                    // we will just fill up the rest with empty strings
+                    if (row.length < headerRow.length) {
+                        row = ExternalDataUtil.fillUpNullValues(row, headerRow);
+                    }
+
+                    inserter.insert(row, rowCount + 1);
+                    row = reader.readNext();
+                    rowCount++;
+
+                    // Formatting the localized message is comparatively expensive so only check
+                    // the clock every so often and report at most a few times a second
+                    if (rowCount % PROGRESS_CHECK_INTERVAL_ROWS == 0) {
+                        long now = System.currentTimeMillis();
+                        if (now - lastProgressTime >= PROGRESS_INTERVAL_MILLIS) {
+                            lastProgressTime = now;
+                            onProgress(TranslationHandler.getString(Collect.getInstance(), R.string.ext_import_progress_message,
+                                    dataSetFile.getName(), " (" + rowCount + " records so far)"));
                         }
-                    } else {
-                        values.put(safeColumnName, columnValue);
                     }
                 }
-                db.insertOrThrow(tableName, null, values);
-                row = reader.readNext();
-                rowCount++;
-                if (rowCount % 100 == 0) {
-                    onProgress(TranslationHandler.getString(Collect.getInstance(), R.string.ext_import_progress_message,
-                            dataSetFile.getName(), " (" + rowCount + " records so far)"));
+
+                if (!isCancelled()) {
+                    inserter.finish();
                 }
             }
 
@@ -341,4 +542,129 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
     private String removeByteOrderMark(String bomCheckString) {
         return bomCheckString.startsWith("\uFEFF") ? bomCheckString.substring(1) : bomCheckString;
     }
+
+    /**
+     * Finds the rows of the existing table that rows of a changed CSV correspond to. Lookups go
+     * through an index on the identity column so that nothing is held in memory per row, and the
+     * rows that have been matched (or inserted) are recorded in a temporary table so that the
+     * ones left over can be deleted at the end and rows with a duplicate identity are each only
+     * matched once.
+     */
+    private static class ExistingRows implements Closeable {
+
+        /**
+         * Inserted and moved rows get a sort value this fraction of the way into the gap after the
+         * previous row, so that a run of rows inserted into the same gap all fit before the next
+         * one. A gap is only exhausted after tens of thousands of rows have been inserted into it,
+         * at which point the database is rebuilt instead.
+         */
+        private static final double SORT_GAP_FRACTION = 1.0 / 1024;
+
+        private final SQLiteDatabase db;
+        private final String tableName;
+        private final String identityColumnName;
+        private final SQLiteStatement markMatchedStatement;
+
+        ExistingRows(SQLiteDatabase db, String tableName, String identityColumnName, boolean generatedSortColumn) {
+            this.db = db;
+            this.tableName = tableName;
+            this.identityColumnName = identityColumnName;
+
+            // Key columns are indexed when the table is created; row hashes and generated sort
+            // values only need to be looked up here
+            if (identityColumnName.equals(ExternalDataTableWriter.ROW_HASH_COLUMN_NAME)) {
+                db.execSQL("CREATE INDEX IF NOT EXISTS " + tableName + "_row_hash_idx ON " + tableName
+                        + " (" + ExternalDataTableWriter.ROW_HASH_COLUMN_NAME + ")");
+            }
+            if (generatedSortColumn) {
+                db.execSQL("CREATE INDEX IF NOT EXISTS " + tableName + "_sort_idx ON " + tableName
+                        + " (" + ExternalDataUtil.SORT_COLUMN_NAME + ")");
+            }
+
+            db.execSQL("DROP TABLE IF EXISTS temp.matched_rows");
+            db.execSQL("CREATE TEMP TABLE matched_rows (id INTEGER PRIMARY KEY)");
+            markMatchedStatement = db.compileStatement("INSERT OR IGNORE INTO temp.matched_rows (id) VALUES (?)");
+        }
+
+        /**
+         * @return the first existing row with the given identity that hasn't been matched yet,
+         * which is then marked as matched, or null if there is none
+         */
+        ExistingRow take(String identity) {
+            try (Cursor cursor = db.rawQuery("SELECT rowid, " + ExternalDataTableWriter.ROW_HASH_COLUMN_NAME + ", "
+                    + ExternalDataUtil.SORT_COLUMN_NAME + " FROM " + tableName
+                    + " WHERE " + identityColumnName + " = ?"
+                    // Correlated so that each candidate is a primary key lookup rather than the
+                    // matched rows being collected again for every CSV row
+                    + " AND NOT EXISTS (SELECT 1 FROM temp.matched_rows WHERE id = " + tableName + ".rowid)"
+                    + " ORDER BY rowid LIMIT 1", new String[]{identity})) {
+                if (!cursor.moveToFirst()) {
+                    return null;
+                }
+
+                ExistingRow row = new ExistingRow(cursor.getLong(0), cursor.getLong(1), cursor.getDouble(2));
+                markMatched(row.rowId);
+                return row;
+            }
+        }
+
+        void markMatched(long rowId) {
+            markMatchedStatement.bindLong(1, rowId);
+            markMatchedStatement.executeInsert();
+        }
+
+        /**
+         * @param previous the sort value of the previous row in the CSV or null for the first row
+         * @return a sort value after the previous row and before every row currently after it
+         * @throws IllegalStateException if there is no room left in the gap
+         */
+        double getSortValueAfter(Double previous) {
+            Double next;
+            String sql = "SELECT MIN(" + ExternalDataUtil.SORT_COLUMN_NAME + ") FROM " + tableName
+                    + (previous == null ? "" : " WHERE " + ExternalDataUtil.SORT_COLUMN_NAME + " > ?");
+            try (Cursor cursor = db.rawQuery(sql, previous == null ? null : new String[]{Double.toString(previous)})) {
+                next = cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getDouble(0) : null;
+            }
+
+            if (next == null) {
+                return previous == null ? 1 : Math.floor(previous) + 1;
+            } else if (previous == null) {
+                return next - 1;
+            }
+
+            double value = previous + (next - previous) * SORT_GAP_FRACTION;
+            if (value <= previous || value >= next) {
+                throw new IllegalStateException("No room left between sort values " + previous + " and " + next);
+            }
+            return value;
+        }
+
+        /**
+         * @return the number of rows that weren't matched and have been deleted
+         */
+        int deleteUnmatched() {
+            try (SQLiteStatement statement = db.compileStatement("DELETE FROM " + tableName
+                    + " WHERE rowid NOT IN (SELECT id FROM temp.matched_rows)")) {
+                return statement.executeUpdateDelete();
+            }
+        }
+
+        @Override
+        public void close() {
+            markMatchedStatement.close();
+            db.execSQL("DROP TABLE IF EXISTS temp.matched_rows");
+        }
+    }
+
+    private static class ExistingRow {
+        final long rowId;
+        final long rowHash;
+        final double sortValue;
+
+        ExistingRow(long rowId, long rowHash, double sortValue) {
+            this.rowId = rowId;
+            this.rowHash = rowHash;
+            this.sortValue = sortValue;
+        }
+    }
 }
@@ -18,9 +18,11 @@
 
 package org.odk.collect.android.external.handler;
 
-import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
 import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
+import android.util.LruCache;
 
 import org.javarosa.core.model.condition.EvaluationContext;
 import org.javarosa.xpath.expr.XPathFuncExpr;
@@ -28,8 +30,11 @@ import org.odk.collect.android.external.ExternalDataManager;
 import org.odk.collect.android.external.ExternalDataUtil;
 import org.odk.collect.android.external.ExternalSQLiteOpenHelper;
 
+import java.io.Closeable;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import timber.log.Timber;
 
@@ -37,11 +42,24 @@ import timber.log.Timber;
  * Author: Meletis Margaritis
  * Date: 25/04/13
  * Time: 13:50
+ *
+ * Results are cached per data set for the lifetime of the handler (which is created for each
+ * form session after the data sets have been imported) so that recalculations don't query the
+ * database again for values that were already looked up. The lookup statement for each queried
+ * and reference column pair is compiled once. The cached results and statements are discarded
+ * when the data sets' databases are closed (see {@link ExternalDataManager#addDatabaseUser}) or
+ * reopened.
  */
-public class ExternalDataHandlerPull extends ExternalDataHandlerBase {
+public class ExternalDataHandlerPull extends ExternalDataHandlerBase implements Closeable {
 
     public static final String HANDLER_NAME = "pulldata";
 
+    private static final int MAX_CACHED_RESULTS_PER_DATA_SET = 1000;
+
+    private final Map<String, DataSetCache> dataSetCaches = new HashMap<>();
+    private int hitCount;
+    private int missCount;
+
     public ExternalDataHandlerPull(ExternalDataManager externalDataManager) {
         super(externalDataManager);
     }
@@ -67,7 +85,7 @@ public class ExternalDataHandlerPull extends ExternalDataHandlerBase {
     }
 
     @Override
-    public Object eval(Object[] args, EvaluationContext ec) {
+    public synchronized Object eval(Object[] args, EvaluationContext ec) {
 
         if (args.length != 4) {
             Timber.e("4 arguments are needed to evaluate the %s function", HANDLER_NAME);
@@ -82,7 +100,6 @@ public class ExternalDataHandlerPull extends ExternalDataHandlerBase {
         // SCTO-545
         dataSetName = normalize(dataSetName);
 
-        Cursor c = null;
         try {
             ExternalSQLiteOpenHelper sqLiteOpenHelper = getExternalDataManager().getDatabase(
                     dataSetName, false);
@@ -90,27 +107,103 @@ public class ExternalDataHandlerPull extends ExternalDataHandlerBase {
                 return "";
             }
 
-            SQLiteDatabase db = sqLiteOpenHelper.getReadableDatabase();
-            String[] columns = {ExternalDataUtil.toSafeColumnName(queriedColumn)};
-            String selection = ExternalDataUtil.toSafeColumnName(referenceColumn) + "=?";
-            String[] selectionArgs = {referenceValue};
-
-            c = db.query(ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME, columns, selection,
-                    selectionArgs, null, null, null);
-            if (c.getCount() > 0) {
-                c.moveToFirst();
-                return ExternalDataUtil.nullSafe(c.getString(0));
-            } else {
+            DataSetCache dataSetCache = getDataSetCache(dataSetName, sqLiteOpenHelper.getReadableDatabase());
+
+            String resultKey = queriedColumn + '\u0000' + referenceColumn + '\u0000' + referenceValue;
+            String result = dataSetCache.results.get(resultKey);
+            if (result != null) {
+                hitCount++;
+                return result;
+            }
+
+            missCount++;
+            SQLiteStatement statement = dataSetCache.getStatement(queriedColumn, referenceColumn);
+            statement.bindString(1, referenceValue);
+            try {
+                result = ExternalDataUtil.nullSafe(statement.simpleQueryForString());
+            } catch (SQLiteDoneException e) {
                 Timber.i("Could not find a value in %s where the column %s has the value %s",
                         queriedColumn, referenceColumn, referenceValue);
-                return "";
+                result = "";
             }
+
+            dataSetCache.results.put(resultKey, result);
+            return result;
         } catch (SQLiteException e) {
             Timber.i(e);
             return "";
-        } finally {
-            if (c != null) {
-                c.close();
+        }
+    }
+
+    /**
+     * @return the number of lookups answered from the cache
+     */
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of lookups that had to query the database
+     */
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Logs how well the cache did and closes the compiled statements. The next lookups query the
+     * database again.
+     */
+    @Override
+    public synchronized void close() {
+        if (hitCount + missCount > 0) {
+            Timber.i("%s cache: %d hits, %d misses", HANDLER_NAME, hitCount, missCount);
+        }
+
+        for (DataSetCache dataSetCache : dataSetCaches.values()) {
+            dataSetCache.close();
+        }
+        dataSetCaches.clear();
+    }
+
+    private DataSetCache getDataSetCache(String dataSetName, SQLiteDatabase db) {
+        DataSetCache dataSetCache = dataSetCaches.get(dataSetName);
+        if (dataSetCache == null || dataSetCache.db != db) {
+            if (dataSetCache != null) {
+                dataSetCache.close();
+            }
+
+            dataSetCache = new DataSetCache(db);
+            dataSetCaches.put(dataSetName, dataSetCache);
+        }
+
+        return dataSetCache;
+    }
+
+    private static class DataSetCache {
+        final SQLiteDatabase db;
+        final LruCache<String, String> results = new LruCache<>(MAX_CACHED_RESULTS_PER_DATA_SET);
+        final Map<String, SQLiteStatement> statements = new HashMap<>();
+
+        DataSetCache(SQLiteDatabase db) {
+            this.db = db;
+        }
+
+        SQLiteStatement getStatement(String queriedColumn, String referenceColumn) {
+            String statementKey = queriedColumn + '\u0000' + referenceColumn;
+            SQLiteStatement statement = statements.get(statementKey);
+            if (statement == null) {
+                statement = db.compileStatement("SELECT " + ExternalDataUtil.toSafeColumnName(queriedColumn)
+                        + " FROM " + ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME
+                        + " WHERE " + ExternalDataUtil.toSafeColumnName(referenceColumn) + "=? LIMIT 1");
+                statements.put(statementKey, statement);
+            }
+
+            return statement;
+        }
+
+        void close() {
+            for (SQLiteStatement statement : statements.values()) {
+                statement.close();
             }
         }
     }
@@ -28,12 +28,14 @@ import org.odk.collect.android.R;
 import org.odk.collect.android.application.Collect;
 import org.odk.collect.android.exception.ExternalDataException;
 import org.odk.collect.android.external.ExternalDataManager;
+import org.odk.collect.android.external.ExternalDataSearchIndex;
 import org.odk.collect.android.external.ExternalDataUtil;
 import org.odk.collect.android.external.ExternalSQLiteOpenHelper;
 import org.odk.collect.android.external.ExternalSelectChoice;
 import org.odk.collect.android.utilities.TranslationHandler;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -158,18 +160,25 @@ public class ExternalDataHandlerSearch extends ExternalDataHandlerBase {
             String selection;
             String[] selectionArgs;
 
-            if (searchRows && useFilter) {
-                selection = "( " + createLikeExpression(queriedColumns) + " ) AND "
-                        + ExternalDataUtil.toSafeColumnName(filterColumn) + "=? ";
-                String[] likeArgs = externalDataSearchType.constructLikeArguments(queriedValue,
-                        queriedColumns.size());
-                selectionArgs = new String[likeArgs.length + 1];
-                System.arraycopy(likeArgs, 0, selectionArgs, 0, likeArgs.length);
-                selectionArgs[selectionArgs.length - 1] = filterValue;
-            } else if (searchRows) {
+            if (searchRows) {
                 selection = createLikeExpression(queriedColumns);
                 selectionArgs = externalDataSearchType.constructLikeArguments(queriedValue,
                         queriedColumns.size());
+
+                for (ExternalDataSearchIndex.IndexType indexType : getUsableIndexTypes(externalDataSearchType)) {
+                    String matchQuery = createMatchQuery(db, queriedColumns, indexType, externalDataSearchType, queriedValue);
+                    if (matchQuery != null) {
+                        selection = "( " + createIndexedRowsExpression(queriedColumns, indexType) + " ) AND ( " + selection + " )";
+                        selectionArgs = concat(constructMatchArguments(matchQuery, queriedColumns.size()), selectionArgs);
+                        break;
+                    }
+                }
+
+                if (useFilter) {
+                    selection = "( " + selection + " ) AND "
+                            + ExternalDataUtil.toSafeColumnName(filterColumn) + "=? ";
+                    selectionArgs = concat(selectionArgs, new String[]{filterValue});
+                }
             } else if (useFilter) {
                 selection = ExternalDataUtil.toSafeColumnName(filterColumn) + "=? ";
                 selectionArgs = new String[]{filterValue};
@@ -251,6 +260,77 @@ public class ExternalDataHandlerSearch extends ExternalDataHandlerBase {
         return sb.toString();
     }
 
+    /**
+     * @return the types of index that can narrow down the rows for the search type, the most
+     * selective first. Words can only be looked up when the start of the queried value is the
+     * start of a word so trigrams are preferred for contains and endsWith.
+     */
+    private static List<ExternalDataSearchIndex.IndexType> getUsableIndexTypes(ExternalDataSearchType externalDataSearchType) {
+        if (externalDataSearchType == ExternalDataSearchType.STARTS
+                || externalDataSearchType == ExternalDataSearchType.MATCHES) {
+            return Arrays.asList(ExternalDataSearchIndex.IndexType.WORDS, ExternalDataSearchIndex.IndexType.TRIGRAMS);
+        } else {
+            return Arrays.asList(ExternalDataSearchIndex.IndexType.TRIGRAMS, ExternalDataSearchIndex.IndexType.WORDS);
+        }
+    }
+
+    /**
+     * @return the query for the full-text search indexes of the queried columns or null if any of
+     * them isn't indexed or the index can't narrow down the rows for the queried value
+     */
+    protected String createMatchQuery(SQLiteDatabase db, List<String> queriedColumns,
+            ExternalDataSearchIndex.IndexType indexType, ExternalDataSearchType externalDataSearchType,
+            String queriedValue) {
+        String matchQuery;
+        if (indexType == ExternalDataSearchIndex.IndexType.TRIGRAMS) {
+            matchQuery = ExternalDataSearchIndex.buildTrigramMatchQuery(queriedValue);
+        } else {
+            boolean anchoredAtStart = externalDataSearchType == ExternalDataSearchType.STARTS
+                    || externalDataSearchType == ExternalDataSearchType.MATCHES;
+            boolean anchoredAtEnd = externalDataSearchType == ExternalDataSearchType.ENDS
+                    || externalDataSearchType == ExternalDataSearchType.MATCHES;
+            matchQuery = ExternalDataSearchIndex.buildMatchQuery(queriedValue, anchoredAtStart, anchoredAtEnd);
+        }
+
+        if (matchQuery == null) {
+            return null;
+        }
+
+        for (String queriedColumn : queriedColumns) {
+            if (!ExternalDataSearchIndex.exists(db, queriedColumn, indexType)) {
+                return null;
+            }
+        }
+
+        return matchQuery;
+    }
+
+    protected String createIndexedRowsExpression(List<String> queriedColumns, ExternalDataSearchIndex.IndexType indexType) {
+        StringBuilder sb = new StringBuilder();
+        for (String queriedColumn : queriedColumns) {
+            String indexTable = indexType.getTableName(queriedColumn);
+            if (sb.length() > 0) {
+                sb.append(" OR ");
+            }
+            sb.append("rowid IN (SELECT docid FROM ").append(indexTable)
+                    .append(" WHERE ").append(indexTable).append(" MATCH ?) ");
+        }
+        return sb.toString();
+    }
+
+    private static String[] constructMatchArguments(String matchQuery, int times) {
+        String[] args = new String[times];
+        Arrays.fill(args, matchQuery);
+        return args;
+    }
+
+    private static String[] concat(String[] first, String[] second) {
+        String[] result = new String[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
     /**
      * So here are examples of labels with one, two, and three columns:
      * <p/>
@@ -18,6 +18,7 @@ package org.odk.collect.android.fastexternalitemset;
 
 import android.database.Cursor;
 import android.database.sqlite.SQLiteException;
+import android.util.LruCache;
 
 import org.javarosa.core.model.FormDef;
 import org.javarosa.core.model.SelectChoice;
@@ -28,29 +29,69 @@ import org.javarosa.xpath.XPathNodeset;
 import org.javarosa.xpath.expr.XPathExpression;
 import org.javarosa.xpath.parser.XPathSyntaxException;
 import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.external.ExternalDataManager;
 import org.odk.collect.android.javarosawrapper.FormController;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import timber.log.Timber;
 
+/**
+ * Queries the choices of fast itemset questions. The query attribute of each question is parsed
+ * into a {@link CompiledQuery} once and reused every time the question's choices are queried so
+ * that only the arguments have to be evaluated again.
+ *
+ * The adapter isn't closed after queries if it was already open, which lets a form session share
+ * one open database (see {@link #forCurrentFormSession()}).
+ */
 public class ItemsetDao {
     private static final String QUOTATION_MARK = "\"";
 
+    private static final int MAX_COMPILED_QUERIES = 100;
+
+    private static final LruCache<String, CompiledQuery> COMPILED_QUERIES = new LruCache<>(MAX_COMPILED_QUERIES);
+
+    private static final Map<ExternalDataManager, ItemsetDbAdapter> SESSION_ADAPTERS = new WeakHashMap<>();
+
     private final ItemsetDbAdapter adapter;
 
     public ItemsetDao(ItemsetDbAdapter adapter) {
         this.adapter = adapter;
     }
 
+    /**
+     * @return a dao that uses the itemsets database of the current form session. The database is
+     * opened on first use and kept open so that questions don't reopen it every time their
+     * choices are queried. It is closed along with the session's other databases.
+     */
+    public static ItemsetDao forCurrentFormSession() {
+        ExternalDataManager externalDataManager = Collect.getInstance().getExternalDataManager();
+        if (externalDataManager == null) {
+            return new ItemsetDao(new ItemsetDbAdapter());
+        }
+
+        synchronized (SESSION_ADAPTERS) {
+            ItemsetDbAdapter adapter = SESSION_ADAPTERS.get(externalDataManager);
+            if (adapter == null) {
+                adapter = new ItemsetDbAdapter().open();
+                externalDataManager.addDatabaseUser(adapter);
+                SESSION_ADAPTERS.put(externalDataManager, adapter);
+            }
+            return new ItemsetDao(adapter);
+        }
+    }
+
     public String getItemLabel(String itemName, String mediaFolderPath, String language) {
         String itemLabel = null;
 
         File itemsetFile = getItemsetFile(mediaFolderPath);
         if (itemsetFile.exists()) {
+            boolean wasOpen = adapter.isOpen();
             adapter.open();
 
             // name of the itemset table for this form
@@ -61,25 +102,19 @@ public class ItemsetDao {
 
                 Cursor c = adapter.query(pathHash, selection, selectionArgs);
                 if (c != null) {
+                    int labelCol = getLabelColumnIndex(c, language);
                     c.move(-1);
                     while (c.moveToNext()) {
-                        // apparently you only need the double quotes in the
-                        // column name when creating the column with a : included
-                        String labelLang = "label" + "::" + language;
-                        int langCol = c.getColumnIndex(labelLang);
-                        if (langCol == -1) {
-                            itemLabel = c.getString(c.getColumnIndex("label"));
-                        } else {
-                            itemLabel = c.getString(c.getColumnIndex(labelLang));
-                        }
-
+                        itemLabel = c.getString(labelCol);
                     }
                     c.close();
                 }
             } catch (SQLiteException e) {
                 Timber.i(e);
             } finally {
-                adapter.close();
+                if (!wasOpen) {
+                    adapter.close();
+                }
             }
         }
 
@@ -87,15 +122,16 @@ public class ItemsetDao {
     }
 
     public List<SelectChoice> getItems(FormEntryPrompt formEntryPrompt, XPathParseTool pathParseTool) throws FileNotFoundException, XPathSyntaxException {
-        String nodesetString = getNodesetString(formEntryPrompt);
-
-        List<String> arguments = new ArrayList<>();
-        String selectionString = getSelectionStringAndPopulateArguments(getQueryString(nodesetString), arguments);
-
         FormController formController = Collect.getInstance().getFormController();
-        String[] selectionArgs = getSelectionArgs(arguments, nodesetString, formController, pathParseTool, formEntryPrompt);
+        if (formController == null) {
+            Timber.w("Can't instantiate ItemsetWidget with a null FormController.");
+            return null;
+        }
 
-        return selectionArgs == null ? null : getItemsFromDatabase(selectionString, selectionArgs, formController, adapter);
+        CompiledQuery query = getCompiledQuery(getNodesetString(formEntryPrompt), pathParseTool);
+        String[] selectionArgs = getSelectionArgs(query, formController, formEntryPrompt);
+
+        return selectionArgs == null ? null : getItemsFromDatabase(query.selection, selectionArgs, formController, adapter);
     }
 
     private String getNodesetString(FormEntryPrompt formEntryPrompt) {
@@ -105,12 +141,41 @@ public class ItemsetDao {
         return formEntryPrompt.getQuestion().getAdditionalAttribute(null, "query");
     }
 
-    private String getQueryString(String nodesetStr) {
+    static CompiledQuery getCompiledQuery(String nodesetStr, XPathParseTool pathParseTool) throws XPathSyntaxException {
+        CompiledQuery query = COMPILED_QUERIES.get(nodesetStr);
+        if (query == null) {
+            query = compileQuery(nodesetStr, pathParseTool);
+            COMPILED_QUERIES.put(nodesetStr, query);
+        }
+        return query;
+    }
+
+    @SuppressWarnings("PMD.AvoidThrowingNewInstanceOfSameException")
+    static CompiledQuery compileQuery(String nodesetStr, XPathParseTool pathParseTool) throws XPathSyntaxException {
+        List<String> arguments = new ArrayList<>();
+        String selection = getSelectionStringAndPopulateArguments(getQueryString(nodesetStr), arguments);
+
+        // parse out the list name, between the ''
+        String listName = nodesetStr.substring(nodesetStr.indexOf('\'') + 1, nodesetStr.lastIndexOf('\''));
+
+        XPathExpression[] argumentExpressions = new XPathExpression[arguments.size()];
+        for (int i = 0; i < arguments.size(); i++) {
+            try {
+                argumentExpressions[i] = pathParseTool.parseXPath(arguments.get(i));
+            } catch (XPathSyntaxException e) {
+                throw new XPathSyntaxException(arguments.get(i));
+            }
+        }
+
+        return new CompiledQuery(listName, selection, argumentExpressions);
+    }
+
+    private static String getQueryString(String nodesetStr) {
         // isolate the string between between the [ ] characters
         return nodesetStr.substring(nodesetStr.indexOf('[') + 1, nodesetStr.lastIndexOf(']'));
     }
 
-    private String getSelectionStringAndPopulateArguments(String queryString, List<String> arguments) {
+    private static String getSelectionStringAndPopulateArguments(String queryString, List<String> arguments) {
         StringBuilder selectionString = new StringBuilder();
         // add the list name as the first argument, which will always be there
         selectionString.append("list_name=?");
@@ -176,36 +241,25 @@ public class ItemsetDao {
         return selectionString.toString();
     }
 
-    @SuppressWarnings("PMD.AvoidThrowingNewInstanceOfSameException")
-    private String[] getSelectionArgs(List<String> arguments, String nodesetStr, FormController formController, XPathParseTool pathParseTool, FormEntryPrompt formEntryPrompt) throws XPathSyntaxException {
+    private String[] getSelectionArgs(CompiledQuery query, FormController formController, FormEntryPrompt formEntryPrompt) {
         // +1 is for the list_name
-        String[] selectionArgs = new String[arguments.size() + 1];
+        String[] selectionArgs = new String[query.argumentExpressions.length + 1];
+        selectionArgs[0] = query.listName; // first argument is always listname
 
-        // parse out the list name, between the ''
-        String listName = nodesetStr.substring(nodesetStr.indexOf('\'') + 1, nodesetStr.lastIndexOf('\''));
-
-        selectionArgs[0] = listName; // first argument is always listname
-
-        if (formController == null) {
-            Timber.w("Can't instantiate ItemsetWidget with a null FormController.");
-            return null;
+        if (query.argumentExpressions.length == 0) {
+            return selectionArgs;
         }
 
-        // loop through the arguments, evaluate any expressions and build the query string for the DB
-        for (int i = 0; i < arguments.size(); i++) {
-            XPathExpression xpr;
-            try {
-                xpr = pathParseTool.parseXPath(arguments.get(i));
-            } catch (XPathSyntaxException e) {
-                throw new XPathSyntaxException(arguments.get(i));
-            }
+        FormDef form = formController.getFormDef();
+        TreeElement treeElement = form.getMainInstance().resolveReference(
+                formEntryPrompt.getIndex().getReference());
+        EvaluationContext ec = new EvaluationContext(form.getEvaluationContext(),
+                treeElement.getRef());
 
+        // loop through the arguments, evaluate any expressions and build the query string for the DB
+        for (int i = 0; i < query.argumentExpressions.length; i++) {
+            XPathExpression xpr = query.argumentExpressions[i];
             if (xpr != null) {
-                FormDef form = formController.getFormDef();
-                TreeElement treeElement = form.getMainInstance().resolveReference(
-                        formEntryPrompt.getIndex().getReference());
-                EvaluationContext ec = new EvaluationContext(form.getEvaluationContext(),
-                        treeElement.getRef());
                 Object value = xpr.eval(form.getMainInstance(), ec);
 
                 if (value == null) {
@@ -227,6 +281,7 @@ public class ItemsetDao {
         File itemsetFile = getItemsetFile(formController.getMediaFolder().getAbsolutePath());
 
         if (itemsetFile.exists()) {
+            boolean wasOpen = adapter.isOpen();
             adapter.open();
 
             // name of the itemset table for this form
@@ -234,31 +289,20 @@ public class ItemsetDao {
             try {
                 Cursor c = adapter.query(pathHash, selection, selectionArgs);
                 if (c != null) {
+                    // try to get the value associated with the label:lang
+                    // string if that doen't exist, then just use label
+                    String lang = "";
+                    if (formController.getLanguages() != null && formController.getLanguages().length > 0) {
+                        lang = formController.getLanguage();
+                    }
+
+                    int labelCol = getLabelColumnIndex(c, lang);
+                    int nameCol = c.getColumnIndex("name");
+
                     c.move(-1);
                     int index = 0;
                     while (c.moveToNext()) {
-                        String label;
-                        String val;
-
-                        // try to get the value associated with the label:lang
-                        // string if that doen't exist, then just use label
-                        String lang = "";
-                        if (formController.getLanguages() != null && formController.getLanguages().length > 0) {
-                            lang = formController.getLanguage();
-                        }
-
-                        // apparently you only need the double quotes in the
-                        // column name when creating the column with a : included
-                        String labelLang = "label" + "::" + lang;
-                        int langCol = c.getColumnIndex(labelLang);
-                        if (langCol == -1) {
-                            label = c.getString(c.getColumnIndex("label"));
-                        } else {
-                            label = c.getString(c.getColumnIndex(labelLang));
-                        }
-
-                        val = c.getString(c.getColumnIndex("name"));
-                        SelectChoice selectChoice = new SelectChoice(null, label, val, false);
+                        SelectChoice selectChoice = new SelectChoice(null, c.getString(labelCol), c.getString(nameCol), false);
                         selectChoice.setIndex(index);
                         items.add(selectChoice);
                         index++;
@@ -268,7 +312,9 @@ public class ItemsetDao {
             } catch (SQLiteException e) {
                 Timber.i(e);
             } finally {
-                adapter.close();
+                if (!wasOpen) {
+                    adapter.close();
+                }
             }
         } else {
             throw new FileNotFoundException(itemsetFile.getAbsolutePath());
@@ -276,7 +322,29 @@ public class ItemsetDao {
         return items;
     }
 
+    private int getLabelColumnIndex(Cursor c, String language) {
+        // apparently you only need the double quotes in the
+        // column name when creating the column with a : included
+        int langCol = c.getColumnIndex("label" + "::" + language);
+        return langCol == -1 ? c.getColumnIndex("label") : langCol;
+    }
+
     public File getItemsetFile(String mediaFolderPath) {
         return new File(mediaFolderPath + "/itemsets.csv");
     }
+
+    /**
+     * The parts of a fast itemset query that only depend on the query attribute.
+     */
+    static class CompiledQuery {
+        final String listName;
+        final String selection;
+        final XPathExpression[] argumentExpressions;
+
+        CompiledQuery(String listName, String selection, XPathExpression[] argumentExpressions) {
+            this.listName = listName;
+            this.selection = selection;
+            this.argumentExpressions = argumentExpressions;
+        }
+    }
 }
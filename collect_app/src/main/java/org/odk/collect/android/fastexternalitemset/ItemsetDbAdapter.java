@@ -15,6 +15,8 @@ import java.io.Closeable;
 import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
 
 import timber.log.Timber;
 
@@ -82,14 +84,25 @@ public class ItemsetDbAdapter implements Closeable {
      * @throws SQLException if the database could be neither opened or created
      */
     public ItemsetDbAdapter open() throws SQLException {
+        if (isOpen()) {
+            return this;
+        }
+
         dbHelper = new DatabaseHelper();
         db = dbHelper.getWritableDatabase();
         return this;
     }
 
+    public boolean isOpen() {
+        return db != null && db.isOpen();
+    }
+
     @Override
     public void close() {
-        dbHelper.close();
+        if (dbHelper != null) {
+            dbHelper.close();
+        }
+        db = null;
     }
 
     public boolean createTable(String formHash, String pathHash, String[] columns, String path) {
@@ -127,6 +140,51 @@ public class ItemsetDbAdapter implements Closeable {
         return true;
     }
 
+    /**
+     * Creates the indexes used by itemset queries unless they already exist: one on the name
+     * column for label lookups, and composite indexes starting with list_name that cover the
+     * columns choices are filtered on. Every column other than list_name, name and the labels is
+     * assumed to be a filter column. Cascading selects filter on the columns in the order they
+     * appear in the CSV so one index covers all of them. Each column also gets its own index for
+     * queries that filter on it without the columns before it.
+     */
+    public void createIndexes(String pathHash) {
+        String tableName = DATABASE_TABLE + pathHash;
+
+        List<String> filterColumns = new ArrayList<>();
+        boolean hasNameColumn = false;
+        try (Cursor c = db.rawQuery("PRAGMA table_info(" + tableName + ")", null)) {
+            int nameColumnIndex = c.getColumnIndex("name");
+            while (c.moveToNext()) {
+                String column = c.getString(nameColumnIndex);
+                if (column.equals("name")) {
+                    hasNameColumn = true;
+                } else if (!column.equals("_id") && !column.equals("list_name")
+                        && !column.equals("label") && !column.startsWith("label::")) {
+                    filterColumns.add(column);
+                }
+            }
+        }
+
+        if (hasNameColumn) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS " + tableName + "_name_idx ON " + tableName + " (name)");
+        }
+
+        StringBuilder compositeColumns = new StringBuilder("list_name");
+        for (int i = 0; i < filterColumns.size(); i++) {
+            String quotedColumn = "\"" + filterColumns.get(i) + "\"";
+            compositeColumns.append(", ").append(quotedColumn);
+
+            if (i > 0) {
+                db.execSQL("CREATE INDEX IF NOT EXISTS " + tableName + "_filter" + i + "_idx ON "
+                        + tableName + " (list_name, " + quotedColumn + ")");
+            }
+        }
+
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + tableName + "_list_idx ON " + tableName
+                + " (" + compositeColumns + ")");
+    }
+
     public boolean addRow(String tableName, String[] columns, String[] newRow) {
         ContentValues cv = new ContentValues();
 
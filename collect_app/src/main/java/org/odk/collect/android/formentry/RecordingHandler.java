@@ -83,7 +83,7 @@ public class RecordingHandler {
             newAnswerFile.delete();
         } else {
             for (TreeReference treeReference : treeReferences) {
-                formController.getFormDef().setValue(new StringData(result.getOrNull().getName()), treeReference, false);
+                formController.setValue(treeReference, new StringData(result.getOrNull().getName()));
             }
         }
 
@@ -18,43 +18,51 @@ public class AuditEventCSVLine {
     }
 
     public static String toCSVLine(AuditEvent auditEvent, boolean isTrackingLocationsEnabled, boolean isTrackingChangesEnabled, boolean isTrackingChangesReasonEnabled) {
+        return appendCSVLine(new StringBuilder(), auditEvent, isTrackingLocationsEnabled, isTrackingChangesEnabled, isTrackingChangesReasonEnabled).toString();
+    }
+
+    /**
+     * Appends the CSV line for the event (without a line break) to the given builder so that a
+     * writer can build many lines in one reused buffer.
+     */
+    public static StringBuilder appendCSVLine(StringBuilder builder, AuditEvent auditEvent, boolean isTrackingLocationsEnabled, boolean isTrackingChangesEnabled, boolean isTrackingChangesReasonEnabled) {
         FormIndex formIndex = auditEvent.getFormIndex();
-        AuditEvent.AuditEventType auditEventType = auditEvent.getAuditEventType();
-        long start = auditEvent.getStart();
         long end = auditEvent.getEnd();
-        String latitude = auditEvent.getLatitude();
-        String longitude = auditEvent.getLongitude();
-        String accuracy = auditEvent.getAccuracy();
-        String oldValue = auditEvent.getOldValue();
-        String newValue = auditEvent.getNewValue();
-        String user = auditEvent.getUser();
-        String changeReason = auditEvent.getChangeReason();
 
-        String node = formIndex == null || formIndex.getReference() == null ? "" : getXPathPath(formIndex);
-
-        String string = String.format("%s,%s,%s,%s", auditEventType.getValue(), node, start, end != 0 ? end : "");
+        builder.append(auditEvent.getAuditEventType().getValue()).append(',');
+        if (formIndex != null && formIndex.getReference() != null) {
+            builder.append(getXPathPath(formIndex));
+        }
+        builder.append(',').append(auditEvent.getStart()).append(',');
+        if (end != 0) {
+            builder.append(end);
+        }
 
         if (isTrackingLocationsEnabled) {
-            string += String.format(",%s,%s,%s", latitude, longitude, accuracy);
+            builder.append(',').append(auditEvent.getLatitude())
+                    .append(',').append(auditEvent.getLongitude())
+                    .append(',').append(auditEvent.getAccuracy());
         }
 
         if (isTrackingChangesEnabled) {
-            string += String.format(",%s,%s", getEscapedValueForCsv(oldValue), getEscapedValueForCsv(newValue));
+            builder.append(',').append(getEscapedValueForCsv(auditEvent.getOldValue()))
+                    .append(',').append(getEscapedValueForCsv(auditEvent.getNewValue()));
         }
 
+        String user = auditEvent.getUser();
         if (user != null) {
-            string += String.format(",%s", getEscapedValueForCsv(user));
+            builder.append(',').append(getEscapedValueForCsv(user));
         }
 
         if (isTrackingChangesReasonEnabled) {
+            builder.append(',');
+            String changeReason = auditEvent.getChangeReason();
             if (changeReason != null) {
-                string += String.format(",%s", getEscapedValueForCsv(changeReason));
-            } else {
-                string += ",";
+                builder.append(getEscapedValueForCsv(changeReason));
             }
         }
 
-        return string;
+        return builder;
     }
 
     /**
@@ -0,0 +1,363 @@
+package org.odk.collect.android.formentry.audit;
+
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import timber.log.Timber;
+
+import static org.odk.collect.android.formentry.audit.AuditEventCSVLine.appendCSVLine;
+
+/**
+ * Appends audit events to an audit CSV file on a single long-lived background thread shared by
+ * all form sessions. Batches that are queued while an earlier one is being written are committed
+ * together, so a burst of flushes costs one open and one write per file rather than one each.
+ * <p>
+ * The queue holds at most {@link #MAX_QUEUED_BATCHES} batches. Once it is full
+ * {@link #isWriting()} says so and {@link AuditEventLogger} holds on to its events until the next
+ * flush instead of blocking the caller.
+ * <p>
+ * The header of an existing file is only checked (and rewritten if the audit config now has
+ * columns the file doesn't) the first time a writer appends to it, which is once per form session.
+ */
+public class AuditEventFileWriter implements AuditEventLogger.AuditEventWriter {
+
+    static final int MAX_QUEUED_BATCHES = 64;
+
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 256 * 1024;
+
+    private static final String DEFAULT_COLUMNS = "event,node,start,end";
+    private static final String LOCATION_COORDINATES_COLUMNS = ",latitude,longitude,accuracy";
+    private static final String ANSWER_VALUES_COLUMNS = ",old-value,new-value";
+    private static final String USER_COLUMNS = ",user";
+    private static final String CHANGE_REASON_COLUMNS = ",change-reason";
+
+    private static final BlockingQueue<Batch> QUEUE = new ArrayBlockingQueue<>(MAX_QUEUED_BATCHES);
+    private static final Object COMMIT_LOCK = new Object();
+    private static Thread writerThread;
+
+    private static final AtomicLong queuedBatchCount = new AtomicLong();
+    private static final AtomicLong maxQueueDepth = new AtomicLong();
+    private static final AtomicLong commitCount = new AtomicLong();
+    private static final AtomicLong eventCount = new AtomicLong();
+    private static final AtomicLong totalLatencyNanos = new AtomicLong();
+    private static final AtomicLong maxLatencyNanos = new AtomicLong();
+    private static long writtenBatchCount; // guarded by COMMIT_LOCK
+
+    private final File file;
+    private final boolean isLocationEnabled;
+    private final boolean isTrackingChangesEnabled;
+    private final boolean isUserRequired;
+    private final boolean isTrackChangesReasonEnabled;
+
+    private boolean anythingQueued; // only used on the calling thread
+    private boolean headerChecked; // only used on the writer thread
+
+    public AuditEventFileWriter(@NonNull File file, boolean isLocationEnabled, boolean isTrackingChangesEnabled, boolean isUserRequired, boolean isTrackChangesReasonEnabled) {
+        this.file = file;
+        this.isLocationEnabled = isLocationEnabled;
+        this.isTrackingChangesEnabled = isTrackingChangesEnabled;
+        this.isUserRequired = isUserRequired;
+        this.isTrackChangesReasonEnabled = isTrackChangesReasonEnabled;
+    }
+
+    @Override
+    public void writeEvents(List<AuditEvent> auditEvents) {
+        // The first batch is queued even if it's empty so the file (and its header) is created
+        if (auditEvents.isEmpty() && anythingQueued) {
+            return;
+        }
+        anythingQueued = true;
+
+        Batch batch = new Batch(this, auditEvents.toArray(new AuditEvent[0]), System.nanoTime());
+        startWriterThreadIfNeeded();
+
+        // Counted before it's queued so the written count can never get ahead of the queued count
+        queuedBatchCount.incrementAndGet();
+        if (!QUEUE.offer(batch)) {
+            // Only possible if another thread filled the queue after isWriting() was checked
+            enqueueUninterruptibly(batch);
+        }
+
+        recordMax(maxQueueDepth, QUEUE.size());
+    }
+
+    /**
+     * @return true if the queue is full and events should be held back until the next flush
+     */
+    @Override
+    public boolean isWriting() {
+        return QUEUE.remainingCapacity() == 0;
+    }
+
+    /**
+     * Blocks until every batch queued before the call has been written to disk.
+     *
+     * @return false if that didn't happen within the timeout
+     */
+    public static boolean awaitWritten(long timeoutMillis) throws InterruptedException {
+        long target = queuedBatchCount.get();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+
+        synchronized (COMMIT_LOCK) {
+            while (writtenBatchCount < target) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                COMMIT_LOCK.wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    /** Returns a snapshot of the counters for the events written so far. */
+    public static Metrics getMetrics() {
+        synchronized (COMMIT_LOCK) {
+            return new Metrics(
+                    QUEUE.size(),
+                    maxQueueDepth.get(),
+                    writtenBatchCount,
+                    commitCount.get(),
+                    eventCount.get(),
+                    totalLatencyNanos.get(),
+                    maxLatencyNanos.get()
+            );
+        }
+    }
+
+    private static synchronized void startWriterThreadIfNeeded() {
+        if (writerThread == null) {
+            writerThread = new Thread(AuditEventFileWriter::writeQueuedBatches, "AuditEventWriter");
+            writerThread.setDaemon(true);
+            writerThread.start();
+        }
+    }
+
+    private static void enqueueUninterruptibly(Batch batch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                QUEUE.put(batch);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void writeQueuedBatches() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+        List<Batch> batches = new ArrayList<>();
+        StringBuilder buffer = new StringBuilder(INITIAL_BUFFER_SIZE);
+        char[] chunk = new char[INITIAL_BUFFER_SIZE];
+
+        while (true) {
+            try {
+                batches.add(QUEUE.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            QUEUE.drainTo(batches);
+
+            int start = 0;
+            while (start < batches.size()) {
+                // Group consecutive batches from the same session into one commit
+                AuditEventFileWriter writer = batches.get(start).writer;
+                int end = start + 1;
+                while (end < batches.size() && batches.get(end).writer == writer) {
+                    end++;
+                }
+
+                buffer.setLength(0);
+                try {
+                    writer.commit(batches.subList(start, end), buffer, chunk);
+                } catch (RuntimeException e) {
+                    // Don't let one bad event stop audit logging for the rest of the app's life
+                    Timber.e(e);
+                }
+                start = end;
+            }
+
+            long committedAt = System.nanoTime();
+            for (Batch batch : batches) {
+                long latency = committedAt - batch.queuedAt;
+                totalLatencyNanos.addAndGet(latency);
+                recordMax(maxLatencyNanos, latency);
+                eventCount.addAndGet(batch.events.length);
+            }
+
+            synchronized (COMMIT_LOCK) {
+                writtenBatchCount += batches.size();
+                COMMIT_LOCK.notifyAll();
+            }
+
+            batches.clear();
+            if (buffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+                buffer = new StringBuilder(INITIAL_BUFFER_SIZE);
+            }
+        }
+    }
+
+    private void commit(List<Batch> batches, StringBuilder buffer, char[] chunk) {
+        if (!file.exists()) {
+            buffer.append(getHeader()).append('\n');
+            headerChecked = true;
+        } else if (!headerChecked) {
+            updateHeaderIfNeeded();
+            headerChecked = true;
+        }
+
+        for (Batch batch : batches) {
+            for (AuditEvent event : batch.events) {
+                appendCSVLine(buffer, event, isLocationEnabled, isTrackingChangesEnabled, isTrackChangesReasonEnabled).append('\n');
+            }
+        }
+
+        if (buffer.length() == 0) {
+            return;
+        }
+
+        try (Writer writer = new FileWriter(file, true)) {
+            for (int offset = 0; offset < buffer.length(); offset += chunk.length) {
+                int length = Math.min(chunk.length, buffer.length() - offset);
+                buffer.getChars(offset, offset + length, chunk, 0);
+                writer.write(chunk, 0, length);
+            }
+            commitCount.incrementAndGet();
+        } catch (IOException e) {
+            Timber.e(e);
+        }
+    }
+
+    private void updateHeaderIfNeeded() {
+        File temporaryFile = new File(file.getParentFile(), "temporaryAudit.csv");
+
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            if (!shouldHeaderBeUpdated(br.readLine())) {
+                return;
+            }
+
+            try (Writer tfw = new BufferedWriter(new FileWriter(temporaryFile))) {
+                tfw.write(getHeader());
+                tfw.write('\n');
+                String line;
+                while ((line = br.readLine()) != null) {
+                    tfw.write(line);
+                    tfw.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            Timber.e(e);
+            temporaryFile.delete();
+            return;
+        }
+
+        if (!temporaryFile.renameTo(file)) {
+            Timber.e("Unable to update the header of %s", file.getAbsolutePath());
+            temporaryFile.delete();
+        }
+    }
+
+    private boolean shouldHeaderBeUpdated(String header) {
+        return header == null
+                || (isLocationEnabled && !header.contains(LOCATION_COORDINATES_COLUMNS))
+                || (isTrackingChangesEnabled && !header.contains(ANSWER_VALUES_COLUMNS))
+                || (isUserRequired && !header.contains(USER_COLUMNS));
+    }
+
+    private String getHeader() {
+        String header = DEFAULT_COLUMNS;
+        if (isLocationEnabled) {
+            header += LOCATION_COORDINATES_COLUMNS;
+        }
+        if (isTrackingChangesEnabled) {
+            header += ANSWER_VALUES_COLUMNS;
+        }
+        if (isUserRequired) {
+            header += USER_COLUMNS;
+        }
+        if (isTrackChangesReasonEnabled) {
+            header += CHANGE_REASON_COLUMNS;
+        }
+        return header;
+    }
+
+    private static void recordMax(AtomicLong max, long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    private static class Batch {
+        final AuditEventFileWriter writer;
+        final AuditEvent[] events;
+        final long queuedAt;
+
+        Batch(AuditEventFileWriter writer, AuditEvent[] events, long queuedAt) {
+            this.writer = writer;
+            this.events = events;
+            this.queuedAt = queuedAt;
+        }
+    }
+
+    /** Counters for the audit events written since the app started. */
+    public static class Metrics {
+        public final int queueDepth;
+        public final long maxQueueDepth;
+        public final long batches;
+        public final long commits;
+        public final long events;
+        private final long totalLatencyNanos;
+        private final long maxLatencyNanos;
+
+        Metrics(int queueDepth, long maxQueueDepth, long batches, long commits, long events,
+                long totalLatencyNanos, long maxLatencyNanos) {
+            this.queueDepth = queueDepth;
+            this.maxQueueDepth = maxQueueDepth;
+            this.batches = batches;
+            this.commits = commits;
+            this.events = events;
+            this.totalLatencyNanos = totalLatencyNanos;
+            this.maxLatencyNanos = maxLatencyNanos;
+        }
+
+        /** The time from a batch being queued to it being written, on average. */
+        public double getAverageLatencyMillis() {
+            return batches == 0 ? 0 : totalLatencyNanos / 1e6 / batches;
+        }
+
+        public double getMaxLatencyMillis() {
+            return maxLatencyNanos / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%d queued (%d max), %d batches in %d commits, %d events, %.2f ms average, %.2f ms max",
+                    queueDepth, maxQueueDepth, batches, commits, events,
+                    getAverageLatencyMillis(), getMaxLatencyMillis());
+        }
+    }
+}
@@ -19,7 +19,7 @@ import static org.odk.collect.android.formentry.audit.AuditEvent.AuditEventType.
 
 /**
  * Handle logging of auditEvents (which contain time and might contain location coordinates),
- * and pass them to an Async task to append to a file
+ * and pass them to an {@link AuditEventWriter} to append to a file
  * Notes:
  * 1) If the user has saved the form, then resumes editing, then exits without saving then the timing data during the
  * second editing session will be saved.  This is OK as it records user activity.  However if the user exits
@@ -303,6 +303,10 @@ public class AuditEventLogger {
 
         void writeEvents(List<AuditEvent> auditEvents);
 
+        /**
+         * @return true if the writer can't take more events right now, in which case they are
+         * kept and passed on with the next write
+         */
         boolean isWriting();
     }
 }
\ No newline at end of file
@@ -0,0 +1,133 @@
+package org.odk.collect.android.formmanagement;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import timber.log.Timber;
+
+/**
+ * Downloads forms on a pool of worker threads with at most {@code maxConcurrentDownloads}
+ * downloads running at once. Each form is downloaded (and installed) by the {@link FormDownloader},
+ * which has to cope with being called from several threads at the same time.
+ * <p>
+ * If a download is interrupted, or the calling thread is, the downloads that are still running
+ * are interrupted and the ones that haven't started are skipped. The run still waits for every
+ * download to stop so that nothing is written to the forms directory after it returns.
+ */
+public class ConcurrentFormDownloadRunner {
+
+    public static final int DEFAULT_MAX_CONCURRENT_DOWNLOADS = 3;
+
+    private final FormDownloader formDownloader;
+    private final int maxConcurrentDownloads;
+
+    public ConcurrentFormDownloadRunner(FormDownloader formDownloader, int maxConcurrentDownloads) {
+        this.formDownloader = formDownloader;
+        this.maxConcurrentDownloads = Math.max(1, maxConcurrentDownloads);
+    }
+
+    /**
+     * @param isCancelled passed on to each download. Can be null like for
+     *                    {@link FormDownloader#downloadForm}.
+     * @return whether each form that was downloaded before the run was cancelled succeeded, in
+     * the order of the forms. Forms that weren't downloaded because of a cancellation are left out.
+     */
+    public Map<ServerFormDetails, Boolean> run(List<ServerFormDetails> forms, @Nullable Supplier<Boolean> isCancelled) {
+        Map<ServerFormDetails, Boolean> results = new LinkedHashMap<>();
+        if (forms.isEmpty()) {
+            return results;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(maxConcurrentDownloads, forms.size()));
+        List<Future<Boolean>> futures = new ArrayList<>(forms.size());
+
+        try {
+            for (ServerFormDetails form : forms) {
+                futures.add(executor.submit(() -> {
+                    try {
+                        formDownloader.downloadForm(form, null, isCancelled);
+                        return true;
+                    } catch (FormDownloadException e) {
+                        return false;
+                    }
+                }));
+            }
+
+            boolean cancelled = false;
+            for (int i = 0; i < forms.size(); i++) {
+                Future<Boolean> future = futures.get(i);
+
+                if (!cancelled) {
+                    try {
+                        results.put(forms.get(i), future.get());
+                        continue;
+                    } catch (ExecutionException e) {
+                        if (!(e.getCause() instanceof InterruptedException)) {
+                            Timber.e(e.getCause());
+                            results.put(forms.get(i), false);
+                            continue;
+                        }
+                    } catch (InterruptedException e) {
+                        // Cancelled by the caller
+                    }
+
+                    cancelled = true;
+                    cancel(executor);
+                }
+
+                Boolean result = waitForResult(future);
+                if (result != null) {
+                    results.put(forms.get(i), result);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        return results;
+    }
+
+    /**
+     * Interrupts the downloads that are running and cancels the ones that haven't started.
+     */
+    private static void cancel(ExecutorService executor) {
+        for (Runnable notStarted : executor.shutdownNow()) {
+            if (notStarted instanceof Future) {
+                ((Future<?>) notStarted).cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Waits for a download to stop after the run has been cancelled, ignoring interrupts.
+     *
+     * @return the result if the download completed anyway or null if it was cancelled
+     */
+    @Nullable
+    private static Boolean waitForResult(Future<Boolean> future) {
+        while (true) {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                // Keep waiting as the download might be installing the form
+            } catch (CancellationException e) {
+                return null;
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof InterruptedException)) {
+                    Timber.e(e.getCause());
+                }
+                return null;
+            }
+        }
+    }
+}
@@ -10,5 +10,11 @@ public interface FormDownloader {
 
     interface ProgressReporter {
         void onDownloadingMediaFile(int count);
+
+        /**
+         * Called periodically while media files are downloaded with the number of bytes received
+         * for the form so far and the average download rate.
+         */
+        void onMediaBytesDownloaded(long bytes, long bytesPerSecond);
     }
 }
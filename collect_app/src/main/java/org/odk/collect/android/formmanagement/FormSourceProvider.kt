@@ -3,14 +3,19 @@ package org.odk.collect.android.formmanagement
 import org.odk.collect.android.openrosa.OpenRosaFormSource
 import org.odk.collect.android.openrosa.OpenRosaHttpInterface
 import org.odk.collect.android.openrosa.OpenRosaResponseParserImpl
+import org.odk.collect.android.openrosa.XmlResponseCache
 import org.odk.collect.android.preferences.keys.GeneralKeys
 import org.odk.collect.android.preferences.source.SettingsProvider
+import org.odk.collect.android.storage.StoragePathProvider
+import org.odk.collect.android.storage.StorageSubdirectory
 import org.odk.collect.android.utilities.WebCredentialsUtils
 import org.odk.collect.forms.FormSource
+import java.io.File
 
-class FormSourceProvider(
+class FormSourceProvider @JvmOverloads constructor(
     private val settingsProvider: SettingsProvider,
-    private val openRosaHttpInterface: OpenRosaHttpInterface
+    private val openRosaHttpInterface: OpenRosaHttpInterface,
+    private val storagePathProvider: StoragePathProvider? = null
 ) {
 
     @JvmOverloads
@@ -19,13 +24,21 @@ class FormSourceProvider(
 
         val serverURL = generalSettings.getString(GeneralKeys.KEY_SERVER_URL)
         val formListPath = generalSettings.getString(GeneralKeys.KEY_FORMLIST_URL)
+        val manifestCache = storagePathProvider?.let {
+            XmlResponseCache(File(it.getOdkDirPath(StorageSubdirectory.CACHE, projectId), MANIFEST_CACHE_DIR_NAME))
+        }
 
         return OpenRosaFormSource(
             serverURL,
             formListPath,
             openRosaHttpInterface,
             WebCredentialsUtils(generalSettings),
-            OpenRosaResponseParserImpl()
+            OpenRosaResponseParserImpl(),
+            manifestCache
         )
     }
+
+    companion object {
+        private const val MANIFEST_CACHE_DIR_NAME = "manifests"
+    }
 }
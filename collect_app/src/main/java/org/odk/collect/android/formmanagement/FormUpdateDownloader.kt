@@ -15,15 +15,13 @@ class FormUpdateDownloader {
 
         changeLock.withLock { acquiredLock: Boolean ->
             if (acquiredLock) {
-                for (serverFormDetails in updatedForms) {
-                    try {
-                        formDownloader.downloadForm(serverFormDetails, null, null)
-                        results[serverFormDetails] = successMessage
-                    } catch (e: FormDownloadException) {
-                        results[serverFormDetails] = failureMessage
-                    } catch (e: InterruptedException) {
-                        break
-                    }
+                val downloaded = ConcurrentFormDownloadRunner(
+                    formDownloader,
+                    ConcurrentFormDownloadRunner.DEFAULT_MAX_CONCURRENT_DOWNLOADS
+                ).run(updatedForms, null)
+
+                for ((serverFormDetails, success) in downloaded) {
+                    results[serverFormDetails] = if (success) successMessage else failureMessage
                 }
             }
         }
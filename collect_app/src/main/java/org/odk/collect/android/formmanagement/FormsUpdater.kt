@@ -176,6 +176,7 @@ private fun serverFormsDetailsFetcher(
 private fun diskFormsSynchronizer(projectSandbox: ProjectSandbox): FormsDirDiskFormsSynchronizer {
     return FormsDirDiskFormsSynchronizer(
         projectSandbox.formsRepository,
-        projectSandbox.formsDir
+        projectSandbox.formsDir,
+        projectSandbox.cacheDir
     )
 }
@@ -10,6 +10,7 @@ import org.odk.collect.forms.FormSourceException;
 import org.odk.collect.forms.FormsRepository;
 import org.odk.collect.forms.MediaFile;
 import org.odk.collect.android.listeners.FormDownloaderListener;
+import org.odk.collect.android.utilities.FileMd5Index;
 import org.odk.collect.android.utilities.FileUtils;
 import org.odk.collect.android.utilities.FormNameUtils;
 import org.odk.collect.shared.strings.Validator;
@@ -17,13 +18,22 @@ import org.odk.collect.shared.strings.Md5;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Supplier;
 
 import javax.annotation.Nullable;
@@ -35,11 +45,25 @@ import static org.odk.collect.android.analytics.AnalyticsEvents.DOWNLOAD_SAME_FO
 
 public class ServerFormDownloader implements FormDownloader {
 
+    private static final int MAX_CONCURRENT_MEDIA_DOWNLOADS = 4;
+    private static final int MAX_ATTEMPT_COUNT = 3;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long BYTES_REPORT_INTERVAL_MS = 500;
+    public static final String MEDIA_MD5_INDEX_FILE_NAME = "media-md5.index";
+
     private final FormsRepository formsRepository;
     private final FormSource formSource;
     private final File cacheDir;
     private final String formsDirPath;
     private final FormMetadataParser formMetadataParser;
+    private final FileMd5Index mediaMd5Index;
+
+    /**
+     * Forms can be downloaded on several threads at once, so lookups and changes to the forms
+     * repository and forms directory are made while holding this lock. The downloads themselves
+     * aren't.
+     */
+    private final Object installLock = new Object();
 
     private final Analytics analytics;
 
@@ -49,29 +73,32 @@ public class ServerFormDownloader implements FormDownloader {
         this.formsDirPath = formsDirPath;
         this.formsRepository = formsRepository;
         this.formMetadataParser = formMetadataParser;
+        this.mediaMd5Index = FileMd5Index.getInstance(new File(cacheDir, MEDIA_MD5_INDEX_FILE_NAME));
 
         this.analytics = analytics;
     }
 
     @Override
     public void downloadForm(ServerFormDetails form, @Nullable ProgressReporter progressReporter, @Nullable Supplier<Boolean> isCancelled) throws FormDownloadException, InterruptedException {
-        Form formOnDevice;
-        try {
-            formOnDevice = formsRepository.getOneByMd5Hash(getMd5HashWithoutPrefix(form.getHash()));
-        } catch (IllegalArgumentException e) {
-            throw new FormDownloadException(e.getMessage());
-        }
-
-        if (formOnDevice != null) {
-            if (formOnDevice.isDeleted()) {
-                formsRepository.restore(formOnDevice.getDbId());
+        synchronized (installLock) {
+            Form formOnDevice;
+            try {
+                formOnDevice = formsRepository.getOneByMd5Hash(getMd5HashWithoutPrefix(form.getHash()));
+            } catch (IllegalArgumentException e) {
+                throw new FormDownloadException(e.getMessage());
             }
-        } else {
-            List<Form> allSameFormIdVersion = formsRepository.getAllByFormIdAndVersion(form.getFormId(), form.getFormVersion());
-            if (!allSameFormIdVersion.isEmpty() && !form.getDownloadUrl().contains("/draft.xml")) {
-                String formIdentifier = form.getFormName() + " " + form.getFormId();
-                String formIdHash = Md5.getMd5Hash(new ByteArrayInputStream(formIdentifier.getBytes()));
-                analytics.logFormEvent(DOWNLOAD_SAME_FORMID_VERSION_DIFFERENT_HASH, formIdHash);
+
+            if (formOnDevice != null) {
+                if (formOnDevice.isDeleted()) {
+                    formsRepository.restore(formOnDevice.getDbId());
+                }
+            } else {
+                List<Form> allSameFormIdVersion = formsRepository.getAllByFormIdAndVersion(form.getFormId(), form.getFormVersion());
+                if (!allSameFormIdVersion.isEmpty() && !form.getDownloadUrl().contains("/draft.xml")) {
+                    String formIdentifier = form.getFormName() + " " + form.getFormId();
+                    String formIdHash = Md5.getMd5Hash(new ByteArrayInputStream(formIdentifier.getBytes()));
+                    analytics.logFormEvent(DOWNLOAD_SAME_FORMID_VERSION_DIFFERENT_HASH, formIdHash);
+                }
             }
         }
 
@@ -100,6 +127,7 @@ public class ServerFormDownloader implements FormDownloader {
         // use a temporary media path until everything is ok.
         String tempMediaPath = new File(tempDir, "media").getAbsolutePath();
         FileResult fileResult = null;
+        Map<String, String> mediaFileHashes = null;
 
         try {
             // get the xml file
@@ -108,7 +136,7 @@ public class ServerFormDownloader implements FormDownloader {
 
             // download media files if there are any
             if (fd.getManifest() != null && !fd.getManifest().getMediaFiles().isEmpty()) {
-                downloadMediaFiles(tempMediaPath, stateListener, fd.getManifest().getMediaFiles(), tempDir, fileResult.file.getName());
+                mediaFileHashes = downloadMediaFiles(tempMediaPath, stateListener, fd.getManifest().getMediaFiles(), tempDir, fileResult);
             }
         } catch (InterruptedException e) {
             Timber.i(e);
@@ -133,8 +161,13 @@ public class ServerFormDownloader implements FormDownloader {
                 final long start = System.currentTimeMillis();
                 Timber.i("Parsing document %s", fileResult.file.getAbsolutePath());
 
-                parsedFields = formMetadataParser
-                        .parse(fileResult.file, new File(tempMediaPath));
+                // Forms are downloaded concurrently but JavaRosa isn't thread-safe, so only
+                // the transfers overlap: forms are parsed one at a time, sharing the lock
+                // with the disk sync
+                synchronized (FileUtils.JAVAROSA_LOCK) {
+                    parsedFields = formMetadataParser
+                            .parse(fileResult.file, new File(tempMediaPath));
+                }
 
                 Timber.i("Parse finished in %.3f seconds.", (System.currentTimeMillis() - start) / 1000F);
             } catch (RuntimeException e) {
@@ -146,7 +179,7 @@ public class ServerFormDownloader implements FormDownloader {
 
         if ((stateListener == null || !stateListener.isTaskCancelled()) && success) {
             if (!fileResult.isNew || isSubmissionOk(parsedFields)) {
-                installed = installEverything(tempMediaPath, fileResult, parsedFields, formsDirPath);
+                installed = installEverything(tempMediaPath, fileResult, parsedFields, formsDirPath, mediaFileHashes);
             } else {
                 success = false;
             }
@@ -165,14 +198,25 @@ public class ServerFormDownloader implements FormDownloader {
         return submission == null || Validator.isUrlValid(submission);
     }
 
-    boolean installEverything(String tempMediaPath, FileResult fileResult, Map<String, String> parsedFields, String formsDirPath) {
+    boolean installEverything(String tempMediaPath, FileResult fileResult, Map<String, String> parsedFields, String formsDirPath, @Nullable Map<String, String> mediaFileHashes) {
+        synchronized (installLock) {
+            return installEverythingLocked(tempMediaPath, fileResult, parsedFields, formsDirPath, mediaFileHashes);
+        }
+    }
+
+    private boolean installEverythingLocked(String tempMediaPath, FileResult fileResult, Map<String, String> parsedFields, String formsDirPath, @Nullable Map<String, String> mediaFileHashes) {
         FormResult formResult;
 
         File formFile;
 
         if (fileResult.isNew()) {
-            // Copy form to forms dir
+            // Copy form to forms dir. Another form with the same name may have been installed
+            // while this one was downloading, in which case the name is taken again.
             formFile = new File(formsDirPath, fileResult.file.getName());
+            if (formFile.exists()) {
+                String formName = fileResult.file.getName().substring(0, fileResult.file.getName().length() - ".xml".length());
+                formFile = new File(formsDirPath, getFormFileName(formName, formsDirPath));
+            }
             FileUtils.copyFile(fileResult.file, formFile);
         } else {
             formFile = fileResult.file;
@@ -197,6 +241,14 @@ public class ServerFormDownloader implements FormDownloader {
 
                 return false;
             }
+
+            // Remember the hashes computed while downloading so the files aren't read again
+            // the next time the form is downloaded
+            if (mediaFileHashes != null) {
+                for (Map.Entry<String, String> mediaFileHash : mediaFileHashes.entrySet()) {
+                    mediaMd5Index.put(new File(formMediaDir, mediaFileHash.getKey()), mediaFileHash.getValue());
+                }
+            }
         }
 
         return true;
@@ -208,7 +260,9 @@ public class ServerFormDownloader implements FormDownloader {
         } else {
             String md5Hash = Md5.getMd5Hash(fileResult.file);
             if (md5Hash != null) {
-                formsRepository.deleteByMd5Hash(md5Hash);
+                synchronized (installLock) {
+                    formsRepository.deleteByMd5Hash(md5Hash);
+                }
             }
             FileUtils.deleteAndReport(fileResult.getFile());
         }
@@ -254,15 +308,17 @@ public class ServerFormDownloader implements FormDownloader {
      * object representing the downloaded file.
      */
     FileResult downloadXform(String formName, String url, FormDownloaderListener stateListener, File tempDir, String formsDirPath) throws FormSourceException, IOException, InterruptedException {
-        InputStream xform = formSource.fetchForm(url);
-
         String fileName = getFormFileName(formName, formsDirPath);
         File tempFormFile = new File(tempDir + File.separator + fileName);
-        writeFile(xform, tempFormFile, tempDir, stateListener);
+        String md5Hash = writeFile(offset -> offset == 0 ? formSource.fetchForm(url) : null, tempFormFile, tempDir, stateListener, null, null);
 
         // we've downloaded the file, and we may have renamed it
         // make sure it's not the same as a file we already have
-        Form form = formsRepository.getOneByMd5Hash(Md5.getMd5Hash(tempFormFile));
+        Form form;
+        synchronized (installLock) {
+            form = formsRepository.getOneByMd5Hash(md5Hash);
+        }
+
         if (form != null) {
             // delete the file we just downloaded, because it's a duplicate
             FileUtils.deleteAndReport(tempFormFile);
@@ -280,9 +336,14 @@ public class ServerFormDownloader implements FormDownloader {
      * <p>
      * SurveyCTO: The file is saved into a temp folder and is moved to the final place if everything
      * is okay, so that garbage is not left over on cancel.
+     * <p>
+     * The MD5 hash of the file is computed as it is written and returned. If the download is cut
+     * off, it is resumed from the bytes already written when the source supports that and started
+     * again otherwise. A resumed file that doesn't match the expected hash is downloaded again
+     * from the start.
      */
-    private void writeFile(InputStream inputStream, File destinationFile, File tempDir, FormDownloaderListener stateListener)
-            throws IOException, InterruptedException {
+    private String writeFile(DownloadStreamOpener streamOpener, File destinationFile, File tempDir, FormDownloaderListener stateListener,
+                             @Nullable String expectedMd5Hash, @Nullable MediaDownloadProgress progress) throws FormSourceException, IOException, InterruptedException {
 
         File tempFile = File.createTempFile(
                 destinationFile.getName(),
@@ -290,57 +351,76 @@ public class ServerFormDownloader implements FormDownloader {
                 tempDir
         );
 
+        MessageDigest digest = getMd5Digest();
+
         // WiFi network connections can be renegotiated during a large form download sequence.
-        // This will cause intermittent download failures.  Silently retry once after each
-        // failure.  Only if there are two consecutive failures do we abort.
-        boolean success = false;
+        // This will cause intermittent download failures. Silently retry after each failure,
+        // picking up where the failed attempt stopped. Only if there are too many consecutive
+        // failures do we abort.
         int attemptCount = 0;
-        final int MAX_ATTEMPT_COUNT = 2;
-        while (!success && ++attemptCount <= MAX_ATTEMPT_COUNT) {
-            // write connection to file
-            InputStream is = null;
-            OutputStream os = null;
+        while (true) {
+            attemptCount++;
 
+            InputStream is = null;
+            boolean resumed = false;
             try {
-                is = inputStream;
-                os = new FileOutputStream(tempFile);
+                long offset = tempFile.length();
+                if (offset > 0) {
+                    is = streamOpener.open(offset);
+                    if (is != null) {
+                        Timber.i("Resuming download of %s from byte %d", destinationFile.getName(), offset);
+                        resumed = true;
+                        digest = getMd5Digest(tempFile);
+                    } else {
+                        Timber.i("Download of %s can't be resumed so it will start again", destinationFile.getName());
+                    }
+                }
 
-                byte[] buf = new byte[4096];
-                int len;
-                while ((len = is.read(buf)) > 0 && (stateListener == null || !stateListener.isTaskCancelled())) {
-                    os.write(buf, 0, len);
+                if (is == null) {
+                    digest.reset();
+                    is = streamOpener.open(0);
                 }
-                os.flush();
-                success = true;
 
-            } catch (Exception e) {
-                Timber.e(e.toString());
-                // silently retry unless this is the last attempt,
-                // in which case we rethrow the exception.
+                try (OutputStream os = new FileOutputStream(tempFile, resumed)) {
+                    byte[] buf = new byte[BUFFER_SIZE];
+                    int len;
+                    while ((len = is.read(buf)) > 0 && (stateListener == null || !stateListener.isTaskCancelled())) {
+                        os.write(buf, 0, len);
+                        digest.update(buf, 0, len);
 
-                FileUtils.deleteAndReport(tempFile);
+                        if (progress != null) {
+                            progress.onBytesDownloaded(len);
+                        }
+                    }
+                    os.flush();
+                }
+
+                if (stateListener != null && stateListener.isTaskCancelled()) {
+                    break;
+                }
+
+                if (resumed && expectedMd5Hash != null && !expectedMd5Hash.equals(Md5.toHex(digest.digest()))) {
+                    // Throw the spliced file away rather than risk installing a corrupt one
+                    new FileOutputStream(tempFile).close();
+                    throw new IOException("Resumed download of " + destinationFile.getName() + " doesn't match its hash");
+                }
+
+                break;
+            } catch (FormSourceException | IOException e) {
+                Timber.w(e, "Attempt %d to download %s failed", attemptCount, destinationFile.getName());
+
+                if (Thread.currentThread().isInterrupted()) {
+                    // Another media file failed so this one isn't needed anymore
+                    FileUtils.deleteAndReport(tempFile);
+                    throw new InterruptedException();
+                }
 
                 if (attemptCount == MAX_ATTEMPT_COUNT) {
+                    FileUtils.deleteAndReport(tempFile);
                     throw e;
                 }
             } finally {
-                if (os != null) {
-                    try {
-                        os.close();
-                    } catch (Exception e) {
-                        Timber.e(e);
-                    }
-                }
                 if (is != null) {
-                    try {
-                        // ensure stream is consumed...
-                        final long count = 1024L;
-                        while (is.skip(count) == count) {
-                            // skipping to the end of the http entity
-                        }
-                    } catch (Exception e) {
-                        // no-op
-                    }
                     try {
                         is.close();
                     } catch (Exception e) {
@@ -348,66 +428,134 @@ public class ServerFormDownloader implements FormDownloader {
                     }
                 }
             }
+        }
 
-            if (stateListener != null && stateListener.isTaskCancelled()) {
-                FileUtils.deleteAndReport(tempFile);
-                throw new InterruptedException();
-            }
+        if (stateListener != null && stateListener.isTaskCancelled()) {
+            FileUtils.deleteAndReport(tempFile);
+            throw new InterruptedException();
         }
 
         Timber.d("Completed downloading of %s. It will be moved to the proper path...", tempFile.getAbsolutePath());
 
         FileUtils.deleteAndReport(destinationFile);
 
-        String errorMessage = FileUtils.copyFile(tempFile, destinationFile);
+        // The temp file is in the same directory tree as the destination so it can be renamed
+        if (!tempFile.renameTo(destinationFile)) {
+            String errorMessage = FileUtils.copyFile(tempFile, destinationFile);
 
-        if (destinationFile.exists()) {
-            Timber.d("Copied %s over %s", tempFile.getAbsolutePath(), destinationFile.getAbsolutePath());
-            FileUtils.deleteAndReport(tempFile);
-        } else {
-            String msg = Collect.getInstance().getString(R.string.fs_file_copy_error,
-                    tempFile.getAbsolutePath(), destinationFile.getAbsolutePath(), errorMessage);
-            throw new RuntimeException(msg);
+            if (destinationFile.exists()) {
+                Timber.d("Copied %s over %s", tempFile.getAbsolutePath(), destinationFile.getAbsolutePath());
+                FileUtils.deleteAndReport(tempFile);
+            } else {
+                String msg = Collect.getInstance().getString(R.string.fs_file_copy_error,
+                        tempFile.getAbsolutePath(), destinationFile.getAbsolutePath(), errorMessage);
+                throw new RuntimeException(msg);
+            }
         }
+
+        return Md5.toHex(digest.digest());
     }
 
-    private void downloadMediaFiles(String tempMediaPath, FormDownloaderListener stateListener, List<MediaFile> files, File tempDir, String formFileName) throws FormSourceException, IOException, InterruptedException {
+    /**
+     * Downloads the media files that aren't on the device yet or have changed into the temp media
+     * directory, several at a time. Returns the MD5 hashes of the downloaded files keyed by their
+     * names.
+     * <p>
+     * Files are only compared with the ones on the device when the form is already installed. A
+     * new form might get a different name when it is installed, so its media directory isn't
+     * known yet.
+     */
+    private Map<String, String> downloadMediaFiles(String tempMediaPath, FormDownloaderListener stateListener, List<MediaFile> files, File tempDir, FileResult fileResult) throws FormSourceException, IOException, InterruptedException {
         File tempMediaDir = new File(tempMediaPath);
         tempMediaDir.mkdir();
 
-        for (int i = 0; i < files.size(); i++) {
-            if (stateListener != null) {
-                stateListener.progressUpdate("", String.valueOf(i + 1), "");
-            }
+        boolean formIsInstalled = !fileResult.isNew();
+        String finalMediaPath = FileUtils.constructMediaPath(formsDirPath + File.separator + fileResult.file.getName());
+        Map<String, String> downloadedHashes = new ConcurrentHashMap<>();
+        MediaDownloadProgress progress = new MediaDownloadProgress(stateListener);
 
-            MediaFile toDownload = files.get(i);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(MAX_CONCURRENT_MEDIA_DOWNLOADS, files.size()));
+        try {
+            List<Future<?>> downloads = new ArrayList<>();
+            for (MediaFile toDownload : files) {
+                downloads.add(executor.submit(() -> {
+                    File tempMediaFile = new File(tempMediaDir, toDownload.getFilename());
+                    File finalMediaFile = new File(finalMediaPath, toDownload.getFilename());
+                    String downloadFileHash = getMd5HashWithoutPrefix(toDownload.getHash());
+
+                    if (!formIsInstalled || !finalMediaFile.exists()) {
+                        downloadedHashes.put(toDownload.getFilename(), downloadMediaFile(toDownload, tempMediaFile, tempDir, stateListener, progress));
+                    } else {
+                        String currentFileHash = mediaMd5Index.getMd5Hash(finalMediaFile);
+
+                        if (currentFileHash != null && downloadFileHash != null && !currentFileHash.contentEquals(downloadFileHash)) {
+                            // if the hashes match, it's the same file
+                            // otherwise download the new one, which replaces our current one when it is installed
+                            downloadedHashes.put(toDownload.getFilename(), downloadMediaFile(toDownload, tempMediaFile, tempDir, stateListener, progress));
+                        } else {
+                            // exists, and the hash is the same
+                            // no need to download it again
+                            Timber.i("Skipping media file fetch -- file hashes identical: %s", finalMediaFile.getAbsolutePath());
+                        }
+                    }
 
-            File tempMediaFile = new File(tempMediaDir, toDownload.getFilename());
-            String finalMediaPath = FileUtils.constructMediaPath(formsDirPath + File.separator + formFileName);
-            File finalMediaFile = new File(finalMediaPath, toDownload.getFilename());
+                    progress.onFileCompleted();
+                    return null;
+                }));
+            }
 
-            if (!finalMediaFile.exists()) {
-                InputStream mediaFile = formSource.fetchMediaFile(toDownload.getDownloadUrl());
-                writeFile(mediaFile, tempMediaFile, tempDir, stateListener);
-            } else {
-                String currentFileHash = Md5.getMd5Hash(finalMediaFile);
-                String downloadFileHash = getMd5HashWithoutPrefix(toDownload.getHash());
-
-                if (currentFileHash != null && downloadFileHash != null && !currentFileHash.contentEquals(downloadFileHash)) {
-                    // if the hashes match, it's the same file
-                    // otherwise delete our current one and replace it with the new one
-                    FileUtils.deleteAndReport(finalMediaFile);
-                    InputStream mediaFile = formSource.fetchMediaFile(toDownload.getDownloadUrl());
-                    writeFile(mediaFile, tempMediaFile, tempDir, stateListener);
-                } else {
-                    // exists, and the hash is the same
-                    // no need to download it again
-                    Timber.i("Skipping media file fetch -- file hashes identical: %s", finalMediaFile.getAbsolutePath());
+            for (Future<?> download : downloads) {
+                try {
+                    download.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof FormSourceException) {
+                        throw (FormSourceException) cause;
+                    } else if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    } else if (cause instanceof InterruptedException) {
+                        throw (InterruptedException) cause;
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else {
+                        throw new IOException(cause);
+                    }
                 }
             }
+        } finally {
+            // Stop any downloads that are still running if one of them failed
+            executor.shutdownNow();
+        }
+
+        return downloadedHashes;
+    }
+
+    private String downloadMediaFile(MediaFile mediaFile, File tempMediaFile, File tempDir, FormDownloaderListener stateListener, MediaDownloadProgress progress) throws FormSourceException, IOException, InterruptedException {
+        String url = mediaFile.getDownloadUrl();
+        DownloadStreamOpener streamOpener = offset -> offset == 0 ? formSource.fetchMediaFile(url) : formSource.fetchMediaFile(url, offset);
+        return writeFile(streamOpener, tempMediaFile, tempDir, stateListener, getMd5HashWithoutPrefix(mediaFile.getHash()), progress);
+    }
+
+    private static MessageDigest getMd5Digest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
         }
     }
 
+    private static MessageDigest getMd5Digest(File file) throws IOException {
+        MessageDigest digest = getMd5Digest();
+        try (InputStream is = new FileInputStream(file)) {
+            byte[] buf = new byte[BUFFER_SIZE];
+            int len;
+            while ((len = is.read(buf)) != -1) {
+                digest.update(buf, 0, len);
+            }
+        }
+        return digest;
+    }
+
     @NotNull
     private static String getFormFileName(String formName, String formsDirPath) {
         String formattedFormName = FormNameUtils.formatFilenameFromFormName(formName);
@@ -424,13 +572,23 @@ public class ServerFormDownloader implements FormDownloader {
         return hash == null || hash.isEmpty() ? null : hash.substring("md5:".length());
     }
 
+    /**
+     * Moves the media files into the form's media directory. Each file is renamed over the one it
+     * replaces so the form never sees a missing or partly written file.
+     */
     public static void moveMediaFiles(String tempMediaPath, File formMediaPath) throws IOException {
         File tempMediaFolder = new File(tempMediaPath);
         File[] mediaFiles = tempMediaFolder.listFiles();
 
         if (mediaFiles != null && mediaFiles.length != 0) {
             for (File mediaFile : mediaFiles) {
-                org.apache.commons.io.FileUtils.moveFileToDirectory(mediaFile, formMediaPath, true);
+                File destination = new File(formMediaPath, mediaFile.getName());
+                if (!formMediaPath.isDirectory() || !mediaFile.renameTo(destination)) {
+                    if (destination.exists() && !destination.delete()) {
+                        throw new IOException("Unable to replace " + destination.getAbsolutePath());
+                    }
+                    org.apache.commons.io.FileUtils.moveFileToDirectory(mediaFile, formMediaPath, true);
+                }
             }
         }
     }
@@ -473,6 +631,54 @@ public class ServerFormDownloader implements FormDownloader {
         }
     }
 
+    /**
+     * Opens the stream of a download, from the given byte offset if the download is being resumed.
+     */
+    private interface DownloadStreamOpener {
+
+        /**
+         * @return the stream, or null if the download can't be resumed from a non-zero offset
+         */
+        @Nullable
+        InputStream open(long offset) throws FormSourceException;
+    }
+
+    /**
+     * Counts the media files and bytes downloaded for a form across all download threads and
+     * reports them to the listener, reporting bytes at most every {@link #BYTES_REPORT_INTERVAL_MS}.
+     */
+    private static class MediaDownloadProgress {
+
+        private final FormDownloaderListener stateListener;
+        private final long startTime = System.nanoTime() / 1_000_000;
+        private int filesCompleted;
+        private long bytes;
+        private long lastBytesReportTime = startTime;
+
+        MediaDownloadProgress(FormDownloaderListener stateListener) {
+            this.stateListener = stateListener;
+        }
+
+        synchronized void onFileCompleted() {
+            filesCompleted++;
+
+            if (stateListener != null) {
+                stateListener.progressUpdate("", String.valueOf(filesCompleted), "");
+            }
+        }
+
+        synchronized void onBytesDownloaded(long count) {
+            bytes += count;
+
+            long now = System.nanoTime() / 1_000_000;
+            if (stateListener != null && now - lastBytesReportTime >= BYTES_REPORT_INTERVAL_MS) {
+                lastBytesReportTime = now;
+                long elapsed = Math.max(now - startTime, 1);
+                stateListener.bytesUpdate(bytes, bytes * 1000 / elapsed);
+            }
+        }
+    }
+
     private static class ProgressReporterAndSupplierStateListener implements FormDownloaderListener {
         private final ProgressReporter progressReporter;
         private final Supplier<Boolean> isCancelled;
@@ -489,6 +695,13 @@ public class ServerFormDownloader implements FormDownloader {
             }
         }
 
+        @Override
+        public void bytesUpdate(long bytes, long bytesPerSecond) {
+            if (progressReporter != null) {
+                progressReporter.onMediaBytesDownloaded(bytes, bytesPerSecond);
+            }
+        }
+
         @Override
         public boolean isTaskCancelled() {
             if (isCancelled != null) {
@@ -16,7 +16,10 @@
 
 package org.odk.collect.android.formmanagement;
 
+import androidx.annotation.Nullable;
+
 import org.odk.collect.android.openrosa.OpenRosaFormSource;
+import org.odk.collect.android.utilities.FileMd5Index;
 import org.odk.collect.forms.Form;
 import org.odk.collect.forms.FormListItem;
 import org.odk.collect.forms.FormSource;
@@ -30,22 +33,45 @@ import org.odk.collect.shared.strings.Md5;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import timber.log.Timber;
 
 public class ServerFormsDetailsFetcher {
 
+    private static final int MAX_CONCURRENT_MANIFEST_FETCHES = 4;
+
     private final FormsRepository formsRepository;
     private final FormSource formSource;
     private final DiskFormsSynchronizer diskFormsSynchronizer;
 
+    @Nullable
+    private final FileMd5Index mediaMd5Index;
+
     public ServerFormsDetailsFetcher(FormsRepository formsRepository,
                                      FormSource formSource,
                                      DiskFormsSynchronizer diskFormsSynchronizer) {
+        this(formsRepository, formSource, diskFormsSynchronizer, null);
+    }
+
+    /**
+     * @param mediaMd5Index used to look up the hashes of media files on the device so they are
+     *                      only read again when they change. Files are hashed every time if null.
+     */
+    public ServerFormsDetailsFetcher(FormsRepository formsRepository,
+                                     FormSource formSource,
+                                     DiskFormsSynchronizer diskFormsSynchronizer,
+                                     @Nullable FileMd5Index mediaMd5Index) {
         this.formsRepository = formsRepository;
         this.formSource = formSource;
         this.diskFormsSynchronizer = diskFormsSynchronizer;
+        this.mediaMd5Index = mediaMd5Index;
     }
 
     public void updateUrl(String url) {
@@ -61,20 +87,19 @@ public class ServerFormsDetailsFetcher {
 
         List<FormListItem> formListItems = formSource.fetchFormList();
         List<ServerFormDetails> serverFormDetailsList = new ArrayList<>();
+        Set<String> hashesOnDevice = getHashesOnDevice(formListItems);
+        List<ManifestFile> manifestFiles = getManifestFiles(formListItems);
 
-        for (FormListItem listItem : formListItems) {
-            ManifestFile manifestFile = null;
-
-            if (listItem.getManifestURL() != null) {
-                manifestFile = getManifestFile(formSource, listItem.getManifestURL());
-            }
+        for (int i = 0; i < formListItems.size(); i++) {
+            FormListItem listItem = formListItems.get(i);
+            ManifestFile manifestFile = manifestFiles.get(i);
 
             List<Form> forms = formsRepository.getAllNotDeletedByFormId(listItem.getFormID());
             boolean thisFormAlreadyDownloaded = !forms.isEmpty();
 
             boolean isNewerFormVersionAvailable = false;
             if (thisFormAlreadyDownloaded) {
-                if (isNewerFormVersionAvailable(listItem)) {
+                if (isNewerFormVersionAvailable(listItem, hashesOnDevice)) {
                     isNewerFormVersionAvailable = true;
                 } else if (manifestFile != null) {
                     List<MediaFile> newMediaFiles = manifestFile.getMediaFiles();
@@ -101,6 +126,61 @@ public class ServerFormsDetailsFetcher {
         return serverFormDetailsList;
     }
 
+    /**
+     * Fetches the manifests of the forms in the list several at a time.
+     *
+     * @return the manifest of each form in the order of the list, or null for forms that don't
+     * have one or whose manifest couldn't be fetched
+     */
+    private List<ManifestFile> getManifestFiles(List<FormListItem> formListItems) {
+        List<ManifestFile> manifestFiles = new ArrayList<>(formListItems.size());
+
+        int manifestCount = 0;
+        for (FormListItem listItem : formListItems) {
+            if (listItem.getManifestURL() != null) {
+                manifestCount++;
+            }
+        }
+
+        if (manifestCount <= 1) {
+            for (FormListItem listItem : formListItems) {
+                manifestFiles.add(getManifestFile(formSource, listItem.getManifestURL()));
+            }
+            return manifestFiles;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(MAX_CONCURRENT_MANIFEST_FETCHES, manifestCount));
+        try {
+            List<Future<ManifestFile>> fetches = new ArrayList<>(formListItems.size());
+            for (FormListItem listItem : formListItems) {
+                fetches.add(listItem.getManifestURL() == null
+                        ? null
+                        : executor.submit(() -> getManifestFile(formSource, listItem.getManifestURL())));
+            }
+
+            for (Future<ManifestFile> fetch : fetches) {
+                manifestFiles.add(fetch == null ? null : getResult(fetch));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return manifestFiles;
+    }
+
+    @Nullable
+    private static ManifestFile getResult(Future<ManifestFile> fetch) {
+        try {
+            return fetch.get();
+        } catch (ExecutionException e) {
+            Timber.w(e.getCause());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
     private ManifestFile getManifestFile(FormSource formSource, String manifestUrl) {
         if (manifestUrl == null) {
             return null;
@@ -114,21 +194,41 @@ public class ServerFormsDetailsFetcher {
         }
     }
 
-    private boolean isNewerFormVersionAvailable(FormListItem formListItem) {
+    /**
+     * Looks up all the forms in the list by hash in one go rather than one query per form.
+     */
+    private Set<String> getHashesOnDevice(List<FormListItem> formListItems) {
+        List<String> hashes = new ArrayList<>();
+        for (FormListItem listItem : formListItems) {
+            if (listItem.getHashWithPrefix() != null) {
+                hashes.add(getMd5HashWithoutPrefix(listItem.getHashWithPrefix()));
+            }
+        }
+
+        Set<String> hashesOnDevice = new HashSet<>();
+        for (Form form : formsRepository.getAllByMd5Hashes(hashes)) {
+            hashesOnDevice.add(form.getMD5Hash());
+        }
+
+        return hashesOnDevice;
+    }
+
+    private boolean isNewerFormVersionAvailable(FormListItem formListItem, Set<String> hashesOnDevice) {
         if (formListItem.getHashWithPrefix() == null) {
             return false;
         }
 
         String hash = getMd5HashWithoutPrefix(formListItem.getHashWithPrefix());
-        return formsRepository.getOneByMd5Hash(hash) == null;
+        return !hashesOnDevice.contains(hash);
     }
 
     private boolean areNewerMediaFilesAvailable(Form existingForm, List<MediaFile> newMediaFiles) {
         List<File> localMediaFiles = FormUtils.getMediaFiles(existingForm);
 
         if (localMediaFiles != null) {
+            Set<String> localMediaFileHashes = getHashes(localMediaFiles);
             for (MediaFile newMediaFile : newMediaFiles) {
-                if (!isMediaFileAlreadyDownloaded(localMediaFiles, newMediaFile)) {
+                if (!isMediaFileAlreadyDownloaded(localMediaFileHashes, newMediaFile)) {
                     return true;
                 }
             }
@@ -139,7 +239,22 @@ public class ServerFormsDetailsFetcher {
         return false;
     }
 
-    private static boolean isMediaFileAlreadyDownloaded(List<File> localMediaFiles, MediaFile newMediaFile) {
+    private Set<String> getHashes(List<File> files) {
+        if (mediaMd5Index != null) {
+            return new HashSet<>(mediaMd5Index.getMd5Hashes(files).values());
+        }
+
+        Set<String> hashes = new HashSet<>();
+        for (File file : files) {
+            String hash = Md5.getMd5Hash(file);
+            if (hash != null) {
+                hashes.add(hash);
+            }
+        }
+        return hashes;
+    }
+
+    private static boolean isMediaFileAlreadyDownloaded(Set<String> localMediaFileHashes, MediaFile newMediaFile) {
         // TODO Zip files are ignored we should find a way to take them into account too
         if (newMediaFile.getFilename().endsWith(".zip")) {
             return true;
@@ -147,12 +262,7 @@ public class ServerFormsDetailsFetcher {
 
         String mediaFileHash = newMediaFile.getHash();
         mediaFileHash = mediaFileHash.substring(4, mediaFileHash.length());
-        for (File localMediaFile : localMediaFiles) {
-            if (mediaFileHash.equals(Md5.getMd5Hash(localMediaFile))) {
-                return true;
-            }
-        }
-        return false;
+        return localMediaFileHashes.contains(mediaFileHash);
     }
 
     private String getMd5HashWithoutPrefix(String hash) {
@@ -1,7 +1,7 @@
 package org.odk.collect.android.formmanagement.matchexactly;
 
+import org.odk.collect.android.formmanagement.ConcurrentFormDownloadRunner;
 import org.odk.collect.android.formmanagement.FormDeleter;
-import org.odk.collect.android.formmanagement.FormDownloadException;
 import org.odk.collect.android.formmanagement.FormDownloader;
 import org.odk.collect.android.formmanagement.ServerFormDetails;
 import org.odk.collect.android.formmanagement.ServerFormsDetailsFetcher;
@@ -10,7 +10,11 @@ import org.odk.collect.forms.FormSourceException;
 import org.odk.collect.forms.FormsRepository;
 import org.odk.collect.forms.instances.InstancesRepository;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class ServerFormsSynchronizer {
 
@@ -31,26 +35,34 @@ public class ServerFormsSynchronizer {
         List<Form> formsOnDevice = formsRepository.getAll();
         FormDeleter formDeleter = new FormDeleter(formsRepository, instancesRepository);
 
-        formsOnDevice.stream().forEach(form -> {
-            if (formList.stream().noneMatch(f -> form.getFormId().equals(f.getFormId()))) {
+        Set<String> serverFormIds = new HashSet<>();
+        for (ServerFormDetails form : formList) {
+            serverFormIds.add(form.getFormId());
+        }
+
+        for (Form form : formsOnDevice) {
+            if (!serverFormIds.contains(form.getFormId())) {
                 formDeleter.delete(form.getDbId());
             }
-        });
-
-        boolean downloadException = false;
+        }
 
+        List<ServerFormDetails> formsToDownload = new ArrayList<>();
         for (ServerFormDetails form : formList) {
             if (form.isNotOnDevice() || form.isUpdated()) {
-                try {
-                    formDownloader.downloadForm(form, null, null);
-                } catch (FormDownloadException e) {
-                    downloadException = true;
-                } catch (InterruptedException e) {
-                    return;
-                }
+                formsToDownload.add(form);
             }
         }
 
+        Map<ServerFormDetails, Boolean> results = new ConcurrentFormDownloadRunner(formDownloader, ConcurrentFormDownloadRunner.DEFAULT_MAX_CONCURRENT_DOWNLOADS)
+                .run(formsToDownload, null);
+
+        if (results.size() < formsToDownload.size()) {
+            // Cancelled
+            return;
+        }
+
+        boolean downloadException = results.containsValue(false);
+
         if (downloadException) {
             throw new FormSourceException.FetchError();
         }
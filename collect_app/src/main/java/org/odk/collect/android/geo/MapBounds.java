@@ -0,0 +1,35 @@
+package org.odk.collect.android.geo;
+
+import java.util.Locale;
+
+/**
+ * A region of the map bounded by two parallels and two meridians. If the region crosses the
+ * antimeridian, west is greater than east.
+ */
+public class MapBounds {
+    public final double south;
+    public final double west;
+    public final double north;
+    public final double east;
+
+    public MapBounds(double south, double west, double north, double east) {
+        this.south = south;
+        this.west = west;
+        this.north = north;
+        this.east = east;
+    }
+
+    public boolean contains(MapPoint point) {
+        if (point.lat < south || point.lat > north) {
+            return false;
+        }
+
+        return west <= east
+            ? point.lon >= west && point.lon <= east
+            : point.lon >= west || point.lon <= east;
+    }
+
+    @Override public String toString() {
+        return String.format(Locale.US, "MapBounds(%+.6f, %+.6f, %+.6f, %+.6f)", south, west, north, east);
+    }
+}
@@ -117,6 +117,12 @@ public interface MapFragment {
      */
     void zoomToBoundingBox(Iterable<MapPoint> points, double scaleFactor, boolean animate);
 
+    /**
+     * Gets the region of the map that is currently shown in the map view, or
+     * null if it isn't known yet (for example, before the map view is laid out).
+     */
+    @Nullable MapBounds getVisibleBounds();
+
     /**
      * Adds a marker to the map at the given location.  If draggable is true,
      * the user will be able to drag the marker to change its location.
@@ -128,6 +134,9 @@ public interface MapFragment {
     /** Sets the icon for a marker. */
     void setMarkerIcon(int featureId, int drawableId);
 
+    /** Sets the icon for a marker with a short label, such as a count, drawn over its middle. */
+    void setMarkerIcon(int featureId, int drawableId, @NonNull String label);
+
     /** Gets the location of an existing marker. */
     MapPoint getMarkerPoint(int featureId);
 
@@ -171,6 +180,12 @@ public interface MapFragment {
     /** Sets or clears the callback for when a drag is completed. */
     void setDragEndListener(@Nullable FeatureListener listener);
 
+    /**
+     * Sets or clears the callback for when the region shown in the map view
+     * has changed, once panning or zooming has come to rest.
+     */
+    void setViewportChangeListener(@Nullable ViewportListener listener);
+
     /**
      * Enables/disables GPS tracking.  While enabled, the GPS location is shown
      * on the map, the first GPS fix will trigger any pending callbacks set by
@@ -216,4 +231,8 @@ public interface MapFragment {
     interface FeatureListener {
         void onFeature(int featureId);
     }
+
+    interface ViewportListener {
+        void onViewportChanged();
+    }
 }
@@ -30,11 +30,19 @@ import static android.database.sqlite.SQLiteDatabase.OPEN_READONLY;
 class MbtilesFile implements Closeable, TileSource {
     public enum LayerType { RASTER, VECTOR }
 
+    // The SQL is the same for every tile, so SQLite compiles it once and then
+    // reuses it from the connection's statement cache.  Arguments can only be
+    // bound as strings, so they are cast back to integers to match the columns.
+    private static final String TILE_QUERY = "SELECT tile_data FROM tiles WHERE " +
+        "zoom_level = CAST(? AS INTEGER) AND " +
+        "tile_column = CAST(? AS INTEGER) AND " +
+        "tile_row = CAST(? AS INTEGER)";
+
     private final File file;
     private final LayerType layerType;
     private final String contentType;
     private final String contentEncoding;
-    private SQLiteDatabase db;  // see getTileBlob for why this is not final
+    private volatile SQLiteDatabase db;  // see getTileBlob for why this is not final
 
     MbtilesFile(File file) throws MbtilesException {
         this(file, detectContentType(file));
@@ -87,17 +95,9 @@ class MbtilesFile implements Closeable, TileSource {
         // TMS coordinates are used in .mbtiles files, so Y needs to be flipped.
         y = (1 << zoom) - 1 - y;
 
-        // We have to use String.format because the templating mechanism in
-        // SQLiteDatabase.query is written for a strange alternate universe
-        // in which numbers don't exist -- it only supports strings!
-        String selection = String.format(
-            Locale.US,
-            "zoom_level = %d and tile_column = %d and tile_row = %d",
-            zoom, x, y
-        );
-
-        try (Cursor results = db.query("tiles", new String[] {"tile_data"},
-            selection, null, null, null, null)) {
+        String[] args = {Integer.toString(zoom), Integer.toString(x), Integer.toString(y)};
+        SQLiteDatabase db = this.db;
+        try (Cursor results = db.rawQuery(TILE_QUERY, args)) {
             if (results.moveToFirst()) {
                 try {
                     return results.getBlob(0);
@@ -108,8 +108,7 @@ class MbtilesFile implements Closeable, TileSource {
                     // When an attempt to fetch a large row fails, the database ends up
                     // in an unusable state, so we need to close it and reopen it.
                     // See https://stackoverflow.com/questions/20094421/cursor-window-window-is-full
-                    db.close();
-                    db = openSqliteReadOnly(file);
+                    reopen(db);
                 }
             }
         } catch (Throwable e) {
@@ -118,6 +117,14 @@ class MbtilesFile implements Closeable, TileSource {
         return null;
     }
 
+    /** Replaces the database connection, unless another thread has already done so. */
+    private synchronized void reopen(SQLiteDatabase failed) {
+        if (db == failed) {
+            failed.close();
+            db = openSqliteReadOnly(file);
+        }
+    }
+
     /** Returns information about the vector layers available in the tiles. */
     List<VectorLayer> getVectorLayers() {
         List<VectorLayer> layers = new ArrayList<>();
@@ -22,6 +22,9 @@ import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
 import android.location.Location;
 import android.os.Bundle;
 import android.os.Handler;
@@ -51,6 +54,7 @@ import org.odk.collect.android.utilities.GeoUtils;
 import org.odk.collect.android.utilities.IconUtils;
 import org.odk.collect.android.utilities.ThemeUtils;
 import org.osmdroid.api.IGeoPoint;
+import org.osmdroid.events.DelayedMapListener;
 import org.osmdroid.events.MapEventsReceiver;
 import org.osmdroid.events.MapListener;
 import org.osmdroid.events.ScrollEvent;
@@ -62,6 +66,7 @@ import org.osmdroid.views.MapView;
 import org.osmdroid.views.overlay.MapEventsOverlay;
 import org.osmdroid.views.overlay.Marker;
 import org.osmdroid.views.overlay.Overlay;
+import org.osmdroid.views.overlay.OverlayWithIW;
 import org.osmdroid.views.overlay.Polyline;
 import org.osmdroid.views.overlay.TilesOverlay;
 import org.osmdroid.views.overlay.mylocation.IMyLocationConsumer;
@@ -86,6 +91,9 @@ public class OsmDroidMapFragment extends Fragment implements MapFragment,
     // Bundle keys understood by applyConfig().
     static final String KEY_WEB_MAP_SERVICE = "WEB_MAP_SERVICE";
 
+    // How long the map has to stay still before the viewport listener is called.
+    private static final long VIEWPORT_CHANGE_DELAY_MS = 200;
+
     @Inject
     MapProvider mapProvider;
 
@@ -99,6 +107,7 @@ public class OsmDroidMapFragment extends Fragment implements MapFragment,
     private PointListener gpsLocationListener;
     private FeatureListener featureClickListener;
     private FeatureListener dragEndListener;
+    private ViewportListener viewportListener;
     private MyLocationNewOverlay myLocationOverlay;
     private LocationClient locationClient;
     private OsmLocationClientWrapper osmLocationClientWrapper;
@@ -193,6 +202,7 @@ public class OsmDroidMapFragment extends Fragment implements MapFragment,
         addAttributionAndMapEventsOverlays();
         loadReferenceOverlay();
         addMapLayoutChangeListener(map);
+        addViewportChangeListener(map);
 
         locationClient = LocationClientProvider.getClient(getActivity(),
                 () -> new GoogleFusedLocationClient(getActivity().getApplication()), GoogleApiAvailability
@@ -292,9 +302,18 @@ public class OsmDroidMapFragment extends Fragment implements MapFragment,
         }
     }
 
+    @Override public @Nullable MapBounds getVisibleBounds() {
+        if (map == null || map.getWidth() == 0 || map.getHeight() == 0) {
+            return null;
+        }
+
+        BoundingBox box = map.getBoundingBox();
+        return new MapBounds(box.getLatSouth(), box.getLonWest(), box.getLatNorth(), box.getLonEast());
+    }
+
     @Override public int addMarker(MapPoint point, boolean draggable, @IconAnchor String iconAnchor) {
         int featureId = nextFeatureId++;
-        features.put(featureId, new MarkerFeature(map, point, draggable, iconAnchor));
+        features.put(featureId, new MarkerFeature(map, featureId, point, draggable, iconAnchor));
         return featureId;
     }
 
@@ -305,6 +324,13 @@ public class OsmDroidMapFragment extends Fragment implements MapFragment,
         }
     }
 
+    @Override public void setMarkerIcon(int featureId, int drawableId, @NonNull String label) {
+        MapFeature feature = features.get(featureId);
+        if (feature instanceof MarkerFeature) {
+            ((MarkerFeature) feature).setIcon(drawableId, label);
+        }
+    }
+
     @Override public @Nullable MapPoint getMarkerPoint(int featureId) {
         MapFeature feature = features.get(featureId);
         return feature instanceof MarkerFeature ? ((MarkerFeature) feature).getPoint() : null;
@@ -312,7 +338,7 @@ public class OsmDroidMapFragment extends Fragment implements MapFragment,
 
     @Override public int addDraggablePoly(@NonNull Iterable<MapPoint> points, boolean closedPolygon) {
         int featureId = nextFeatureId++;
-        features.put(featureId, new PolyFeature(map, points, closedPolygon));
+        features.put(featureId, new PolyFeature(map, featureId, points, closedPolygon));
         return featureId;
     }
 
@@ -358,6 +384,10 @@ public class OsmDroidMapFragment extends Fragment implements MapFragment,
         clickListener = listener;
     }
 
+    @Override public void setViewportChangeListener(@Nullable ViewportListener listener) {
+        viewportListener = listener;
+    }
+
     @Override public void setLongPressListener(@Nullable PointListener listener) {
         longPressListener = listener;
     }
@@ -532,7 +562,36 @@ public class OsmDroidMapFragment extends Fragment implements MapFragment,
                 map.getController().setCenter(lastMapCenter));
     }
 
-    private Marker createMarker(MapView map, MapPoint point, MapFeature feature, @IconAnchor String iconAnchor) {
+    /**
+     * Calls the viewport listener once scroll and zoom events have stopped
+     * arriving for a moment, rather than for every frame of a pan or zoom.
+     */
+    private void addViewportChangeListener(MapView map) {
+        map.addMapListener(new DelayedMapListener(new MapListener() {
+            @Override public boolean onScroll(ScrollEvent event) {
+                notifyViewportChanged();
+                return false;
+            }
+
+            @Override public boolean onZoom(ZoomEvent event) {
+                notifyViewportChanged();
+                return false;
+            }
+        }, VIEWPORT_CHANGE_DELAY_MS));
+    }
+
+    private void notifyViewportChanged() {
+        if (viewportListener != null && getActivity() != null) {
+            viewportListener.onViewportChanged();
+        }
+    }
+
+    /**
+     * Creates a marker for the given feature.  The feature ID is kept as the
+     * marker's related object so clicks and drags can be mapped back to the
+     * feature without searching.
+     */
+    private Marker createMarker(MapView map, int ownerFeatureId, MapPoint point, MapFeature feature, @IconAnchor String iconAnchor) {
         // A Marker's position is a GeoPoint with latitude, longitude, and
         // altitude fields.  We need to store the standard deviation value
         // somewhere, so it goes in the marker's sub-description field.
@@ -542,6 +601,7 @@ public class OsmDroidMapFragment extends Fragment implements MapFragment,
         marker.setDraggable(feature != null);
         marker.setIcon(ContextCompat.getDrawable(map.getContext(), R.drawable.ic_map_point));
         marker.setAnchor(getIconAnchorValueX(iconAnchor), getIconAnchorValueY(iconAnchor));
+        marker.setRelatedObject(ownerFeatureId);
         marker.setOnMarkerClickListener((clickedMarker, mapView) -> {
             int featureId = findFeature(clickedMarker);
             if (featureClickListener != null && featureId != -1) {
@@ -591,22 +651,11 @@ public class OsmDroidMapFragment extends Fragment implements MapFragment,
         }
     }
 
-    /** Finds the feature to which the given marker belongs. */
-    private int findFeature(Marker marker) {
-        for (int featureId : features.keySet()) {
-            if (features.get(featureId).ownsMarker(marker)) {
-                return featureId;
-            }
-        }
-        return -1;  // not found
-    }
-
-    /** Finds the feature to which the given polyline belongs. */
-    private int findFeature(Polyline polyline) {
-        for (int featureId : features.keySet()) {
-            if (features.get(featureId).ownsPolyline(polyline)) {
-                return featureId;
-            }
+    /** Finds the feature to which the given marker or polyline belongs. */
+    private int findFeature(OverlayWithIW overlay) {
+        Object featureId = overlay.getRelatedObject();
+        if (featureId instanceof Integer && features.containsKey(featureId)) {
+            return (Integer) featureId;
         }
         return -1;  // not found
     }
@@ -630,12 +679,6 @@ public class OsmDroidMapFragment extends Fragment implements MapFragment,
      * (e.g. geometric elements, handles for manipulation, etc.).
      */
     interface MapFeature {
-        /** Returns true if the given marker belongs to this feature. */
-        boolean ownsMarker(Marker marker);
-
-        /** Returns true if the given polyline belongs to this feature. */
-        boolean ownsPolyline(Polyline polyline);
-
         /** Updates the feature's geometry after any UI handles have moved. */
         void update();
 
@@ -648,25 +691,41 @@ public class OsmDroidMapFragment extends Fragment implements MapFragment,
         final MapView map;
         Marker marker;
 
-        MarkerFeature(MapView map, MapPoint point, boolean draggable, @IconAnchor String iconAnchor) {
+        MarkerFeature(MapView map, int featureId, MapPoint point, boolean draggable, @IconAnchor String iconAnchor) {
             this.map = map;
-            this.marker = createMarker(map, point, draggable ? this : null, iconAnchor);
+            this.marker = createMarker(map, featureId, point, draggable ? this : null, iconAnchor);
         }
 
         public void setIcon(int drawableId) {
             marker.setIcon(ContextCompat.getDrawable(map.getContext(), drawableId));
         }
 
-        public MapPoint getPoint() {
-            return fromMarker(marker);
-        }
+        /** Draws the label centered over the icon, shrinking it if it would be wider than the icon. */
+        public void setIcon(int drawableId, String label) {
+            Drawable icon = ContextCompat.getDrawable(map.getContext(), drawableId);
+            Bitmap bitmap = Bitmap.createBitmap(icon.getIntrinsicWidth(), icon.getIntrinsicHeight(), Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(bitmap);
+            icon.setBounds(0, 0, bitmap.getWidth(), bitmap.getHeight());
+            icon.draw(canvas);
+
+            Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            paint.setColor(Color.WHITE);
+            paint.setTypeface(Typeface.DEFAULT_BOLD);
+            paint.setTextAlign(Paint.Align.CENTER);
+            paint.setTextSize(bitmap.getHeight() * 0.4f);
+            float maxWidth = bitmap.getWidth() * 0.75f;
+            float width = paint.measureText(label);
+            if (width > maxWidth) {
+                paint.setTextSize(paint.getTextSize() * maxWidth / width);
+            }
 
-        public boolean ownsMarker(Marker givenMarker) {
-            return marker.equals(givenMarker);
+            float baseline = (bitmap.getHeight() - paint.ascent() - paint.descent()) / 2;
+            canvas.drawText(label, bitmap.getWidth() / 2f, baseline, paint);
+            marker.setIcon(new BitmapDrawable(map.getResources(), bitmap));
         }
 
-        public boolean ownsPolyline(Polyline polyline) {
-            return false;
+        public MapPoint getPoint() {
+            return fromMarker(marker);
         }
 
         public void update() { }
@@ -680,20 +739,23 @@ public class OsmDroidMapFragment extends Fragment implements MapFragment,
     /** A polyline or polygon that can be manipulated by dragging markers at its vertices. */
     private class PolyFeature implements MapFeature {
         final MapView map;
+        final int featureId;
         final List<Marker> markers = new ArrayList<>();
         final Polyline polyline;
         final boolean closedPolygon;
         static final int STROKE_WIDTH = 5;
 
-        PolyFeature(MapView map, Iterable<MapPoint> points, boolean closedPolygon) {
+        PolyFeature(MapView map, int featureId, Iterable<MapPoint> points, boolean closedPolygon) {
             this.map = map;
+            this.featureId = featureId;
             this.closedPolygon = closedPolygon;
             polyline = new Polyline();
+            polyline.setRelatedObject(featureId);
             polyline.setColor(getResources().getColor(R.color.mapLine));
             polyline.setOnClickListener((clickedPolyline, mapView, eventPos) -> {
-                int featureId = findFeature(clickedPolyline);
-                if (featureClickListener != null && featureId != -1) {
-                    featureClickListener.onFeature(featureId);
+                int clickedFeatureId = findFeature(clickedPolyline);
+                if (featureClickListener != null && clickedFeatureId != -1) {
+                    featureClickListener.onFeature(clickedFeatureId);
                     return true;  // consume the event
                 }
                 return false;
@@ -702,19 +764,11 @@ public class OsmDroidMapFragment extends Fragment implements MapFragment,
             paint.setStrokeWidth(STROKE_WIDTH);
             map.getOverlays().add(polyline);
             for (MapPoint point : points) {
-                markers.add(createMarker(map, point, this, CENTER));
+                markers.add(createMarker(map, featureId, point, this, CENTER));
             }
             update();
         }
 
-        public boolean ownsMarker(Marker givenMarker) {
-            return markers.contains(givenMarker);
-        }
-
-        public boolean ownsPolyline(Polyline givenPolyline) {
-            return polyline.equals(givenPolyline);
-        }
-
         public void update() {
             List<GeoPoint> geoPoints = new ArrayList<>();
             for (Marker marker : markers) {
@@ -744,7 +798,7 @@ public class OsmDroidMapFragment extends Fragment implements MapFragment,
         }
 
         public void addPoint(MapPoint point) {
-            markers.add(createMarker(map, point, this, CENTER));
+            markers.add(createMarker(map, featureId, point, this, CENTER));
             update();
         }
 
@@ -0,0 +1,205 @@
+package org.odk.collect.android.geo;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A spatial index over points that finds the ones inside a viewport and, when there are too many
+ * of them to draw one marker each, groups the ones that would overlap at the current zoom level
+ * into clusters.
+ *
+ * Points are kept in a grid over the Web Mercator projection used by the map SDKs, so finding the
+ * points in a viewport only visits the grid cells it overlaps. Clusters are formed the same way
+ * with cells that are {@link #CLUSTER_SIZE_PX} screen pixels wide at the given zoom level.
+ */
+public class PointClusterer<T> {
+
+    /** The index grid has 2^INDEX_LEVEL cells on each side (about 40 km at the equator). */
+    private static final int INDEX_LEVEL = 10;
+    private static final int INDEX_SIZE = 1 << INDEX_LEVEL;
+
+    /** The width of a tile at zoom level 0, which is how the zoom levels of all map SDKs are defined. */
+    private static final double TILE_SIZE_PX = 256;
+    static final double CLUSTER_SIZE_PX = 64;
+
+    private static final double MAX_LATITUDE = 85.05112878;
+
+    private final Map<Integer, List<Entry<T>>> cells = new HashMap<>();
+    private int size;
+
+    public void add(@NonNull MapPoint point, T item) {
+        Entry<T> entry = new Entry<>(point, item);
+        int cell = getCell(entry.x, entry.y);
+
+        List<Entry<T>> entries = cells.get(cell);
+        if (entries == null) {
+            entries = new ArrayList<>();
+            cells.put(cell, entries);
+        }
+
+        entries.add(entry);
+        size++;
+    }
+
+    public void clear() {
+        cells.clear();
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the points inside the given bounds (or all of them if bounds is null). If there are
+     * at most maxMarkers of them, each point is returned in a cluster of its own. Otherwise,
+     * points are grouped by {@link #CLUSTER_SIZE_PX} squares at the given zoom level.
+     */
+    public List<Cluster<T>> cluster(@Nullable MapBounds bounds, double zoom, int maxMarkers) {
+        List<Entry<T>> visible = getEntriesIn(bounds);
+
+        List<Cluster<T>> clusters = new ArrayList<>();
+        if (visible.size() <= maxMarkers) {
+            for (Entry<T> entry : visible) {
+                Cluster<T> cluster = new Cluster<>();
+                cluster.add(entry);
+                clusters.add(cluster);
+            }
+
+            return clusters;
+        }
+
+        double scale = TILE_SIZE_PX * Math.pow(2, zoom) / CLUSTER_SIZE_PX;
+        Map<Long, Cluster<T>> clustersByCell = new LinkedHashMap<>();
+        for (Entry<T> entry : visible) {
+            long cell = ((long) Math.floor(entry.x * scale) << 32) | (long) Math.floor(entry.y * scale);
+            Cluster<T> cluster = clustersByCell.get(cell);
+            if (cluster == null) {
+                cluster = new Cluster<>();
+                clustersByCell.put(cell, cluster);
+            }
+
+            cluster.add(entry);
+        }
+
+        clusters.addAll(clustersByCell.values());
+        return clusters;
+    }
+
+    private List<Entry<T>> getEntriesIn(@Nullable MapBounds bounds) {
+        List<Entry<T>> entries = new ArrayList<>();
+        if (bounds == null) {
+            for (List<Entry<T>> cellEntries : cells.values()) {
+                entries.addAll(cellEntries);
+            }
+
+            return entries;
+        }
+
+        int minRow = getIndex(projectLatitude(bounds.north));
+        int maxRow = getIndex(projectLatitude(bounds.south));
+        int minColumn = getIndex(projectLongitude(bounds.west));
+        int maxColumn = getIndex(projectLongitude(bounds.east));
+        int columns = minColumn <= maxColumn ? maxColumn - minColumn + 1 : INDEX_SIZE - minColumn + maxColumn + 1;
+
+        // When zoomed out, the viewport can overlap far more cells than there are points in
+        if ((long) columns * (maxRow - minRow + 1) > cells.size()) {
+            for (List<Entry<T>> cellEntries : cells.values()) {
+                addEntriesIn(bounds, cellEntries, entries);
+            }
+
+            return entries;
+        }
+
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int i = 0; i < columns; i++) {
+                List<Entry<T>> cellEntries = cells.get(row * INDEX_SIZE + (minColumn + i) % INDEX_SIZE);
+                if (cellEntries != null) {
+                    addEntriesIn(bounds, cellEntries, entries);
+                }
+            }
+        }
+
+        return entries;
+    }
+
+    private static <T> void addEntriesIn(MapBounds bounds, List<Entry<T>> cellEntries, List<Entry<T>> entries) {
+        for (Entry<T> entry : cellEntries) {
+            if (bounds.contains(entry.point)) {
+                entries.add(entry);
+            }
+        }
+    }
+
+    private static int getCell(double x, double y) {
+        return getIndex(y) * INDEX_SIZE + getIndex(x);
+    }
+
+    private static int getIndex(double projected) {
+        return Math.min(INDEX_SIZE - 1, Math.max(0, (int) Math.floor(projected * INDEX_SIZE)));
+    }
+
+    /** Projects a longitude onto [0, 1], west to east. */
+    static double projectLongitude(double lon) {
+        return (lon + 180) / 360;
+    }
+
+    /** Projects a latitude onto [0, 1], north to south, with the Web Mercator projection. */
+    static double projectLatitude(double lat) {
+        double clamped = Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, lat));
+        double sin = Math.sin(Math.toRadians(clamped));
+        return 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI);
+    }
+
+    private static class Entry<T> {
+        final MapPoint point;
+        final T item;
+        final double x;
+        final double y;
+
+        Entry(MapPoint point, T item) {
+            this.point = point;
+            this.item = item;
+            this.x = projectLongitude(point.lon);
+            this.y = projectLatitude(point.lat);
+        }
+    }
+
+    /** Points that are close enough together to be shown as one marker. */
+    public static class Cluster<T> {
+        private final List<MapPoint> points = new ArrayList<>();
+        private final List<T> items = new ArrayList<>();
+        private double latSum;
+        private double lonSum;
+
+        void add(Entry<T> entry) {
+            points.add(entry.point);
+            items.add(entry.item);
+            latSum += entry.point.lat;
+            lonSum += entry.point.lon;
+        }
+
+        public int size() {
+            return items.size();
+        }
+
+        /** The point to show the cluster at: the point itself if there's only one. */
+        public MapPoint getCenter() {
+            return points.size() == 1 ? points.get(0) : new MapPoint(latSum / points.size(), lonSum / points.size());
+        }
+
+        public List<MapPoint> getPoints() {
+            return points;
+        }
+
+        public List<T> getItems() {
+            return items;
+        }
+    }
+}
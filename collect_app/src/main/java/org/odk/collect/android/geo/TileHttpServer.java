@@ -1,35 +1,88 @@
 package org.odk.collect.android.geo;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.PushbackInputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.BindException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.net.URLDecoder;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import timber.log.Timber;
 
-/** A minimal HTTP server that serves tiles from a set of TileSources. */
+/**
+ * A minimal HTTP server that serves tiles from a set of TileSources. Connections
+ * are handled by a fixed pool of workers and kept alive between requests, and
+ * recently served tiles are kept in memory.
+ */
 class TileHttpServer {
     private static final int PORT_MIN = 8000;
     private static final int PORT_MAX = 8999;
 
-    private final Map<String, TileSource> sources = new HashMap<>();
+    /** The number of connections that can be served at the same time. */
+    static final int WORKER_COUNT = 8;
+
+    /**
+     * How long an idle connection is kept open waiting for another request, as
+     * long as no other connection is waiting for a worker.
+     */
+    static final int KEEP_ALIVE_TIMEOUT_MS = 2000;
+
+    /**
+     * How often an idle connection checks whether other connections are waiting
+     * for its worker.
+     */
+    private static final int IDLE_POLL_MS = 50;
+
+    /** The default number of bytes of tile data to keep in memory. */
+    static final long DEFAULT_CACHE_BYTES = 8 * 1024 * 1024;
+
+    private final Map<String, TileSource> sources = new ConcurrentHashMap<>();
+    private final Set<Socket> connections = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final BlockingQueue<Runnable> pendingConnections = new LinkedBlockingQueue<>();
+    private final ExecutorService workers = new ThreadPoolExecutor(
+        WORKER_COUNT, WORKER_COUNT, 0, TimeUnit.MILLISECONDS, pendingConnections);
+    private final TileCache cache;
     private final ServerThread server;
     private final ServerSocket socket;
 
+    private final AtomicLong connectionCount = new AtomicLong();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong cacheHitCount = new AtomicLong();
+    private final AtomicLong missingTileCount = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
     TileHttpServer() throws IOException {
+        this(DEFAULT_CACHE_BYTES);
+    }
+
+    TileHttpServer(long cacheBytes) throws IOException {
         socket = createBoundSocket(PORT_MIN, PORT_MAX);
         if (socket == null) {
             throw new IOException("Could not find an available port");
         }
+        cache = new TileCache(cacheBytes);
         server = new ServerThread(socket);
     }
 
@@ -55,12 +108,30 @@ class TileHttpServer {
         sources.put(key, source);
     }
 
+    /** Returns a snapshot of the counters for the requests served so far. */
+    public Metrics getMetrics() {
+        return new Metrics(
+            connectionCount.get(),
+            requestCount.get(),
+            cacheHitCount.get(),
+            missingTileCount.get(),
+            totalLatencyNanos.get(),
+            maxLatencyNanos.get()
+        );
+    }
+
     /** Permanently closes all sockets and closeable TileSources. */
     public void destroy() {
         try {
             socket.close();
         } catch (IOException e) { /* ignore */ }
         server.interrupt();
+        workers.shutdownNow();
+        for (Socket connection : connections) {
+            try {
+                connection.close();
+            } catch (IOException e) { /* ignore */ }
+        }
         for (TileSource source : sources.values()) {
             if (source instanceof Closeable) {
                 try {
@@ -68,6 +139,8 @@ class TileHttpServer {
                 } catch (IOException e) { /* ignore */ }
             }
         }
+        cache.clear();
+        Timber.i("Tile server stopped: %s", getMetrics());
     }
 
     /** Finds an available port and binds a ServerSocket to it. */
@@ -96,46 +169,122 @@ class TileHttpServer {
                 Timber.i("Ready for requests on port %d", socket.getLocalPort());
                 while (!isInterrupted()) {
                     Socket connection = socket.accept();
-                    Timber.i("Accepted a client connection");
-                    new ResponseThread(connection).start();
+                    connectionCount.incrementAndGet();
+                    workers.execute(new ConnectionHandler(connection));
                 }
                 Timber.i("Server thread interrupted");
             } catch (IOException e) {
                 Timber.i("Server thread stopped: %s", e.getMessage());
+            } catch (RejectedExecutionException e) {
+                Timber.i("Server thread stopped: workers have shut down");
             }
         }
     }
 
-    class ResponseThread extends Thread {
+    /**
+     * Serves requests on one connection until the client closes it, asks for it
+     * to be closed, leaves it idle for {@link #KEEP_ALIVE_TIMEOUT_MS}, or other
+     * connections are waiting for a worker. An idle connection gives up its
+     * worker within {@link #IDLE_POLL_MS} of another connection arriving.
+     */
+    class ConnectionHandler implements Runnable {
         final Socket connection;
 
-        ResponseThread(Socket connection) {
+        ConnectionHandler(Socket connection) {
             this.connection = connection;
         }
 
         public void run() {
+            connections.add(connection);
             try (Socket connection = this.connection) {
-                InputStreamReader reader = new InputStreamReader(connection.getInputStream());
-                String request = new BufferedReader(reader).readLine();
-                Timber.i("Received request: %s", request);
-                if (request == null) {
-                    return;
-                }
-                long start = System.currentTimeMillis();
-                Response response = getResponse(request);
-                if (response == null) {
-                    Timber.i("%s: No tile at these coordinates", request);
-                    return;
+                connection.setSoTimeout(KEEP_ALIVE_TIMEOUT_MS);
+                connection.setTcpNoDelay(true);
+                PushbackInputStream input = new PushbackInputStream(connection.getInputStream());
+                BufferedReader reader = new BufferedReader(new InputStreamReader(input, "US-ASCII"));
+                OutputStream output = new BufferedOutputStream(connection.getOutputStream());
+
+                boolean keepAlive = true;
+                while (keepAlive && !Thread.currentThread().isInterrupted()) {
+                    if (!waitForRequest(input, reader)) {
+                        return;
+                    }
+
+                    String request = reader.readLine();
+                    if (request == null) {
+                        return;
+                    }
+                    keepAlive = readHeaders(reader, request.endsWith("HTTP/1.1"));
+
+                    long start = System.nanoTime();
+                    Response response = getResponse(request);
+                    keepAlive &= pendingConnections.isEmpty();
+                    sendResponse(output, response, keepAlive);
+                    recordLatency(System.nanoTime() - start);
                 }
-                sendResponse(connection, response);
-                long finish = System.currentTimeMillis();
-                Timber.i("%s: Served %d bytes in %d ms", request, response.data.length, finish - start);
+            } catch (SocketTimeoutException e) {
+                // The client left the connection idle; it will open a new one if needed
             } catch (IOException e) {
-                Timber.e(e, "Unable to read request from socket");
+                Timber.w(e, "Unable to serve request from socket");
+            } finally {
+                connections.remove(connection);
+            }
+        }
+
+        /**
+         * Waits for the start of the next request in short slices, so that the
+         * connection can be closed as soon as another one is waiting for a worker.
+         * Only the first byte is read here (and pushed back) so that a timeout
+         * never loses part of a request. Returns false if the connection should
+         * be closed instead.
+         */
+        private boolean waitForRequest(PushbackInputStream input, BufferedReader reader) throws IOException {
+            if (reader.ready()) {
+                return true;
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(KEEP_ALIVE_TIMEOUT_MS);
+            connection.setSoTimeout(IDLE_POLL_MS);
+            try {
+                while (true) {
+                    try {
+                        int first = input.read();
+                        if (first == -1) {
+                            return false;
+                        }
+
+                        input.unread(first);
+                        return true;
+                    } catch (SocketTimeoutException e) {
+                        if (!pendingConnections.isEmpty() || System.nanoTime() >= deadline
+                                || Thread.currentThread().isInterrupted()) {
+                            return false;
+                        }
+                    }
+                }
+            } finally {
+                connection.setSoTimeout(KEEP_ALIVE_TIMEOUT_MS);
+            }
+        }
+
+        /**
+         * Skips the request headers and returns whether the connection can be
+         * kept open after the response, which is the default for HTTP/1.1.
+         */
+        private boolean readHeaders(BufferedReader reader, boolean keepAlive) throws IOException {
+            String header = reader.readLine();
+            while (header != null && !header.isEmpty()) {
+                String lowerCaseHeader = header.toLowerCase(Locale.US);
+                if (lowerCaseHeader.startsWith("connection:")) {
+                    String value = lowerCaseHeader.substring("connection:".length()).trim();
+                    keepAlive = value.equals("keep-alive") || (keepAlive && !value.equals("close"));
+                }
+                header = reader.readLine();
             }
+            return keepAlive;
         }
 
         protected Response getResponse(String request) {
+            requestCount.incrementAndGet();
             if (request.startsWith("GET /")) {
                 String path = request.substring(5).split(" ", 2)[0];
                 String[] parts = path.split("/");
@@ -147,10 +296,12 @@ class TileHttpServer {
                         int y = Integer.parseInt(parts[3]);
                         TileSource source = sources.get(key);
                         if (source != null) {
-                            byte[] data = source.getTileBlob(zoom, x, y);
+                            byte[] data = getTile(key, source, zoom, x, y);
                             if (data != null) {
                                 return new Response(data, source.getContentType(), source.getContentEncoding());
                             }
+                            missingTileCount.incrementAndGet();
+                            return null;
                         }
                     } catch (NumberFormatException e) {
                         Timber.w(e, "Bad request %s", request);
@@ -161,26 +312,62 @@ class TileHttpServer {
             return null;
         }
 
-        protected void sendResponse(Socket connection, Response response) {
-            String headers = String.format(
-                Locale.US,
-                "HTTP/1.0 200\r\n" +
-                    "Content-Type: %s\r\n" +
-                    "Content-Encoding: %s\r\n" +
-                    "Content-Length: %d\r\n" +
-                    "\r\n",
-                response.contentType,
-                response.contentEncoding,
-                response.data.length
-            );
-
-            try (OutputStream output = connection.getOutputStream()) {
-                output.write(headers.getBytes());
+        private byte[] getTile(String key, TileSource source, int zoom, int x, int y) {
+            String cacheKey = key + "/" + zoom + "/" + x + "/" + y;
+            byte[] data = cache.get(cacheKey);
+            if (data != null) {
+                cacheHitCount.incrementAndGet();
+                return data;
+            }
+
+            data = source.getTileBlob(zoom, x, y);
+            if (data != null) {
+                cache.put(cacheKey, data);
+            }
+            return data;
+        }
+
+        /** Sends the response, or a 404 with no body if there is no response. */
+        protected void sendResponse(OutputStream output, Response response, boolean keepAlive) throws IOException {
+            String headers;
+            if (response != null) {
+                headers = String.format(
+                    Locale.US,
+                    "HTTP/1.1 200 OK\r\n" +
+                        "Content-Type: %s\r\n" +
+                        "Content-Encoding: %s\r\n" +
+                        "Content-Length: %d\r\n" +
+                        "Connection: %s\r\n" +
+                        "\r\n",
+                    response.contentType,
+                    response.contentEncoding,
+                    response.data.length,
+                    keepAlive ? "keep-alive" : "close"
+                );
+            } else {
+                headers = String.format(
+                    Locale.US,
+                    "HTTP/1.1 404 Not Found\r\n" +
+                        "Content-Length: 0\r\n" +
+                        "Connection: %s\r\n" +
+                        "\r\n",
+                    keepAlive ? "keep-alive" : "close"
+                );
+            }
+
+            output.write(headers.getBytes("US-ASCII"));
+            if (response != null) {
                 output.write(response.data);
-                output.flush();
-            } catch (IOException e) {
-                Timber.e(e, "Unable to write response to socket");
             }
+            output.flush();
+        }
+    }
+
+    private void recordLatency(long nanos) {
+        totalLatencyNanos.addAndGet(nanos);
+        long max = maxLatencyNanos.get();
+        while (nanos > max && !maxLatencyNanos.compareAndSet(max, nanos)) {
+            max = maxLatencyNanos.get();
         }
     }
 
@@ -195,4 +382,90 @@ class TileHttpServer {
             this.contentEncoding = contentEncoding;
         }
     }
+
+    /** Counters for the requests a TileHttpServer has served. */
+    public static class Metrics {
+        public final long connections;
+        public final long requests;
+        public final long cacheHits;
+        public final long missingTiles;
+        private final long totalLatencyNanos;
+        private final long maxLatencyNanos;
+
+        Metrics(long connections, long requests, long cacheHits, long missingTiles,
+            long totalLatencyNanos, long maxLatencyNanos) {
+            this.connections = connections;
+            this.requests = requests;
+            this.cacheHits = cacheHits;
+            this.missingTiles = missingTiles;
+            this.totalLatencyNanos = totalLatencyNanos;
+            this.maxLatencyNanos = maxLatencyNanos;
+        }
+
+        /** The fraction of requests that were served from the tile cache. */
+        public double getCacheHitRate() {
+            return requests == 0 ? 0 : (double) cacheHits / requests;
+        }
+
+        public double getAverageLatencyMillis() {
+            return requests == 0 ? 0 : totalLatencyNanos / 1e6 / requests;
+        }
+
+        public double getMaxLatencyMillis() {
+            return maxLatencyNanos / 1e6;
+        }
+
+        @Override public String toString() {
+            return String.format(Locale.US,
+                "%d connections, %d requests, %.1f%% cache hits, %d missing tiles, %.2f ms average, %.2f ms max",
+                connections, requests, getCacheHitRate() * 100, missingTiles,
+                getAverageLatencyMillis(), getMaxLatencyMillis());
+        }
+    }
+
+    /**
+     * A least-recently-used cache of tile data that holds at most a fixed number
+     * of bytes.  Tiles larger than the whole cache are not kept.
+     */
+    static class TileCache {
+        private final long maxBytes;
+        private final LinkedHashMap<String, byte[]> tiles = new LinkedHashMap<>(64, 0.75f, true);
+        private long bytes;
+
+        TileCache(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized byte[] get(String key) {
+            return tiles.get(key);
+        }
+
+        synchronized void put(String key, byte[] data) {
+            if (data.length > maxBytes) {
+                return;
+            }
+
+            byte[] previous = tiles.put(key, data);
+            bytes += data.length - (previous != null ? previous.length : 0);
+
+            Iterator<byte[]> eldest = tiles.values().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                bytes -= eldest.next().length;
+                eldest.remove();
+            }
+        }
+
+        synchronized long getBytes() {
+            return bytes;
+        }
+
+        synchronized int size() {
+            return tiles.size();
+        }
+
+        synchronized void clear() {
+            tiles.clear();
+            bytes = 0;
+        }
+    }
 }
@@ -46,8 +46,10 @@ import org.w3c.dom.Element;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -110,9 +112,14 @@ public class InstanceDiskSynchronizer {
 
                 final boolean instanceSyncFlag = settingsProvider.getGeneralSettings().getBoolean(GeneralKeys.KEY_INSTANCE_SYNC);
 
+                Set<String> recordedInstancePaths = new HashSet<>();
+                for (Instance instance : instancesRepository.getAllByPaths(instancePaths)) {
+                    recordedInstancePaths.add(instance.getInstanceFilePath());
+                }
+
                 int counter = 0;
                 for (String instancePath : instancePaths) {
-                    if (instancesRepository.getOneByPath(instancePath) != null) {
+                    if (recordedInstancePaths.contains(instancePath)) {
                         continue; // Skip instances that are already stored in repo
                     }
 
@@ -13,8 +13,10 @@ import org.odk.collect.android.logic.PropertyManager;
 import org.odk.collect.android.openrosa.OpenRosaHttpInterface;
 import org.odk.collect.android.permissions.PermissionsProvider;
 import org.odk.collect.android.preferences.keys.GeneralKeys;
+import org.odk.collect.android.upload.ConcurrentSubmissionRunner;
 import org.odk.collect.android.upload.InstanceServerUploader;
 import org.odk.collect.android.upload.InstanceUploader;
+import org.odk.collect.android.upload.SubmissionResult;
 import org.odk.collect.android.upload.UploadException;
 import org.odk.collect.android.utilities.FormsRepositoryProvider;
 import org.odk.collect.android.utilities.InstanceUploaderUtils;
@@ -31,6 +33,7 @@ import java.io.ByteArrayInputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import timber.log.Timber;
 
@@ -85,56 +88,80 @@ public class InstanceSubmitter {
             }
         } else {
             OpenRosaHttpInterface httpInterface = Collect.getInstance().getComponent().openRosaHttpInterface();
-            uploader = new InstanceServerUploader(httpInterface, new WebCredentialsUtils(generalSettings), new HashMap<>(), generalSettings);
+            uploader = new InstanceServerUploader(httpInterface, new WebCredentialsUtils(generalSettings), new ConcurrentHashMap<>(), generalSettings);
             deviceId = new PropertyManager().getSingularProperty(PropertyManager.PROPMGR_DEVICE_ID);
         }
 
-        for (Instance instance : toUpload) {
-            try {
-                String destinationUrl;
-                if (protocol.equals(GeneralKeys.PROTOCOL_GOOGLE_SHEETS)) {
-                    destinationUrl = uploader.getUrlToSubmitTo(instance, null, null, generalSettings.getString(KEY_GOOGLE_SHEETS_URL));
-
-                    if (!InstanceUploaderUtils.doesUrlRefersToGoogleSheetsFile(destinationUrl)) {
-                        anyFailure = true;
-                        resultMessagesByInstanceId.put(instance.getDbId().toString(), SPREADSHEET_UPLOADED_TO_GOOGLE_DRIVE);
-                        continue;
-                    }
-                } else {
-                    destinationUrl = uploader.getUrlToSubmitTo(instance, deviceId, null, null);
-                }
+        InstanceUploader finalUploader = uploader;
+        String finalDeviceId = deviceId;
+        ConcurrentSubmissionRunner runner = protocol.equals(GeneralKeys.PROTOCOL_GOOGLE_SHEETS)
+                ? new ConcurrentSubmissionRunner(1, 1)
+                : new ConcurrentSubmissionRunner(generalSettings.getInt(GeneralKeys.KEY_MAX_CONCURRENT_SUBMISSIONS),
+                generalSettings.getInt(GeneralKeys.KEY_MAX_CONCURRENT_SUBMISSIONS_PER_SERVER));
+
+        List<SubmissionResult> results = runner.run(toUpload,
+                instance -> ConcurrentSubmissionRunner.getServer(finalUploader.getUrlToSubmitTo(instance, finalDeviceId, null, null)),
+                instance -> submitInstance(finalUploader, instance, protocol, finalDeviceId),
+                (finishedCount, total) -> { },
+                () -> false);
+
+        for (int i = 0; i < toUpload.size(); i++) {
+            Instance instance = toUpload.get(i);
+            SubmissionResult result = results.get(i);
+
+            resultMessagesByInstanceId.put(instance.getDbId().toString(), result.getMessage());
+            if (!result.isSucceeded()) {
+                anyFailure = true;
+                continue;
+            }
 
-                String customMessage = uploader.uploadOneSubmission(instance, destinationUrl);
-                resultMessagesByInstanceId.put(instance.getDbId().toString(), customMessage != null ? customMessage : TranslationHandler.getString(Collect.getInstance(), R.string.success));
-
-                // If the submission was successful, delete the instance if either the app-level
-                // delete preference is set or the form definition requests auto-deletion.
-                // TODO: this could take some time so might be better to do in a separate process,
-                // perhaps another worker. It also feels like this could fail and if so should be
-                // communicated to the user. Maybe successful delete should also be communicated?
-                if (InstanceUploaderUtils.shouldFormBeDeleted(formsRepository, instance.getFormId(), instance.getFormVersion(),
-                        generalSettings.getBoolean(GeneralKeys.KEY_DELETE_AFTER_SEND))) {
-                    new InstanceDeleter(new InstancesRepositoryProvider(Collect.getInstance()).get(), new FormsRepositoryProvider(Collect.getInstance()).get()).delete(instance.getDbId());
-                }
+            // If the submission was successful, delete the instance if either the app-level
+            // delete preference is set or the form definition requests auto-deletion.
+            // TODO: this could take some time so might be better to do in a separate process,
+            // perhaps another worker. It also feels like this could fail and if so should be
+            // communicated to the user. Maybe successful delete should also be communicated?
+            if (InstanceUploaderUtils.shouldFormBeDeleted(formsRepository, instance.getFormId(), instance.getFormVersion(),
+                    generalSettings.getBoolean(GeneralKeys.KEY_DELETE_AFTER_SEND))) {
+                new InstanceDeleter(new InstancesRepositoryProvider(Collect.getInstance()).get(), new FormsRepositoryProvider(Collect.getInstance()).get()).delete(instance.getDbId());
+            }
 
-                String action = protocol.equals(GeneralKeys.PROTOCOL_GOOGLE_SHEETS) ?
-                        "HTTP-Sheets auto" : "HTTP auto";
-                String label = Collect.getFormIdentifierHash(instance.getFormId(), instance.getFormVersion());
-                analytics.logEvent(SUBMISSION, action, label);
+            String action = protocol.equals(GeneralKeys.PROTOCOL_GOOGLE_SHEETS) ?
+                    "HTTP-Sheets auto" : "HTTP auto";
+            String label = Collect.getFormIdentifierHash(instance.getFormId(), instance.getFormVersion());
+            analytics.logEvent(SUBMISSION, action, label);
 
-                String submissionEndpoint = generalSettings.getString(GeneralKeys.KEY_SUBMISSION_URL);
-                if (!submissionEndpoint.equals(TranslationHandler.getString(Collect.getInstance(), R.string.default_odk_submission))) {
-                    String submissionEndpointHash = Md5.getMd5Hash(new ByteArrayInputStream(submissionEndpoint.getBytes()));
-                    analytics.logEvent(CUSTOM_ENDPOINT_SUB, submissionEndpointHash);
-                }
-            } catch (UploadException e) {
-                Timber.d(e);
-                anyFailure = true;
-                resultMessagesByInstanceId.put(instance.getDbId().toString(),
-                        e.getDisplayMessage());
+            String submissionEndpoint = generalSettings.getString(GeneralKeys.KEY_SUBMISSION_URL);
+            if (!submissionEndpoint.equals(TranslationHandler.getString(Collect.getInstance(), R.string.default_odk_submission))) {
+                String submissionEndpointHash = Md5.getMd5Hash(new ByteArrayInputStream(submissionEndpoint.getBytes()));
+                analytics.logEvent(CUSTOM_ENDPOINT_SUB, submissionEndpointHash);
             }
         }
 
         return new Pair<>(anyFailure, InstanceUploaderUtils.getUploadResultMessage(instancesRepository, Collect.getInstance(), resultMessagesByInstanceId));
     }
+
+    /**
+     * Uploads one instance. Runs on a worker thread of the {@link ConcurrentSubmissionRunner} so
+     * everything that isn't the upload itself happens when the results are aggregated.
+     */
+    private SubmissionResult submitInstance(InstanceUploader uploader, Instance instance, String protocol, String deviceId) {
+        try {
+            String destinationUrl;
+            if (protocol.equals(GeneralKeys.PROTOCOL_GOOGLE_SHEETS)) {
+                destinationUrl = uploader.getUrlToSubmitTo(instance, null, null, generalSettings.getString(KEY_GOOGLE_SHEETS_URL));
+
+                if (!InstanceUploaderUtils.doesUrlRefersToGoogleSheetsFile(destinationUrl)) {
+                    return SubmissionResult.failure(SPREADSHEET_UPLOADED_TO_GOOGLE_DRIVE);
+                }
+            } else {
+                destinationUrl = uploader.getUrlToSubmitTo(instance, deviceId, null, null);
+            }
+
+            String customMessage = uploader.uploadOneSubmission(instance, destinationUrl);
+            return SubmissionResult.success(customMessage != null ? customMessage : TranslationHandler.getString(Collect.getInstance(), R.string.success));
+        } catch (UploadException e) {
+            Timber.d(e);
+            return SubmissionResult.failure(e.getDisplayMessage());
+        }
+    }
 }
@@ -44,8 +44,8 @@ import org.javarosa.xpath.XPathParseTool;
 import org.javarosa.xpath.expr.XPathExpression;
 import org.odk.collect.android.exception.JavaRosaException;
 import org.odk.collect.android.external.ExternalDataUtil;
-import org.odk.collect.android.formentry.audit.AsyncTaskAuditEventWriter;
 import org.odk.collect.android.formentry.audit.AuditConfig;
+import org.odk.collect.android.formentry.audit.AuditEventFileWriter;
 import org.odk.collect.android.formentry.audit.AuditEventLogger;
 import org.odk.collect.android.utilities.Appearances;
 import org.odk.collect.android.utilities.FileUtils;
@@ -120,8 +120,16 @@ public class FormController {
     @Nullable
     private File instanceFile;
     private final FormEntryController formEntryController;
+    private final FormIndexLookup formIndexLookup = new FormIndexLookup(this);
     private FormIndex indexWaitingForData;
 
+    /**
+     * Incremented whenever an answer, a repeat instance or the language changes. Saving an answer
+     * that's the same as the one already in the instance (which happens on every swipe) doesn't
+     * count as a change.
+     */
+    private int revision;
+
     public FormController(File mediaFolder, FormEntryController fec, File instanceFile) {
         this.mediaFolder = mediaFolder;
         formEntryController = fec;
@@ -163,12 +171,20 @@ public class FormController {
         return indexWaitingForData;
     }
 
+    /**
+     * Returns a number that changes whenever an answer, a repeat instance or the language of the
+     * form changes, so that anything derived from the form's contents can tell it is out of date.
+     */
+    public int getRevision() {
+        return revision;
+    }
+
     public AuditEventLogger getAuditEventLogger() {
         if (auditEventLogger == null) {
             AuditConfig auditConfig = getSubmissionMetadata().auditConfig;
 
             if (auditConfig != null) {
-                auditEventLogger = new AuditEventLogger(auditConfig, new AsyncTaskAuditEventWriter(new File(instanceFile.getParentFile().getPath() + File.separator + AUDIT_FILE_NAME), auditConfig.isLocationEnabled(), auditConfig.isTrackingChangesEnabled(), auditConfig.isIdentifyUserEnabled(), auditConfig.isTrackChangesReasonEnabled()), this);
+                auditEventLogger = new AuditEventLogger(auditConfig, new AuditEventFileWriter(new File(instanceFile.getParentFile().getPath() + File.separator + AUDIT_FILE_NAME), auditConfig.isLocationEnabled(), auditConfig.isTrackingChangesEnabled(), auditConfig.isIdentifyUserEnabled(), auditConfig.isTrackChangesReasonEnabled()), this);
             } else {
                 auditEventLogger = new AuditEventLogger(null, null, this);
             }
@@ -224,28 +240,14 @@ public class FormController {
                 Timber.e("Unexpected string from XPath");
                 return null;
             default:
-                FormIndex returned = null;
-                FormIndex saved = getFormIndex();
-                // the only way I know how to do this is to step through the entire form
-                // until the XPath of a form entry matches that of the supplied XPath
-                try {
-                    jumpToIndex(FormIndex.createBeginningOfFormIndex());
-                    int event = stepToNextEvent(true);
-                    while (event != FormEntryController.EVENT_END_OF_FORM) {
-                        String candidateXPath = getXPath(getFormIndex());
-                        if (candidateXPath.equals(xpath)) {
-                            returned = getFormIndex();
-                            break;
-                        }
-                        event = stepToNextEvent(true);
-                    }
-                } finally {
-                    jumpToIndex(saved);
-                }
-                return returned;
+                return formIndexLookup.find(xpath);
         }
     }
 
+    boolean isIndexRelevant(FormIndex index) {
+        return formEntryController.getModel().isIndexRelevant(index);
+    }
+
     /**
      * returns the event for the current FormIndex.
      */
@@ -477,6 +479,9 @@ public class FormController {
      */
     public int answerQuestion(FormIndex index, IAnswerData data) throws JavaRosaException {
         try {
+            if (isAnswerChanged(index, data)) {
+                revision++;
+            }
             return formEntryController.answerQuestion(index, data, true);
         } catch (Exception e) {
             throw new JavaRosaException(e);
@@ -513,6 +518,9 @@ public class FormController {
      */
     public boolean saveAnswer(FormIndex index, IAnswerData data) throws JavaRosaException {
         try {
+            if (isAnswerChanged(index, data)) {
+                revision++;
+            }
             return formEntryController.saveAnswer(index, data, true);
         } catch (Exception e) {
             String dataType = data != null ? data.getClass().toString() : null;
@@ -524,6 +532,37 @@ public class FormController {
         }
     }
 
+    /**
+     * Sets the value of a node in the main instance without checking its constraints, like for a
+     * question that is being answered in the background rather than on the current screen.
+     */
+    public void setValue(TreeReference reference, IAnswerData data) {
+        if (isValueChanged(getFormDef().getMainInstance().resolveReference(reference), data)) {
+            revision++;
+        }
+        getFormDef().setValue(data, reference, false);
+    }
+
+    private boolean isAnswerChanged(FormIndex index, IAnswerData data) {
+        TreeElement element = index != null && index.getReference() != null
+                ? getFormDef().getMainInstance().resolveReference(index.getReference())
+                : null;
+        return isValueChanged(element, data);
+    }
+
+    private static boolean isValueChanged(@Nullable TreeElement element, IAnswerData data) {
+        if (element == null) {
+            return true;
+        }
+
+        IAnswerData value = element.getValue();
+        if (value == null || data == null) {
+            return value != data;
+        }
+        return !value.getClass().equals(data.getClass())
+                || !value.uncast().getString().equals(data.uncast().getString());
+    }
+
     /**
      * Navigates forward in the form.
      *
@@ -554,6 +593,21 @@ public class FormController {
         return stepToNextEvent(STEP_OVER_GROUP);
     }
 
+    /**
+     * Steps to the next relevant event after the group or repeat instance at the current index
+     * without visiting any of the events inside it. For a repeat instance, that is the next
+     * instance or the prompt to add one.
+     */
+    public int stepOverChildren() {
+        FormEntryModel model = formEntryController.getModel();
+        FormIndex next = model.incrementIndex(getFormIndex(), false);
+        int event = jumpToIndex(next);
+        if (event == FormEntryController.EVENT_END_OF_FORM || model.isIndexRelevant(next)) {
+            return event;
+        }
+        return formEntryController.stepToNextEvent();
+    }
+
     /**
      * Move the current form index to the index of the previous question in the form.
      * Step backward out of repeats and groups as needed. If the resulting question
@@ -877,6 +931,8 @@ public class FormController {
      * Creates a new repeated instance of the group referenced by the current FormIndex.
      */
     public void newRepeat() {
+        formIndexLookup.onRepeatChanged(getFormIndex());
+        revision++;
         formEntryController.newRepeat();
     }
 
@@ -887,6 +943,8 @@ public class FormController {
      * (2) > group2 (3) and you call deleteRepeat, it will delete the 3rd instance of group2.
      */
     public void deleteRepeat() {
+        formIndexLookup.onRepeatChanged(getRepeatGroupIndex(getFormIndex(), getFormDef()));
+        revision++;
         FormIndex fi = formEntryController.deleteRepeat();
         formEntryController.jumpToIndex(fi);
     }
@@ -895,6 +953,7 @@ public class FormController {
      * Sets the current language.
      */
     public void setLanguage(String language) {
+        revision++;
         formEntryController.setLanguage(language);
     }
 
@@ -0,0 +1,311 @@
+package org.odk.collect.android.javarosawrapper;
+
+import androidx.annotation.Nullable;
+
+import org.javarosa.core.model.FormDef;
+import org.javarosa.core.model.FormIndex;
+import org.javarosa.core.model.GroupDef;
+import org.javarosa.core.model.IDataReference;
+import org.javarosa.core.model.IFormElement;
+import org.javarosa.core.model.instance.TreeReference;
+import org.javarosa.form.api.FormEntryController;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import timber.log.Timber;
+
+/**
+ * Finds the {@link FormIndex} for an xpath created by {@link FormController#getXPath(FormIndex)}.
+ * <p>
+ * The index is first resolved from the reference in the xpath by matching it against the binds in
+ * the form definition, which doesn't need any events to be stepped through. If that doesn't give
+ * the index (for example because the form uses a structure the resolution doesn't understand),
+ * the xpaths of all events are collected into a map by stepping through the form once. When a
+ * repeat instance is added or deleted, only the events in that repeat are collected again.
+ */
+class FormIndexLookup {
+
+    private final FormController formController;
+
+    @Nullable
+    private Map<String, FormIndex> indexesByXPath;
+
+    /**
+     * Repeats that have changed since their events were collected, mapped to the index of their
+     * first instance. The repeat references have the multiplicity of the repeat level unbound.
+     */
+    private final Map<TreeReference, FormIndex> changedRepeats = new LinkedHashMap<>();
+
+    FormIndexLookup(FormController formController) {
+        this.formController = formController;
+    }
+
+    @Nullable
+    FormIndex find(String xpath) {
+        FormIndex index = resolve(xpath);
+        if (index != null) {
+            return index;
+        }
+
+        boolean rebuilt = false;
+        if (indexesByXPath == null) {
+            collectAllEvents();
+            rebuilt = true;
+        } else {
+            collectChangedRepeats();
+        }
+
+        index = indexesByXPath.get(xpath);
+        if (index != null && isCurrent(index, xpath)) {
+            return index;
+        }
+
+        // Relevance or repeat counts may have changed in ways that aren't tracked
+        if (!rebuilt) {
+            collectAllEvents();
+            index = indexesByXPath.get(xpath);
+        }
+        return index;
+    }
+
+    /**
+     * Records that an instance of the repeat containing the given index is about to be added or
+     * deleted.
+     */
+    void onRepeatChanged(@Nullable FormIndex repeatIndex) {
+        if (indexesByXPath == null) {
+            return;
+        }
+
+        if (repeatIndex == null || repeatIndex.getReference() == null) {
+            indexesByXPath = null;
+            return;
+        }
+
+        TreeReference repeat = repeatIndex.getReference().clone();
+        repeat.setMultiplicity(repeat.size() - 1, TreeReference.INDEX_UNBOUND);
+        if (!changedRepeats.containsKey(repeat)) {
+            try {
+                changedRepeats.put(repeat, getFirstInstanceIndex(repeatIndex));
+            } catch (RuntimeException e) {
+                Timber.d(e, "Could not find first instance of %s", repeat);
+                indexesByXPath = null;
+            }
+        }
+    }
+
+    /**
+     * Builds the index for the reference in the xpath from the form definition, and returns it if
+     * it refers to a relevant event of the same type.
+     */
+    @Nullable
+    private FormIndex resolve(String xpath) {
+        int separator = xpath.indexOf('.');
+        if (separator == -1) {
+            return null;
+        }
+
+        List<String> names = new ArrayList<>();
+        List<Integer> multiplicities = new ArrayList<>();
+        if (!parseReference(xpath.substring(separator + 1), names, multiplicities)) {
+            return null;
+        }
+
+        List<Integer> indexes = new ArrayList<>();
+        List<Integer> elementMultiplicities = new ArrayList<>();
+        List<IFormElement> elements = new ArrayList<>();
+        FormDef formDef = formController.getFormDef();
+        if (!findElement(formDef, names, multiplicities, indexes, elementMultiplicities, elements)) {
+            return null;
+        }
+
+        try {
+            FormIndex index = formDef.buildIndex(indexes, elementMultiplicities, elements);
+            return isCurrent(index, xpath) ? index : null;
+        } catch (RuntimeException e) {
+            Timber.d(e, "Could not resolve %s", xpath);
+            return null;
+        }
+    }
+
+    /**
+     * Parses a reference in the format of {@link TreeReference#toString()} such as
+     * /data/repeat[2]/question. Levels without a position have multiplicity 0.
+     */
+    private static boolean parseReference(String reference, List<String> names, List<Integer> multiplicities) {
+        if (!reference.startsWith("/")) {
+            return false;
+        }
+
+        for (String step : reference.substring(1).split("/")) {
+            int bracket = step.indexOf('[');
+            if (bracket == -1) {
+                names.add(step);
+                multiplicities.add(0);
+            } else if (step.endsWith("]")) {
+                try {
+                    int position = Integer.parseInt(step.substring(bracket + 1, step.length() - 1));
+                    names.add(step.substring(0, bracket));
+                    multiplicities.add(position - 1);
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            } else {
+                return false;
+            }
+        }
+        return !names.isEmpty();
+    }
+
+    /**
+     * Searches the children of the given element for the one bound to the reference with the given
+     * names, filling in the path to it in the format used by {@link FormDef#buildIndex}.
+     */
+    private static boolean findElement(IFormElement parent, List<String> names, List<Integer> multiplicities,
+                                       List<Integer> indexes, List<Integer> elementMultiplicities, List<IFormElement> elements) {
+        List<IFormElement> children = parent.getChildren();
+        if (children == null) {
+            return false;
+        }
+
+        for (int i = 0; i < children.size(); i++) {
+            IFormElement child = children.get(i);
+            TreeReference ref = getReference(child);
+            int matchingLevels = ref == null ? 0 : countMatchingLevels(ref, names);
+            if (ref != null && matchingLevels < ref.size()) {
+                continue;
+            }
+
+            boolean isRepeat = child instanceof GroupDef && ((GroupDef) child).getRepeat();
+            indexes.add(i);
+            elementMultiplicities.add(isRepeat && ref != null ? multiplicities.get(ref.size() - 1) : 0);
+            elements.add(child);
+
+            if (ref != null && ref.size() == names.size()) {
+                return true;
+            }
+
+            if (child instanceof GroupDef && findElement(child, names, multiplicities, indexes, elementMultiplicities, elements)) {
+                return true;
+            }
+
+            indexes.remove(indexes.size() - 1);
+            elementMultiplicities.remove(elementMultiplicities.size() - 1);
+            elements.remove(elements.size() - 1);
+        }
+        return false;
+    }
+
+    @Nullable
+    private static TreeReference getReference(IFormElement element) {
+        IDataReference bind = element.getBind();
+        return bind != null && bind.getReference() instanceof TreeReference ? (TreeReference) bind.getReference() : null;
+    }
+
+    private static int countMatchingLevels(TreeReference ref, List<String> names) {
+        if (ref.size() > names.size()) {
+            return 0;
+        }
+
+        for (int level = 0; level < ref.size(); level++) {
+            if (!names.get(level).equals(ref.getName(level))) {
+                return level;
+            }
+        }
+        return ref.size();
+    }
+
+    private boolean isCurrent(FormIndex index, String xpath) {
+        try {
+            return xpath.equals(formController.getXPath(index)) && formController.isIndexRelevant(index);
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private void collectAllEvents() {
+        indexesByXPath = new HashMap<>();
+        changedRepeats.clear();
+        collectEvents(FormIndex.createBeginningOfFormIndex(), null);
+    }
+
+    private void collectChangedRepeats() {
+        try {
+            Iterator<Map.Entry<TreeReference, FormIndex>> iterator = changedRepeats.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<TreeReference, FormIndex> changedRepeat = iterator.next();
+                iterator.remove();
+
+                Iterator<FormIndex> indexes = indexesByXPath.values().iterator();
+                while (indexes.hasNext()) {
+                    if (isInRepeat(indexes.next().getReference(), changedRepeat.getKey())) {
+                        indexes.remove();
+                    }
+                }
+                collectEvents(changedRepeat.getValue(), changedRepeat.getKey());
+            }
+        } catch (RuntimeException e) {
+            // An enclosing repeat instance may have been deleted as well
+            Timber.d(e, "Could not collect events for changed repeats");
+            collectAllEvents();
+        }
+    }
+
+    /**
+     * Steps through the form from the given index and records the xpath of each event, until the
+     * end of the form or, if a repeat is given, the first event that isn't in that repeat.
+     */
+    private void collectEvents(FormIndex start, @Nullable TreeReference repeat) {
+        FormIndex saved = formController.getFormIndex();
+        try {
+            int event = formController.jumpToIndex(start);
+            while (event != FormEntryController.EVENT_END_OF_FORM) {
+                FormIndex index = formController.getFormIndex();
+                if (repeat != null && !isInRepeat(index.getReference(), repeat)) {
+                    break;
+                }
+
+                indexesByXPath.put(formController.getXPath(index), index);
+                event = formController.stepToNextEvent(FormController.STEP_INTO_GROUP);
+            }
+        } finally {
+            formController.jumpToIndex(saved);
+        }
+    }
+
+    /**
+     * Returns whether the reference is in any instance of the given repeat, whose own
+     * multiplicity is unbound.
+     */
+    private static boolean isInRepeat(@Nullable TreeReference ref, TreeReference repeat) {
+        if (ref == null || ref.size() < repeat.size()) {
+            return false;
+        }
+
+        for (int level = 0; level < repeat.size(); level++) {
+            if (!repeat.getName(level).equals(ref.getName(level))) {
+                return false;
+            }
+
+            if (level < repeat.size() - 1 && repeat.getMultiplicity(level) != ref.getMultiplicity(level)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private FormIndex getFirstInstanceIndex(FormIndex repeatIndex) {
+        List<Integer> indexes = new ArrayList<>();
+        List<Integer> multiplicities = new ArrayList<>();
+        List<IFormElement> elements = new ArrayList<>();
+        FormDef formDef = formController.getFormDef();
+        formDef.collapseIndex(repeatIndex, indexes, multiplicities, elements);
+        multiplicities.set(multiplicities.size() - 1, 0);
+        return formDef.buildIndex(indexes, multiplicities, elements);
+    }
+}
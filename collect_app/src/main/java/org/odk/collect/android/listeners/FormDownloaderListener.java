@@ -20,5 +20,7 @@ public interface FormDownloaderListener {
 
     void progressUpdate(String currentFile, String progress, String total);
 
+    void bytesUpdate(long bytes, long bytesPerSecond);
+
     boolean isTaskCancelled();
 }
@@ -14,8 +14,7 @@
 
 package org.odk.collect.android.logic;
 
-import android.graphics.drawable.Drawable;
-
+import androidx.annotation.DrawableRes;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
@@ -51,13 +50,14 @@ public class HierarchyElement {
     private final String secondaryText;
 
     /**
-     * An optional icon.
+     * An optional icon, or 0 if there isn't one. Kept as a resource rather than a drawable so
+     * that elements can outlive the activity that displays them.
      */
-    @Nullable
-    private Drawable icon;
+    @DrawableRes
+    private int icon;
 
     public HierarchyElement(@NonNull String primaryText, @Nullable String secondaryText,
-                            @Nullable Drawable icon, @NonNull Type type, @NonNull FormIndex formIndex) {
+                            @DrawableRes int icon, @NonNull Type type, @NonNull FormIndex formIndex) {
         this.primaryText = primaryText;
         this.secondaryText = secondaryText;
         this.icon = icon;
@@ -75,12 +75,12 @@ public class HierarchyElement {
         return secondaryText;
     }
 
-    @Nullable
-    public Drawable getIcon() {
+    @DrawableRes
+    public int getIcon() {
         return icon;
     }
 
-    public void setIcon(@Nullable Drawable icon) {
+    public void setIcon(@DrawableRes int icon) {
         this.icon = icon;
     }
 
@@ -0,0 +1,61 @@
+package org.odk.collect.android.logic;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.odk.collect.android.javarosawrapper.FormController;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Keeps the elements of the hierarchy screens that have been built for a form session, so that
+ * opening the hierarchy again or navigating back to a screen doesn't step through the form again.
+ * Screens are thrown away as soon as the {@link FormController#getRevision() revision} of the form
+ * changes, because a changed answer can change relevance, calculations and repeat counts anywhere
+ * in the form.
+ */
+public final class HierarchyScreenCache {
+
+    private static final Map<FormController, HierarchyScreenCache> CACHES = new WeakHashMap<>();
+
+    private final Map<String, List<HierarchyElement>> screens = new HashMap<>();
+    private int revision;
+
+    private HierarchyScreenCache(int revision) {
+        this.revision = revision;
+    }
+
+    @NonNull
+    public static synchronized HierarchyScreenCache forFormController(@NonNull FormController formController) {
+        HierarchyScreenCache cache = CACHES.get(formController);
+        if (cache == null) {
+            cache = new HierarchyScreenCache(formController.getRevision());
+            CACHES.put(formController, cache);
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the elements of the given screen if they were built at the given revision, or null.
+     */
+    @Nullable
+    public synchronized List<HierarchyElement> get(String screenKey, int revision) {
+        if (revision != this.revision) {
+            screens.clear();
+            this.revision = revision;
+            return null;
+        }
+        return screens.get(screenKey);
+    }
+
+    public synchronized void put(String screenKey, int revision, List<HierarchyElement> elements) {
+        if (revision != this.revision) {
+            screens.clear();
+            this.revision = revision;
+        }
+        screens.put(screenKey, elements);
+    }
+}
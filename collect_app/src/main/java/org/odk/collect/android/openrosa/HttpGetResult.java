@@ -17,7 +17,9 @@
 package org.odk.collect.android.openrosa;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.Map;
 
@@ -31,12 +33,26 @@ public class HttpGetResult {
     private final InputStream inputStream;
     private final Map<String, String> headers;
     private final String hash;
+    @Nullable
+    private final Md5DigestInputStream digestInputStream;
     private final int statusCode;
 
     public HttpGetResult(InputStream is, @NonNull Map<String, String> headers, String hash, int statusCode) {
         inputStream = is;
         this.headers = headers;
         this.hash = hash;
+        this.digestInputStream = null;
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * For a body that is hashed as it's read rather than up front. See {@link #getHash()}.
+     */
+    public HttpGetResult(Md5DigestInputStream is, @NonNull Map<String, String> headers, int statusCode) {
+        inputStream = is;
+        this.headers = headers;
+        this.hash = null;
+        this.digestInputStream = is;
         this.statusCode = statusCode;
     }
 
@@ -44,8 +60,27 @@ public class HttpGetResult {
         return inputStream;
     }
 
-    public String getHash() {
-        return hash;
+    /**
+     * If the body is hashed as it's read, this should only be called once the body has been
+     * consumed (or the stream closed) as any part of the body that hasn't been read is read here.
+     */
+    public String getHash() throws IOException {
+        return digestInputStream != null ? digestInputStream.getMd5Hash() : hash;
+    }
+
+    /**
+     * @return the value of the response header with the given name, ignoring case, or null if
+     * there isn't one
+     */
+    @Nullable
+    public String getHeader(String name) {
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+
+        return null;
     }
 
     public boolean isOpenRosaResponse() {
@@ -0,0 +1,53 @@
+package org.odk.collect.android.openrosa;
+
+import org.odk.collect.shared.strings.Md5;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes the MD5 hash of a response body while it is being read (by a parser for example) so
+ * that the body doesn't have to be buffered to be hashed. Whatever hasn't been read when the
+ * stream is closed or the hash is asked for is read then, so the hash always covers the whole body.
+ */
+public class Md5DigestInputStream extends DigestInputStream {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private String md5Hash;
+
+    public Md5DigestInputStream(InputStream stream) throws NoSuchAlgorithmException {
+        super(stream, MessageDigest.getInstance("MD5"));
+    }
+
+    /**
+     * @return the MD5 hash of the whole body formatted like {@link Md5#getMd5Hash(InputStream)}
+     */
+    public synchronized String getMd5Hash() throws IOException {
+        if (md5Hash == null) {
+            readToEnd();
+            md5Hash = Md5.toHex(getMessageDigest().digest());
+        }
+
+        return md5Hash;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            getMd5Hash();
+        } finally {
+            super.close();
+        }
+    }
+
+    private void readToEnd() throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        while (read(buffer) != -1) {
+            // Only read to update the digest
+        }
+    }
+}
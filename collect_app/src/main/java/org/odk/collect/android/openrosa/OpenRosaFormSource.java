@@ -1,14 +1,17 @@
 package org.odk.collect.android.openrosa;
 
+import org.apache.commons.io.IOUtils;
 import org.jetbrains.annotations.NotNull;
-import org.odk.collect.android.utilities.DocumentFetchResult;
+import org.jetbrains.annotations.Nullable;
 import org.odk.collect.android.utilities.WebCredentialsUtils;
 import org.odk.collect.forms.FormListItem;
 import org.odk.collect.forms.FormSource;
 import org.odk.collect.forms.FormSourceException;
 import org.odk.collect.forms.ManifestFile;
 import org.odk.collect.forms.MediaFile;
+import org.xmlpull.v1.XmlPullParserException;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.UnknownHostException;
@@ -26,10 +29,23 @@ public class OpenRosaFormSource implements FormSource {
     private final OpenRosaResponseParser openRosaResponseParser;
     private final WebCredentialsUtils webCredentialsUtils;
 
+    @Nullable
+    private final XmlResponseCache manifestCache;
+
     private String serverURL;
     private final String formListPath;
 
     public OpenRosaFormSource(String serverURL, String formListPath, OpenRosaHttpInterface openRosaHttpInterface, WebCredentialsUtils webCredentialsUtils, OpenRosaResponseParser openRosaResponseParser) {
+        this(serverURL, formListPath, openRosaHttpInterface, webCredentialsUtils, openRosaResponseParser, null);
+    }
+
+    /**
+     * @param manifestCache used to request manifests conditionally so unchanged ones aren't
+     *                      downloaded again. Manifests are always downloaded if null.
+     */
+    public OpenRosaFormSource(String serverURL, String formListPath, OpenRosaHttpInterface openRosaHttpInterface, WebCredentialsUtils webCredentialsUtils,
+                              OpenRosaResponseParser openRosaResponseParser, @Nullable XmlResponseCache manifestCache) {
+        this.manifestCache = manifestCache;
         this.openRosaResponseParser = openRosaResponseParser;
         this.webCredentialsUtils = webCredentialsUtils;
         this.openRosaXMLFetcher = new OpenRosaXmlFetcher(openRosaHttpInterface, this.webCredentialsUtils);
@@ -39,7 +55,7 @@ public class OpenRosaFormSource implements FormSource {
 
     @Override
     public List<FormListItem> fetchFormList() throws FormSourceException {
-        DocumentFetchResult result = mapException(() -> openRosaXMLFetcher.getXML(getFormListURL()));
+        XmlFetchResult result = mapException(() -> openRosaXMLFetcher.fetchXML(getFormListURL(), null));
 
         if (result.errorMessage != null) {
             if (result.responseCode == HTTP_UNAUTHORIZED) {
@@ -52,7 +68,12 @@ public class OpenRosaFormSource implements FormSource {
         }
 
         if (result.isOpenRosaResponse) {
-            List<FormListItem> formList = openRosaResponseParser.parseFormList(result.doc);
+            List<FormListItem> formList;
+            try (InputStream inputStream = result.inputStream) {
+                formList = openRosaResponseParser.parseFormList(inputStream);
+            } catch (XmlPullParserException | IOException e) {
+                throw new FormSourceException.FetchError();
+            }
 
             if (formList != null) {
                 return formList;
@@ -60,6 +81,7 @@ public class OpenRosaFormSource implements FormSource {
                 throw new FormSourceException.ParseError(serverURL);
             }
         } else {
+            IOUtils.closeQuietly(result.inputStream);
             throw new FormSourceException.ServerNotOpenRosaError();
         }
     }
@@ -70,7 +92,7 @@ public class OpenRosaFormSource implements FormSource {
             return null;
         }
 
-        DocumentFetchResult result = mapException(() -> openRosaXMLFetcher.getXML(manifestURL));
+        XmlFetchResult result = mapException(() -> openRosaXMLFetcher.fetchXML(manifestURL, manifestCache));
 
         if (result.errorMessage != null) {
             if (result.responseCode != HttpURLConnection.HTTP_OK) {
@@ -81,17 +103,38 @@ public class OpenRosaFormSource implements FormSource {
         }
 
         if (!result.isOpenRosaResponse) {
+            IOUtils.closeQuietly(result.inputStream);
             throw new FormSourceException.ParseError(serverURL);
         }
 
-        List<MediaFile> mediaFiles = openRosaResponseParser.parseManifest(result.doc);
+        List<MediaFile> mediaFiles;
+        String hash;
+        try (InputStream inputStream = result.inputStream) {
+            mediaFiles = openRosaResponseParser.parseManifest(inputStream);
+            // The manifest is hashed as it's parsed so the hash is only known now
+            hash = result.getHash();
+        } catch (XmlPullParserException | IOException e) {
+            removeFromManifestCache(manifestURL);
+            throw new FormSourceException.FetchError();
+        }
+
         if (mediaFiles != null) {
-            return new ManifestFile(result.getHash(), mediaFiles);
+            return new ManifestFile(hash, mediaFiles);
         } else {
+            removeFromManifestCache(manifestURL);
             throw new FormSourceException.ParseError(serverURL);
         }
     }
 
+    /**
+     * Makes sure a manifest that can't be read isn't used again just because it hasn't changed.
+     */
+    private void removeFromManifestCache(String manifestURL) {
+        if (manifestCache != null) {
+            manifestCache.remove(manifestURL);
+        }
+    }
+
     @Override
     @NotNull
     public InputStream fetchForm(String formURL) throws FormSourceException {
@@ -116,6 +159,20 @@ public class OpenRosaFormSource implements FormSource {
         }
     }
 
+    @Override
+    @Nullable
+    public InputStream fetchMediaFile(String mediaFileURL, long offset) throws FormSourceException {
+        HttpGetResult result = mapException(() -> openRosaXMLFetcher.fetchRange(mediaFileURL, offset));
+
+        if (result.getStatusCode() == HttpURLConnection.HTTP_PARTIAL && result.getInputStream() != null) {
+            return result.getInputStream();
+        }
+
+        // The server returned the whole file or an error so the download has to start again
+        IOUtils.closeQuietly(result.getInputStream());
+        return null;
+    }
+
     public void updateUrl(String url) {
         this.serverURL = url;
     }
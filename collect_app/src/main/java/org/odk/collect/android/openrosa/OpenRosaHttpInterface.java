@@ -38,6 +38,32 @@ public interface OpenRosaHttpInterface {
     @NonNull
     HttpGetResult executeGetRequest(@NonNull URI uri, @Nullable String contentType, @Nullable HttpCredentialsInterface credentials) throws Exception;
 
+    /**
+     * Requests the bytes of the resource from the given offset onwards with a Range header.
+     *
+     * @param uri         of the stream
+     * @param offset      of the first byte to request
+     * @param credentials to use for this request
+     * @return HttpGetResult with a status code of 206 if only the requested range was returned,
+     * or 200 if the server ignored the range and returned the whole resource
+     * @throws Exception various Exceptions such as IOException can be thrown
+     */
+    @NonNull
+    HttpGetResult executeRangeGetRequest(@NonNull URI uri, long offset, @Nullable HttpCredentialsInterface credentials) throws Exception;
+
+    /**
+     * Like {@link #executeGetRequest} but asks the server to only return the resource if it has
+     * changed since the response with the given ETag or Last-Modified header was received.
+     *
+     * @param eTag         of the response held by the caller, sent as If-None-Match
+     * @param lastModified of the response held by the caller, sent as If-Modified-Since
+     * @return HttpGetResult with a status code of 304 and no stream if the resource hasn't changed
+     * @throws Exception various Exceptions such as IOException can be thrown
+     */
+    @NonNull
+    HttpGetResult executeConditionalGetRequest(@NonNull URI uri, @Nullable String contentType, @Nullable HttpCredentialsInterface credentials,
+                                               @Nullable String eTag, @Nullable String lastModified) throws Exception;
+
     /**
      * Performs a Http Head request.
      *
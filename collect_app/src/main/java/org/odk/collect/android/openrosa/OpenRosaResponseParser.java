@@ -1,14 +1,16 @@
 package org.odk.collect.android.openrosa;
 
 import org.jetbrains.annotations.Nullable;
-import org.kxml2.kdom.Document;
 import org.odk.collect.forms.FormListItem;
 import org.odk.collect.forms.MediaFile;
+import org.xmlpull.v1.XmlPullParserException;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 public interface OpenRosaResponseParser {
 
-    @Nullable List<FormListItem> parseFormList(Document document);
-    @Nullable List<MediaFile> parseManifest(Document document);
+    @Nullable List<FormListItem> parseFormList(InputStream inputStream) throws XmlPullParserException, IOException;
+    @Nullable List<MediaFile> parseManifest(InputStream inputStream) throws XmlPullParserException, IOException;
 }
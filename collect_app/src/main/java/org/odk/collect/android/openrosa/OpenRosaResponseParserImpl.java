@@ -1,15 +1,25 @@
 package org.odk.collect.android.openrosa;
 
-import org.javarosa.xform.parse.XFormParser;
 import org.jetbrains.annotations.Nullable;
-import org.kxml2.kdom.Document;
-import org.kxml2.kdom.Element;
+import org.kxml2.io.KXmlParser;
 import org.odk.collect.forms.FormListItem;
 import org.odk.collect.forms.MediaFile;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
+/**
+ * Parses OpenRosa form lists and manifests. Responses are read with a pull parser and each form
+ * or media file is created as soon as its element has been read, so large form lists don't have
+ * to be held in memory as a document tree as well.
+ */
 public class OpenRosaResponseParserImpl implements OpenRosaResponseParser {
 
     private static final String NAMESPACE_OPENROSA_ORG_XFORMS_XFORMS_LIST = "http://openrosa.org/xforms/xformsList";
@@ -17,203 +27,241 @@ public class OpenRosaResponseParserImpl implements OpenRosaResponseParser {
 
     @Override
     @Nullable
-    public List<FormListItem> parseFormList(Document document) {
-        // Attempt OpenRosa 1.0 parsing
-        Element xformsElement = document.getRootElement();
+    public List<FormListItem> parseFormList(InputStream inputStream) throws XmlPullParserException, IOException {
+        List<FormListItem> formList = new ArrayList<>();
+        return parseFormList(inputStream, formList::add) ? formList : null;
+    }
 
-        if (!xformsElement.getName().equals("xforms")) {
-            return null;
+    /**
+     * Reads the form list from the stream and passes each form to the consumer as soon as it has
+     * been read.
+     *
+     * @return false if the stream doesn't contain an OpenRosa form list or one of the forms is
+     * missing its id, name or download URL. Forms passed to the consumer before that was found
+     * should be thrown away.
+     */
+    boolean parseFormList(InputStream inputStream, Consumer<FormListItem> consumer) throws XmlPullParserException, IOException {
+        XmlPullParser parser = createParser(inputStream);
+        if (!moveToRootElement(parser) || !parser.getName().equals("xforms") || !isInNamespace(parser, NAMESPACE_OPENROSA_ORG_XFORMS_XFORMS_LIST)) {
+            return false;
         }
-        if (!isXformsListNamespacedElement(xformsElement)) {
-            return null;
-        }
-
-        List<FormListItem> formList = new ArrayList<>();
-        int elements = xformsElement.getChildCount();
 
-        for (int i = 0; i < elements; ++i) {
-            if (xformsElement.getType(i) != Element.ELEMENT) {
-                // e.g., whitespace (text)
-                continue;
-            }
-            Element xformElement = xformsElement.getElement(i);
-            if (!isXformsListNamespacedElement(xformElement)) {
-                // someone else's extension?
-                continue;
-            }
-            String name = xformElement.getName();
-            if (!name.equalsIgnoreCase("xform")) {
+        while (moveToNextChildElement(parser)) {
+            if (!isInNamespace(parser, NAMESPACE_OPENROSA_ORG_XFORMS_XFORMS_LIST) || !parser.getName().equalsIgnoreCase("xform")) {
                 // someone else's extension?
+                skipElement(parser);
                 continue;
             }
 
-            // this is something we know how to interpret
             String formId = null;
             String formName = null;
             String version = null;
-            String majorMinorVersion = null;
-            String description = null;
             String downloadUrl = null;
             String manifestUrl = null;
             String hash = null;
-            // don't process descriptionUrl
-            int fieldCount = xformElement.getChildCount();
-            for (int j = 0; j < fieldCount; ++j) {
-                if (xformElement.getType(j) != Element.ELEMENT) {
-                    // whitespace
-                    continue;
-                }
-                Element child = xformElement.getElement(j);
-                if (!isXformsListNamespacedElement(child)) {
+            // don't process majorMinorVersion, descriptionText or descriptionUrl
+            while (moveToNextChildElement(parser)) {
+                if (!isInNamespace(parser, NAMESPACE_OPENROSA_ORG_XFORMS_XFORMS_LIST)) {
                     // someone else's extension?
+                    skipElement(parser);
                     continue;
                 }
-                String tag = child.getName();
-                switch (tag) {
+
+                switch (parser.getName()) {
                     case "formID":
-                        formId = XFormParser.getXMLText(child, true);
-                        if (formId != null && formId.length() == 0) {
-                            formId = null;
-                        }
+                        formId = readText(parser);
                         break;
                     case "name":
-                        formName = XFormParser.getXMLText(child, true);
-                        if (formName != null && formName.length() == 0) {
-                            formName = null;
-                        }
+                        formName = readText(parser);
                         break;
                     case "version":
-                        version = XFormParser.getXMLText(child, true);
-                        if (version != null && version.trim().isEmpty()) {
-                            version = null;
-                        }
-                        break;
-                    case "majorMinorVersion":
-                        majorMinorVersion = XFormParser.getXMLText(child, true);
-                        if (majorMinorVersion != null && majorMinorVersion.length() == 0) {
-                            majorMinorVersion = null;
-                        }
-                        break;
-                    case "descriptionText":
-                        description = XFormParser.getXMLText(child, true);
-                        if (description != null && description.length() == 0) {
-                            description = null;
-                        }
+                        version = readText(parser);
                         break;
                     case "downloadUrl":
-                        downloadUrl = XFormParser.getXMLText(child, true);
-                        if (downloadUrl != null && downloadUrl.length() == 0) {
-                            downloadUrl = null;
-                        }
+                        downloadUrl = readText(parser);
                         break;
                     case "manifestUrl":
-                        manifestUrl = XFormParser.getXMLText(child, true);
-                        if (manifestUrl != null && manifestUrl.length() == 0) {
-                            manifestUrl = null;
-                        }
+                        manifestUrl = readText(parser);
                         break;
                     case "hash":
-                        hash = XFormParser.getXMLText(child, true);
-                        if (hash != null && hash.length() == 0) {
-                            hash = null;
-                        }
+                        hash = readText(parser);
                         break;
+                    default:
+                        skipElement(parser);
                 }
             }
 
             if (formId == null || downloadUrl == null || formName == null) {
-                formList.clear();
-                return null;
+                return false;
             }
 
-            FormListItem formListItem = new FormListItem(downloadUrl, formId, version, hash, formName, manifestUrl);
-            formList.add(formListItem);
+            consumer.accept(new FormListItem(downloadUrl, formId, version, hash, formName, manifestUrl));
         }
 
-        return formList;
+        return true;
     }
 
+    @Override
     @Nullable
-    public List<MediaFile> parseManifest(Document document) {
-        // Attempt OpenRosa 1.0 parsing
-        Element manifestElement = document.getRootElement();
-
-        if (!manifestElement.getName().equals("manifest")) {
-            return null;
-        }
+    public List<MediaFile> parseManifest(InputStream inputStream) throws XmlPullParserException, IOException {
+        List<MediaFile> files = new ArrayList<>();
+        return parseManifest(inputStream, files::add) ? files : null;
+    }
 
-        if (!isXformsManifestNamespacedElement(manifestElement)) {
-            return null;
+    /**
+     * Reads the manifest from the stream and passes each media file to the consumer as soon as it
+     * has been read.
+     *
+     * @return false if the stream doesn't contain an OpenRosa manifest or one of the media files
+     * is missing its name, hash or download URL. Media files passed to the consumer before that
+     * was found should be thrown away.
+     */
+    boolean parseManifest(InputStream inputStream, Consumer<MediaFile> consumer) throws XmlPullParserException, IOException {
+        XmlPullParser parser = createParser(inputStream);
+        if (!moveToRootElement(parser) || !parser.getName().equals("manifest") || !isInNamespace(parser, NAMESPACE_OPENROSA_ORG_XFORMS_XFORMS_MANIFEST)) {
+            return false;
         }
 
-        int elements = manifestElement.getChildCount();
-        List<MediaFile> files = new ArrayList<>();
-        for (int i = 0; i < elements; ++i) {
-            if (manifestElement.getType(i) != Element.ELEMENT) {
-                // e.g., whitespace (text)
-                continue;
-            }
-            Element mediaFileElement = manifestElement.getElement(i);
-            if (!isXformsManifestNamespacedElement(mediaFileElement)) {
+        while (moveToNextChildElement(parser)) {
+            if (!isInNamespace(parser, NAMESPACE_OPENROSA_ORG_XFORMS_XFORMS_MANIFEST) || !parser.getName().equalsIgnoreCase("mediaFile")) {
                 // someone else's extension?
+                skipElement(parser);
                 continue;
             }
-            String name = mediaFileElement.getName();
-            if (name.equalsIgnoreCase("mediaFile")) {
-                String filename = null;
-                String hash = null;
-                String downloadUrl = null;
-                // don't process descriptionUrl
-                int childCount = mediaFileElement.getChildCount();
-                for (int j = 0; j < childCount; ++j) {
-                    if (mediaFileElement.getType(j) != Element.ELEMENT) {
-                        // e.g., whitespace (text)
-                        continue;
-                    }
-                    Element child = mediaFileElement.getElement(j);
-                    if (!isXformsManifestNamespacedElement(child)) {
-                        // someone else's extension?
-                        continue;
-                    }
-                    String tag = child.getName();
-                    switch (tag) {
-                        case "filename":
-                            filename = XFormParser.getXMLText(child, true);
-                            if (filename != null && filename.length() == 0) {
-                                filename = null;
-                            }
-                            break;
-                        case "hash":
-                            hash = XFormParser.getXMLText(child, true);
-                            if (hash != null && hash.length() == 0) {
-                                hash = null;
-                            }
-                            break;
-                        case "downloadUrl":
-                            downloadUrl = XFormParser.getXMLText(child, true);
-                            if (downloadUrl != null && downloadUrl.length() == 0) {
-                                downloadUrl = null;
-                            }
-                            break;
-                    }
+
+            String filename = null;
+            String hash = null;
+            String downloadUrl = null;
+            // don't process descriptionUrl
+            while (moveToNextChildElement(parser)) {
+                if (!isInNamespace(parser, NAMESPACE_OPENROSA_ORG_XFORMS_XFORMS_MANIFEST)) {
+                    // someone else's extension?
+                    skipElement(parser);
+                    continue;
                 }
 
-                if (filename == null || downloadUrl == null || hash == null) {
-                    return null;
+                switch (parser.getName()) {
+                    case "filename":
+                        filename = readText(parser);
+                        break;
+                    case "hash":
+                        hash = readText(parser);
+                        break;
+                    case "downloadUrl":
+                        downloadUrl = readText(parser);
+                        break;
+                    default:
+                        skipElement(parser);
                 }
+            }
 
-                files.add(new MediaFile(filename, hash, downloadUrl));
+            if (filename == null || downloadUrl == null || hash == null) {
+                return false;
             }
+
+            consumer.accept(new MediaFile(filename, hash, downloadUrl));
         }
 
-        return files;
+        return true;
     }
 
-    private static boolean isXformsListNamespacedElement(Element e) {
-        return e.getNamespace().equalsIgnoreCase(NAMESPACE_OPENROSA_ORG_XFORMS_XFORMS_LIST);
+    private static XmlPullParser createParser(InputStream inputStream) throws XmlPullParserException {
+        KXmlParser parser = new KXmlParser();
+        parser.setInput(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+        return parser;
+    }
+
+    /**
+     * Moves to the start tag of the root element.
+     *
+     * @return false if the document doesn't have one
+     */
+    private static boolean moveToRootElement(XmlPullParser parser) throws XmlPullParserException, IOException {
+        int event = parser.getEventType();
+        while (event != XmlPullParser.START_TAG && event != XmlPullParser.END_DOCUMENT) {
+            event = parser.next();
+        }
+        return event == XmlPullParser.START_TAG;
+    }
+
+    /**
+     * Moves to the start tag of the next child of the current element, skipping text.
+     *
+     * @return false if the end tag of the current element was reached instead
+     */
+    private static boolean moveToNextChildElement(XmlPullParser parser) throws XmlPullParserException, IOException {
+        while (true) {
+            switch (parser.next()) {
+                case XmlPullParser.START_TAG:
+                    return true;
+                case XmlPullParser.END_TAG:
+                    return false;
+                case XmlPullParser.END_DOCUMENT:
+                    throw new XmlPullParserException("Unexpected end of document", parser, null);
+                default:
+                    // e.g., whitespace (text)
+            }
+        }
+    }
+
+    /**
+     * Moves to the end tag of the current element, skipping everything in it.
+     */
+    private static void skipElement(XmlPullParser parser) throws XmlPullParserException, IOException {
+        int depth = 1;
+        while (depth > 0) {
+            switch (parser.next()) {
+                case XmlPullParser.START_TAG:
+                    depth++;
+                    break;
+                case XmlPullParser.END_TAG:
+                    depth--;
+                    break;
+                case XmlPullParser.END_DOCUMENT:
+                    throw new XmlPullParserException("Unexpected end of document", parser, null);
+                default:
+            }
+        }
+    }
+
+    /**
+     * Reads the text at the start of the current element and moves to its end tag. Like
+     * {@link org.javarosa.xform.parse.XFormParser#getXMLText(org.kxml2.kdom.Node, boolean)}
+     * text after a child element is ignored and the text is trimmed.
+     *
+     * @return the text or null if it is empty
+     */
+    @Nullable
+    private static String readText(XmlPullParser parser) throws XmlPullParserException, IOException {
+        StringBuilder text = new StringBuilder();
+        boolean hasChildElement = false;
+        int depth = 1;
+        while (depth > 0) {
+            switch (parser.next()) {
+                case XmlPullParser.TEXT:
+                    if (!hasChildElement) {
+                        text.append(parser.getText());
+                    }
+                    break;
+                case XmlPullParser.START_TAG:
+                    hasChildElement = true;
+                    depth++;
+                    break;
+                case XmlPullParser.END_TAG:
+                    depth--;
+                    break;
+                case XmlPullParser.END_DOCUMENT:
+                    throw new XmlPullParserException("Unexpected end of document", parser, null);
+                default:
+            }
+        }
+
+        String trimmed = text.toString().trim();
+        return trimmed.isEmpty() ? null : trimmed;
     }
 
-    private static boolean isXformsManifestNamespacedElement(Element e) {
-        return e.getNamespace().equalsIgnoreCase(NAMESPACE_OPENROSA_ORG_XFORMS_XFORMS_MANIFEST);
+    private static boolean isInNamespace(XmlPullParser parser, String namespace) {
+        return parser.getNamespace().equalsIgnoreCase(namespace);
     }
 }
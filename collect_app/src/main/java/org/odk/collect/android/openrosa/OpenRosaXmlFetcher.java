@@ -3,14 +3,11 @@ package org.odk.collect.android.openrosa;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import org.kxml2.io.KXmlParser;
-import org.kxml2.kdom.Document;
-import org.odk.collect.android.utilities.DocumentFetchResult;
+import org.apache.commons.io.IOUtils;
 import org.odk.collect.android.utilities.WebCredentialsUtils;
-import org.xmlpull.v1.XmlPullParser;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URI;
@@ -37,43 +34,59 @@ class OpenRosaXmlFetcher {
     }
 
     /**
-     * Gets an XML document for a given url
+     * Gets the XML document at the given url without parsing it, so that it can be read as a
+     * stream. The caller has to close the stream of a successful result.
+     * <p>
+     * If a cache is given, the document is requested conditionally when it is in the cache and
+     * read from there if the server says it hasn't changed. Successful responses are added to the
+     * cache.
      *
      * @param urlString - url of the XML document
-     * @return DocumentFetchResult - an object that contains the results of the "get" operation
+     * @return XmlFetchResult - an object that contains the results of the "get" operation
      */
+    public XmlFetchResult fetchXML(String urlString, @Nullable XmlResponseCache cache) throws Exception {
+        XmlResponseCache.Entry cached = cache != null ? cache.get(urlString) : null;
 
-    @SuppressWarnings("PMD.AvoidRethrowingException")
-    public DocumentFetchResult getXML(String urlString) throws Exception {
-
-        // parse response
-        Document doc;
         HttpGetResult inputStreamResult;
-
-        try {
+        if (cached != null) {
+            URI uri = getUri(urlString);
+            inputStreamResult = httpInterface.executeConditionalGetRequest(uri, HTTP_CONTENT_TYPE_TEXT_XML,
+                    webCredentialsUtils.getCredentials(uri), cached.eTag, cached.lastModified);
+
+            if (inputStreamResult.getStatusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                Timber.i("%s hasn't changed so the cached response is used", urlString);
+                return new XmlFetchResult(new ByteArrayInputStream(cached.body), cached.openRosaResponse, cached.hash);
+            }
+        } else {
             inputStreamResult = fetch(urlString, HTTP_CONTENT_TYPE_TEXT_XML);
+        }
 
-            if (inputStreamResult.getStatusCode() != HttpURLConnection.HTTP_OK) {
-                String error = "getXML failed while accessing "
-                        + urlString + " with status code: " + inputStreamResult.getStatusCode();
-                Timber.e(error);
-                return new DocumentFetchResult(error, inputStreamResult.getStatusCode());
-            }
+        if (inputStreamResult.getStatusCode() != HttpURLConnection.HTTP_OK) {
+            String error = "fetchXML failed while accessing "
+                    + urlString + " with status code: " + inputStreamResult.getStatusCode();
+            Timber.e(error);
+            return new XmlFetchResult(error, inputStreamResult.getStatusCode());
+        }
 
-            try (InputStream resultInputStream = inputStreamResult.getInputStream();
-                 InputStreamReader streamReader = new InputStreamReader(resultInputStream, "UTF-8")) {
+        if (cache == null) {
+            return new XmlFetchResult(inputStreamResult);
+        }
 
-                doc = new Document();
-                KXmlParser parser = new KXmlParser();
-                parser.setInput(streamReader);
-                parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
-                doc.parse(parser);
-            }
-        } catch (Exception e) {
-            throw e;
+        byte[] body;
+        try (InputStream resultInputStream = inputStreamResult.getInputStream()) {
+            body = IOUtils.toByteArray(resultInputStream);
         }
 
-        return new DocumentFetchResult(doc, inputStreamResult.isOpenRosaResponse(), inputStreamResult.getHash());
+        String hash = inputStreamResult.getHash();
+        cache.put(urlString, new XmlResponseCache.Entry(
+                inputStreamResult.getHeader("ETag"),
+                inputStreamResult.getHeader("Last-Modified"),
+                inputStreamResult.isOpenRosaResponse(),
+                hash,
+                body
+        ));
+
+        return new XmlFetchResult(new ByteArrayInputStream(body), inputStreamResult.isOpenRosaResponse(), hash);
     }
 
     /**
@@ -87,6 +100,25 @@ class OpenRosaXmlFetcher {
 
     @NonNull
     public HttpGetResult fetch(@NonNull String downloadUrl, @Nullable final String contentType) throws Exception {
+        URI uri = getUri(downloadUrl);
+        return httpInterface.executeGetRequest(uri, contentType, webCredentialsUtils.getCredentials(uri));
+    }
+
+    /**
+     * Creates a Http connection and input stream for the bytes of the resource from the given
+     * offset onwards.
+     *
+     * @return HttpGetResult - with a status code of 206 if only the requested bytes were returned
+     * @see OpenRosaHttpInterface#executeRangeGetRequest
+     */
+    @NonNull
+    public HttpGetResult fetchRange(@NonNull String downloadUrl, long offset) throws Exception {
+        URI uri = getUri(downloadUrl);
+        return httpInterface.executeRangeGetRequest(uri, offset, webCredentialsUtils.getCredentials(uri));
+    }
+
+    @NonNull
+    private static URI getUri(@NonNull String downloadUrl) throws Exception {
         URI uri;
         try {
             // assume the downloadUrl is escaped properly
@@ -102,7 +134,7 @@ class OpenRosaXmlFetcher {
             throw new Exception("Invalid server URL (no hostname): " + downloadUrl);
         }
 
-        return httpInterface.executeGetRequest(uri, contentType, webCredentialsUtils.getCredentials(uri));
+        return uri;
     }
 
     public WebCredentialsUtils getWebCredentialsUtils() {
@@ -0,0 +1,55 @@
+package org.odk.collect.android.openrosa;
+
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The result of fetching an XML document with {@link OpenRosaXmlFetcher#fetchXML}. The document
+ * isn't parsed so that it can be read as a stream.
+ */
+public class XmlFetchResult {
+    public final String errorMessage;
+    public final int responseCode;
+    public final InputStream inputStream;
+    public final boolean isOpenRosaResponse;
+    private final String hash;
+    @Nullable
+    private final HttpGetResult httpGetResult;
+
+    public XmlFetchResult(String msg, int response) {
+        responseCode = response;
+        errorMessage = msg;
+        inputStream = null;
+        isOpenRosaResponse = false;
+        hash = null;
+        httpGetResult = null;
+    }
+
+    public XmlFetchResult(InputStream inputStream, boolean isOpenRosaResponse, String hash) {
+        responseCode = 0;
+        errorMessage = null;
+        this.inputStream = inputStream;
+        this.isOpenRosaResponse = isOpenRosaResponse;
+        this.hash = hash;
+        httpGetResult = null;
+    }
+
+    /**
+     * For a document that is read straight from the response, whose hash might only be known once
+     * it has been read. See {@link HttpGetResult#getHash()}.
+     */
+    public XmlFetchResult(HttpGetResult httpGetResult) {
+        responseCode = 0;
+        errorMessage = null;
+        inputStream = httpGetResult.getInputStream();
+        isOpenRosaResponse = httpGetResult.isOpenRosaResponse();
+        hash = null;
+        this.httpGetResult = httpGetResult;
+    }
+
+    public String getHash() throws IOException {
+        return httpGetResult != null ? httpGetResult.getHash() : hash;
+    }
+}
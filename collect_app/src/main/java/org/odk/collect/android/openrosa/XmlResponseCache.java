@@ -0,0 +1,225 @@
+package org.odk.collect.android.openrosa;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.apache.commons.io.FileUtils;
+import org.odk.collect.shared.strings.Md5;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Properties;
+
+import timber.log.Timber;
+
+/**
+ * Keeps XML responses on disk together with their ETag and Last-Modified headers so they can be
+ * requested again with If-None-Match and If-Modified-Since, and used as they are when the server
+ * says they haven't changed. Only responses with at least one of those headers are kept.
+ * <p>
+ * Each response is stored as a properties file with the headers and a file with the body, both
+ * named after the MD5 hash of the URL. The cache holds at most {@link #DEFAULT_MAX_ENTRIES}
+ * responses and {@link #DEFAULT_MAX_BYTES} bytes of bodies; the least recently used responses are
+ * dropped when a new one would go over either limit.
+ */
+public class XmlResponseCache {
+
+    private static final String KEY_URL = "url";
+    private static final String KEY_ETAG = "etag";
+    private static final String KEY_LAST_MODIFIED = "lastModified";
+    private static final String KEY_OPEN_ROSA = "openRosa";
+    private static final String KEY_HASH = "hash";
+
+    static final int DEFAULT_MAX_ENTRIES = 500;
+    static final long DEFAULT_MAX_BYTES = 10 * 1024 * 1024;
+
+    private final File cacheDir;
+    private final int maxEntries;
+    private final long maxBytes;
+
+    public XmlResponseCache(File cacheDir) {
+        this(cacheDir, DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+    }
+
+    public XmlResponseCache(File cacheDir, int maxEntries, long maxBytes) {
+        this.cacheDir = cacheDir;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the response kept for the URL or null if there isn't one or it can't be read
+     */
+    @Nullable
+    public synchronized Entry get(String url) {
+        File metadataFile = getMetadataFile(url);
+        File bodyFile = getBodyFile(url);
+        if (!metadataFile.exists() || !bodyFile.exists()) {
+            return null;
+        }
+
+        try {
+            Properties metadata = new Properties();
+            try (InputStream is = new FileInputStream(metadataFile)) {
+                metadata.load(is);
+            }
+
+            byte[] body = FileUtils.readFileToByteArray(bodyFile);
+            String hash = metadata.getProperty(KEY_HASH);
+            if (!url.equals(metadata.getProperty(KEY_URL)) || hash == null || !hash.equals(Md5.getMd5Hash(new ByteArrayInputStream(body)))) {
+                // A different URL with the same hash or a partly written body
+                remove(url);
+                return null;
+            }
+
+            // Keeps recently used responses from being the first to go
+            bodyFile.setLastModified(System.currentTimeMillis());
+
+            return new Entry(
+                    metadata.getProperty(KEY_ETAG),
+                    metadata.getProperty(KEY_LAST_MODIFIED),
+                    Boolean.parseBoolean(metadata.getProperty(KEY_OPEN_ROSA)),
+                    hash,
+                    body
+            );
+        } catch (IOException e) {
+            Timber.w(e);
+            return null;
+        }
+    }
+
+    /**
+     * Keeps the response for the URL, replacing the one kept before. The response is dropped
+     * instead if it has neither an ETag nor a Last-Modified header as it couldn't be validated.
+     */
+    public synchronized void put(String url, @NonNull Entry entry) {
+        if (entry.eTag == null && entry.lastModified == null) {
+            remove(url);
+            return;
+        }
+
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            Timber.w("Unable to create %s", cacheDir.getAbsolutePath());
+            return;
+        }
+
+        Properties metadata = new Properties();
+        metadata.setProperty(KEY_URL, url);
+        metadata.setProperty(KEY_OPEN_ROSA, Boolean.toString(entry.openRosaResponse));
+        metadata.setProperty(KEY_HASH, entry.hash);
+        if (entry.eTag != null) {
+            metadata.setProperty(KEY_ETAG, entry.eTag);
+        }
+        if (entry.lastModified != null) {
+            metadata.setProperty(KEY_LAST_MODIFIED, entry.lastModified);
+        }
+
+        File metadataFile = getMetadataFile(url);
+        File bodyFile = getBodyFile(url);
+        File tempMetadataFile = new File(metadataFile.getAbsolutePath() + ".tmp");
+        File tempBodyFile = new File(bodyFile.getAbsolutePath() + ".tmp");
+
+        try {
+            FileUtils.writeByteArrayToFile(tempBodyFile, entry.body);
+            try (OutputStream os = new FileOutputStream(tempMetadataFile)) {
+                metadata.store(os, null);
+            }
+
+            // The body is checked against the hash when it is read so a crash between the two
+            // renames can't lead to a mismatched body being used
+            if (!tempBodyFile.renameTo(bodyFile) || !tempMetadataFile.renameTo(metadataFile)) {
+                throw new IOException("Unable to rename cached response for " + url);
+            }
+
+            evictOldest(bodyFile);
+        } catch (IOException e) {
+            Timber.w(e);
+            tempBodyFile.delete();
+            tempMetadataFile.delete();
+            remove(url);
+        }
+    }
+
+    public synchronized void remove(String url) {
+        getMetadataFile(url).delete();
+        getBodyFile(url).delete();
+    }
+
+    /**
+     * Deletes the least recently used responses, other than the one that has just been written,
+     * until the cache is back within its limits.
+     */
+    private void evictOldest(File keptBodyFile) {
+        File[] bodyFiles = cacheDir.listFiles((dir, name) -> name.endsWith(".xml"));
+        if (bodyFiles == null) {
+            return;
+        }
+
+        int entries = bodyFiles.length;
+        long bytes = 0;
+        for (File bodyFile : bodyFiles) {
+            bytes += bodyFile.length();
+        }
+        if (entries <= maxEntries && bytes <= maxBytes) {
+            return;
+        }
+
+        Arrays.sort(bodyFiles, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File bodyFile : bodyFiles) {
+            if (entries <= maxEntries && bytes <= maxBytes) {
+                break;
+            }
+            if (bodyFile.equals(keptBodyFile)) {
+                continue;
+            }
+
+            long length = bodyFile.length();
+            String name = bodyFile.getName();
+            new File(cacheDir, name.substring(0, name.length() - ".xml".length()) + ".properties").delete();
+            if (bodyFile.delete()) {
+                entries--;
+                bytes -= length;
+            }
+        }
+    }
+
+    private File getMetadataFile(String url) {
+        return new File(cacheDir, getKey(url) + ".properties");
+    }
+
+    private File getBodyFile(String url) {
+        return new File(cacheDir, getKey(url) + ".xml");
+    }
+
+    private static String getKey(String url) {
+        return Md5.getMd5Hash(new ByteArrayInputStream(url.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public static class Entry {
+
+        @Nullable
+        public final String eTag;
+
+        @Nullable
+        public final String lastModified;
+
+        public final boolean openRosaResponse;
+        public final String hash;
+        public final byte[] body;
+
+        public Entry(@Nullable String eTag, @Nullable String lastModified, boolean openRosaResponse, String hash, byte[] body) {
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.openRosaResponse = openRosaResponse;
+            this.hash = hash;
+            this.body = body;
+        }
+    }
+}
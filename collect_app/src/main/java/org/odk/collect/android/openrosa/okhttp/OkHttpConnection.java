@@ -3,18 +3,16 @@ package org.odk.collect.android.openrosa.okhttp;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import org.apache.commons.io.IOUtils;
 import org.odk.collect.android.openrosa.CaseInsensitiveEmptyHeaders;
 import org.odk.collect.android.openrosa.CaseInsensitiveHeaders;
 import org.odk.collect.android.openrosa.HttpCredentialsInterface;
 import org.odk.collect.android.openrosa.HttpGetResult;
 import org.odk.collect.android.openrosa.HttpHeadResult;
 import org.odk.collect.android.openrosa.HttpPostResult;
+import org.odk.collect.android.openrosa.Md5DigestInputStream;
 import org.odk.collect.android.openrosa.OpenRosaHttpInterface;
 import org.odk.collect.android.openrosa.OpenRosaServerClient;
-import org.odk.collect.shared.strings.Md5;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
@@ -55,16 +53,50 @@ public class OkHttpConnection implements OpenRosaHttpInterface {
     @NonNull
     @Override
     public HttpGetResult executeGetRequest(@NonNull URI uri, @Nullable String contentType, @Nullable HttpCredentialsInterface credentials) throws Exception {
+        return executeGetRequest(uri, contentType, credentials, new Headers.Builder().build());
+    }
+
+    @NonNull
+    @Override
+    public HttpGetResult executeRangeGetRequest(@NonNull URI uri, long offset, @Nullable HttpCredentialsInterface credentials) throws Exception {
+        return executeGetRequest(uri, null, credentials, new Headers.Builder()
+                .add("Range", "bytes=" + offset + "-")
+                .build());
+    }
+
+    @NonNull
+    @Override
+    public HttpGetResult executeConditionalGetRequest(@NonNull URI uri, @Nullable String contentType, @Nullable HttpCredentialsInterface credentials,
+                                                      @Nullable String eTag, @Nullable String lastModified) throws Exception {
+        Headers.Builder headers = new Headers.Builder();
+        if (eTag != null) {
+            headers.add("If-None-Match", eTag);
+        }
+        if (lastModified != null) {
+            headers.add("If-Modified-Since", lastModified);
+        }
+
+        return executeGetRequest(uri, contentType, credentials, headers.build());
+    }
+
+    @NonNull
+    private HttpGetResult executeGetRequest(@NonNull URI uri, @Nullable String contentType, @Nullable HttpCredentialsInterface credentials, Headers requestHeaders) throws Exception {
         OpenRosaServerClient httpClient = clientFactory.get(uri.getScheme(), userAgent, credentials);
         Request request = new Request.Builder()
                 .url(uri.toURL())
+                .headers(requestHeaders)
                 .get()
                 .build();
 
         Response response = httpClient.makeRequest(request, new Date());
         int statusCode = response.code();
 
-        if (statusCode != HttpURLConnection.HTTP_OK) {
+        if (statusCode == HttpURLConnection.HTTP_NOT_MODIFIED && isConditional(requestHeaders)) {
+            discardEntityBytes(response);
+            return new HttpGetResult(null, getHeaders(response), "", statusCode);
+        }
+
+        if (statusCode != HttpURLConnection.HTTP_OK && (requestHeaders.get("Range") == null || statusCode != HttpURLConnection.HTTP_PARTIAL)) {
             discardEntityBytes(response);
             Timber.i("Error: %s (%s at %s", response.message(), String.valueOf(statusCode), uri.toString());
 
@@ -94,14 +126,19 @@ public class OkHttpConnection implements OpenRosaHttpInterface {
 
         InputStream downloadStream = body.byteStream();
 
-        String hash = "";
-
         if (HTTP_CONTENT_TYPE_TEXT_XML.equals(contentType)) {
-            byte[] bytes = IOUtils.toByteArray(downloadStream);
-            downloadStream = new ByteArrayInputStream(bytes);
-            hash = Md5.getMd5Hash(new ByteArrayInputStream(bytes));
+            // Hash the document while it's parsed rather than reading it into memory first
+            return new HttpGetResult(new Md5DigestInputStream(downloadStream), getHeaders(response), statusCode);
         }
 
+        return new HttpGetResult(downloadStream, getHeaders(response), "", statusCode);
+    }
+
+    private static boolean isConditional(Headers requestHeaders) {
+        return requestHeaders.get("If-None-Match") != null || requestHeaders.get("If-Modified-Since") != null;
+    }
+
+    private static Map<String, String> getHeaders(Response response) {
         Map<String, String> responseHeaders = new HashMap<>();
         Headers headers = response.headers();
 
@@ -109,7 +146,7 @@ public class OkHttpConnection implements OpenRosaHttpInterface {
             responseHeaders.put(headers.name(i), headers.value(i));
         }
 
-        return new HttpGetResult(downloadStream, responseHeaders, hash, statusCode);
+        return responseHeaders;
     }
 
     @NonNull
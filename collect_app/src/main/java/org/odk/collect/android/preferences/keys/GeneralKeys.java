@@ -58,6 +58,8 @@ public final class GeneralKeys {
     public static final String KEY_GUIDANCE_HINT = "guidance_hint";
     public static final String KEY_INSTANCE_SYNC = "instance_sync";
     public static final String KEY_FORM_UPDATE_MODE = "form_update_mode";
+    public static final String KEY_MAX_CONCURRENT_SUBMISSIONS = "max_concurrent_submissions";
+    public static final String KEY_MAX_CONCURRENT_SUBMISSIONS_PER_SERVER = "max_concurrent_submissions_per_server";
 
     // identity_preferences.xml
     public static final String KEY_ANALYTICS = "analytics";
@@ -124,6 +126,9 @@ public final class GeneralKeys {
         hashMap.put(KEY_BACKGROUND_LOCATION, true);
         hashMap.put(KEY_BACKGROUND_RECORDING, true);
         hashMap.put(KEY_FORM_UPDATE_MODE, "manual");
+        // One upload at a time unless a project's settings ask for more (there's no screen for these)
+        hashMap.put(KEY_MAX_CONCURRENT_SUBMISSIONS, 1);
+        hashMap.put(KEY_MAX_CONCURRENT_SUBMISSIONS_PER_SERVER, 1);
         // form_metadata_preferences.xml
         hashMap.put(KEY_METADATA_USERNAME, "");
         hashMap.put(KEY_METADATA_PHONENUMBER, "");
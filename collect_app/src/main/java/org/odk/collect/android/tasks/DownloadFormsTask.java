@@ -15,6 +15,7 @@
 package org.odk.collect.android.tasks;
 
 import android.os.AsyncTask;
+import android.text.format.Formatter;
 
 import org.odk.collect.android.R;
 import org.odk.collect.android.application.Collect;
@@ -59,14 +60,26 @@ public class DownloadFormsTask extends
                 String totalForms = String.valueOf(values[0].size());
                 publishProgress(serverFormDetails.getFormName(), currentFormNumber, totalForms);
 
-                formDownloader.downloadForm(serverFormDetails, count -> {
-                    String message = Collect.getInstance().getString(R.string.form_download_progress,
-                            serverFormDetails.getFormName(),
-                            String.valueOf(count),
-                            String.valueOf(serverFormDetails.getManifest().getMediaFiles().size())
-                    );
-
-                    publishProgress(message, currentFormNumber, totalForms);
+                formDownloader.downloadForm(serverFormDetails, new FormDownloader.ProgressReporter() {
+                    private volatile int count;
+
+                    @Override
+                    public void onDownloadingMediaFile(int count) {
+                        this.count = count;
+                        publishProgress(getMediaProgressMessage(serverFormDetails, count), currentFormNumber, totalForms);
+                    }
+
+                    @Override
+                    public void onMediaBytesDownloaded(long bytes, long bytesPerSecond) {
+                        Collect collect = Collect.getInstance();
+                        String message = collect.getString(R.string.form_download_bytes_progress,
+                                getMediaProgressMessage(serverFormDetails, count),
+                                Formatter.formatShortFileSize(collect, bytes),
+                                Formatter.formatShortFileSize(collect, bytesPerSecond)
+                        );
+
+                        publishProgress(message, currentFormNumber, totalForms);
+                    }
                 }, this::isCancelled);
 
                 results.put(serverFormDetails, Collect.getInstance().getString(R.string.success));
@@ -82,6 +95,14 @@ public class DownloadFormsTask extends
         return results;
     }
 
+    private static String getMediaProgressMessage(ServerFormDetails serverFormDetails, int count) {
+        return Collect.getInstance().getString(R.string.form_download_progress,
+                serverFormDetails.getFormName(),
+                String.valueOf(count),
+                String.valueOf(serverFormDetails.getManifest().getMediaFiles().size())
+        );
+    }
+
     @Override
     protected void onCancelled(Map<ServerFormDetails, String> formDetailsStringHashMap) {
         synchronized (this) {
@@ -34,11 +34,11 @@ import org.javarosa.xpath.XPathTypeMismatchException;
 import org.odk.collect.android.R;
 import org.odk.collect.android.application.Collect;
 import org.odk.collect.android.external.ExternalAnswerResolver;
-import org.odk.collect.android.external.ExternalDataHandler;
 import org.odk.collect.android.external.ExternalDataManager;
 import org.odk.collect.android.external.ExternalDataManagerImpl;
 import org.odk.collect.android.external.ExternalDataReader;
 import org.odk.collect.android.external.ExternalDataReaderImpl;
+import org.odk.collect.android.external.ExternalDataSearchIndex;
 import org.odk.collect.android.external.handler.ExternalDataHandlerPull;
 import org.odk.collect.android.fastexternalitemset.ItemsetDbAdapter;
 import org.odk.collect.android.javarosawrapper.FormController;
@@ -56,6 +56,10 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import au.com.bytecode.opencsv.CSVReader;
 import timber.log.Timber;
@@ -135,17 +139,55 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
 
         setupReferenceManagerForForm(ReferenceManager.instance(), formMediaDir);
 
+        // Building the FormDef, unzipping media, importing external CSVs and importing
+        // itemsets.csv don't depend on each other so they run as separate stages on a bounded
+        // executor. Only initializing the form needs all of them to be done.
+        final ExecutorService executor = Executors.newFixedThreadPool(getLoaderThreadCount());
+        try {
+            return loadForm(executor, formPath, formXml, formMediaDir);
+        } finally {
+            // Let any stage that is still running finish (or roll back if cancelled) on its own
+            executor.shutdown();
+        }
+    }
+
+    private FECWrapper loadForm(ExecutorService executor, String formPath, File formXml, File formMediaDir) {
+        final Future<FormDef> formDefFuture = executor.submit(() -> createFormDefFromCacheOrXml(formPath, formXml));
+
+        externalDataManager = new ExternalDataManagerImpl(formMediaDir);
+
+        Future<?> itemSetsFuture = null;
+        Exception externalDataException = null;
+        try {
+            unzipMediaFiles(formMediaDir);
+            itemSetsFuture = executor.submit(() -> processItemSets(formMediaDir));
+            if (!loadExternalData(formMediaDir, executor)) {
+                // The import was cancelled so there's no point waiting for the other stages
+                stopStages(executor, formDefFuture, itemSetsFuture);
+                return null;
+            }
+        } catch (Exception e) {
+            externalDataException = e;
+        }
+
         FormDef formDef = null;
         try {
-            formDef = createFormDefFromCacheOrXml(formPath, formXml);
-        } catch (StackOverflowError e) {
-            Timber.e(e);
-            errorMsg = TranslationHandler.getString(Collect.getInstance(), R.string.too_complex_form);
-        } catch (Exception | Error e) {
-            Timber.w(e);
-            // Brand change
-            errorMsg = "An unknown error has occurred. Please ask your project leadership to email support with information about this form.";
-            errorMsg += "\n\n" + e.getMessage();
+            formDef = formDefFuture.get();
+        } catch (InterruptedException e) {
+            stopStages(executor, formDefFuture, itemSetsFuture);
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof StackOverflowError) {
+                Timber.e(cause);
+                errorMsg = TranslationHandler.getString(Collect.getInstance(), R.string.too_complex_form);
+            } else {
+                Timber.w(cause);
+                // Brand change
+                errorMsg = "An unknown error has occurred. Please ask your project leadership to email support with information about this form.";
+                errorMsg += "\n\n" + cause.getMessage();
+            }
         }
 
         if (errorMsg != null || formDef == null) {
@@ -153,19 +195,23 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
             return null;
         }
 
-        externalDataManager = new ExternalDataManagerImpl(formMediaDir);
-
         // add external data function handlers
-        ExternalDataHandler externalDataHandlerPull = new ExternalDataHandlerPull(
+        ExternalDataHandlerPull externalDataHandlerPull = new ExternalDataHandlerPull(
                 externalDataManager);
+        externalDataManager.addDatabaseUser(externalDataHandlerPull);
         formDef.getEvaluationContext().addFunctionHandler(externalDataHandlerPull);
 
+        if (externalDataException != null) {
+            Timber.e(externalDataException, "Exception thrown while loading external data");
+            errorMsg = externalDataException.getMessage();
+            return null;
+        }
+
+        // Indexes are only built once per data set import so this is usually a no-op
         try {
-            loadExternalData(formMediaDir);
+            ExternalDataSearchIndex.createForForm(formDef, formMediaDir);
         } catch (Exception e) {
-            Timber.e(e, "Exception thrown while loading external data");
-            errorMsg = e.getMessage();
-            return null;
+            Timber.w(e, "Could not create search indexes");
         }
 
         if (isCancelled()) {
@@ -200,7 +246,17 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
             }
         }
 
-        processItemSets(formMediaDir);
+        if (itemSetsFuture != null) {
+            try {
+                itemSetsFuture.get();
+            } catch (InterruptedException e) {
+                stopStages(executor, formDefFuture, itemSetsFuture);
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                Timber.e(e.getCause());
+            }
+        }
 
         final FormController fc = new FormController(formMediaDir, fec, instancePath == null ? null
                 : new File(instancePath));
@@ -222,6 +278,18 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
         return data;
     }
 
+    /**
+     * Stops the stages that are still running when the load has been cancelled or interrupted.
+     */
+    private static void stopStages(ExecutorService executor, Future<?>... stages) {
+        for (Future<?> stage : stages) {
+            if (stage != null) {
+                stage.cancel(true);
+            }
+        }
+        executor.shutdownNow();
+    }
+
     private FormDef createFormDefFromCacheOrXml(String formPath, File formXml) {
         publishProgress(
                 TranslationHandler.getString(Collect.getInstance(), R.string.survey_loading_reading_form_message));
@@ -262,6 +330,7 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
         final File csv = new File(formMediaDir.getAbsolutePath() + "/" + ITEMSETS_CSV);
         String csvmd5 = null;
         if (csv.exists()) {
+            publishProgress(TranslationHandler.getString(Collect.getInstance(), R.string.survey_loading_reading_itemsets_message));
             csvmd5 = Md5.getMd5Hash(csv);
             boolean readFile = false;
             final ItemsetDbAdapter ida = new ItemsetDbAdapter();
@@ -274,7 +343,8 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
                     c.moveToFirst(); // should be only one, ever, if any
                     final String oldmd5 = c.getString(c.getColumnIndex("hash"));
                     if (oldmd5.equals(csvmd5)) {
-                        // they're equal, do nothing
+                        // they're equal, only add indexes if the table was created without them
+                        createItemsetIndexes(ida, ItemsetDbAdapter.getMd5FromString(csv.getAbsolutePath()));
                     } else {
                         // the csv has been updated, delete the old entries
                         ida.dropTable(ItemsetDbAdapter.getMd5FromString(csv.getAbsolutePath()),
@@ -302,12 +372,16 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
         if (instancePath != null) {
             File instanceXml = new File(instancePath);
 
-            // Use the savepoint file only if it's newer than the last manual save
+            // Use the savepoint file only if it (or the journal of changes made since it was
+            // written) is newer than the last manual save
             final File savepointFile = SaveFormToDisk.getSavepointFile(instanceXml.getName());
+            final File savepointJournalFile = SaveFormToDisk.getSavepointJournalFile(instanceXml.getName());
+            File journalFile = null;
             if (savepointFile.exists()
-                    && savepointFile.lastModified() > instanceXml.lastModified()) {
+                    && Math.max(savepointFile.lastModified(), savepointJournalFile.lastModified()) > instanceXml.lastModified()) {
                 usedSavepoint = true;
                 instanceXml = savepointFile;
+                journalFile = savepointJournalFile;
                 Timber.w("Loading instance from savepoint file: %s",
                         savepointFile.getAbsolutePath());
             }
@@ -317,7 +391,7 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
                 try {
                     Timber.i("Importing data");
                     publishProgress(TranslationHandler.getString(Collect.getInstance(), R.string.survey_loading_reading_data_message));
-                    importData(instanceXml, fec);
+                    importData(instanceXml, journalFile, fec);
                     formDef.initialize(false, instanceInit);
                 } catch (IOException | RuntimeException e) {
                     // Skip a savepoint file that is corrupted or 0-sized
@@ -343,8 +417,7 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
         return usedSavepoint;
     }
 
-    @SuppressWarnings("unchecked")
-    private void loadExternalData(File mediaFolder) {
+    private void unzipMediaFiles(File mediaFolder) {
         // SCTO-594
         File[] zipFiles = mediaFolder.listFiles(new FileFilter() {
             @Override
@@ -353,7 +426,8 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
             }
         });
 
-        if (zipFiles != null) {
+        if (zipFiles != null && zipFiles.length > 0) {
+            publishProgress(TranslationHandler.getString(Collect.getInstance(), R.string.survey_loading_extracting_media_message));
             ZipUtils.unzip(zipFiles);
             for (File zipFile : zipFiles) {
                 boolean deleted = zipFile.delete();
@@ -362,7 +436,15 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
                 }
             }
         }
+    }
 
+    /**
+     * Imports every external CSV (other than itemsets.csv) into its own database. The data sets
+     * are imported in parallel on the given executor.
+     *
+     * @return false if the import was cancelled
+     */
+    private boolean loadExternalData(File mediaFolder, ExecutorService executor) {
         File[] csvFiles = mediaFolder.listFiles(new FileFilter() {
             @Override
             public boolean accept(File file) {
@@ -387,10 +469,19 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
                 publishProgress(Collect.getInstance()
                         .getString(R.string.survey_loading_reading_csv_message));
 
-                ExternalDataReader externalDataReader = new ExternalDataReaderImpl(this);
-                externalDataReader.doImport(externalDataMap);
+                ExternalDataReader externalDataReader = new ExternalDataReaderImpl(this, executor);
+                return externalDataReader.doImport(externalDataMap);
             }
         }
+        return true;
+    }
+
+    /**
+     * At least two threads so that the FormDef can be built while data is being imported, but
+     * no more than the device has cores as every stage is CPU or disk bound.
+     */
+    private static int getLoaderThreadCount() {
+        return Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
     }
 
     public void publishExternalDataLoadingProgress(String message) {
@@ -410,11 +501,22 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
 
     // Copied from XFormParser.loadXmlInstance in order to set ExternalAnswerResolver for search()
     public static void importData(File instanceFile, FormEntryController fec) throws IOException, RuntimeException {
+        importData(instanceFile, null, fec);
+    }
+
+    /**
+     * @param savepointJournalFile the journal of changes made since the instance file was written
+     *                             when loading a savepoint, null otherwise
+     */
+    static void importData(File instanceFile, File savepointJournalFile, FormEntryController fec) throws IOException, RuntimeException {
         // convert files into a byte array
         byte[] fileBytes = org.apache.commons.io.FileUtils.readFileToByteArray(instanceFile);
 
         // get the root of the saved and template instances
         TreeElement savedRoot = XFormParser.restoreDataModel(fileBytes, null).getRoot();
+        if (savepointJournalFile != null && SavePointJournal.replay(savepointJournalFile, instanceFile, savedRoot)) {
+            Timber.i("Applied savepoint journal %s", savepointJournalFile.getAbsolutePath());
+        }
         TreeElement templateRoot = fec.getModel().getForm().getInstance().getRoot().deepCopy(true);
 
         // weak check for matching forms
@@ -532,12 +634,12 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
         ItemsetDbAdapter ida = new ItemsetDbAdapter();
         ida.open();
         boolean withinTransaction = false;
+        String[] columnHeaders = null;
 
         try {
             reader = new CSVReader(new FileReader(csv));
 
             String[] nextLine;
-            String[] columnHeaders = null;
             int lineNumber = 0;
             while ((nextLine = reader.readNext()) != null) {
                 lineNumber++;
@@ -565,10 +667,23 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
             if (withinTransaction) {
                 ida.commit();
             }
+            if (columnHeaders != null) {
+                // building the indexes once all rows are in is faster than updating them on every insert
+                createItemsetIndexes(ida, pathHash);
+            }
             ida.close();
         }
     }
 
+    private void createItemsetIndexes(ItemsetDbAdapter ida, String pathHash) {
+        try {
+            ida.createIndexes(pathHash);
+        } catch (SQLException e) {
+            // Queries still work without the indexes, they just scan the table
+            Timber.w(e);
+        }
+    }
+
     public FormDef getFormDef() {
         return formDef;
     }
@@ -20,14 +20,18 @@ import org.odk.collect.android.application.Collect;
 import org.odk.collect.forms.instances.Instance;
 import org.odk.collect.android.logic.PropertyManager;
 import org.odk.collect.android.openrosa.OpenRosaHttpInterface;
+import org.odk.collect.android.preferences.keys.GeneralKeys;
+import org.odk.collect.android.upload.ConcurrentSubmissionRunner;
 import org.odk.collect.android.upload.InstanceServerUploader;
+import org.odk.collect.android.upload.SubmissionResult;
 import org.odk.collect.android.upload.UploadAuthRequestedException;
 import org.odk.collect.android.upload.UploadException;
 import org.odk.collect.android.utilities.TranslationHandler;
 import org.odk.collect.android.utilities.WebCredentialsUtils;
+import org.odk.collect.shared.Settings;
 
-import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 
@@ -62,40 +66,60 @@ public class InstanceServerUploaderTask extends InstanceUploaderTask {
     public Outcome doInBackground(Long... instanceIdsToUpload) {
         Outcome outcome = new Outcome();
 
-        InstanceServerUploader uploader = new InstanceServerUploader(httpInterface, webCredentialsUtils, new HashMap<>(), settingsProvider.getGeneralSettings());
+        Settings generalSettings = settingsProvider.getGeneralSettings();
+        InstanceServerUploader uploader = new InstanceServerUploader(httpInterface, webCredentialsUtils, new ConcurrentHashMap<>(), generalSettings);
         List<Instance> instancesToUpload = uploader.getInstancesFromIds(instanceIdsToUpload);
 
         String deviceId = new PropertyManager().getSingularProperty(PropertyManager.PROPMGR_DEVICE_ID);
 
+        ConcurrentSubmissionRunner runner = new ConcurrentSubmissionRunner(generalSettings.getInt(GeneralKeys.KEY_MAX_CONCURRENT_SUBMISSIONS),
+                generalSettings.getInt(GeneralKeys.KEY_MAX_CONCURRENT_SUBMISSIONS_PER_SERVER));
+        List<SubmissionResult> results = runner.run(instancesToUpload,
+                instance -> ConcurrentSubmissionRunner.getServer(uploader.getUrlToSubmitTo(instance, deviceId, completeDestinationUrl, null)),
+                instance -> submitInstance(uploader, instance, deviceId),
+                this::publishProgress,
+                this::isCancelled);
+
         for (int i = 0; i < instancesToUpload.size(); i++) {
-            if (isCancelled()) {
-                return outcome;
-            }
             Instance instance = instancesToUpload.get(i);
+            SubmissionResult result = results.get(i);
+            if (result == null) {
+                // Cancelled before this instance was uploaded
+                continue;
+            }
 
-            publishProgress(i + 1, instancesToUpload.size());
-
-            try {
-                String destinationUrl = uploader.getUrlToSubmitTo(instance, deviceId, completeDestinationUrl, null);
-                String customMessage = uploader.uploadOneSubmission(instance, destinationUrl);
-                outcome.messagesByInstanceId.put(instance.getDbId().toString(),
-                        customMessage != null ? customMessage : TranslationHandler.getString(Collect.getInstance(), R.string.success));
-
-                analytics.logEvent(SUBMISSION, "HTTP", Collect.getFormIdentifierHash(instance.getFormId(), instance.getFormVersion()));
-            } catch (UploadAuthRequestedException e) {
-                outcome.authRequestingServer = e.getAuthRequestingServer();
+            if (result.getAuthRequestingServer() != null) {
+                outcome.authRequestingServer = result.getAuthRequestingServer();
                 // Don't add the instance that caused an auth request to the map because we want to
                 // retry. Items present in the map are considered already attempted and won't be
                 // retried.
-            } catch (UploadException e) {
-                outcome.messagesByInstanceId.put(instance.getDbId().toString(),
-                        e.getDisplayMessage());
+                continue;
+            }
+
+            outcome.messagesByInstanceId.put(instance.getDbId().toString(), result.getMessage());
+            if (result.isSucceeded()) {
+                analytics.logEvent(SUBMISSION, "HTTP", Collect.getFormIdentifierHash(instance.getFormId(), instance.getFormVersion()));
             }
         }
-        
+
         return outcome;
     }
 
+    /**
+     * Uploads one instance on a worker thread of the {@link ConcurrentSubmissionRunner}.
+     */
+    private SubmissionResult submitInstance(InstanceServerUploader uploader, Instance instance, String deviceId) {
+        try {
+            String destinationUrl = uploader.getUrlToSubmitTo(instance, deviceId, completeDestinationUrl, null);
+            String customMessage = uploader.uploadOneSubmission(instance, destinationUrl);
+            return SubmissionResult.success(customMessage != null ? customMessage : TranslationHandler.getString(Collect.getInstance(), R.string.success));
+        } catch (UploadAuthRequestedException e) {
+            return SubmissionResult.authRequested(e.getAuthRequestingServer());
+        } catch (UploadException e) {
+            return SubmissionResult.failure(e.getDisplayMessage());
+        }
+    }
+
     @Override
     protected void onPostExecute(Outcome outcome) {
         super.onPostExecute(outcome);
@@ -41,6 +41,7 @@ import org.odk.collect.android.R;
 import org.odk.collect.android.application.Collect;
 import org.odk.collect.android.database.instances.DatabaseInstanceColumns;
 import org.odk.collect.android.exception.EncryptionException;
+import org.odk.collect.android.formentry.audit.AuditEventFileWriter;
 import org.odk.collect.android.formentry.saving.FormSaver;
 import org.odk.collect.android.javarosawrapper.FormController;
 import org.odk.collect.android.provider.InstanceProviderAPI;
@@ -59,9 +60,11 @@ import org.odk.collect.forms.instances.Instance;
 import org.odk.collect.forms.instances.InstancesRepository;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 
 import timber.log.Timber;
@@ -76,6 +79,14 @@ import static org.odk.collect.android.analytics.AnalyticsEvents.ENCRYPT_SUBMISSI
  */
 public class SaveFormToDisk {
 
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * How long a save waits for the audit events that were flushed before it to be written by
+     * the background writer, so that they are in the audit file that is saved (and encrypted).
+     */
+    static final long AUDIT_WRITE_TIMEOUT_MS = 10_000;
+
     private final boolean saveAndExit;
     private final boolean shouldFinalize;
     private final FormController formController;
@@ -108,6 +119,12 @@ public class SaveFormToDisk {
     public SaveToDiskResult saveForm(FormSaver.ProgressListener progressListener) {
         SaveToDiskResult saveToDiskResult = new SaveToDiskResult();
 
+        if (!awaitAuditEventsWritten(AUDIT_WRITE_TIMEOUT_MS)) {
+            saveToDiskResult.setSaveErrorMessage(TranslationHandler.getString(Collect.getInstance(), R.string.audit_log_write_timeout));
+            saveToDiskResult.setSaveResult(SAVE_ERROR, shouldFinalize);
+            return saveToDiskResult;
+        }
+
         progressListener.onProgressUpdate(TranslationHandler.getString(Collect.getInstance(), R.string.survey_saving_validating_message));
 
         try {
@@ -159,6 +176,25 @@ public class SaveFormToDisk {
         return saveToDiskResult;
     }
 
+    /**
+     * Waits for the audit events that have been flushed to be written to the audit file.
+     *
+     * @return false if they weren't written within the timeout or the thread was interrupted
+     */
+    static boolean awaitAuditEventsWritten(long timeoutMillis) {
+        try {
+            if (AuditEventFileWriter.awaitWritten(timeoutMillis)) {
+                return true;
+            }
+
+            Timber.e("Audit events weren't written within %d ms", timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return false;
+    }
+
     /**
      * Updates the status and editability for the database row corresponding to the instance that is
      * currently managed by the {@link FormController}. There are three cases:
@@ -308,6 +344,15 @@ public class SaveFormToDisk {
         return new File(tempDir, instanceName + ".save");
     }
 
+    /**
+     * Return the journal of answers changed since the savepoint file for a given instance was
+     * written.
+     */
+    static File getSavepointJournalFile(String instanceName) {
+        File tempDir = new File(new StoragePathProvider().getOdkDirPath(StorageSubdirectory.CACHE));
+        return new File(tempDir, instanceName + ".save.journal");
+    }
+
     /**
      * Return the formIndex file for a given instance.
      */
@@ -317,9 +362,13 @@ public class SaveFormToDisk {
     }
 
     public static void removeSavepointFiles(String instanceName) {
+        SavePointWriter.cancelPending();
+
         File savepointFile = getSavepointFile(instanceName);
+        File savepointJournalFile = getSavepointJournalFile(instanceName);
         File formIndexFile = getFormIndexFile(instanceName);
         FileUtils.deleteAndReport(savepointFile);
+        FileUtils.deleteAndReport(savepointJournalFile);
         FileUtils.deleteAndReport(formIndexFile);
     }
 
@@ -347,7 +396,7 @@ public class SaveFormToDisk {
 
         // Write last-saved instance
         String lastSavedPath = formController.getLastSavedPath();
-        writeFile(payload, lastSavedPath);
+        copyFile(new File(instancePath), lastSavedPath);
 
         // update the uri. We have exported the reloadable instance, so update status...
         // Since we saved a reloadable instance, it is flagged as re-openable so that if any error
@@ -485,38 +534,91 @@ public class SaveFormToDisk {
     }
 
     /**
-     * Writes payload contents to the disk.
+     * Writes payload contents to the disk. The payload is streamed into a temporary file next to
+     * the destination, synced once and then renamed over the destination so that a crash part way
+     * through never leaves a truncated file behind.
      */
     static void writeFile(ByteArrayPayload payload, String path) throws IOException {
         File file = new File(path);
-        if (file.exists() && !file.delete()) {
-            throw new IOException("Cannot overwrite " + path + ". Perhaps the file is locked?");
+        if (payload.getLength() <= 0) {
+            deleteExistingFile(file);
+            return;
         }
 
-        // create data stream
-        InputStream is = payload.getPayloadStream();
-        int len = (int) payload.getLength();
-
-        // read from data stream
-        byte[] data = new byte[len];
-        int read = is.read(data, 0, len);
-        if (read > 0) {
-            // Make sure the directory path to this file exists.
-            file.getParentFile().mkdirs();
-            // write xml file
-            RandomAccessFile randomAccessFile = null;
-            try {
-                randomAccessFile = new RandomAccessFile(file, "rws");
-                randomAccessFile.write(data);
-            } finally {
-                if (randomAccessFile != null) {
-                    try {
-                        randomAccessFile.close();
-                    } catch (IOException e) {
-                        Timber.e(e, "Error closing RandomAccessFile: %s", path);
-                    }
+        // Make sure the directory path to this file exists.
+        file.getParentFile().mkdirs();
+
+        File tempFile = getTempFile(file);
+        try (InputStream is = payload.getPayloadStream();
+             FileOutputStream outputStream = new FileOutputStream(tempFile)) {
+            byte[] buffer = new byte[WRITE_BUFFER_SIZE];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+            outputStream.getFD().sync();
+        } catch (IOException e) {
+            tempFile.delete();
+            throw e;
+        }
+
+        replaceWithTempFile(tempFile, file);
+    }
+
+    /**
+     * Copies a file that has already been written by {@link #writeFile} so the payload doesn't
+     * have to be written again. The copy is done by the kernel and replaces the destination the
+     * same way {@link #writeFile} does. If the source doesn't exist because the payload was empty
+     * the destination is deleted, as writing the empty payload to it would have done.
+     */
+    static void copyFile(File sourceFile, String path) throws IOException {
+        File file = new File(path);
+        if (!sourceFile.exists()) {
+            deleteExistingFile(file);
+            return;
+        }
+
+        file.getParentFile().mkdirs();
+
+        File tempFile = getTempFile(file);
+        try (FileInputStream inputStream = new FileInputStream(sourceFile);
+             FileOutputStream outputStream = new FileOutputStream(tempFile)) {
+            FileChannel src = inputStream.getChannel();
+            FileChannel dst = outputStream.getChannel();
+
+            long size = src.size();
+            long position = 0;
+            while (position < size) {
+                long transferred = src.transferTo(position, size - position, dst);
+                if (transferred <= 0) {
+                    throw new IOException("Unable to copy " + sourceFile.getAbsolutePath() + " to " + path);
                 }
+                position += transferred;
             }
+            outputStream.getFD().sync();
+        } catch (IOException e) {
+            tempFile.delete();
+            throw e;
+        }
+
+        replaceWithTempFile(tempFile, file);
+    }
+
+    private static File getTempFile(File file) {
+        // Hidden so that it's never mistaken for an instance attachment
+        return new File(file.getParentFile(), "." + file.getName() + ".tmp");
+    }
+
+    private static void replaceWithTempFile(File tempFile, File file) throws IOException {
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Cannot overwrite " + file.getAbsolutePath() + ". Perhaps the file is locked?");
+        }
+    }
+
+    private static void deleteExistingFile(File file) throws IOException {
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Cannot overwrite " + file.getAbsolutePath() + ". Perhaps the file is locked?");
         }
     }
 }
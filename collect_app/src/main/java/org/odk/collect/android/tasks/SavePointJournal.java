@@ -0,0 +1,193 @@
+package org.odk.collect.android.tasks;
+
+import org.javarosa.core.model.data.IAnswerData;
+import org.javarosa.core.model.data.StringData;
+import org.javarosa.core.model.instance.TreeElement;
+import org.javarosa.core.model.instance.TreeReference;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import timber.log.Timber;
+
+/**
+ * An append-only log of the answers that changed since the savepoint snapshot was written. Each
+ * record holds the path of a node (its name and multiplicity at every level, e.g.
+ * /data[0]/repeat[2]/name[0]) and its new value.
+ *
+ * The journal starts with the size and last modified time of the snapshot it applies to so that
+ * a journal left behind by an older snapshot is never replayed on a newer one.
+ */
+final class SavePointJournal {
+
+    private static final int MAGIC = 0x4F444B4A;
+
+    private SavePointJournal() {
+
+    }
+
+    /**
+     * @return the value of every leaf element of the instance keyed by its path. Repeat templates
+     * and attributes aren't included.
+     */
+    static Map<String, String> collectValues(TreeElement root) {
+        Map<String, String> values = new HashMap<>();
+        collectValues(root, "", values);
+        return values;
+    }
+
+    private static void collectValues(TreeElement element, String parentPath, Map<String, String> values) {
+        if (element.getMult() == TreeReference.INDEX_TEMPLATE) {
+            return;
+        }
+
+        String path = parentPath + "/" + element.getName() + "[" + element.getMult() + "]";
+        if (element.getNumChildren() == 0) {
+            IAnswerData value = element.getValue();
+            values.put(path, value != null ? value.uncast().getString() : null);
+            return;
+        }
+
+        for (int i = 0; i < element.getNumChildren(); i++) {
+            collectValues(element.getChildAt(i), path, values);
+        }
+    }
+
+    /**
+     * Appends the changed values to the journal, starting a new journal if there is none for the
+     * snapshot yet.
+     */
+    static void append(File journalFile, File snapshotFile, Map<String, String> changes) throws IOException {
+        boolean isNew = !journalFile.exists() || !matchesSnapshot(journalFile, snapshotFile);
+
+        try (FileOutputStream fileOutputStream = new FileOutputStream(journalFile, !isNew)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOutputStream));
+            if (isNew) {
+                out.writeInt(MAGIC);
+                out.writeLong(snapshotFile.length());
+                out.writeLong(snapshotFile.lastModified());
+            }
+
+            for (Map.Entry<String, String> change : changes.entrySet()) {
+                out.writeUTF(change.getKey());
+                if (change.getValue() == null) {
+                    out.writeInt(-1);
+                } else {
+                    byte[] value = change.getValue().getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(value.length);
+                    out.write(value);
+                }
+            }
+
+            out.flush();
+            fileOutputStream.getFD().sync();
+        }
+    }
+
+    /**
+     * Applies the changes in the journal to the root of an instance restored from the snapshot.
+     * Nothing is applied if the journal belongs to another snapshot or refers to nodes that
+     * don't exist. A record that was only partly written when the app was killed is ignored.
+     *
+     * @return whether the journal was applied
+     */
+    static boolean replay(File journalFile, File snapshotFile, TreeElement savedRoot) {
+        if (!journalFile.exists()) {
+            return false;
+        }
+
+        Map<String, String> changes = new LinkedHashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+            if (in.readInt() != MAGIC || in.readLong() != snapshotFile.length() || in.readLong() != snapshotFile.lastModified()) {
+                Timber.w("Ignoring savepoint journal written for another snapshot");
+                return false;
+            }
+
+            while (true) {
+                String path;
+                try {
+                    path = in.readUTF();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                int length = in.readInt();
+                if (length == -1) {
+                    changes.put(path, null);
+                } else {
+                    byte[] value = new byte[length];
+                    in.readFully(value);
+                    changes.put(path, new String(value, StandardCharsets.UTF_8));
+                }
+            }
+        } catch (EOFException e) {
+            Timber.w("Ignoring truncated savepoint journal record");
+        } catch (IOException e) {
+            Timber.w(e);
+            return false;
+        }
+
+        List<TreeElement> elements = new ArrayList<>();
+        for (String path : changes.keySet()) {
+            TreeElement element = resolve(savedRoot, path);
+            if (element == null) {
+                Timber.w("Ignoring savepoint journal with unknown node %s", path);
+                return false;
+            }
+            elements.add(element);
+        }
+
+        int i = 0;
+        for (String value : changes.values()) {
+            elements.get(i++).setValue(value == null || value.isEmpty() ? null : new StringData(value));
+        }
+
+        return true;
+    }
+
+    private static boolean matchesSnapshot(File journalFile, File snapshotFile) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(journalFile))) {
+            return in.readInt() == MAGIC && in.readLong() == snapshotFile.length() && in.readLong() == snapshotFile.lastModified();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static TreeElement resolve(TreeElement root, String path) {
+        String[] steps = path.substring(1).split("/");
+
+        TreeElement element = root;
+        for (int i = 0; i < steps.length; i++) {
+            String step = steps[i];
+            int bracket = step.lastIndexOf('[');
+            String name = step.substring(0, bracket);
+            int mult = Integer.parseInt(step.substring(bracket + 1, step.length() - 1));
+
+            if (i == 0) {
+                if (!name.equals(root.getName()) || mult != root.getMult()) {
+                    return null;
+                }
+            } else {
+                element = element.getChild(name, mult);
+                if (element == null) {
+                    return null;
+                }
+            }
+        }
+
+        return element;
+    }
+}
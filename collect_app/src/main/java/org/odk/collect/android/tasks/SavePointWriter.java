@@ -0,0 +1,158 @@
+package org.odk.collect.android.tasks;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import org.javarosa.core.services.transport.payload.ByteArrayPayload;
+import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.javarosawrapper.FormController;
+import org.odk.collect.android.listeners.SavePointListener;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import timber.log.Timber;
+
+/**
+ * Writes savepoints on a dedicated thread. Requests that arrive while one is already waiting are
+ * coalesced into it so swiping through a form writes at most one savepoint per
+ * {@link #COALESCE_WINDOW_MS}.
+ *
+ * The first savepoint of a form session is a full snapshot of the instance. Later ones only
+ * append the answers that changed to a {@link SavePointJournal}, and the snapshot is rewritten
+ * once the journal has grown to {@link #MAX_JOURNAL_ENTRIES} entries or nodes were added or
+ * removed (a repeat was added, for example).
+ */
+public final class SavePointWriter {
+
+    static final long COALESCE_WINDOW_MS = 1000;
+    static final int MAX_JOURNAL_ENTRIES = 500;
+
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor();
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    private static Future<?> pendingWrite;
+    private static WeakReference<SavePointListener> listenerReference = new WeakReference<>(null);
+
+    // Only accessed on the executor's thread
+    private static String instanceName;
+    private static Map<String, String> savedValues;
+    private static long snapshotLength;
+    private static long snapshotLastModified;
+    private static int journalEntries;
+
+    private SavePointWriter() {
+
+    }
+
+    /**
+     * Writes a savepoint once the coalescing window has passed unless one is already waiting.
+     */
+    public static synchronized void schedule(SavePointListener listener) {
+        listenerReference = new WeakReference<>(listener);
+        if (pendingWrite == null || pendingWrite.isDone()) {
+            pendingWrite = EXECUTOR.schedule(SavePointWriter::write, COALESCE_WINDOW_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes a savepoint as soon as the thread is free, for when the app might be about to be
+     * killed.
+     */
+    public static synchronized void writeNow(SavePointListener listener) {
+        listenerReference = new WeakReference<>(listener);
+        if (pendingWrite != null) {
+            pendingWrite.cancel(false);
+        }
+        pendingWrite = EXECUTOR.submit(SavePointWriter::write);
+    }
+
+    /**
+     * Drops a savepoint that hasn't been written yet, so that it can't recreate savepoint files
+     * that are being removed.
+     */
+    public static synchronized void cancelPending() {
+        if (pendingWrite != null) {
+            pendingWrite.cancel(false);
+            pendingWrite = null;
+        }
+    }
+
+    private static void write() {
+        long start = System.currentTimeMillis();
+
+        try {
+            FormController formController = Collect.getInstance().getFormController();
+            if (formController == null || formController.getInstanceFile() == null) {
+                return;
+            }
+
+            String name = formController.getInstanceFile().getName();
+            File snapshotFile = SaveFormToDisk.getSavepointFile(name);
+            File journalFile = SaveFormToDisk.getSavepointJournalFile(name);
+            Map<String, String> values = SavePointJournal.collectValues(formController.getFormDef().getMainInstance().getRoot());
+
+            if (canAppendToJournal(name, snapshotFile, values)) {
+                Map<String, String> changes = new HashMap<>();
+                for (Map.Entry<String, String> entry : values.entrySet()) {
+                    String savedValue = savedValues.get(entry.getKey());
+                    if (savedValue == null ? entry.getValue() != null : !savedValue.equals(entry.getValue())) {
+                        changes.put(entry.getKey(), entry.getValue());
+                    }
+                }
+
+                if (!changes.isEmpty()) {
+                    SavePointJournal.append(journalFile, snapshotFile, changes);
+                    journalEntries += changes.size();
+                    savedValues = values;
+                }
+
+                Timber.i("Savepoint journal ms: %s, %d changes to %s", Long.toString(System.currentTimeMillis() - start), changes.size(), journalFile.toString());
+            } else {
+                ByteArrayPayload payload = formController.getFilledInFormXml();
+                SaveFormToDisk.writeFile(payload, snapshotFile.getAbsolutePath());
+                journalFile.delete();
+
+                instanceName = name;
+                savedValues = values;
+                snapshotLength = snapshotFile.length();
+                snapshotLastModified = snapshotFile.lastModified();
+                journalEntries = 0;
+
+                Timber.i("Savepoint ms: %s to %s", Long.toString(System.currentTimeMillis() - start), snapshotFile.toString());
+            }
+        } catch (Exception e) {
+            Timber.e(e);
+            instanceName = null;
+            notifyError(e.getMessage());
+        }
+    }
+
+    /**
+     * The journal can only be used if it describes the changes since a snapshot that this writer
+     * wrote and that hasn't been replaced or removed since, and the instance has the same nodes
+     * as it did when the snapshot was written.
+     */
+    private static boolean canAppendToJournal(String name, File snapshotFile, Map<String, String> values) {
+        return name.equals(instanceName)
+                && snapshotFile.length() == snapshotLength
+                && snapshotFile.lastModified() == snapshotLastModified
+                && journalEntries < MAX_JOURNAL_ENTRIES
+                && values.keySet().equals(savedValues.keySet());
+    }
+
+    private static void notifyError(String errorMessage) {
+        MAIN_HANDLER.post(() -> {
+            SavePointListener listener = listenerReference.get();
+            if (listener != null && errorMessage != null) {
+                listener.onSavePointError(errorMessage);
+            }
+        });
+    }
+}
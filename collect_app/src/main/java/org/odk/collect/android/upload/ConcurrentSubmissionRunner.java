@@ -0,0 +1,156 @@
+package org.odk.collect.android.upload;
+
+import android.net.Uri;
+
+import org.odk.collect.forms.instances.Instance;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import timber.log.Timber;
+
+/**
+ * Uploads instances on a pool of worker threads. At most {@code maxConcurrentSubmissions} uploads
+ * run at once and at most {@code maxConcurrentSubmissionsPerServer} of them go to the same
+ * server. Instances are handed to the workers in order and the calling thread waits for a free
+ * slot before handing over the next one, so no worker is ever blocked waiting for a server.
+ *
+ * The results are returned in the order of the instances so that callers can aggregate them the
+ * same way they would if the instances had been uploaded one after the other. Workers share the
+ * OkHttp client (and so its connection pool) of the {@link org.odk.collect.android.openrosa.OpenRosaHttpInterface}
+ * the submission uses.
+ */
+public class ConcurrentSubmissionRunner {
+
+    private final int maxConcurrentSubmissions;
+    private final int maxConcurrentSubmissionsPerServer;
+
+    public ConcurrentSubmissionRunner(int maxConcurrentSubmissions, int maxConcurrentSubmissionsPerServer) {
+        this.maxConcurrentSubmissions = Math.max(1, maxConcurrentSubmissions);
+        this.maxConcurrentSubmissionsPerServer = Math.max(1, maxConcurrentSubmissionsPerServer);
+    }
+
+    public interface Submission<T> {
+        /**
+         * Uploads one instance. Called on a worker thread, so it must not touch state that's
+         * shared with other submissions without synchronizing.
+         */
+        T submit(Instance instance);
+    }
+
+    public interface ProgressListener {
+        /**
+         * Called on a worker thread every time an upload has finished.
+         */
+        void onSubmissionFinished(int finishedCount, int total);
+    }
+
+    /**
+     * @param serverOf    returns the server (host) an instance is uploaded to
+     * @param isCancelled checked before each upload is started. Instances that haven't been
+     *                    started when it returns true get a null result.
+     * @return the result of each submission in the order of the instances
+     */
+    public <T> List<T> run(List<Instance> instances, Function<Instance, String> serverOf, Submission<T> submission,
+                           ProgressListener progressListener, Supplier<Boolean> isCancelled) {
+        List<T> results = new ArrayList<>(instances.size());
+        if (maxConcurrentSubmissions == 1 || instances.size() <= 1) {
+            for (int i = 0; i < instances.size(); i++) {
+                if (isCancelled.get()) {
+                    results.add(null);
+                    continue;
+                }
+
+                results.add(submission.submit(instances.get(i)));
+                progressListener.onSubmissionFinished(i + 1, instances.size());
+            }
+            return results;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(maxConcurrentSubmissions, instances.size()));
+        Semaphore slots = new Semaphore(maxConcurrentSubmissions);
+        Map<String, Semaphore> serverSlots = new HashMap<>();
+        AtomicInteger finishedCount = new AtomicInteger();
+        List<Future<T>> futures = new ArrayList<>(instances.size());
+
+        try {
+            for (Instance instance : instances) {
+                if (isCancelled.get()) {
+                    futures.add(null);
+                    continue;
+                }
+
+                String server = serverOf.apply(instance);
+                Semaphore serverSemaphore = serverSlots.get(server);
+                if (serverSemaphore == null) {
+                    serverSemaphore = new Semaphore(maxConcurrentSubmissionsPerServer);
+                    serverSlots.put(server, serverSemaphore);
+                }
+
+                serverSemaphore.acquireUninterruptibly();
+                slots.acquireUninterruptibly();
+
+                Semaphore acquiredServerSemaphore = serverSemaphore;
+                futures.add(executor.submit(() -> {
+                    try {
+                        return submission.submit(instance);
+                    } finally {
+                        acquiredServerSemaphore.release();
+                        slots.release();
+                        progressListener.onSubmissionFinished(finishedCount.incrementAndGet(), instances.size());
+                    }
+                }));
+            }
+
+            for (Future<T> future : futures) {
+                results.add(future != null ? getResult(future) : null);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        return results;
+    }
+
+    /**
+     * @return the host of the URL, which is what the per server limit applies to
+     */
+    public static String getServer(String url) {
+        String host = Uri.parse(url).getHost();
+        return host != null ? host : "";
+    }
+
+    private static <T> T getResult(Future<T> future) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            // Submissions report their own failures so this is a bug in the submission
+            Timber.e(e.getCause());
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
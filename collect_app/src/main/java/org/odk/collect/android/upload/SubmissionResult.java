@@ -0,0 +1,57 @@
+package org.odk.collect.android.upload;
+
+import android.net.Uri;
+
+import androidx.annotation.Nullable;
+
+/**
+ * The outcome of uploading one instance with an {@link InstanceUploader}, as returned by the
+ * workers of a {@link ConcurrentSubmissionRunner}.
+ */
+public final class SubmissionResult {
+
+    @Nullable
+    private final String message;
+    private final boolean succeeded;
+    @Nullable
+    private final Uri authRequestingServer;
+
+    private SubmissionResult(@Nullable String message, boolean succeeded, @Nullable Uri authRequestingServer) {
+        this.message = message;
+        this.succeeded = succeeded;
+        this.authRequestingServer = authRequestingServer;
+    }
+
+    public static SubmissionResult success(String message) {
+        return new SubmissionResult(message, true, null);
+    }
+
+    public static SubmissionResult failure(String message) {
+        return new SubmissionResult(message, false, null);
+    }
+
+    /**
+     * The server asked for credentials so the upload should be retried once the user has
+     * provided them.
+     */
+    public static SubmissionResult authRequested(Uri authRequestingServer) {
+        return new SubmissionResult(null, false, authRequestingServer);
+    }
+
+    /**
+     * @return the message to show the user for the instance
+     */
+    @Nullable
+    public String getMessage() {
+        return message;
+    }
+
+    public boolean isSucceeded() {
+        return succeeded;
+    }
+
+    @Nullable
+    public Uri getAuthRequestingServer() {
+        return authRequestingServer;
+    }
+}
@@ -18,6 +18,7 @@ import android.net.Uri;
 import android.util.Base64;
 
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 
 import org.apache.commons.io.IOUtils;
 import org.kxml2.io.KXmlSerializer;
@@ -34,14 +35,14 @@ import org.odk.collect.forms.Form;
 import org.odk.collect.forms.instances.Instance;
 import org.odk.collect.shared.strings.Md5;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
@@ -55,10 +56,13 @@ import java.security.spec.InvalidKeySpecException;
 import java.security.spec.X509EncodedKeySpec;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
-import javax.crypto.CipherOutputStream;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.spec.IvParameterSpec;
@@ -100,6 +104,8 @@ public class EncryptionUtils {
             "base64EncryptedElementSignature";
     private static final String NEW_LINE = "\n";
     private static final String ENCRYPTION_PROVIDER = "BC";
+    private static final int ENCRYPTION_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_PARALLEL_ENCRYPTIONS = 3;
 
     private EncryptionUtils() {
     }
@@ -177,7 +183,10 @@ public class EncryptionUtils {
         }
 
         public void appendFileSignatureSource(File file) {
-            String md5Hash = Md5.getMd5Hash(file);
+            appendFileSignatureSource(file, Md5.getMd5Hash(file));
+        }
+
+        void appendFileSignatureSource(File file, String md5Hash) {
             appendElementSignatureSource(file.getName() + "::" + md5Hash);
         }
 
@@ -348,55 +357,58 @@ public class EncryptionUtils {
         return new EncryptedFormInformation(formId, formVersion, instanceMetadata, pk);
     }
 
-    private static void encryptFile(File file, EncryptedFormInformation formInfo)
-            throws IOException, EncryptionException {
-        File encryptedFile = new File(file.getParentFile(), file.getName()
-                + ".enc");
-
-        if (encryptedFile.exists() && !encryptedFile.delete()) {
-            throw new IOException("Cannot overwrite " + encryptedFile.getAbsolutePath()
-                    + ". Perhaps the file is locked?");
-        }
-
-        // add elementSignatureSource for this file...
-        formInfo.appendFileSignatureSource(file);
+    /**
+     * Sets up the encryption of a submission with the given key without looking up the form.
+     */
+    @VisibleForTesting
+    public static EncryptedFormInformation createEncryptedFormInformation(String formId, String formVersion,
+                                                                          InstanceMetadata instanceMetadata, PublicKey rsaPublicKey) {
+        return new EncryptedFormInformation(formId, formVersion, instanceMetadata, rsaPublicKey);
+    }
 
-        RandomAccessFile randomAccessFile = null;
-        CipherOutputStream cipherOutputStream = null;
-        try {
-            Cipher c = formInfo.getCipher();
-
-            randomAccessFile = new RandomAccessFile(encryptedFile, "rws");
-            ByteArrayOutputStream encryptedData = new ByteArrayOutputStream();
-            cipherOutputStream = new CipherOutputStream(encryptedData, c);
-            InputStream fin = new FileInputStream(file);
-            byte[] buffer = new byte[2048];
-            int len = fin.read(buffer);
-            while (len != -1) {
-                cipherOutputStream.write(buffer, 0, len);
-                len = fin.read(buffer);
+    /**
+     * Encrypts the file into a file with the same name and an .enc suffix. The plaintext is read
+     * once: it is hashed while it is being encrypted and the ciphertext is streamed to the
+     * encrypted file, which is synced once when it is complete.
+     *
+     * @return the zero-padded MD5 hash of the plaintext
+     */
+    private static String encryptFile(File file, Cipher cipher) throws EncryptionException {
+        File encryptedFile = getEncryptedFile(file);
+
+        try (InputStream fin = new FileInputStream(file);
+             FileOutputStream fout = new FileOutputStream(encryptedFile)) {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            OutputStream out = new BufferedOutputStream(fout, ENCRYPTION_BUFFER_SIZE);
+
+            byte[] buffer = new byte[ENCRYPTION_BUFFER_SIZE];
+            int len;
+            while ((len = fin.read(buffer)) != -1) {
+                md.update(buffer, 0, len);
+                byte[] encrypted = cipher.update(buffer, 0, len);
+                if (encrypted != null) {
+                    out.write(encrypted);
+                }
             }
-            fin.close();
-            cipherOutputStream.flush();
-            cipherOutputStream.close();
-
-            randomAccessFile.write(encryptedData.toByteArray());
+            out.write(cipher.doFinal());
+            out.flush();
+            fout.getFD().sync();
 
             Timber.i("Encrpyted:%s -> %s", file.getName(), encryptedFile.getName());
+
+            return Md5.toHex(md.digest());
         } catch (Exception e) {
             String msg = "Error encrypting: " + file.getName() + " -> "
                     + encryptedFile.getName();
             Timber.e(e, "%s due to %s ", msg, e.getMessage());
             throw new EncryptionException(msg, e);
-        } finally {
-            IOUtils.closeQuietly(cipherOutputStream);
-
-            if (randomAccessFile != null) {
-                randomAccessFile.close();
-            }
         }
     }
 
+    private static File getEncryptedFile(File file) {
+        return new File(file.getParentFile(), file.getName() + ".enc");
+    }
+
     public static boolean deletePlaintextFiles(File instanceXml, @Nullable File lastSaved) {
         // NOTE: assume the directory containing the instanceXml contains ONLY
         // files related to this one instance.
@@ -459,15 +471,76 @@ public class EncryptionUtils {
                 filesToProcess.add(f);
             }
         }
-        // encrypt here...
-        for (File f : filesToProcess) {
-            encryptFile(f, formInfo);
+        // encrypt here... the submission.xml is the last file
+        List<File> filesToEncrypt = new ArrayList<>(filesToProcess);
+        filesToEncrypt.add(submissionXml);
+        encryptFiles(filesToEncrypt, formInfo);
+
+        return filesToProcess;
+    }
+
+    /**
+     * Encrypts the files in parallel. Each file's IV depends on its position so the ciphers are
+     * created in order up front, and the file signatures are appended in order once every file
+     * has been encrypted.
+     */
+    private static void encryptFiles(List<File> files, EncryptedFormInformation formInfo)
+            throws IOException, EncryptionException {
+        List<Cipher> ciphers = new ArrayList<>();
+        for (File file : files) {
+            File encryptedFile = getEncryptedFile(file);
+            if (encryptedFile.exists() && !encryptedFile.delete()) {
+                throw new IOException("Cannot overwrite " + encryptedFile.getAbsolutePath()
+                        + ". Perhaps the file is locked?");
+            }
+
+            try {
+                ciphers.add(formInfo.getCipher());
+            } catch (Exception e) {
+                String msg = "Error encrypting: " + file.getName();
+                Timber.e(e, "%s due to %s ", msg, e.getMessage());
+                throw new EncryptionException(msg, e);
+            }
+        }
+
+        List<String> md5Hashes = new ArrayList<>();
+        if (files.size() == 1) {
+            md5Hashes.add(encryptFile(files.get(0), ciphers.get(0)));
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(MAX_PARALLEL_ENCRYPTIONS, files.size()));
+            try {
+                List<Future<String>> futures = new ArrayList<>();
+                for (int i = 0; i < files.size(); i++) {
+                    File file = files.get(i);
+                    Cipher cipher = ciphers.get(i);
+                    futures.add(executor.submit(() -> encryptFile(file, cipher)));
+                }
+
+                for (Future<String> future : futures) {
+                    md5Hashes.add(getEncryptionResult(future));
+                }
+            } finally {
+                executor.shutdownNow();
+            }
         }
 
-        // encrypt the submission.xml as the last file...
-        encryptFile(submissionXml, formInfo);
+        for (int i = 0; i < files.size(); i++) {
+            formInfo.appendFileSignatureSource(files.get(i), md5Hashes.get(i));
+        }
+    }
 
-        return filesToProcess;
+    private static String getEncryptionResult(Future<String> future) throws EncryptionException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof EncryptionException) {
+                throw (EncryptionException) e.getCause();
+            }
+            throw new EncryptionException(e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EncryptionException("Interrupted while encrypting", e);
+        }
     }
 
     /**
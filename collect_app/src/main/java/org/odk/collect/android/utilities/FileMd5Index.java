@@ -0,0 +1,292 @@
+package org.odk.collect.android.utilities;
+
+import androidx.annotation.VisibleForTesting;
+
+import org.odk.collect.shared.strings.Md5;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import timber.log.Timber;
+
+/**
+ * Remembers the MD5 hash of files keyed by their path, size and last modified time so that a
+ * file's contents only need to be hashed again when it actually changes. The index is persisted
+ * as a tab separated text file so that it survives process restarts.
+ * <p>
+ * Files are hashed without holding the index's lock, and changes are written in one go after a
+ * short delay (or at the end of {@link #getMd5Hashes}) rather than after every lookup.
+ */
+public class FileMd5Index {
+
+    private static final String SEPARATOR = "\t";
+
+    static final long SAVE_DELAY_MILLIS = 1000;
+
+    private static final Map<String, FileMd5Index> INSTANCES = new HashMap<>();
+
+    private static final ScheduledExecutorService SAVE_EXECUTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "FileMd5Index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final File indexFile;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Object saveLock = new Object();
+    private boolean loaded;
+    private boolean dirty;
+    private boolean saveScheduled;
+
+    @VisibleForTesting
+    FileMd5Index(File indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    /**
+     * Returns the index kept in the given file, shared with everything else in the process that
+     * uses the same file. Separate instances for one file would overwrite each other's entries.
+     */
+    public static synchronized FileMd5Index getInstance(File indexFile) {
+        String path = indexFile.getAbsolutePath();
+        FileMd5Index index = INSTANCES.get(path);
+        if (index == null) {
+            index = new FileMd5Index(indexFile);
+            INSTANCES.put(path, index);
+        }
+
+        return index;
+    }
+
+    public File getIndexFile() {
+        return indexFile;
+    }
+
+    /**
+     * @return the MD5 hash of the file, computed only if the file's size or last modified time
+     * differ from the ones recorded the last time it was hashed, or null if the file can't be read
+     */
+    public String getMd5Hash(File file) {
+        String path = file.getAbsolutePath();
+        long size = file.length();
+        long lastModified = file.lastModified();
+
+        synchronized (this) {
+            loadIfNeeded();
+
+            Entry entry = entries.get(path);
+            if (entry != null && entry.size == size && entry.lastModified == lastModified) {
+                return entry.md5;
+            }
+        }
+
+        // Hash without holding the lock so that other files can be looked up meanwhile
+        String md5 = Md5.getMd5Hash(file);
+
+        synchronized (this) {
+            if (md5 == null) {
+                if (entries.remove(path) != null) {
+                    scheduleSave();
+                }
+            } else {
+                entries.put(path, new Entry(size, lastModified, md5));
+                scheduleSave();
+            }
+        }
+
+        return md5;
+    }
+
+    /**
+     * Like {@link #getMd5Hash(File)} for each of the files but the index is written once at the
+     * end rather than after a delay.
+     *
+     * @return the hashes keyed by the files' absolute paths. Files that can't be read are left out.
+     */
+    public Map<String, String> getMd5Hashes(Collection<File> files) {
+        Map<String, String> hashes = new HashMap<>();
+        Map<File, Entry> misses = new HashMap<>();
+
+        synchronized (this) {
+            loadIfNeeded();
+
+            for (File file : files) {
+                String path = file.getAbsolutePath();
+                long size = file.length();
+                long lastModified = file.lastModified();
+
+                Entry entry = entries.get(path);
+                if (entry != null && entry.size == size && entry.lastModified == lastModified) {
+                    hashes.put(path, entry.md5);
+                } else {
+                    misses.put(file, new Entry(size, lastModified, null));
+                }
+            }
+        }
+
+        if (misses.isEmpty()) {
+            return hashes;
+        }
+
+        Map<String, Entry> computed = new HashMap<>();
+        for (Map.Entry<File, Entry> miss : misses.entrySet()) {
+            String md5 = Md5.getMd5Hash(miss.getKey());
+            Entry stat = miss.getValue();
+            computed.put(miss.getKey().getAbsolutePath(), md5 != null ? new Entry(stat.size, stat.lastModified, md5) : null);
+        }
+
+        synchronized (this) {
+            for (Map.Entry<String, Entry> entry : computed.entrySet()) {
+                if (entry.getValue() == null) {
+                    entries.remove(entry.getKey());
+                } else {
+                    entries.put(entry.getKey(), entry.getValue());
+                    hashes.put(entry.getKey(), entry.getValue().md5);
+                }
+            }
+            dirty = true;
+        }
+
+        flush();
+        return hashes;
+    }
+
+    /**
+     * Records a hash that was computed while the file was written, for example while it was
+     * downloaded, so that it doesn't have to be read again.
+     */
+    public synchronized void put(File file, String md5) {
+        loadIfNeeded();
+
+        entries.put(file.getAbsolutePath(), new Entry(file.length(), file.lastModified(), md5));
+        scheduleSave();
+    }
+
+    public synchronized void remove(File file) {
+        loadIfNeeded();
+
+        if (entries.remove(file.getAbsolutePath()) != null) {
+            scheduleSave();
+        }
+    }
+
+    /**
+     * Writes any changes that haven't been written yet. Changes are otherwise written
+     * {@link #SAVE_DELAY_MILLIS} after the first of them so that many lookups in a row only
+     * rewrite the index once.
+     */
+    public void flush() {
+        Map<String, Entry> snapshot;
+        synchronized (this) {
+            saveScheduled = false;
+            if (!dirty) {
+                return;
+            }
+
+            dirty = false;
+            snapshot = new HashMap<>(entries);
+        }
+
+        synchronized (saveLock) {
+            save(snapshot);
+        }
+    }
+
+    private void scheduleSave() {
+        dirty = true;
+        if (!saveScheduled) {
+            saveScheduled = true;
+            SAVE_EXECUTOR.schedule(this::flush, SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void loadIfNeeded() {
+        if (loaded) {
+            return;
+        }
+
+        loaded = true;
+        if (!indexFile.exists()) {
+            return;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(SEPARATOR);
+                if (parts.length != 4) {
+                    continue;
+                }
+
+                try {
+                    entries.put(parts[0], new Entry(Long.parseLong(parts[1]), Long.parseLong(parts[2]), parts[3]));
+                } catch (NumberFormatException e) {
+                    Timber.w("Skipping malformed line in %s", indexFile.getName());
+                }
+            }
+        } catch (IOException e) {
+            Timber.w(e);
+            entries.clear();
+        }
+    }
+
+    /**
+     * Writes the index to a temporary file which then replaces the existing one so that a
+     * crash part way through never leaves a truncated index behind.
+     */
+    private void save(Map<String, Entry> entries) {
+        File parent = indexFile.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            Timber.w("Unable to create %s", parent.getAbsolutePath());
+            return;
+        }
+
+        File tempFile = new File(indexFile.getAbsolutePath() + ".tmp");
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8))) {
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                writer.write(entry.getKey());
+                writer.write(SEPARATOR);
+                writer.write(String.valueOf(entry.getValue().size));
+                writer.write(SEPARATOR);
+                writer.write(String.valueOf(entry.getValue().lastModified));
+                writer.write(SEPARATOR);
+                writer.write(entry.getValue().md5);
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            Timber.w(e);
+            tempFile.delete();
+            return;
+        }
+
+        if (!tempFile.renameTo(indexFile)) {
+            Timber.w("Unable to rename %s to %s", tempFile.getName(), indexFile.getName());
+            tempFile.delete();
+        }
+    }
+
+    private static class Entry {
+        final long size;
+        final long lastModified;
+        final String md5;
+
+        Entry(long size, long lastModified, String md5) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.md5 = md5;
+        }
+    }
+}
@@ -87,6 +87,13 @@ public class FileUtils {
     /** Valid XML stub that can be parsed without error. */
     public static final String STUB_XML = "<?xml version='1.0' ?><stub />";
 
+    /**
+     * JavaRosa keeps global state while building a form (the reference manager, the prototype
+     * manager and the parser's handlers) that isn't thread-safe. Forms that are only built to read
+     * their metadata can be read on several threads at once so they are built holding this lock.
+     */
+    public static final Object JAVAROSA_LOCK = new Object();
+
     static int bufSize = 16 * 1024; // May be set by unit test
 
     private FileUtils() {
@@ -230,9 +237,27 @@ public class FileUtils {
      * by the specification and will always be included. Title and version are optionally included.
      * If the form definition contains a submission block, any or all of submission URI, base 64 RSA
      * public key, auto-delete and auto-send may be included.
+     *
+     * The metadata is read with {@link FormMetadataPullParser} where possible, which is much
+     * faster than building the form because most of the form definition doesn't need to be looked
+     * at. Forms it can't handle are fully parsed. Otherwise the form isn't built here, so errors
+     * only JavaRosa detects are reported when the form is first loaded, which also caches its
+     * FormDef.
      */
     public static HashMap<String, String> getMetadataFromFormDefinition(File formDefinitionXml) {
-        FormDef formDef = XFormUtils.getFormFromFormXml(formDefinitionXml.getAbsolutePath(), "jr://file/" + LAST_SAVED_FILENAME);
+        HashMap<String, String> metadata = FormMetadataPullParser.parse(formDefinitionXml);
+        if (metadata != null) {
+            return metadata;
+        }
+
+        return getMetadataFromFormDef(formDefinitionXml);
+    }
+
+    static HashMap<String, String> getMetadataFromFormDef(File formDefinitionXml) {
+        FormDef formDef;
+        synchronized (JAVAROSA_LOCK) {
+            formDef = XFormUtils.getFormFromFormXml(formDefinitionXml.getAbsolutePath(), "jr://file/" + LAST_SAVED_FILENAME);
+        }
 
         final HashMap<String, String> fields = new HashMap<>();
 
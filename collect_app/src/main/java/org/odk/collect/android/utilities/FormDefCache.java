@@ -1,23 +1,48 @@
 package org.odk.collect.android.utilities;
 
+import android.util.LruCache;
+
 import org.javarosa.core.model.FormDef;
 import org.javarosa.core.util.externalizable.ExtUtil;
+import org.odk.collect.android.BuildConfig;
 import org.odk.collect.android.storage.StoragePathProvider;
 import org.odk.collect.android.storage.StorageSubdirectory;
-import org.odk.collect.shared.strings.Md5;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 
 import timber.log.Timber;
 
-/** Methods for reading from and writing to the FormDef cache */
+/**
+ * Methods for reading from and writing to the FormDef cache. The cache has two tiers: serialized
+ * FormDefs of recently opened forms are kept in a bounded in-memory LRU cache in front of the
+ * .formdef files on disk. Every read deserializes a fresh FormDef so that each form session gets
+ * its own copy of the template.
+ */
 public class FormDefCache {
 
+    /**
+     * Written at the start of every .formdef file. Files without the header, or with a different
+     * format version or app version, were written by an older JavaRosa and are deleted rather
+     * than deserialized.
+     */
+    private static final int MAGIC = 0x4F444B46;
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String MD5_INDEX_FILE_NAME = "formdef.index";
+
+    private static final LruCache<String, byte[]> MEMORY_CACHE = new LruCache<String, byte[]>(getMemoryCacheSize()) {
+        @Override
+        protected int sizeOf(String key, byte[] value) {
+            return value.length;
+        }
+    };
+
     private FormDefCache() {
         // Private constructor
     }
@@ -38,11 +63,13 @@ public class FormDefCache {
         Timber.i("Started saving %s to the cache via temp file %s",
                 formDef.getTitle(), tempCacheFile.getName());
 
+        byte[] serializedFormDef = null;
         Exception caughtException = null;
         try {
-            DataOutputStream dos = new DataOutputStream(new FileOutputStream(tempCacheFile));
-            formDef.writeExternal(dos);
-            dos.close();
+            serializedFormDef = serializeFormDef(formDef);
+            try (FileOutputStream fos = new FileOutputStream(tempCacheFile)) {
+                fos.write(serializedFormDef);
+            }
         } catch (IOException exception) {
             caughtException = exception;
         }
@@ -58,6 +85,7 @@ public class FormDefCache {
             }
         } else {
             if (tempCacheFile.renameTo(cachedFormDefFile)) {
+                MEMORY_CACHE.put(cachedFormDefFile.getAbsolutePath(), serializedFormDef);
                 Timber.i("Renamed %s to %s",
                         tempCacheFile.getName(), cachedFormDefFile.getName());
                 Timber.i("Caching %s took %.3f seconds.", formDef.getTitle(),
@@ -80,43 +108,101 @@ public class FormDefCache {
      */
     public static FormDef readCache(File formXml) {
         final File cachedForm = getCacheFile(formXml);
-        if (cachedForm.exists()) {
-            Timber.i("Attempting to load %s from cached file: %s.", formXml.getName(), cachedForm.getName());
-            final long start = System.currentTimeMillis();
+        final String key = cachedForm.getAbsolutePath();
 
+        byte[] serializedFormDef = MEMORY_CACHE.get(key);
+        if (serializedFormDef != null) {
+            Timber.i("Attempting to load %s from memory cache.", formXml.getName());
+        } else if (cachedForm.exists()) {
+            Timber.i("Attempting to load %s from cached file: %s.", formXml.getName(), cachedForm.getName());
             try {
-                final FormDef deserializedFormDef = deserializeFormDef(cachedForm);
-                if (deserializedFormDef != null) {
-                    Timber.i("Loaded in %.3f seconds.", (System.currentTimeMillis() - start) / 1000F);
-                    return deserializedFormDef;
-                }
-            } catch (Exception e) {
-                // New .formdef will be created from XML
-                Timber.w("Deserialization FAILED! Deleting cache file: %s", cachedForm.getAbsolutePath());
+                serializedFormDef = org.apache.commons.io.FileUtils.readFileToByteArray(cachedForm);
+            } catch (IOException e) {
                 Timber.w(e);
-                cachedForm.delete();
+                return null;
             }
+        } else {
+            return null;
         }
+
+        final long start = System.currentTimeMillis();
+        try {
+            final FormDef deserializedFormDef = deserializeFormDef(serializedFormDef);
+            if (deserializedFormDef != null) {
+                MEMORY_CACHE.put(key, serializedFormDef);
+                Timber.i("Loaded in %.3f seconds.", (System.currentTimeMillis() - start) / 1000F);
+                return deserializedFormDef;
+            }
+
+            Timber.w("Cache file %s was written by an older version. Deleting it.", cachedForm.getName());
+        } catch (Exception e) {
+            // New .formdef will be created from XML
+            Timber.w("Deserialization FAILED! Deleting cache file: %s", cachedForm.getAbsolutePath());
+            Timber.w(e);
+        }
+
+        MEMORY_CACHE.remove(key);
+        cachedForm.delete();
         return null;
     }
 
     /**
-     * Builds and returns a File object for the cached version of a form.
+     * Builds and returns a File object for the cached version of a form. The hash of the form's
+     * contents is only recomputed if its size or last modified time changed since it was last
+     * hashed.
      * @param formXml the File containing the XML form
      * @return a File object
      */
     private static File getCacheFile(File formXml) {
-        return new File(new StoragePathProvider().getOdkDirPath(StorageSubdirectory.CACHE) + File.separator +
-                Md5.getMd5Hash(formXml) + ".formdef");
+        String cacheDirPath = new StoragePathProvider().getOdkDirPath(StorageSubdirectory.CACHE);
+        return new File(cacheDirPath + File.separator +
+                getMd5Index(cacheDirPath).getMd5Hash(formXml) + ".formdef");
     }
 
-    private static FormDef deserializeFormDef(File serializedFormDef) throws Exception {
+    /**
+     * Returns the index of form file hashes kept in the given cache directory. Everything that
+     * hashes form files should share it so that each file is only hashed once per change.
+     */
+    public static FileMd5Index getMd5Index(String cacheDirPath) {
+        return FileMd5Index.getInstance(new File(cacheDirPath, MD5_INDEX_FILE_NAME));
+    }
+
+    private static byte[] serializeFormDef(FormDef formDef) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (DataOutputStream dos = new DataOutputStream(bos)) {
+            dos.writeInt(MAGIC);
+            dos.writeInt(FORMAT_VERSION);
+            dos.writeInt(BuildConfig.VERSION_CODE);
+            formDef.writeExternal(dos);
+        }
+
+        return bos.toByteArray();
+    }
+
+    /**
+     * @return the deserialized FormDef or null if it was serialized with a different format or
+     * app version
+     */
+    private static FormDef deserializeFormDef(byte[] serializedFormDef) throws Exception {
         FormDef fd;
-        try (DataInputStream dis = new DataInputStream(new FileInputStream(serializedFormDef))) {
+        try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(serializedFormDef))) {
+            if (dis.readInt() != MAGIC
+                    || dis.readInt() != FORMAT_VERSION
+                    || dis.readInt() != BuildConfig.VERSION_CODE) {
+                return null;
+            }
+
             fd = new FormDef();
             fd.readExternal(dis, ExtUtil.defaultPrototypes());
         }
 
         return fd;
     }
+
+    /**
+     * Allows the memory tier to use up to an eighth of the heap.
+     */
+    private static int getMemoryCacheSize() {
+        return (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 8);
+    }
 }
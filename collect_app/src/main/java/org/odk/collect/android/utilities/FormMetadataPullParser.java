@@ -0,0 +1,373 @@
+package org.odk.collect.android.utilities;
+
+import org.javarosa.xform.parse.XFormParseException;
+import org.kxml2.io.KXmlParser;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.odk.collect.android.utilities.FileUtils.AUTO_DELETE;
+import static org.odk.collect.android.utilities.FileUtils.AUTO_SEND;
+import static org.odk.collect.android.utilities.FileUtils.BASE64_RSA_PUBLIC_KEY;
+import static org.odk.collect.android.utilities.FileUtils.FORMID;
+import static org.odk.collect.android.utilities.FileUtils.GEOMETRY_XPATH;
+import static org.odk.collect.android.utilities.FileUtils.SUBMISSIONURI;
+import static org.odk.collect.android.utilities.FileUtils.TITLE;
+import static org.odk.collect.android.utilities.FileUtils.VERSION;
+
+/**
+ * Reads the metadata {@link FileUtils#getMetadataFromFormDefinition(File)} needs straight from
+ * the XML of a form definition without building a {@link org.javarosa.core.model.FormDef}.
+ *
+ * The header (title, main instance root and submission) and the binds are read from the model.
+ * The body is only walked if there are geopoint binds, to find the first geopoint question that
+ * is not in a repeat. Forms with a setgeopoint action, or whose references can't be resolved
+ * without evaluating XPath, need the full parse so {@link #parse(File)} returns null for them.
+ */
+final class FormMetadataPullParser {
+
+    private static final Set<String> CONTROLS = new HashSet<>(Arrays.asList(
+            "input", "secret", "select", "select1", "textarea", "trigger", "upload", "range", "rank"));
+
+    private static final String SETGEOPOINT = "setgeopoint";
+    private static final String GEOPOINT = "geopoint";
+
+    private final XmlPullParser parser;
+    private final HashMap<String, String> fields = new HashMap<>();
+    private final Map<String, String> bindIds = new HashMap<>();
+    private final Set<String> geopointRefs = new HashSet<>();
+
+    private boolean mainInstanceRead;
+    private boolean submissionRead;
+
+    private FormMetadataPullParser(XmlPullParser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * @return the metadata of the form or null if the form has to be fully parsed to get it
+     * @throws XFormParseException if the file can't be read or isn't well formed XML
+     */
+    static HashMap<String, String> parse(File formDefinitionXml) {
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(formDefinitionXml))) {
+            KXmlParser parser = new KXmlParser();
+            parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+            parser.setInput(inputStream, null);
+            return new FormMetadataPullParser(parser).parseDocument();
+        } catch (XmlPullParserException | IOException e) {
+            throw new XFormParseException(e.getMessage());
+        }
+    }
+
+    private HashMap<String, String> parseDocument() throws XmlPullParserException, IOException {
+        if (!nextStartTagAtDepth(1)) {
+            return null;
+        }
+
+        while (nextStartTagAtDepth(2)) {
+            String name = parser.getName();
+            if ("head".equals(name)) {
+                if (!parseHead()) {
+                    return null;
+                }
+
+                // Without geopoint binds there is nothing left to look for in the body
+                if (geopointRefs.isEmpty()) {
+                    fields.put(GEOMETRY_XPATH, null);
+                    return fields;
+                }
+            } else if ("body".equals(name)) {
+                return parseBody() ? fields : null;
+            } else {
+                skipSubtree();
+            }
+        }
+
+        if (!mainInstanceRead) {
+            return null;
+        }
+
+        fields.put(GEOMETRY_XPATH, null);
+        return fields;
+    }
+
+    /**
+     * @return false if the form needs a full parse
+     */
+    private boolean parseHead() throws XmlPullParserException, IOException {
+        while (nextStartTagAtDepth(3)) {
+            String name = parser.getName();
+            if ("title".equals(name)) {
+                fields.put(TITLE, readText());
+            } else if ("model".equals(name)) {
+                if (!parseModel()) {
+                    return false;
+                }
+            } else {
+                skipSubtree();
+            }
+        }
+
+        return mainInstanceRead;
+    }
+
+    private boolean parseModel() throws XmlPullParserException, IOException {
+        while (nextStartTagAtDepth(4)) {
+            String name = parser.getName();
+            if ("instance".equals(name) && !mainInstanceRead && getAttribute("id") == null) {
+                parseMainInstance();
+            } else if ("submission".equals(name) && !submissionRead && getAttribute("id") == null) {
+                parseSubmission();
+                skipSubtree();
+            } else if ("bind".equals(name)) {
+                if (!parseBind()) {
+                    return false;
+                }
+                skipSubtree();
+            } else if (SETGEOPOINT.equals(name)) {
+                return false;
+            } else {
+                skipSubtree();
+            }
+        }
+
+        return true;
+    }
+
+    private void parseMainInstance() throws XmlPullParserException, IOException {
+        if (nextStartTagAtDepth(5)) {
+            mainInstanceRead = true;
+            fields.put(FORMID, getAttribute("id"));
+
+            String version = getAttribute("version");
+            if (version != null && version.trim().isEmpty()) {
+                version = null;
+            }
+            fields.put(VERSION, version);
+
+            skipSubtree();
+        }
+
+        skipToEndOfDepth(4);
+    }
+
+    private void parseSubmission() {
+        submissionRead = true;
+        fields.put(SUBMISSIONURI, getAttribute("action"));
+
+        String key = getAttribute("base64RsaPublicKey");
+        if (key != null && key.trim().length() > 0) {
+            fields.put(BASE64_RSA_PUBLIC_KEY, key.trim());
+        }
+
+        fields.put(AUTO_DELETE, getAttribute("auto-delete"));
+        fields.put(AUTO_SEND, getAttribute("auto-send"));
+    }
+
+    private boolean parseBind() {
+        String nodeset = normalizeRef(getAttribute("nodeset"), null);
+        if (nodeset == null) {
+            return false;
+        }
+
+        String id = getAttribute("id");
+        if (id != null) {
+            bindIds.put(id, nodeset);
+        }
+
+        String type = getAttribute("type");
+        if (type != null && GEOPOINT.equals(type.substring(type.indexOf(':') + 1))) {
+            geopointRefs.add(nodeset);
+        }
+
+        return true;
+    }
+
+    /**
+     * Walks the body in document order. Groups set the context that relative references in them
+     * are resolved against and nothing inside a repeat counts. The rest of the body still has to
+     * be read after the first geopoint is found to check there's no setgeopoint action in it.
+     *
+     * @return false if the form needs a full parse
+     */
+    private boolean parseBody() throws XmlPullParserException, IOException {
+        Deque<String> contexts = new ArrayDeque<>();
+        contexts.push("");
+        int repeatDepth = 0;
+        String firstGeopoint = null;
+
+        int bodyDepth = parser.getDepth();
+        while (true) {
+            int eventType = parser.next();
+            if (eventType == XmlPullParser.END_DOCUMENT) {
+                break;
+            } else if (eventType == XmlPullParser.END_TAG) {
+                if (parser.getDepth() == bodyDepth) {
+                    break;
+                }
+
+                contexts.pop();
+                if ("repeat".equals(parser.getName())) {
+                    repeatDepth--;
+                }
+            } else if (eventType == XmlPullParser.START_TAG) {
+                String name = parser.getName();
+                String context = contexts.peek();
+
+                if (SETGEOPOINT.equals(name)) {
+                    return false;
+                } else if ("repeat".equals(name)) {
+                    repeatDepth++;
+                    contexts.push(context);
+                } else if ("group".equals(name)) {
+                    String ref = getAttribute("ref");
+                    if (ref == null) {
+                        contexts.push(context);
+                    } else {
+                        String groupContext = normalizeRef(ref, context);
+                        if (groupContext == null && repeatDepth == 0 && firstGeopoint == null) {
+                            return false;
+                        }
+                        contexts.push(groupContext != null ? groupContext : context);
+                    }
+                } else if (CONTROLS.contains(name) && repeatDepth == 0 && firstGeopoint == null) {
+                    String ref = getControlRef(context);
+                    if (ref == null) {
+                        return false;
+                    } else if (geopointRefs.contains(ref)) {
+                        firstGeopoint = ref;
+                    }
+                    contexts.push(context);
+                } else {
+                    contexts.push(context);
+                }
+            }
+        }
+
+        fields.put(GEOMETRY_XPATH, firstGeopoint);
+        return true;
+    }
+
+    private String getControlRef(String context) {
+        String bind = getAttribute("bind");
+        if (bind != null) {
+            return bindIds.get(bind);
+        }
+
+        return normalizeRef(getAttribute("ref"), context);
+    }
+
+    /**
+     * Returns the absolute path for a reference made up of plain steps, in the form
+     * {@link org.javarosa.core.model.instance.TreeReference#toString(boolean)} uses, or null if
+     * the reference can't be resolved without evaluating it.
+     *
+     * @param context the absolute path relative references are resolved against or null if they
+     *                aren't allowed
+     */
+    static String normalizeRef(String ref, String context) {
+        if (ref == null) {
+            return null;
+        }
+
+        ref = ref.trim();
+        if (ref.isEmpty() || ref.contains("..") || ref.contains("//")) {
+            return null;
+        }
+
+        for (int i = 0; i < ref.length(); i++) {
+            char c = ref.charAt(i);
+            if (Character.isWhitespace(c) || "[]()@*$|=<>,'\"".indexOf(c) != -1) {
+                return null;
+            }
+        }
+
+        String path;
+        if (ref.startsWith("/")) {
+            path = ref;
+        } else if (context == null || context.isEmpty()) {
+            return null;
+        } else {
+            path = context + "/" + ref;
+        }
+
+        StringBuilder normalized = new StringBuilder();
+        for (String step : path.split("/")) {
+            if (!step.isEmpty() && !".".equals(step)) {
+                normalized.append('/').append(step);
+            }
+        }
+
+        return normalized.length() > 0 ? normalized.toString() : null;
+    }
+
+    private String readText() throws XmlPullParserException, IOException {
+        StringBuilder text = new StringBuilder();
+        int depth = parser.getDepth();
+        while (parser.next() != XmlPullParser.END_TAG || parser.getDepth() != depth) {
+            if (parser.getEventType() == XmlPullParser.TEXT) {
+                text.append(parser.getText());
+            } else if (parser.getEventType() == XmlPullParser.END_DOCUMENT) {
+                break;
+            }
+        }
+
+        return text.toString().trim();
+    }
+
+    /**
+     * Attributes are matched on their name alone like JavaRosa does when given no namespace, so
+     * that orx:version is found as version.
+     */
+    private String getAttribute(String name) {
+        for (int i = 0; i < parser.getAttributeCount(); i++) {
+            if (name.equals(parser.getAttributeName(i))) {
+                return parser.getAttributeValue(i);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Advances to the next start tag at the given depth, returning false if the enclosing
+     * element (at depth - 1) ends first.
+     */
+    private boolean nextStartTagAtDepth(int depth) throws XmlPullParserException, IOException {
+        while (true) {
+            int eventType = parser.next();
+            if (eventType == XmlPullParser.END_DOCUMENT) {
+                return false;
+            } else if (eventType == XmlPullParser.START_TAG && parser.getDepth() == depth) {
+                return true;
+            } else if (eventType == XmlPullParser.END_TAG && parser.getDepth() < depth) {
+                return false;
+            }
+        }
+    }
+
+    private void skipToEndOfDepth(int depth) throws XmlPullParserException, IOException {
+        while (parser.getEventType() != XmlPullParser.END_DOCUMENT
+                && !(parser.getEventType() == XmlPullParser.END_TAG && parser.getDepth() == depth)) {
+            parser.next();
+        }
+    }
+
+    private void skipSubtree() throws XmlPullParserException, IOException {
+        if (parser.getEventType() == XmlPullParser.START_TAG) {
+            skipToEndOfDepth(parser.getDepth());
+        }
+    }
+}
@@ -9,32 +9,51 @@ import org.odk.collect.android.injection.DaggerUtils;
 import org.odk.collect.android.storage.StorageSubdirectory;
 import org.odk.collect.forms.Form;
 import org.odk.collect.forms.FormsRepository;
-import org.odk.collect.shared.strings.Md5;
 import org.odk.collect.shared.strings.Validator;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import timber.log.Timber;
 
 public class FormsDirDiskFormsSynchronizer implements DiskFormsSynchronizer {
 
+    /**
+     * Parsing is mostly CPU bound so there's no point in using more threads than there are cores
+     */
+    private static final int MAX_PARALLEL_PARSES = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
     private static int counter;
 
     private final FormsRepository formsRepository;
     private final String formsDir;
+    private final String cacheDir;
 
     public FormsDirDiskFormsSynchronizer() {
-        this(DaggerUtils.getComponent(Collect.getInstance()).formsRepositoryProvider().get(), DaggerUtils.getComponent(Collect.getInstance()).storagePathProvider().getOdkDirPath(StorageSubdirectory.FORMS));
+        this(DaggerUtils.getComponent(Collect.getInstance()).formsRepositoryProvider().get(),
+                DaggerUtils.getComponent(Collect.getInstance()).storagePathProvider().getOdkDirPath(StorageSubdirectory.FORMS),
+                DaggerUtils.getComponent(Collect.getInstance()).storagePathProvider().getOdkDirPath(StorageSubdirectory.CACHE));
     }
 
-    public FormsDirDiskFormsSynchronizer(FormsRepository formsRepository, String formsDir) {
+    /**
+     * @param cacheDir where the index of form file hashes is kept so that unchanged forms don't
+     *                 have to be hashed again on every sync
+     */
+    public FormsDirDiskFormsSynchronizer(FormsRepository formsRepository, String formsDir, String cacheDir) {
         this.formsRepository = formsRepository;
         this.formsDir = formsDir;
+        this.cacheDir = cacheDir;
     }
 
     @Override
@@ -59,38 +78,45 @@ public class FormsDirDiskFormsSynchronizer implements DiskFormsSynchronizer {
                 // Get all the files in the /odk/foms directory
                 File[] formDefs = formDir.listFiles();
 
-                // Step 1: assemble the candidate form files
-                List<File> formsToAdd = filterFormsToAdd(formDefs, instance);
+                // Step 1: assemble the candidate form files keyed by path
+                Map<String, File> formsToAdd = new HashMap<>();
+                for (File file : filterFormsToAdd(formDefs, instance)) {
+                    formsToAdd.put(file.getAbsolutePath(), file);
+                }
 
                 // Step 2: quickly run through and figure out what files we need to
-                // parse and update; this is quick, as we only calculate the md5
-                // and see if it has changed.
-                List<IdFile> uriToUpdate = new ArrayList<>();
-                List<Form> forms = formsRepository.getAll();
-                for (Form form : forms) {
+                // parse and update. Hashes are only recomputed for files whose size or
+                // last modified time changed since they were last hashed.
+                List<Form> formsOnDisk = new ArrayList<>();
+                List<File> formFilesOnDisk = new ArrayList<>();
+                FileMd5Index md5Index = FormDefCache.getMd5Index(cacheDir);
+                for (Form form : formsRepository.getAll()) {
                     // For each element in the provider, see if the file already exists
-                    String sqlFilename = form.getFormFilePath();
-                    String md5 = form.getMD5Hash();
-
-                    File sqlFile = new File(sqlFilename);
-                    if (sqlFile.exists()) {
-                        // remove it from the list of forms (we only want forms
-                        // we haven't added at the end)
-                        formsToAdd.remove(sqlFile);
-                        String md5Computed = Md5.getMd5Hash(sqlFile);
-                        if (md5Computed == null || md5 == null || !md5Computed.equals(md5)) {
-                            // Probably someone overwrite the file on the sdcard
-                            // So re-parse it and update it's information
-                            Long id = form.getDbId();
-                            uriToUpdate.add(new IdFile(id, sqlFile));
-                        }
+                    File sqlFile = new File(form.getFormFilePath());
+
+                    // remove it from the forms to add (we only want forms we haven't added at
+                    // the end)
+                    if (formsToAdd.remove(sqlFile.getAbsolutePath()) != null || sqlFile.exists()) {
+                        formsOnDisk.add(form);
+                        formFilesOnDisk.add(sqlFile);
                     } else {
                         //File not found in sdcard but file path found in database
                         //probably because the file has been deleted or filename was changed in sdcard
                         //Add the ID to list so that they could be deleted all together
+                        idsToDelete.add(form.getDbId());
+                        md5Index.remove(sqlFile);
+                    }
+                }
 
-                        Long id = form.getDbId();
-                        idsToDelete.add(id);
+                List<IdFile> formFilesToParse = new ArrayList<>();
+                Map<String, String> md5Hashes = md5Index.getMd5Hashes(formFilesOnDisk);
+                for (int i = 0; i < formsOnDisk.size(); i++) {
+                    String md5 = formsOnDisk.get(i).getMD5Hash();
+                    String md5Computed = md5Hashes.get(formFilesOnDisk.get(i).getAbsolutePath());
+                    if (md5Computed == null || md5 == null || !md5Computed.equals(md5)) {
+                        // Probably someone overwrite the file on the sdcard
+                        // So re-parse it and update it's information
+                        formFilesToParse.add(new IdFile(formsOnDisk.get(i).getDbId(), formFilesOnDisk.get(i)));
                     }
                 }
 
@@ -99,71 +125,46 @@ public class FormsDirDiskFormsSynchronizer implements DiskFormsSynchronizer {
                     formsRepository.delete(id);
                 }
 
-                // Step3: go through uriToUpdate to parse and update each in turn.
-                // Note: buildContentValues calls getMetadataFromFormDefinition which parses the
-                // form XML. This takes time for large forms and/or slow devices.
-                Collections.shuffle(uriToUpdate); // Big win if multiple DiskSyncTasks running
-                for (IdFile entry : uriToUpdate) {
-                    File formDefFile = entry.file;
-                    // Probably someone overwrite the file on the sdcard
-                    // So re-parse it and update it's information
-                    Form form;
-
-                    try {
-                        form = parseForm(formDefFile);
-                    } catch (IllegalArgumentException e) {
-                        errors.append(e.getMessage()).append("\r\n");
-                        File badFile = new File(formDefFile.getParentFile(),
-                                formDefFile.getName() + ".bad");
-                        badFile.delete();
-                        formDefFile.renameTo(badFile);
-                        continue;
-                    }
-
-                    formsRepository.save(new Form.Builder(form)
-                            .dbId(entry.id)
-                            .build());
+                // Step 3: parse the changed and newly-discovered files on a pool of threads.
+                // Note: parseForm calls getMetadataFromFormDefinition which parses the
+                // form XML. This takes time for large forms and/or slow devices. Only the
+                // pull parse runs in parallel: the rare forms that have to be built with
+                // JavaRosa are built one at a time under FileUtils.JAVAROSA_LOCK.
+                for (File file : formsToAdd.values()) {
+                    formFilesToParse.add(new IdFile(null, file));
+                }
+                Collections.shuffle(formFilesToParse); // Big win if multiple DiskSyncTasks running
+                List<ParseResult> parseResults = parseForms(formFilesToParse);
+
+                // Step 4: save all the forms that could be parsed in one transaction.
+                // Since parsing is so slow, if there are multiple tasks, they may have
+                // already added some of the new forms. Skip the ones that have been added.
+                Set<String> recordedPaths = new HashSet<>();
+                for (Form form : formsRepository.getAllByPaths(formsToAdd.keySet())) {
+                    recordedPaths.add(new File(form.getFormFilePath()).getAbsolutePath());
                 }
-                uriToUpdate.clear();
-
-                // Step 4: go through the newly-discovered files in xFormsToAdd and add them.
-                // This is slow because buildContentValues(...) is slow.
-                //
-                Collections.shuffle(formsToAdd); // Big win if multiple DiskSyncTasks running
-                while (!formsToAdd.isEmpty()) {
-                    File formDefFile = formsToAdd.remove(0);
-
-                    // Since parsing is so slow, if there are multiple tasks,
-                    // they may have already updated the database.
-                    // Skip this file if that is the case.
-                    if (formsRepository.getOneByPath(formDefFile.getAbsolutePath()) != null) {
-                        Timber.i("[%d] skipping -- definition already recorded: %s", instance, formDefFile.getAbsolutePath());
-                        continue;
-                    }
-
-                    // Parse it for the first time...
-                    Form form;
 
-                    try {
-                        form = parseForm(formDefFile);
-                    } catch (IllegalArgumentException e) {
-                        errors.append(e.getMessage()).append("\r\n");
+                List<Form> formsToSave = new ArrayList<>();
+                for (ParseResult result : parseResults) {
+                    File formDefFile = result.idFile.file;
+                    if (result.error != null) {
+                        errors.append(result.error).append("\r\n");
                         File badFile = new File(formDefFile.getParentFile(),
                                 formDefFile.getName() + ".bad");
                         badFile.delete();
                         formDefFile.renameTo(badFile);
-                        continue;
-                    }
-
-                    // insert into content provider
-                    try {
-                        // insert failures are OK and expected if multiple
-                        // DiskSync scanners are active.
-                        formsRepository.save(form);
-                    } catch (SQLException e) {
-                        Timber.i("[%d] %s", instance, e.toString());
+                    } else if (result.idFile.id != null) {
+                        formsToSave.add(new Form.Builder(result.form)
+                                .dbId(result.idFile.id)
+                                .build());
+                    } else if (recordedPaths.contains(formDefFile.getAbsolutePath())) {
+                        Timber.i("[%d] skipping -- definition already recorded: %s", instance, formDefFile.getAbsolutePath());
+                    } else {
+                        formsToSave.add(result.form);
                     }
                 }
+
+                saveForms(formsToSave, instance);
             }
             if (errors.length() != 0) {
                 statusMessage = errors.toString();
@@ -176,6 +177,87 @@ public class FormsDirDiskFormsSynchronizer implements DiskFormsSynchronizer {
         }
     }
 
+    /**
+     * Parses the form files on a bounded pool of threads. Building a form with JavaRosa isn't
+     * thread-safe so {@link FileUtils#getMetadataFromFormDefinition} does that under a lock.
+     *
+     * @return the result for each file in the same order as the files
+     */
+    private List<ParseResult> parseForms(List<IdFile> formFiles) {
+        List<ParseResult> results = new ArrayList<>(formFiles.size());
+        if (formFiles.size() <= 1) {
+            for (IdFile formFile : formFiles) {
+                results.add(parseFormFile(formFile));
+            }
+            return results;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(MAX_PARALLEL_PARSES, formFiles.size()));
+        try {
+            List<Future<ParseResult>> futures = new ArrayList<>(formFiles.size());
+            for (IdFile formFile : formFiles) {
+                futures.add(executor.submit(() -> parseFormFile(formFile)));
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                results.add(getParseResult(futures.get(i), formFiles.get(i)));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        return results;
+    }
+
+    private ParseResult parseFormFile(IdFile formFile) {
+        try {
+            return new ParseResult(formFile, parseForm(formFile.file), null);
+        } catch (IllegalArgumentException e) {
+            return new ParseResult(formFile, null, e.getMessage());
+        }
+    }
+
+    private static ParseResult getParseResult(Future<ParseResult> future, IdFile formFile) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            Timber.e(e.getCause());
+            return new ParseResult(formFile, null, formFile.file.getName() + " :: " + e.getCause());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void saveForms(List<Form> forms, int instance) {
+        if (forms.isEmpty()) {
+            return;
+        }
+
+        try {
+            formsRepository.saveAll(forms);
+        } catch (SQLException e) {
+            // insert failures are OK and expected if multiple DiskSync scanners are
+            // active so fall back to saving the forms one by one
+            Timber.i("[%d] %s", instance, e.toString());
+            for (Form form : forms) {
+                try {
+                    formsRepository.save(form);
+                } catch (SQLException formException) {
+                    Timber.i("[%d] %s", instance, formException.toString());
+                }
+            }
+        }
+    }
+
     public static List<File> filterFormsToAdd(File[] formDefs, int backgroundInstanceId) {
         List<File> formsToAdd = new LinkedList<>();
         if (formDefs != null) {
@@ -270,4 +352,16 @@ public class FormsDirDiskFormsSynchronizer implements DiskFormsSynchronizer {
             this.file = file;
         }
     }
+
+    private static class ParseResult {
+        public final IdFile idFile;
+        public final Form form;
+        public final String error;
+
+        ParseResult(IdFile idFile, Form form, String error) {
+            this.idFile = idFile;
+            this.form = form;
+            this.error = error;
+        }
+    }
 }
@@ -65,6 +65,38 @@ public class SQLiteUtils {
             .end();
     }
 
+    public static void createIndex(SQLiteDatabase db, String index, String table, String... columns) {
+        StringBuilder quotedColumns = new StringBuilder();
+        for (String column : columns) {
+            if (quotedColumns.length() > 0) {
+                quotedColumns.append(", ");
+            }
+            quotedColumns.append(CustomSQLiteQueryBuilder.quoteIdentifier(column));
+        }
+
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + CustomSQLiteQueryBuilder.quoteIdentifier(index)
+                + " ON " + CustomSQLiteQueryBuilder.quoteIdentifier(table) + " (" + quotedColumns + ")");
+    }
+
+    public static boolean doesIndexExist(SQLiteDatabase db, String index) {
+        try (Cursor cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'index' AND name = ?", new String[]{index})) {
+            return cursor.getCount() == 1;
+        }
+    }
+
+    /**
+     * Returns a selection that matches rows where the column has any of the given number of
+     * values, for example {@code column IN (?, ?, ?)}.
+     */
+    public static String getInSelection(String column, int valueCount) {
+        StringBuilder selection = new StringBuilder(column).append(" IN (");
+        for (int i = 0; i < valueCount; i++) {
+            selection.append(i == 0 ? "?" : ", ?");
+        }
+
+        return selection.append(')').toString();
+    }
+
     public static void dropTable(SQLiteDatabase db, String table) {
         CustomSQLiteQueryExecutor.begin(db)
             .dropIfExists(table)
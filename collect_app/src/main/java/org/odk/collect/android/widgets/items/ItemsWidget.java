@@ -25,7 +25,6 @@ import org.javarosa.xpath.parser.XPathSyntaxException;
 import org.odk.collect.android.R;
 import org.odk.collect.android.exception.ExternalDataException;
 import org.odk.collect.android.fastexternalitemset.ItemsetDao;
-import org.odk.collect.android.fastexternalitemset.ItemsetDbAdapter;
 import org.odk.collect.android.external.ExternalDataUtil;
 import org.odk.collect.android.formentry.questions.QuestionDetails;
 import org.odk.collect.android.fastexternalitemset.XPathParseTool;
@@ -66,7 +65,7 @@ public abstract class ItemsWidget extends QuestionWidget {
 
     private void readFastExternalItems() {
         try {
-            items = new ItemsetDao(new ItemsetDbAdapter()).getItems(getFormEntryPrompt(), new XPathParseTool());
+            items = ItemsetDao.forCurrentFormSession().getItems(getFormEntryPrompt(), new XPathParseTool());
         } catch (FileNotFoundException e) {
             showWarning(getContext().getString(R.string.file_missing, e.getMessage()));
         } catch (XPathSyntaxException e) {
@@ -23,12 +23,14 @@ import org.odk.collect.android.R;
 import org.odk.collect.android.TestSettingsProvider;
 import org.odk.collect.android.activities.viewmodels.FormMapViewModel;
 import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.geo.MapBounds;
 import org.odk.collect.android.geo.MapPoint;
 import org.odk.collect.android.geo.MapProvider;
 import org.odk.collect.android.geo.TestMapFragment;
 import org.odk.collect.android.injection.config.AppDependencyModule;
 import org.odk.collect.android.support.CollectHelpers;
 import org.odk.collect.formstest.InMemInstancesRepository;
+import org.odk.collect.forms.instances.Instance;
 import org.odk.collect.android.preferences.keys.AdminKeys;
 import org.odk.collect.android.preferences.screens.MapsPreferencesFragment;
 import org.odk.collect.android.provider.InstanceProvider;
@@ -218,6 +220,60 @@ public class FormMapActivityTest {
         }
     }
 
+    @Test
+    public void changingViewport_onlyRemovesAndAddsTheMarkersThatLeftOrCameIntoView() {
+        int added = map.getAddedFeatureCount();
+        int removed = map.getRemovedFeatureCount();
+
+        map.setVisibleBounds(new MapBounds(10.05, 125.5, 10.5, 125.65));
+        map.changeViewport();
+
+        assertThat(map.getAddedFeatureCount(), is(added));
+        assertThat(map.getRemovedFeatureCount(), is(removed + 3));
+        assertThat(map.isMapped(new MapPoint(10.1, 125.6)), is(true));
+        assertThat(map.isMapped(new MapPoint(10.3, 125.6)), is(true));
+        assertThat(map.isMapped(new MapPoint(10.4, 125.6)), is(true));
+        assertThat(map.isMapped(new MapPoint(10.0, 125.6)), is(false));
+
+        map.setVisibleBounds(null);
+        map.changeViewport();
+
+        assertThat(map.getAddedFeatureCount(), is(added + 3));
+        assertThat(map.getRemovedFeatureCount(), is(removed + 3));
+        assertThat(map.getMappedPointCount(), is(expectedPoints.size()));
+    }
+
+    @Test
+    public void whenThereAreTooManyInstancesInView_theyAreShownAsAClusterLabelledWithTheirCount() {
+        // The @Before block set up a map with points. Reset everything for this test.
+        map.resetState();
+
+        ActivityController controller = CollectHelpers.buildThemedActivity(FormMapActivity.class);
+        FormMapActivity activity = (FormMapActivity) controller.get();
+
+        List<Instance> instances = new ArrayList<>();
+        for (long i = 0; i < 250; i++) {
+            instances.add(new Instance.Builder().dbId(i)
+                    .displayName("Form" + i)
+                    .lastStatusChangeDate(1487782554846L)
+                    .formId("formId1")
+                    .formVersion("2019103101")
+                    .geometryType("Point")
+                    .geometry("{\"type\":\"Point\",\"coordinates\":[125.6, 10.0]}")
+                    .status(Instance.STATUS_COMPLETE).build());
+        }
+
+        InMemInstancesRepository inMemInstancesRepository = new InMemInstancesRepository(instances);
+        FormMapViewModel viewModel = new FormMapViewModel(FormMapViewModelTest.TEST_FORM_1, inMemInstancesRepository);
+        activity.viewModelFactory = new TestFactory(viewModel);
+
+        controller.setup();
+
+        MapPoint point = new MapPoint(10.0, 125.6);
+        assertThat(map.getMappedPointCount(), is(1));
+        assertThat(map.getMarkerLabel(map.getFeatureIdFor(point)), is("250"));
+    }
+
     @Test
     public void openingEditableInstances_launchesEditActivity() {
         MapPoint editableAndFinalized = new MapPoint(10.1, 125.6);
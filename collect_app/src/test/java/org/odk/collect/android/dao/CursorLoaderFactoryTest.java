@@ -0,0 +1,83 @@
+package org.odk.collect.android.dao;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.odk.collect.android.dao.CursorLoaderFactory.INSTANCE_NAME_PREFIX_SELECTION;
+import static org.odk.collect.android.dao.CursorLoaderFactory.withPrefixArgs;
+
+@RunWith(AndroidJUnit4.class)
+public class CursorLoaderFactoryTest {
+
+    private SQLiteDatabase database;
+
+    @Before
+    public void setup() {
+        database = SQLiteDatabase.create(null);
+        database.execSQL("CREATE TABLE instances (_id integer primary key, displayName text, status text)");
+        database.execSQL("CREATE INDEX instances_display_name_idx ON instances (displayName COLLATE NOCASE)");
+
+        for (String name : asList("Apple", "apricot", "APPLE pie", "Banana", "Ap", "A", "pineapple", "Äpfel")) {
+            database.execSQL("INSERT INTO instances (displayName, status) VALUES (?, 'complete')", new Object[]{name});
+        }
+    }
+
+    @After
+    public void teardown() {
+        database.close();
+    }
+
+    @Test
+    public void prefixSelection_matchesNamesStartingWithPrefixIgnoringCase() {
+        assertThat(query("ap"), is(asList("Ap", "Apple", "APPLE pie", "apricot")));
+        assertThat(query("APPLE"), is(asList("Apple", "APPLE pie")));
+        assertThat(query("b"), is(asList("Banana")));
+        assertThat(query("c"), is(asList()));
+    }
+
+    @Test
+    public void prefixSelection_usesDisplayNameIndex() {
+        try (Cursor cursor = database.rawQuery("EXPLAIN QUERY PLAN SELECT * FROM instances WHERE " + INSTANCE_NAME_PREFIX_SELECTION, withPrefixArgs("ap"))) {
+            cursor.moveToFirst();
+            assertThat(cursor.getString(cursor.getColumnIndex("detail")), containsString("instances_display_name_idx"));
+        }
+    }
+
+    @Test
+    public void withPrefixArgs_appendsBoundsToArgs() {
+        String[] args = withPrefixArgs("ab", "complete", "submitted");
+
+        assertThat(args.length, is(4));
+        assertThat(args[0], is("complete"));
+        assertThat(args[1], is("submitted"));
+        assertThat(args[2], is("ab"));
+        assertThat(args[3].startsWith("ab"), is(true));
+    }
+
+    private List<String> query(String prefix) {
+        List<String> names = new ArrayList<>();
+        try (Cursor cursor = database.query("instances", new String[]{"displayName"},
+                "status = ? and " + INSTANCE_NAME_PREFIX_SELECTION, withPrefixArgs(prefix, "complete"),
+                null, null, "displayName COLLATE NOCASE ASC")) {
+            while (cursor.moveToNext()) {
+                names.add(cursor.getString(0));
+            }
+        }
+
+        return names;
+    }
+}
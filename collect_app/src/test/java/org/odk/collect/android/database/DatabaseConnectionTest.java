@@ -0,0 +1,110 @@
+package org.odk.collect.android.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.shared.TempFiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+@RunWith(AndroidJUnit4.class)
+public class DatabaseConnectionTest {
+
+    private final Context context = ApplicationProvider.getApplicationContext();
+    private final String dbPath = TempFiles.createTempDir().getAbsolutePath();
+
+    @After
+    public void teardown() {
+        DatabaseConnection.closeAll();
+    }
+
+    @Test
+    public void connectionsToTheSameFile_shareADatabase() {
+        SQLiteDatabase database = buildConnection().getWriteableDatabase();
+
+        assertThat(buildConnection().getReadableDatabase(), sameInstance(database));
+        assertThat(DatabaseConnection.getMetrics().getOpenHelpers(), is(1));
+    }
+
+    @Test
+    public void connectionsCreatedOnDifferentThreads_shareADatabase() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<SQLiteDatabase>> databases = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            databases.add(executor.submit(() -> buildConnection().getWriteableDatabase()));
+        }
+
+        SQLiteDatabase database = databases.get(0).get();
+        for (Future<SQLiteDatabase> other : databases) {
+            assertThat(other.get(), sameInstance(database));
+        }
+
+        executor.shutdown();
+        assertThat(DatabaseConnection.getMetrics().getOpenHelpers(), is(1));
+    }
+
+    @Test
+    public void database_usesWriteAheadLogging() {
+        assertThat(buildConnection().getWriteableDatabase().isWriteAheadLoggingEnabled(), is(true));
+    }
+
+    @Test
+    public void queries_areCountedInMetrics() {
+        SQLiteDatabase database = buildConnection().getReadableDatabase();
+        try (Cursor cursor = database.rawQuery("SELECT * FROM things", null)) {
+            cursor.moveToFirst();
+        }
+
+        assertThat(DatabaseConnection.getMetrics().getQueries(), is(1L));
+    }
+
+    @Test
+    public void closeAll_closesDatabasesAndResetsMetrics() {
+        SQLiteDatabase database = buildConnection().getReadableDatabase();
+        try (Cursor cursor = database.rawQuery("SELECT * FROM things", null)) {
+            cursor.getCount();
+        }
+        assertThat(DatabaseConnection.getMetrics().getQueries(), is(1L));
+
+        DatabaseConnection.closeAll();
+
+        assertThat(database.isOpen(), is(false));
+        assertThat(DatabaseConnection.getMetrics().getQueries(), is(0L));
+        assertThat(DatabaseConnection.getMetrics(), is(new DatabaseConnectionMetrics(0, 0, 0, 0, 0, 0)));
+    }
+
+    private DatabaseConnection buildConnection() {
+        return new DatabaseConnection(context, dbPath, "test.db", new TestMigrator(), 1);
+    }
+
+    private static class TestMigrator implements DatabaseMigrator {
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE things (_id integer primary key, name text)");
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion) {
+        }
+
+        @Override
+        public void onDowngrade(SQLiteDatabase db) {
+        }
+    }
+}
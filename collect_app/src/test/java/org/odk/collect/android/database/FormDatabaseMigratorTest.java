@@ -49,7 +49,7 @@ public class FormDatabaseMigratorTest {
 
     @Before
     public void setup() {
-        assertThat("Test expects different Forms DB version", DatabaseConstants.FORMS_DATABASE_VERSION, is(10));
+        assertThat("Test expects different Forms DB version", DatabaseConstants.FORMS_DATABASE_VERSION, is(12));
         database = SQLiteDatabase.create(null);
     }
 
@@ -90,6 +90,17 @@ public class FormDatabaseMigratorTest {
         }
     }
 
+    @Test
+    public void onUpgrade_fromVersion9_addsIndexes() {
+        createVersion9Database(database);
+
+        new FormDatabaseMigrator().onUpgrade(database, 9);
+
+        assertThat(SQLiteUtils.doesIndexExist(database, "forms_form_id_version_idx"), is(true));
+        assertThat(SQLiteUtils.doesIndexExist(database, "forms_md5_hash_idx"), is(true));
+        assertThat(SQLiteUtils.doesIndexExist(database, "forms_form_file_path_idx"), is(true));
+    }
+
     @Test
     public void onUpgrade_fromVersion8() {
         createVersion8Database(database);
@@ -0,0 +1,75 @@
+package org.odk.collect.android.database;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.database.instances.InstanceDatabaseMigrator;
+import org.odk.collect.android.utilities.SQLiteUtils;
+
+import static android.provider.BaseColumns._ID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.odk.collect.android.database.DatabaseConstants.INSTANCES_TABLE_NAME;
+import static org.odk.collect.android.database.instances.DatabaseInstanceColumns.CAN_EDIT_WHEN_COMPLETE;
+import static org.odk.collect.android.database.instances.DatabaseInstanceColumns.DELETED_DATE;
+import static org.odk.collect.android.database.instances.DatabaseInstanceColumns.DISPLAY_NAME;
+import static org.odk.collect.android.database.instances.DatabaseInstanceColumns.GEOMETRY;
+import static org.odk.collect.android.database.instances.DatabaseInstanceColumns.GEOMETRY_TYPE;
+import static org.odk.collect.android.database.instances.DatabaseInstanceColumns.INSTANCE_FILE_PATH;
+import static org.odk.collect.android.database.instances.DatabaseInstanceColumns.JR_FORM_ID;
+import static org.odk.collect.android.database.instances.DatabaseInstanceColumns.JR_VERSION;
+import static org.odk.collect.android.database.instances.DatabaseInstanceColumns.LAST_STATUS_CHANGE_DATE;
+import static org.odk.collect.android.database.instances.DatabaseInstanceColumns.STATUS;
+import static org.odk.collect.android.database.instances.DatabaseInstanceColumns.SUBMISSION_URI;
+
+@RunWith(AndroidJUnit4.class)
+public class InstanceDatabaseMigratorTest {
+
+    private SQLiteDatabase database;
+
+    @Before
+    public void setup() {
+        assertThat("Test expects different Instances DB version", DatabaseConstants.INSTANCES_DATABASE_VERSION, is(8));
+        database = SQLiteDatabase.create(null);
+    }
+
+    @After
+    public void teardown() {
+        database.close();
+    }
+
+    @Test
+    public void onUpgrade_fromVersion7_addsIndexes() {
+        createVersion7Database(database);
+
+        new InstanceDatabaseMigrator().onUpgrade(database, 7);
+
+        assertThat(SQLiteUtils.doesIndexExist(database, "instances_display_name_idx"), is(true));
+        assertThat(SQLiteUtils.doesIndexExist(database, "instances_last_status_change_date_idx"), is(true));
+    }
+
+    private void createVersion7Database(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + INSTANCES_TABLE_NAME + " ("
+                + _ID + " integer primary key, "
+                + DISPLAY_NAME + " text not null, "
+                + SUBMISSION_URI + " text, "
+                + CAN_EDIT_WHEN_COMPLETE + " text, "
+                + INSTANCE_FILE_PATH + " text not null, "
+                + JR_FORM_ID + " text not null, "
+                + JR_VERSION + " text, "
+                + STATUS + " text not null, "
+                + LAST_STATUS_CHANGE_DATE + " date not null, "
+                + DELETED_DATE + " date, "
+                + GEOMETRY + " text, "
+                + GEOMETRY_TYPE + " text);");
+
+        SQLiteUtils.createIndex(db, INSTANCES_TABLE_NAME + "_status_idx", INSTANCES_TABLE_NAME, STATUS);
+        SQLiteUtils.createIndex(db, INSTANCES_TABLE_NAME + "_instance_file_path_idx", INSTANCES_TABLE_NAME, INSTANCE_FILE_PATH);
+        SQLiteUtils.createIndex(db, INSTANCES_TABLE_NAME + "_form_id_version_idx", INSTANCES_TABLE_NAME, JR_FORM_ID, JR_VERSION);
+    }
+}
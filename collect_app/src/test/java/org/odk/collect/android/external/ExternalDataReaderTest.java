@@ -12,6 +12,7 @@ import org.junit.runner.RunWith;
 import org.odk.collect.android.storage.StoragePathProvider;
 import org.odk.collect.android.storage.StorageSubdirectory;
 import org.odk.collect.android.support.CollectHelpers;
+import org.odk.collect.android.tasks.FormLoaderTask;
 import org.odk.collect.android.utilities.CustomSQLiteQueryBuilder;
 import org.odk.collect.android.utilities.FileUtils;
 import org.odk.collect.android.utilities.SQLiteUtils;
@@ -25,13 +26,21 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import static java.util.Arrays.asList;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 import static org.odk.collect.android.external.ExternalDataUtil.COLUMN_DATASET_FILENAME;
 import static org.odk.collect.android.external.ExternalDataUtil.COLUMN_MD5_HASH;
 import static org.odk.collect.android.external.ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME;
@@ -86,6 +95,28 @@ public class ExternalDataReaderTest {
         assertThat(SQLiteUtils.doesTableExist(db, EXTERNAL_METADATA_TABLE_NAME), is(true));
     }
 
+    @Test
+    public void doImport_inParallel_importsEveryDataSet() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        ExternalDataReader externalDataReader = new ExternalDataReaderImpl(mock(FormLoaderTask.class), executor);
+
+        assertThat(externalDataReader.doImport(formDefToCsvMedia), is(true));
+        assertThat(dbFile.exists(), is(true));
+        executor.shutdown();
+    }
+
+    @Test
+    public void doImport_inParallel_whenCancelled_returnsFalseAndDeletesDatabase() {
+        FormLoaderTask formLoaderTask = mock(FormLoaderTask.class);
+        when(formLoaderTask.isCancelled()).thenReturn(true);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        ExternalDataReader externalDataReader = new ExternalDataReaderImpl(formLoaderTask, executor);
+
+        assertThat(externalDataReader.doImport(formDefToCsvMedia), is(false));
+        assertThat(dbFile.exists(), is(false));
+        executor.shutdown();
+    }
+
     /**
      * There are multiple features that ingest CSV files so the original file should not be modified.
      * https://github.com/getodk/collect/issues/3335
@@ -189,6 +220,103 @@ public class ExternalDataReaderTest {
         assertThat(metadataTableHash, is(newHash));
     }
 
+    @Test
+    public void doImport_whenCsvIsUpdated_appliesOnlyChangedRows() throws IOException {
+        ExternalDataReader externalDataReader = new ExternalDataReaderImpl(null);
+        externalDataReader.doImport(formDefToCsvMedia);
+
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(dbFile.getAbsolutePath(), null, SQLiteDatabase.OPEN_READONLY);
+        long mangoRowId = getRowId(db, "mango");
+        long strawberriesRowId = getRowId(db, "strawberries");
+        db.close();
+
+        try (Writer out = new BufferedWriter(new FileWriter(csvFile, false))) {
+            out.write("name_key,name\nmango,Mango!\nstrawberries,Strawberries\nkiwi,Kiwi");
+        }
+
+        externalDataReader = new ExternalDataReaderImpl(null);
+        externalDataReader.doImport(formDefToCsvMedia);
+
+        db = SQLiteDatabase.openDatabase(dbFile.getAbsolutePath(), null, SQLiteDatabase.OPEN_READONLY);
+        assertThat(db.rawQuery(SELECT_ALL_DATA_QUERY, null).getCount(), is(3));
+        assertThat(getRowId(db, "mango"), is(mangoRowId));
+        assertThat(getRowId(db, "strawberries"), is(strawberriesRowId));
+        assertThat(getRowId(db, "oranges"), is(-1L));
+        assertThat(getRowId(db, "kiwi"), is(not(-1L)));
+
+        Cursor cursor = db.rawQuery("SELECT c_name FROM " + EXTERNAL_DATA_TABLE_NAME + " WHERE c_name_key = 'mango'", null);
+        cursor.moveToFirst();
+        assertThat(cursor.getString(0), is("Mango!"));
+        cursor.close();
+
+        assertThat(ExternalSQLiteOpenHelper.getLastMd5Hash(db, EXTERNAL_METADATA_TABLE_NAME, csvFile), is(Md5.getMd5Hash(csvFile)));
+        db.close();
+    }
+
+    @Test
+    public void doImport_whenRowIsInsertedAtTopOfCsvWithoutSortColumn_onlyInsertsThatRow() throws IOException {
+        writeCsv("name\napple\nbanana\ncherry");
+        new ExternalDataReaderImpl(null).doImport(formDefToCsvMedia);
+        Map<String, double[]> before = getRowIdsAndSortValues();
+
+        writeCsv("name\navocado\napple\nbanana\ncherry");
+        new ExternalDataReaderImpl(null).doImport(formDefToCsvMedia);
+        Map<String, double[]> after = getRowIdsAndSortValues();
+
+        assertThat(getNamesInSortOrder(), contains("avocado", "apple", "banana", "cherry"));
+        for (String name : asList("apple", "banana", "cherry")) {
+            assertThat(after.get(name)[0], is(before.get(name)[0]));
+            assertThat(after.get(name)[1], is(before.get(name)[1]));
+        }
+    }
+
+    @Test
+    public void doImport_whenRowIsDeletedFromCsvWithoutSortColumn_keepsSortValuesOfOtherRows() throws IOException {
+        writeCsv("name\napple\nbanana\ncherry");
+        new ExternalDataReaderImpl(null).doImport(formDefToCsvMedia);
+        Map<String, double[]> before = getRowIdsAndSortValues();
+
+        writeCsv("name\nbanana\ncherry");
+        new ExternalDataReaderImpl(null).doImport(formDefToCsvMedia);
+        Map<String, double[]> after = getRowIdsAndSortValues();
+
+        assertThat(getNamesInSortOrder(), contains("banana", "cherry"));
+        assertThat(after.get("banana")[1], is(before.get("banana")[1]));
+        assertThat(after.get("cherry")[1], is(before.get("cherry")[1]));
+    }
+
+    @Test
+    public void doImport_whenRowsAreReorderedOrDuplicated_matchesNewOrder() throws IOException {
+        writeCsv("name\napple\napple\nbanana\ncherry");
+        new ExternalDataReaderImpl(null).doImport(formDefToCsvMedia);
+
+        writeCsv("name\ncherry\nkiwi\napple\nbanana\ncherry");
+        new ExternalDataReaderImpl(null).doImport(formDefToCsvMedia);
+
+        assertThat(getNamesInSortOrder(), contains("cherry", "kiwi", "apple", "banana", "cherry"));
+    }
+
+    @Test
+    public void doImport_whenCsvColumnsChange_rebuildsDatabase() throws IOException {
+        ExternalDataReader externalDataReader = new ExternalDataReaderImpl(null);
+        externalDataReader.doImport(formDefToCsvMedia);
+
+        try (Writer out = new BufferedWriter(new FileWriter(csvFile, false))) {
+            out.write("name_key,name,color\nmango,Mango,yellow\nkiwi,Kiwi,green");
+        }
+
+        externalDataReader = new ExternalDataReaderImpl(null);
+        externalDataReader.doImport(formDefToCsvMedia);
+
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(dbFile.getAbsolutePath(), null, SQLiteDatabase.OPEN_READONLY);
+        Cursor cursor = db.rawQuery("SELECT c_color FROM " + EXTERNAL_DATA_TABLE_NAME + " ORDER BY c_sortby", null);
+        assertThat(cursor.getCount(), is(2));
+        cursor.moveToFirst();
+        assertThat(cursor.getString(0), is("yellow"));
+        cursor.close();
+        db.close();
+    }
+
     @Test
     public void doImport_skipsImportIfFileNotUpdated() {
         // Create the DB file with an initial import
@@ -214,6 +342,48 @@ public class ExternalDataReaderTest {
         assertThat("expected zero rows of data after reimporting unchanged file", cursor.getCount(), is(0));
     }
 
+    private static void writeCsv(String contents) throws IOException {
+        try (Writer out = new BufferedWriter(new FileWriter(csvFile, false))) {
+            out.write(contents);
+        }
+    }
+
+    private static List<String> getNamesInSortOrder() {
+        List<String> names = new ArrayList<>();
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(dbFile.getAbsolutePath(), null, SQLiteDatabase.OPEN_READONLY);
+        try (Cursor cursor = db.rawQuery("SELECT c_name FROM " + EXTERNAL_DATA_TABLE_NAME + " ORDER BY c_sortby", null)) {
+            while (cursor.moveToNext()) {
+                names.add(cursor.getString(0));
+            }
+        } finally {
+            db.close();
+        }
+        return names;
+    }
+
+    /**
+     * @return the rowid and sort value of each row keyed by its name
+     */
+    private static Map<String, double[]> getRowIdsAndSortValues() {
+        Map<String, double[]> rows = new HashMap<>();
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(dbFile.getAbsolutePath(), null, SQLiteDatabase.OPEN_READONLY);
+        try (Cursor cursor = db.rawQuery("SELECT c_name, rowid, c_sortby FROM " + EXTERNAL_DATA_TABLE_NAME, null)) {
+            while (cursor.moveToNext()) {
+                rows.put(cursor.getString(0), new double[]{cursor.getLong(1), cursor.getDouble(2)});
+            }
+        } finally {
+            db.close();
+        }
+        return rows;
+    }
+
+    private static long getRowId(SQLiteDatabase db, String key) {
+        Cursor cursor = db.rawQuery("SELECT rowid FROM " + EXTERNAL_DATA_TABLE_NAME + " WHERE c_name_key = ?", new String[]{key});
+        long rowId = cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        cursor.close();
+        return rowId;
+    }
+
     private static Map<String, File> makeExternalDataMap() {
         Map<String, File> externalDataMap = new HashMap<>();
         externalDataMap.put(SIMPLE_SEARCH_EXTERNAL_CSV_NAME, csvFile);
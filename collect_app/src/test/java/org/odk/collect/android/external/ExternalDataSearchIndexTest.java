@@ -0,0 +1,79 @@
+package org.odk.collect.android.external;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ExternalDataSearchIndexTest {
+
+    @Test
+    public void buildMatchQuery_forStartsWith_usesFirstWordAsPrefix() {
+        assertThat(ExternalDataSearchIndex.buildMatchQuery("Mang", true, false), is("mang*"));
+    }
+
+    @Test
+    public void buildMatchQuery_forStartsWith_usesCompleteWordsAsTerms() {
+        assertThat(ExternalDataSearchIndex.buildMatchQuery("New Yo", true, false), is("new yo*"));
+    }
+
+    @Test
+    public void buildMatchQuery_forContains_skipsFirstWord() {
+        assertThat(ExternalDataSearchIndex.buildMatchQuery("ango pu", false, false), is("pu*"));
+    }
+
+    @Test
+    public void buildMatchQuery_forContainsSingleWord_returnsNull() {
+        assertThat(ExternalDataSearchIndex.buildMatchQuery("ango", false, false), is(nullValue()));
+    }
+
+    @Test
+    public void buildMatchQuery_forContains_whenValueStartsWithSeparator_usesFirstWord() {
+        assertThat(ExternalDataSearchIndex.buildMatchQuery(" ango", false, false), is("ango*"));
+    }
+
+    @Test
+    public void buildMatchQuery_forMatches_usesCompleteWords() {
+        assertThat(ExternalDataSearchIndex.buildMatchQuery("Mango Pulp", true, true), is("mango pulp"));
+    }
+
+    @Test
+    public void buildMatchQuery_whenValueHasLikeWildcards_returnsNull() {
+        assertThat(ExternalDataSearchIndex.buildMatchQuery("ma%o", true, false), is(nullValue()));
+        assertThat(ExternalDataSearchIndex.buildMatchQuery("ma_o", true, false), is(nullValue()));
+    }
+
+    @Test
+    public void buildMatchQuery_onlyFoldsCaseOfAsciiLetters() {
+        assertThat(ExternalDataSearchIndex.buildMatchQuery("Éco", true, false), is("Éco*"));
+    }
+
+    @Test
+    public void buildMatchQuery_whenValueHasNoWords_returnsNull() {
+        assertThat(ExternalDataSearchIndex.buildMatchQuery(" - ", true, false), is(nullValue()));
+    }
+
+    @Test
+    public void buildTrigramMatchQuery_usesEveryTrigramOfEveryWord() {
+        assertThat(ExternalDataSearchIndex.buildTrigramMatchQuery("ngo Pul"), is("ngo pul"));
+        assertThat(ExternalDataSearchIndex.buildTrigramMatchQuery("Mango"), is("man ang ngo"));
+    }
+
+    @Test
+    public void buildTrigramMatchQuery_skipsWordsShorterThanATrigram() {
+        assertThat(ExternalDataSearchIndex.buildTrigramMatchQuery("go pulp"), is("pul ulp"));
+        assertThat(ExternalDataSearchIndex.buildTrigramMatchQuery("an"), is(nullValue()));
+    }
+
+    @Test
+    public void buildTrigramMatchQuery_whenValueHasLikeWildcards_returnsNull() {
+        assertThat(ExternalDataSearchIndex.buildTrigramMatchQuery("man%o"), is(nullValue()));
+        assertThat(ExternalDataSearchIndex.buildTrigramMatchQuery("man_o"), is(nullValue()));
+    }
+
+    @Test
+    public void toIndexedTrigrams_includesTrigramsOfEveryWordOnce() {
+        assertThat(ExternalDataSearchIndex.toIndexedTrigrams("Banana man-go"), is("ban ana nan man"));
+    }
+}
@@ -0,0 +1,73 @@
+package org.odk.collect.android.external.handler;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.external.ExternalDataManager;
+import org.odk.collect.android.external.ExternalSQLiteOpenHelper;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(AndroidJUnit4.class)
+public class ExternalDataHandlerPullTest {
+
+    private ExternalDataHandlerPull handler;
+
+    @Before
+    public void setup() {
+        SQLiteDatabase db = SQLiteDatabase.create(null);
+        db.execSQL("CREATE TABLE externalData (c_name_key text, c_name text, c_sortby real)");
+        db.execSQL("INSERT INTO externalData VALUES ('mango', 'Mango', 1)");
+        db.execSQL("INSERT INTO externalData VALUES ('kiwi', 'Kiwi', 2)");
+
+        ExternalSQLiteOpenHelper helper = mock(ExternalSQLiteOpenHelper.class);
+        when(helper.getReadableDatabase()).thenReturn(db);
+
+        ExternalDataManager externalDataManager = mock(ExternalDataManager.class);
+        when(externalDataManager.getDatabase("fruits", false)).thenReturn(helper);
+
+        handler = new ExternalDataHandlerPull(externalDataManager);
+    }
+
+    @Test
+    public void eval_returnsValueOfQueriedColumn() {
+        assertThat(handler.eval(new Object[]{"fruits", "name", "name_key", "kiwi"}, null), is("Kiwi"));
+    }
+
+    @Test
+    public void eval_whenNoRowMatches_returnsEmptyString() {
+        assertThat(handler.eval(new Object[]{"fruits", "name", "name_key", "banana"}, null), is(""));
+    }
+
+    @Test
+    public void eval_whenColumnDoesNotExist_returnsEmptyString() {
+        assertThat(handler.eval(new Object[]{"fruits", "color", "name_key", "kiwi"}, null), is(""));
+    }
+
+    @Test
+    public void eval_forRepeatedLookup_usesCache() {
+        handler.eval(new Object[]{"fruits", "name", "name_key", "kiwi"}, null);
+        handler.eval(new Object[]{"fruits", "name", "name_key", "kiwi"}, null);
+        handler.eval(new Object[]{"fruits", "name", "name_key", "mango"}, null);
+
+        assertThat(handler.getHitCount(), is(1));
+        assertThat(handler.getMissCount(), is(2));
+    }
+
+    @Test
+    public void close_discardsCachedResults() {
+        handler.eval(new Object[]{"fruits", "name", "name_key", "kiwi"}, null);
+        handler.close();
+        handler.eval(new Object[]{"fruits", "name", "name_key", "kiwi"}, null);
+
+        assertThat(handler.getHitCount(), is(0));
+        assertThat(handler.getMissCount(), is(2));
+    }
+}
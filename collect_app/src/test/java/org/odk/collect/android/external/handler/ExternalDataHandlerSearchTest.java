@@ -0,0 +1,120 @@
+package org.odk.collect.android.external.handler;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.javarosa.core.model.SelectChoice;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.external.ExternalDataManager;
+import org.odk.collect.android.external.ExternalDataSearchIndex;
+import org.odk.collect.android.external.ExternalSQLiteOpenHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(AndroidJUnit4.class)
+public class ExternalDataHandlerSearchTest {
+
+    private static final String[] NAMES = {
+            "Mango", "Mango Pulp", "Green mango", "Tangerine", "Banana", "man-go", "Écomangue", "Kiwi"
+    };
+
+    private static final String[][] SEARCHES = {
+            {"contains", "ang"},
+            {"contains", "ANGO"},
+            {"contains", "ngo pu"},
+            {"contains", "an"},
+            {"contains", "o m"},
+            {"contains", "n-g"},
+            {"contains", "mangue"},
+            {"contains", "a%o"},
+            {"startsWith", "Man"},
+            {"startsWith", "mango p"},
+            {"startsWith", "Tangerines"},
+            {"endsWith", "go"},
+            {"endsWith", "ngo"},
+            {"matches", "Mango"},
+            {"matches", "mango pulp"}
+    };
+
+    private SQLiteDatabase db;
+    private ExternalDataHandlerSearch handler;
+
+    @Before
+    public void setup() {
+        db = SQLiteDatabase.create(null);
+        db.execSQL("CREATE TABLE externalData (c_name text, c_sortby real)");
+        for (int i = 0; i < NAMES.length; i++) {
+            db.execSQL("INSERT INTO externalData VALUES (?, ?)", new Object[]{NAMES[i], i});
+        }
+
+        ExternalSQLiteOpenHelper helper = mock(ExternalSQLiteOpenHelper.class);
+        when(helper.getReadableDatabase()).thenReturn(db);
+
+        ExternalDataManager externalDataManager = mock(ExternalDataManager.class);
+        when(externalDataManager.getDatabase("fruits", true)).thenReturn(helper);
+
+        handler = new ExternalDataHandlerSearch(externalDataManager, "name", "name", null);
+    }
+
+    @Test
+    public void eval_returnsTheSameChoicesWithAndWithoutIndexes() {
+        List<List<String>> withoutIndexes = searchAll();
+
+        ExternalDataSearchIndex.createIfNeeded(db, "c_name", ExternalDataSearchIndex.IndexType.WORDS);
+        ExternalDataSearchIndex.createIfNeeded(db, "c_name", ExternalDataSearchIndex.IndexType.TRIGRAMS);
+        assertThat(ExternalDataSearchIndex.exists(db, "c_name", ExternalDataSearchIndex.IndexType.WORDS), is(true));
+        assertThat(ExternalDataSearchIndex.exists(db, "c_name", ExternalDataSearchIndex.IndexType.TRIGRAMS), is(true));
+
+        List<List<String>> withIndexes = searchAll();
+        for (int i = 0; i < SEARCHES.length; i++) {
+            assertThat(SEARCHES[i][0] + " " + SEARCHES[i][1], withIndexes.get(i), is(withoutIndexes.get(i)));
+        }
+    }
+
+    @Test
+    public void eval_whenIndexesAreDropped_returnsTheSameChoices() {
+        ExternalDataSearchIndex.createIfNeeded(db, "c_name", ExternalDataSearchIndex.IndexType.TRIGRAMS);
+        List<List<String>> withIndexes = searchAll();
+
+        ExternalDataSearchIndex.dropAll(db);
+        assertThat(ExternalDataSearchIndex.exists(db, "c_name", ExternalDataSearchIndex.IndexType.TRIGRAMS), is(false));
+
+        assertThat(searchAll(), is(withIndexes));
+    }
+
+    @Test
+    public void eval_contains_findsValuesContainingTheQueryPartWayThroughAWord() {
+        ExternalDataSearchIndex.createIfNeeded(db, "c_name", ExternalDataSearchIndex.IndexType.TRIGRAMS);
+
+        assertThat(search("contains", "ang"), is(asList("Mango", "Mango Pulp", "Green mango", "Tangerine", "Écomangue")));
+    }
+
+    private List<List<String>> searchAll() {
+        List<List<String>> results = new ArrayList<>();
+        for (String[] search : SEARCHES) {
+            results.add(search(search[0], search[1]));
+        }
+        return results;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> search(String searchType, String value) {
+        List<SelectChoice> choices = (List<SelectChoice>) handler.eval(new Object[]{"fruits", searchType, "name", value}, null);
+
+        List<String> values = new ArrayList<>();
+        for (SelectChoice choice : choices) {
+            values.add(choice.getValue());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,46 @@
+package org.odk.collect.android.fastexternalitemset;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.javarosa.xpath.parser.XPathSyntaxException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@RunWith(AndroidJUnit4.class)
+public class ItemsetDaoTest {
+
+    @Test
+    public void compileQuery_parsesListNameSelectionAndArguments() throws XPathSyntaxException {
+        ItemsetDao.CompiledQuery query = ItemsetDao.compileQuery(
+                "instance('cities')/root/item[state=/data/state and county=/data/county]", new XPathParseTool());
+
+        assertThat(query.listName, is("cities"));
+        assertThat(query.selection, is("list_name=? and \"state\"=? and \"county\"=?"));
+        assertThat(query.argumentExpressions.length, is(2));
+    }
+
+    @Test
+    public void compileQuery_whenThereAreNoArguments_onlySelectsListName() throws XPathSyntaxException {
+        ItemsetDao.CompiledQuery query = ItemsetDao.compileQuery("instance('states')/root/item[true()]", new XPathParseTool());
+
+        assertThat(query.selection, is("list_name=?"));
+        assertThat(query.argumentExpressions.length, is(0));
+    }
+
+    @Test
+    public void getCompiledQuery_reusesQueryForSameNodeset() throws XPathSyntaxException {
+        String nodeset = "instance('counties')/root/item[state=/data/state]";
+
+        assertThat(ItemsetDao.getCompiledQuery(nodeset, new XPathParseTool()),
+                is(sameInstance(ItemsetDao.getCompiledQuery(nodeset, new XPathParseTool()))));
+    }
+
+    @Test(expected = XPathSyntaxException.class)
+    public void compileQuery_whenArgumentIsInvalid_throwsException() throws XPathSyntaxException {
+        ItemsetDao.compileQuery("instance('cities')/root/item[state=/data/state)]", new XPathParseTool());
+    }
+}
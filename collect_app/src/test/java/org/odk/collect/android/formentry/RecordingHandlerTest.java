@@ -3,8 +3,13 @@ package org.odk.collect.android.formentry;
 
 import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
 
+import com.google.common.io.Files;
+
 import org.javarosa.core.model.data.StringData;
 import org.javarosa.core.model.instance.TreeReference;
+import org.javarosa.form.api.FormEntryController;
+import org.javarosa.form.api.FormEntryModel;
+import org.javarosa.xform.util.XFormUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -15,10 +20,12 @@ import org.odk.collect.audiorecorder.recording.AudioRecorder;
 import org.odk.collect.audiorecorder.recording.RecordingSession;
 import org.odk.collect.testshared.FakeLifecycleOwner;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.util.HashSet;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
@@ -109,4 +116,45 @@ public class RecordingHandlerTest {
 
         assertThat(questionMediaManager.getAnswerFile(newRecording.getName()).exists(), is(false));
     }
+
+    @Test
+    public void whenBackgroundRecording_andNoRecordingSavedForReference_setsAnswerAndChangesRevision() throws Exception {
+        FormEntryModel formEntryModel = new FormEntryModel(XFormUtils.getFormFromInputStream(new ByteArrayInputStream(AUDIO_FORM.getBytes())));
+        FormController realFormController = new FormController(Files.createTempDir(), new FormEntryController(formEntryModel), File.createTempFile("instance", ""));
+        TreeReference treeReference = realFormController.getIndexFromXPath("question./data/recording").getReference();
+
+        File newRecording = File.createTempFile("new", ".m4a");
+        RecordingSession recordingSession = new RecordingSession(new HashSet<TreeReference>() {
+            {
+                add(treeReference);
+            }
+        }, newRecording, 0, 0, false);
+
+        int revision = realFormController.getRevision();
+        recordingHandler.handle(realFormController, recordingSession, success -> {
+        });
+
+        assertThat((String) realFormController.getAnswer(treeReference).getValue(), is(questionMediaManager.getAnswerFile(newRecording.getName()).getName()));
+        assertThat(realFormController.getRevision(), greaterThan(revision));
+    }
+
+    private static final String AUDIO_FORM = "<?xml version=\"1.0\"?>\n" +
+            "<h:html xmlns=\"http://www.w3.org/2002/xforms\" xmlns:h=\"http://www.w3.org/1999/xhtml\">\n" +
+            "    <h:head>\n" +
+            "        <h:title>Background recording</h:title>\n" +
+            "        <model>\n" +
+            "            <instance>\n" +
+            "                <data id=\"background-recording\">\n" +
+            "                    <recording/>\n" +
+            "                </data>\n" +
+            "            </instance>\n" +
+            "            <bind nodeset=\"/data/recording\" type=\"binary\"/>\n" +
+            "        </model>\n" +
+            "    </h:head>\n" +
+            "    <h:body>\n" +
+            "        <upload ref=\"/data/recording\" mediatype=\"audio/*\">\n" +
+            "            <label>Recording</label>\n" +
+            "        </upload>\n" +
+            "    </h:body>\n" +
+            "</h:html>";
 }
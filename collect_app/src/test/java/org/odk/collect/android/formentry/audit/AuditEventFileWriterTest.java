@@ -24,15 +24,17 @@ import org.javarosa.core.model.instance.TreeReference;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.robolectric.annotation.LooperMode;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.odk.collect.android.formentry.audit.AuditEvent.AuditEventType.CHANGE_REASON;
 import static org.odk.collect.android.formentry.audit.AuditEvent.AuditEventType.END_OF_FORM;
 import static org.odk.collect.android.formentry.audit.AuditEvent.AuditEventType.FORM_EXIT;
@@ -48,8 +50,7 @@ import static org.odk.collect.android.formentry.audit.AuditEvent.AuditEventType.
 import static org.odk.collect.android.formentry.audit.AuditEvent.AuditEventType.QUESTION;
 
 @RunWith(AndroidJUnit4.class)
-@LooperMode(LooperMode.Mode.LEGACY)
-public class AsyncTaskAuditEventWriterTest {
+public class AuditEventFileWriterTest {
 
     private File auditFile;
 
@@ -60,8 +61,8 @@ public class AsyncTaskAuditEventWriterTest {
 
     @Test
     public void saveAuditWithLocation() throws Exception {
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, true, false, false, false);
-        writer.writeEvents(getSampleAuditEventsWithLocations());
+        AuditEventFileWriter writer = new AuditEventFileWriter(auditFile, true, false, false, false);
+        write(writer, getSampleAuditEventsWithLocations());
 
         String expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData = "event,node,start,end,latitude,longitude,accuracy\n" +
@@ -84,8 +85,8 @@ public class AsyncTaskAuditEventWriterTest {
 
     @Test
     public void saveAuditWithLocationAndTrackingChanges() throws Exception {
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, true, true, false, false);
-        writer.writeEvents(getSampleAuditEventsWithLocationsAndTrackingChanges());
+        AuditEventFileWriter writer = new AuditEventFileWriter(auditFile, true, true, false, false);
+        write(writer, getSampleAuditEventsWithLocationsAndTrackingChanges());
 
         String expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData = "event,node,start,end,latitude,longitude,accuracy,old-value,new-value\n" +
@@ -104,8 +105,8 @@ public class AsyncTaskAuditEventWriterTest {
 
     @Test
     public void saveAuditWithUser() throws Exception {
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, false, false, true, false);
-        writer.writeEvents(getSampleAuditEventsWithUser());
+        AuditEventFileWriter writer = new AuditEventFileWriter(auditFile, false, false, true, false);
+        write(writer, getSampleAuditEventsWithUser());
 
         String expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData = "event,node,start,end,user\n" +
@@ -126,8 +127,8 @@ public class AsyncTaskAuditEventWriterTest {
 
     @Test
     public void saveAuditWithChangeReason() throws Exception {
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, false, false, false, true);
-        writer.writeEvents(asList(
+        AuditEventFileWriter writer = new AuditEventFileWriter(auditFile, false, false, false, true);
+        write(writer, asList(
                 new AuditEvent(1548108900606L, FORM_RESUME, null, null, null, null),
                 new AuditEvent(1548108900606L, CHANGE_REASON, null, null, null, "A good reason")
         ));
@@ -141,8 +142,8 @@ public class AsyncTaskAuditEventWriterTest {
 
     @Test
     public void whenChangeReasonHasCommaOrQuotes_escapesThem() throws Exception {
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, false, false, false, true);
-        writer.writeEvents(asList(
+        AuditEventFileWriter writer = new AuditEventFileWriter(auditFile, false, false, false, true);
+        write(writer, asList(
                 new AuditEvent(1548108900606L, FORM_RESUME, null, null, null, null),
                 new AuditEvent(1548108900606L, CHANGE_REASON, null, null, null, "A \"good\", reason")
         ));
@@ -156,11 +157,11 @@ public class AsyncTaskAuditEventWriterTest {
 
     @Test
     public void whenUserHasCommaOrQuotes_escapesThem() throws Exception {
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, false, false, true, false);
+        AuditEventFileWriter writer = new AuditEventFileWriter(auditFile, false, false, true, false);
 
         List<AuditEvent> auditEvents = getSampleAuditEventsWithUser().subList(0, 1);
         auditEvents.get(0).setUser("User,\"1\"");
-        writer.writeEvents(auditEvents);
+        write(writer, auditEvents);
 
         String expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData = "event,node,start,end,user\n" +
@@ -176,8 +177,8 @@ public class AsyncTaskAuditEventWriterTest {
     @Test
     public void whenAppUpdatedBetweenInstances_updatesHeader() throws Exception {
         // Use a form with enabled audit but without location
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, false, false, false, false);
-        writer.writeEvents(getSampleAuditEventsWithoutLocations());
+        AuditEventFileWriter writer = new AuditEventFileWriter(auditFile, false, false, false, false);
+        write(writer, getSampleAuditEventsWithoutLocations());
 
         String expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData = "event,node,start,end\n" +
@@ -195,8 +196,8 @@ public class AsyncTaskAuditEventWriterTest {
         assertEquals(expectedData, expectedAuditContent);
 
         // Upgrade a form to use location
-        writer = new AsyncTaskAuditEventWriter(auditFile, true, false, false, false);
-        writer.writeEvents(getMoreSampleAuditEventsWithLocations());
+        writer = new AuditEventFileWriter(auditFile, true, false, false, false);
+        write(writer, getMoreSampleAuditEventsWithLocations());
 
         expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData2 = "event,node,start,end,latitude,longitude,accuracy\n" +
@@ -223,8 +224,8 @@ public class AsyncTaskAuditEventWriterTest {
         assertEquals(expectedData2, expectedAuditContent);
 
         // Upgrade a form to use location and tracking changes
-        writer = new AsyncTaskAuditEventWriter(auditFile, true, true, false, false);
-        writer.writeEvents(getMoreSampleAuditEventsWithLocationsAndTrackingChanges());
+        writer = new AuditEventFileWriter(auditFile, true, true, false, false);
+        write(writer, getMoreSampleAuditEventsWithLocationsAndTrackingChanges());
 
         expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData3 = "event,node,start,end,latitude,longitude,accuracy,old-value,new-value\n" +
@@ -259,8 +260,8 @@ public class AsyncTaskAuditEventWriterTest {
         assertEquals(expectedData3, expectedAuditContent);
 
         // Upgrade a form to use location and tracking changes and user
-        writer = new AsyncTaskAuditEventWriter(auditFile, true, true, true, false);
-        writer.writeEvents(getMoreSampleAuditEventsWithLocationsAndTrackingChangesAndUser());
+        writer = new AuditEventFileWriter(auditFile, true, true, true, false);
+        write(writer, getMoreSampleAuditEventsWithLocationsAndTrackingChangesAndUser());
 
         expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData4 = "event,node,start,end,latitude,longitude,accuracy,old-value,new-value,user\n" +
@@ -303,6 +304,70 @@ public class AsyncTaskAuditEventWriterTest {
         assertEquals(expectedData4, expectedAuditContent);
     }
 
+    @Test
+    public void headerIsOnlyCheckedOncePerSession() throws Exception {
+        AuditEventFileWriter writer = new AuditEventFileWriter(auditFile, false, false, true, false);
+        write(writer, asList(new AuditEvent(1548108900606L, FORM_RESUME, null, null, "User1", null)));
+
+        // Another app version rewrote the header while the session was open
+        FileUtils.writeStringToFile(auditFile, "event,node,start,end\n");
+        write(writer, asList(new AuditEvent(1548108900700L, FORM_SAVE, null, null, "User1", null)));
+        assertEquals("event,node,start,end", getHeader(auditFile));
+
+        // A new session checks it again
+        writer = new AuditEventFileWriter(auditFile, false, false, true, false);
+        write(writer, asList(new AuditEvent(1548108900800L, FORM_EXIT, null, null, "User1", null)));
+        assertEquals("event,node,start,end,user", getHeader(auditFile));
+    }
+
+    @Test
+    public void whenFirstBatchIsEmpty_createsFileWithHeader() throws Exception {
+        auditFile.delete();
+
+        AuditEventFileWriter writer = new AuditEventFileWriter(auditFile, false, false, false, false);
+        write(writer, new ArrayList<>());
+        assertEquals("event,node,start,end\n", FileUtils.readFileToString(auditFile));
+
+        write(writer, asList(new AuditEvent(1548108900606L, FORM_RESUME, null, null, null, null)));
+        write(writer, new ArrayList<>());
+        assertEquals("event,node,start,end\n" +
+                "form resume,,1548108900606,\n", FileUtils.readFileToString(auditFile));
+    }
+
+    @Test
+    public void batchesQueuedTogether_areWrittenInOrderToTheirOwnFiles() throws Exception {
+        File otherAuditFile = File.createTempFile("audit", ".csv");
+        AuditEventFileWriter writer = new AuditEventFileWriter(auditFile, false, false, false, false);
+        AuditEventFileWriter otherWriter = new AuditEventFileWriter(otherAuditFile, false, false, false, false);
+        long eventsBefore = AuditEventFileWriter.getMetrics().events;
+
+        writer.writeEvents(asList(new AuditEvent(1L, FORM_START)));
+        otherWriter.writeEvents(asList(new AuditEvent(2L, FORM_START)));
+        writer.writeEvents(asList(new AuditEvent(3L, FORM_SAVE), new AuditEvent(4L, FORM_EXIT)));
+        assertTrue(AuditEventFileWriter.awaitWritten(5000));
+
+        assertEquals("event,node,start,end\n" +
+                "form start,,1,\n" +
+                "form save,,3,\n" +
+                "form exit,,4,\n", FileUtils.readFileToString(auditFile));
+        assertEquals("event,node,start,end\n" +
+                "form start,,2,\n", FileUtils.readFileToString(otherAuditFile));
+
+        AuditEventFileWriter.Metrics metrics = AuditEventFileWriter.getMetrics();
+        assertEquals(eventsBefore + 4, metrics.events);
+        assertEquals(0, metrics.queueDepth);
+        assertFalse(writer.isWriting());
+    }
+
+    private static void write(AuditEventFileWriter writer, List<AuditEvent> auditEvents) throws InterruptedException {
+        writer.writeEvents(auditEvents);
+        assertTrue(AuditEventFileWriter.awaitWritten(5000));
+    }
+
+    private static String getHeader(File file) throws IOException {
+        return FileUtils.readLines(file).get(0);
+    }
+
     private List<AuditEvent> getSampleAuditEventsWithUser() {
         List<AuditEvent> auditEvents = getSampleAuditEventsWithoutLocations();
         for (AuditEvent event : auditEvents) {
@@ -0,0 +1,75 @@
+package org.odk.collect.android.formmanagement;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+public class ConcurrentFormDownloadRunnerTest {
+
+    private final List<ServerFormDetails> forms = asList(
+            createForm("form-1"),
+            createForm("form-2"),
+            createForm("form-3"),
+            createForm("form-4")
+    );
+
+    @Test
+    public void returnsResultOfEachDownloadInOrderOfForms() {
+        FormDownloader formDownloader = (form, progressReporter, isCancelled) -> {
+            if (form == forms.get(1)) {
+                throw new FormDownloadException();
+            }
+        };
+
+        Map<ServerFormDetails, Boolean> results = new ConcurrentFormDownloadRunner(formDownloader, 2).run(forms, null);
+
+        assertThat(results.keySet(), contains(forms.toArray()));
+        assertThat(results.values(), contains(true, false, true, true));
+    }
+
+    @Test
+    public void runsDownloadsAtTheSameTime_upToMaximum() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch bothRunning = new CountDownLatch(2);
+
+        FormDownloader formDownloader = (form, progressReporter, isCancelled) -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            bothRunning.countDown();
+            bothRunning.await(5, TimeUnit.SECONDS);
+            running.decrementAndGet();
+        };
+
+        new ConcurrentFormDownloadRunner(formDownloader, 2).run(forms, null);
+
+        assertThat(maxRunning.get(), is(2));
+        assertThat(running.get(), is(0));
+    }
+
+    @Test
+    public void whenDownloadIsInterrupted_returnsCompletedDownloadsAndSkipsTheRest() {
+        FormDownloader formDownloader = (form, progressReporter, isCancelled) -> {
+            if (form == forms.get(1)) {
+                throw new InterruptedException();
+            }
+        };
+
+        Map<ServerFormDetails, Boolean> results = new ConcurrentFormDownloadRunner(formDownloader, 1).run(forms, null);
+
+        assertThat(results.keySet(), contains(forms.get(0)));
+        assertThat(results.get(forms.get(0)), is(true));
+    }
+
+    private static ServerFormDetails createForm(String formId) {
+        return new ServerFormDetails(formId, "http://example.com/" + formId, formId, "1", "md5:" + formId, true, false, null);
+    }
+}
@@ -43,15 +43,11 @@ class FormUpdateDownloaderTest {
             ServerFormDetails("", "", "", "", "", false, true, ManifestFile("", emptyList()))
         )
 
-        // Cancel form download after downloading one form
+        // Cancel form download when downloading the second form
         doAnswer(object : Answer<Unit> {
-            private var calledBefore = false
-
             @Throws(Throwable::class)
             override fun answer(invocation: InvocationOnMock) {
-                calledBefore = if (!calledBefore) {
-                    true
-                } else {
+                if (invocation.getArgument<ServerFormDetails>(0) === serverForms[1]) {
                     throw InterruptedException()
                 }
             }
@@ -17,6 +17,7 @@ import org.odk.collect.shared.strings.Md5;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
@@ -33,6 +34,7 @@ import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
@@ -360,6 +362,58 @@ public class ServerFormDownloaderTest {
         assertThat(progressReporter.reports, contains(1, 2));
     }
 
+    @Test
+    public void whenMediaFileDownloadIsCutOff_resumesFromBytesAlreadyDownloaded() throws Exception {
+        String xform = createXFormBody("id", "version");
+        ServerFormDetails serverFormDetails = createServerFormDetailsWithMediaFile(xform, "contents1");
+
+        FormSource formSource = mock(FormSource.class);
+        when(formSource.fetchForm("http://downloadUrl")).thenReturn(new ByteArrayInputStream(xform.getBytes()));
+        when(formSource.fetchMediaFile("http://file1")).thenReturn(new CutOffInputStream("conte"));
+        when(formSource.fetchMediaFile("http://file1", 5L)).thenReturn(new ByteArrayInputStream("nts1".getBytes()));
+
+        ServerFormDownloader downloader = new ServerFormDownloader(formSource, formsRepository, cacheDir, formsDir.getAbsolutePath(), new FormMetadataParser(), mock(Analytics.class));
+        downloader.downloadForm(serverFormDetails, null, null);
+
+        Form form = formsRepository.getAll().get(0);
+        assertThat(new String(read(new File(form.getFormMediaPath() + "/file1"))), is("contents1"));
+        verify(formSource, times(1)).fetchMediaFile("http://file1");
+    }
+
+    @Test
+    public void whenResumedMediaFileDoesNotMatchHash_downloadsItAgainFromTheStart() throws Exception {
+        String xform = createXFormBody("id", "version");
+        ServerFormDetails serverFormDetails = createServerFormDetailsWithMediaFile(xform, "contents1");
+
+        FormSource formSource = mock(FormSource.class);
+        when(formSource.fetchForm("http://downloadUrl")).thenReturn(new ByteArrayInputStream(xform.getBytes()));
+        when(formSource.fetchMediaFile("http://file1")).thenReturn(new CutOffInputStream("conte"), new ByteArrayInputStream("contents1".getBytes()));
+        when(formSource.fetchMediaFile("http://file1", 5L)).thenReturn(new ByteArrayInputStream("nts2".getBytes()));
+
+        ServerFormDownloader downloader = new ServerFormDownloader(formSource, formsRepository, cacheDir, formsDir.getAbsolutePath(), new FormMetadataParser(), mock(Analytics.class));
+        downloader.downloadForm(serverFormDetails, null, null);
+
+        Form form = formsRepository.getAll().get(0);
+        assertThat(new String(read(new File(form.getFormMediaPath() + "/file1"))), is("contents1"));
+        verify(formSource, times(2)).fetchMediaFile("http://file1");
+    }
+
+    @Test
+    public void whenMediaFileIsUnchanged_doesNotDownloadItAgain() throws Exception {
+        String xform = createXFormBody("id", "version");
+        ServerFormDetails serverFormDetails = createServerFormDetailsWithMediaFile(xform, "contents1");
+
+        FormSource formSource = mock(FormSource.class);
+        when(formSource.fetchForm("http://downloadUrl")).thenReturn(new ByteArrayInputStream(xform.getBytes()), new ByteArrayInputStream(xform.getBytes()));
+        when(formSource.fetchMediaFile("http://file1")).thenReturn(new ByteArrayInputStream("contents1".getBytes()));
+
+        ServerFormDownloader downloader = new ServerFormDownloader(formSource, formsRepository, cacheDir, formsDir.getAbsolutePath(), new FormMetadataParser(), mock(Analytics.class));
+        downloader.downloadForm(serverFormDetails, null, null);
+        downloader.downloadForm(serverFormDetails, null, null);
+
+        verify(formSource, times(1)).fetchMediaFile("http://file1");
+    }
+
     //region Undelete on re-download
     @Test
     public void whenFormIsSoftDeleted_unDeletesForm() throws Exception {
@@ -664,6 +718,20 @@ public class ServerFormDownloaderTest {
         }
     }
 
+    private static ServerFormDetails createServerFormDetailsWithMediaFile(String xform, String mediaFileContents) {
+        return new ServerFormDetails(
+                "Form",
+                "http://downloadUrl",
+                "id",
+                "version",
+                "md5:" + Md5.getMd5Hash(new ByteArrayInputStream(xform.getBytes())),
+                true,
+                false,
+                new ManifestFile("", asList(
+                        new MediaFile("file1", "md5:" + Md5.getMd5Hash(new ByteArrayInputStream(mediaFileContents.getBytes())), "http://file1")
+                )));
+    }
+
     private String getFormFilesPath() {
         return formsDir.getAbsolutePath();
     }
@@ -672,6 +740,96 @@ public class ServerFormDownloaderTest {
         return cacheDir.getAbsolutePath();
     }
 
+    /**
+     * Returns the given bytes and then fails like a dropped connection.
+     */
+    private static class CutOffInputStream extends InputStream {
+
+        private final ByteArrayInputStream bytes;
+
+        CutOffInputStream(String contents) {
+            bytes = new ByteArrayInputStream(contents.getBytes());
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = bytes.read();
+            if (read == -1) {
+                throw new IOException("Connection reset");
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = bytes.read(buffer, offset, length);
+            if (read == -1) {
+                throw new IOException("Connection reset");
+            }
+            return read;
+        }
+    }
+
+    @Test
+    public void whenFormsAreDownloadedConcurrently_parsesAndInstallsEveryForm() throws Exception {
+        FormSource formSource = mock(FormSource.class);
+        List<ServerFormDetails> serverFormDetails = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            // The setgeopoint action means the form is built with JavaRosa to read its metadata
+            String xform = createSetGeopointExternalInstanceForm("form" + i);
+            String downloadUrl = "http://downloadUrl" + i;
+            when(formSource.fetchForm(downloadUrl)).thenReturn(new ByteArrayInputStream(xform.getBytes()));
+            serverFormDetails.add(new ServerFormDetails(
+                    "Form " + i,
+                    downloadUrl,
+                    "form" + i,
+                    null,
+                    "md5:" + Md5.getMd5Hash(new ByteArrayInputStream(xform.getBytes())),
+                    true,
+                    false,
+                    null));
+        }
+
+        ServerFormDownloader downloader = new ServerFormDownloader(formSource, formsRepository, cacheDir, formsDir.getAbsolutePath(), new FormMetadataParser(), mock(Analytics.class));
+        Map<ServerFormDetails, Boolean> results = new ConcurrentFormDownloadRunner(downloader, 3).run(serverFormDetails, null);
+
+        assertThat(results.values().stream().allMatch(success -> success), is(true));
+        assertThat(formsRepository.getAll().size(), is(6));
+        for (int i = 0; i < 6; i++) {
+            Form form = formsRepository.getAllByFormIdAndVersion("form" + i, null).get(0);
+            assertThat(form.getGeometryXpath(), is("/data/location"));
+        }
+    }
+
+    private static String createSetGeopointExternalInstanceForm(String formId) {
+        return "<h:html xmlns=\"http://www.w3.org/2002/xforms\" xmlns:h=\"http://www.w3.org/1999/xhtml\" xmlns:odk=\"http://www.opendatakit.org/xforms\">\n" +
+                "    <h:head>\n" +
+                "        <h:title>" + formId + "</h:title>\n" +
+                "        <model>\n" +
+                "            <instance>\n" +
+                "                <data id=\"" + formId + "\">\n" +
+                "                    <location/>\n" +
+                "                    <first/>\n" +
+                "                </data>\n" +
+                "            </instance>\n" +
+                "            <instance id=\"external-xml\" src=\"jr://file/external-data.xml\" />\n" +
+                "            <bind nodeset=\"/data/location\" type=\"geopoint\" />\n" +
+                "            <bind nodeset=\"/data/first\" type=\"string\" />\n" +
+                "            <odk:setgeopoint ref=\"/data/location\" event=\"odk-instance-first-load\"/>\n" +
+                "        </model>\n" +
+                "    </h:head>\n" +
+                "    <h:body>\n" +
+                "        <select1 ref=\"/data/first\">\n" +
+                "            <label>First</label>\n" +
+                "            <itemset nodeset=\"instance('external-xml')/root/item\">\n" +
+                "                <value ref=\"name\"/>\n" +
+                "                <label ref=\"label\"/>\n" +
+                "            </itemset>\n" +
+                "        </select1>\n" +
+                "    </h:body>\n" +
+                "</h:html>";
+    }
+
     public static class RecordingProgressReporter implements FormDownloader.ProgressReporter {
 
         List<Integer> reports = new ArrayList<>();
@@ -680,6 +838,11 @@ public class ServerFormDownloaderTest {
         public void onDownloadingMediaFile(int count) {
             reports.add(count);
         }
+
+        @Override
+        public void onMediaBytesDownloaded(long bytes, long bytesPerSecond) {
+            // Not recorded
+        }
     }
 
     public static class CancelAfterFormDownloadFormSource implements FormSource, Supplier<Boolean> {
@@ -712,6 +875,11 @@ public class ServerFormDownloaderTest {
             throw new UnsupportedOperationException();
         }
 
+        @Override
+        public InputStream fetchMediaFile(String mediaFileURL, long offset) throws FormSourceException {
+            return fetchMediaFile(mediaFileURL);
+        }
+
         @Override
         public Boolean get() {
             return isCancelled;
@@ -738,6 +906,11 @@ public class ServerFormDownloaderTest {
             return new ByteArrayInputStream("contents".getBytes());
         }
 
+        @Override
+        public InputStream fetchMediaFile(String mediaFileURL, long offset) throws FormSourceException {
+            return fetchMediaFile(mediaFileURL);
+        }
+
         @Override
         public List<FormListItem> fetchFormList() throws FormSourceException {
             throw new UnsupportedOperationException();
@@ -0,0 +1,116 @@
+package org.odk.collect.android.geo;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+
+public class PointClustererTest {
+
+    private final PointClusterer<String> clusterer = new PointClusterer<>();
+
+    @Test
+    public void cluster_whenBoundsAreNull_returnsAllPoints() {
+        clusterer.add(new MapPoint(1, 1), "a");
+        clusterer.add(new MapPoint(-60, 120), "b");
+
+        List<PointClusterer.Cluster<String>> clusters = clusterer.cluster(null, 0, 10);
+
+        assertThat(clusters.size(), is(2));
+    }
+
+    @Test
+    public void cluster_onlyReturnsPointsInBounds() {
+        clusterer.add(new MapPoint(1, 1), "inside");
+        clusterer.add(new MapPoint(1.5, 1.5), "also inside");
+        clusterer.add(new MapPoint(10, 10), "outside");
+        clusterer.add(new MapPoint(-1, 1), "also outside");
+
+        List<PointClusterer.Cluster<String>> clusters = clusterer.cluster(new MapBounds(0, 0, 2, 2), 10, 10);
+
+        assertThat(itemsOf(clusters), containsInAnyOrder("inside", "also inside"));
+    }
+
+    @Test
+    public void cluster_whenBoundsCrossAntimeridian_returnsPointsOnBothSides() {
+        clusterer.add(new MapPoint(0, 179), "west of antimeridian");
+        clusterer.add(new MapPoint(0, -179), "east of antimeridian");
+        clusterer.add(new MapPoint(0, 0), "outside");
+
+        List<PointClusterer.Cluster<String>> clusters = clusterer.cluster(new MapBounds(-10, 170, 10, -170), 5, 10);
+
+        assertThat(itemsOf(clusters), containsInAnyOrder("west of antimeridian", "east of antimeridian"));
+    }
+
+    @Test
+    public void cluster_whenThereAreAtMostMaxMarkersPoints_returnsEachPointOnItsOwn() {
+        for (int i = 0; i < 5; i++) {
+            clusterer.add(new MapPoint(0.0001 * i, 0), "point" + i);
+        }
+
+        List<PointClusterer.Cluster<String>> clusters = clusterer.cluster(null, 0, 5);
+
+        assertThat(clusters.size(), is(5));
+        for (PointClusterer.Cluster<String> cluster : clusters) {
+            assertThat(cluster.size(), is(1));
+        }
+    }
+
+    @Test
+    public void cluster_whenThereAreMoreThanMaxMarkersPoints_groupsNearbyPoints() {
+        for (int i = 0; i < 10; i++) {
+            clusterer.add(new MapPoint(1 + 0.0001 * i, 1), "near" + i);
+        }
+        clusterer.add(new MapPoint(45, 90), "far");
+
+        List<PointClusterer.Cluster<String>> clusters = clusterer.cluster(null, 3, 5);
+
+        assertThat(clusters.size(), is(2));
+        assertThat(itemsOf(clusters).size(), is(11));
+    }
+
+    @Test
+    public void cluster_whenZoomedIn_splitsClusters() {
+        clusterer.add(new MapPoint(1, 1), "a");
+        clusterer.add(new MapPoint(1, 1.01), "b");
+        clusterer.add(new MapPoint(1, 1.02), "c");
+
+        assertThat(clusterer.cluster(null, 2, 1).size(), is(1));
+        assertThat(clusterer.cluster(null, 18, 1).size(), is(3));
+    }
+
+    @Test
+    public void clusterCenter_isTheMeanOfItsPoints() {
+        clusterer.add(new MapPoint(1, 1), "a");
+        clusterer.add(new MapPoint(1.002, 1.004), "b");
+
+        MapPoint center = clusterer.cluster(null, 0, 1).get(0).getCenter();
+
+        assertThat(center.lat, closeTo(1.001, 1e-9));
+        assertThat(center.lon, closeTo(1.002, 1e-9));
+    }
+
+    @Test
+    public void clear_removesAllPoints() {
+        clusterer.add(new MapPoint(0, 0), "a");
+
+        clusterer.clear();
+
+        assertThat(clusterer.size(), is(0));
+        assertThat(clusterer.cluster(null, 0, 10).size(), is(0));
+    }
+
+    private static List<String> itemsOf(List<PointClusterer.Cluster<String>> clusters) {
+        List<String> items = new ArrayList<>();
+        for (PointClusterer.Cluster<String> cluster : clusters) {
+            items.addAll(cluster.getItems());
+        }
+
+        return items;
+    }
+}
@@ -19,9 +19,14 @@ public class TestMapFragment implements MapFragment {
     private double scaleFactor;
     private double zoomLevel;
     private PointListener locationListener;
+    private ViewportListener viewportChangeListener;
+    private MapBounds visibleBounds;
 
     private int lastFeatureId;
     private final Map<MapPoint, Integer> mappedPoints = new HashMap<>();
+    private final Map<Integer, String> markerLabels = new HashMap<>();
+    private int addedFeatureCount;
+    private int removedFeatureCount;
 
     public int getZoomCount() {
         return zoomCount;
@@ -61,6 +66,28 @@ public class TestMapFragment implements MapFragment {
         return mappedPoints.get(point);
     }
 
+    public String getMarkerLabel(int featureId) {
+        return markerLabels.get(featureId);
+    }
+
+    public int getAddedFeatureCount() {
+        return addedFeatureCount;
+    }
+
+    public int getRemovedFeatureCount() {
+        return removedFeatureCount;
+    }
+
+    public void setVisibleBounds(@Nullable MapBounds visibleBounds) {
+        this.visibleBounds = visibleBounds;
+    }
+
+    public void changeViewport() {
+        if (viewportChangeListener != null) {
+            viewportChangeListener.onViewportChanged();
+        }
+    }
+
     public void resetState() {
         zoomCount = 0;
         animate = false;
@@ -71,6 +98,11 @@ public class TestMapFragment implements MapFragment {
         locationListener = null;
         lastFeatureId = 0;
         mappedPoints.clear();
+        markerLabels.clear();
+        addedFeatureCount = 0;
+        removedFeatureCount = 0;
+        viewportChangeListener = null;
+        visibleBounds = null;
     }
 
     @Override
@@ -122,9 +154,16 @@ public class TestMapFragment implements MapFragment {
         zoomCount++;
     }
 
+    @Nullable
+    @Override
+    public MapBounds getVisibleBounds() {
+        return visibleBounds;
+    }
+
     @Override
     public int addMarker(MapPoint point, boolean draggable, @IconAnchor String iconAnchor) {
         mappedPoints.put(point, lastFeatureId);
+        addedFeatureCount++;
 
         return lastFeatureId++;
     }
@@ -134,6 +173,11 @@ public class TestMapFragment implements MapFragment {
 
     }
 
+    @Override
+    public void setMarkerIcon(int featureId, int drawableId, @NonNull String label) {
+        markerLabels.put(featureId, label);
+    }
+
     @Override
     public MapPoint getMarkerPoint(int featureId) {
         return null;
@@ -162,12 +206,16 @@ public class TestMapFragment implements MapFragment {
 
     @Override
     public void removeFeature(int featureId) {
-
+        if (mappedPoints.values().remove(featureId)) {
+            markerLabels.remove(featureId);
+            removedFeatureCount++;
+        }
     }
 
     @Override
     public void clearFeatures() {
         mappedPoints.clear();
+        markerLabels.clear();
     }
 
     @Override
@@ -190,6 +238,11 @@ public class TestMapFragment implements MapFragment {
 
     }
 
+    @Override
+    public void setViewportChangeListener(@Nullable ViewportListener listener) {
+        viewportChangeListener = listener;
+    }
+
     @Override
     public void setGpsLocationEnabled(boolean enabled) {
 
@@ -0,0 +1,180 @@
+package org.odk.collect.android.geo;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+
+public class TileHttpServerTest {
+
+    private final FakeTileSource source = new FakeTileSource();
+    private TileHttpServer server;
+    private int port;
+
+    @Before
+    public void setup() throws IOException {
+        server = new TileHttpServer();
+        server.addSource("fake", source);
+        server.start();
+        port = new URL(server.getUrlTemplate("fake").replaceAll("\\{.\\}", "0")).getPort();
+    }
+
+    @After
+    public void teardown() {
+        server.destroy();
+    }
+
+    @Test
+    public void servesManyRequestsOnOneConnection() throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            for (int i = 0; i < 3; i++) {
+                String response = get(socket, "/fake/1/0/" + i);
+                assertThat(response, is("HTTP/1.1 200 OK\n1/0/" + i));
+            }
+        }
+
+        assertThat(server.getMetrics().connections, is(1L));
+        assertThat(server.getMetrics().requests, is(3L));
+    }
+
+    @Test
+    public void whenTileIsMissing_respondsWithNotFoundAndKeepsConnectionOpen() throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            assertThat(get(socket, "/fake/1/0/" + FakeTileSource.MISSING_ROW), is("HTTP/1.1 404 Not Found\n"));
+            assertThat(get(socket, "/fake/1/0/0"), is("HTTP/1.1 200 OK\n1/0/0"));
+        }
+
+        assertThat(server.getMetrics().missingTiles, is(1L));
+    }
+
+    @Test
+    public void repeatedRequests_areServedFromCache() throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            get(socket, "/fake/2/1/1");
+            get(socket, "/fake/2/1/1");
+        }
+
+        assertThat(source.fetchCount.get(), is(1));
+        assertThat(server.getMetrics().cacheHits, is(1L));
+        assertThat(server.getMetrics().getCacheHitRate(), is(0.5));
+    }
+
+    @Test
+    public void whenEveryWorkerHasAnIdleConnection_aNewConnectionIsServedWithoutWaitingForThemToTimeOut() throws IOException {
+        List<Socket> idleSockets = new ArrayList<>();
+        try {
+            for (int i = 0; i < TileHttpServer.WORKER_COUNT; i++) {
+                Socket socket = new Socket("localhost", port);
+                idleSockets.add(socket);
+                get(socket, "/fake/1/0/" + i);
+            }
+
+            long start = System.nanoTime();
+            try (Socket socket = new Socket("localhost", port)) {
+                assertThat(get(socket, "/fake/1/1/0"), is("HTTP/1.1 200 OK\n1/1/0"));
+            }
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            assertThat(elapsedMillis, lessThan((long) TileHttpServer.KEEP_ALIVE_TIMEOUT_MS / 2));
+        } finally {
+            for (Socket socket : idleSockets) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    public void tileCache_evictsLeastRecentlyUsedTilesWhenOverBudget() {
+        TileHttpServer.TileCache cache = new TileHttpServer.TileCache(10);
+        cache.put("a", new byte[4]);
+        cache.put("b", new byte[4]);
+        cache.get("a");
+        cache.put("c", new byte[4]);
+
+        assertThat(cache.get("b"), is(nullValue()));
+        assertThat(cache.get("a").length, is(4));
+        assertThat(cache.get("c").length, is(4));
+        assertThat(cache.getBytes(), is(8L));
+    }
+
+    @Test
+    public void tileCache_doesNotKeepTilesLargerThanBudget() {
+        TileHttpServer.TileCache cache = new TileHttpServer.TileCache(10);
+        cache.put("a", new byte[4]);
+        cache.put("huge", new byte[11]);
+
+        assertThat(cache.size(), is(1));
+        assertThat(cache.getBytes(), is(4L));
+    }
+
+    /** Sends a keep-alive GET request and returns the status line and body. */
+    private static String get(Socket socket, String path) throws IOException {
+        OutputStream output = socket.getOutputStream();
+        output.write(("GET " + path + " HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        output.flush();
+
+        InputStream input = socket.getInputStream();
+        String statusLine = readLine(input);
+        int contentLength = 0;
+        for (String header = readLine(input); !header.isEmpty(); header = readLine(input)) {
+            if (header.startsWith("Content-Length:")) {
+                contentLength = Integer.parseInt(header.substring("Content-Length:".length()).trim());
+            }
+        }
+
+        byte[] body = new byte[contentLength];
+        new DataInputStream(input).readFully(body);
+        return statusLine + "\n" + new String(body, StandardCharsets.US_ASCII);
+    }
+
+    private static String readLine(InputStream input) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        for (int c = input.read(); c != '\n'; c = input.read()) {
+            if (c == -1) {
+                throw new IOException("Connection closed");
+            }
+            if (c != '\r') {
+                line.write(c);
+            }
+        }
+        return new String(line.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    private static class FakeTileSource implements TileSource {
+        static final int MISSING_ROW = 99;
+
+        final AtomicInteger fetchCount = new AtomicInteger();
+
+        @Override
+        public byte[] getTileBlob(int zoom, int x, int y) {
+            fetchCount.incrementAndGet();
+            return y == MISSING_ROW ? null : (zoom + "/" + x + "/" + y).getBytes(StandardCharsets.US_ASCII);
+        }
+
+        @Override
+        public String getContentType() {
+            return "image/png";
+        }
+
+        @Override
+        public String getContentEncoding() {
+            return "identity";
+        }
+    }
+}
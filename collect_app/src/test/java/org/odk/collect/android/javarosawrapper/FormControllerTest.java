@@ -2,6 +2,9 @@ package org.odk.collect.android.javarosawrapper;
 
 import com.google.common.io.Files;
 
+import org.javarosa.core.model.FormIndex;
+import org.javarosa.core.model.data.IntegerData;
+import org.javarosa.core.model.instance.TreeReference;
 import org.javarosa.form.api.FormEntryController;
 import org.javarosa.form.api.FormEntryModel;
 import org.javarosa.xform.util.XFormUtils;
@@ -11,10 +14,14 @@ import org.junit.Test;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
 
@@ -89,6 +96,58 @@ public class FormControllerTest {
         assertThat(formController.getAuditEventLogger(), notNullValue());
     }
 
+    @Test
+    public void getIndexFromXPath_returnsIndexOfEveryEvent() throws Exception {
+        FormController formController = createFormController(ONE_QUESTION_NESTED_REPEAT);
+        int event = formController.stepToNextEvent(true);
+        while (event != FormEntryController.EVENT_END_OF_FORM) {
+            if (event == FormEntryController.EVENT_PROMPT_NEW_REPEAT && formController.getXPath(formController.getFormIndex()).endsWith("[2]")) {
+                formController.newRepeat();
+            }
+            event = formController.stepToNextEvent(true);
+        }
+
+        Map<String, FormIndex> indexesByXPath = new LinkedHashMap<>();
+        formController.jumpToIndex(FormIndex.createBeginningOfFormIndex());
+        event = formController.stepToNextEvent(true);
+        while (event != FormEntryController.EVENT_END_OF_FORM) {
+            indexesByXPath.put(formController.getXPath(formController.getFormIndex()), formController.getFormIndex());
+            event = formController.stepToNextEvent(true);
+        }
+
+        FormIndex current = formController.getFormIndex();
+        assertThat(indexesByXPath.containsKey("question./data/person[2]/age"), is(true));
+        for (Map.Entry<String, FormIndex> entry : indexesByXPath.entrySet()) {
+            assertThat(entry.getKey(), formController.getIndexFromXPath(entry.getKey()), equalTo(entry.getValue()));
+        }
+        assertThat(formController.getFormIndex(), equalTo(current));
+    }
+
+    @Test
+    public void getIndexFromXPath_afterRepeatIsDeleted_returnsIndexesOfRemainingRepeats() throws Exception {
+        FormController formController = createFormController(ONE_QUESTION_REPEAT);
+        formController.jumpToIndex(formController.getIndexFromXPath("promptNewRepeat./data/person[2]"));
+        formController.newRepeat();
+        formController.jumpToIndex(formController.getIndexFromXPath("promptNewRepeat./data/person[3]"));
+        formController.newRepeat();
+        assertThat(formController.getIndexFromXPath("question./data/person[3]/age"), is(notNullValue()));
+
+        formController.jumpToIndex(formController.getIndexFromXPath("question./data/person[2]/age"));
+        formController.deleteRepeat();
+
+        assertThat(formController.getIndexFromXPath("question./data/person[3]/age"), is(nullValue()));
+        assertThat(formController.getIndexFromXPath("promptNewRepeat./data/person[3]").toString(), equalTo("0_2, "));
+        assertThat(formController.getIndexFromXPath("question./data/person[2]/age").toString(), equalTo("0_1, 0, "));
+    }
+
+    @Test
+    public void getIndexFromXPath_whenXPathDoesNotMatchAnEvent_returnsNull() throws Exception {
+        FormController formController = createFormController(GROUP);
+
+        assertThat(formController.getIndexFromXPath("question./data/group"), is(nullValue()));
+        assertThat(formController.getIndexFromXPath("question./data/missing"), is(nullValue()));
+        assertThat(formController.getIndexFromXPath("group./data/group").toString(), equalTo("0, "));
+    }
 
     //region indexIsInFieldList
     @Test
@@ -112,6 +171,129 @@ public class FormControllerTest {
     }
     //endregion
 
+    //region stepOverChildren
+    @Test
+    public void stepOverChildren_fromLastRepeatInstance_stepsToNewRepeatPrompt() throws Exception {
+        FormController formController = createFormController(ONE_QUESTION_REPEAT);
+        stepToIndex(formController, "0_0, ");
+
+        assertThat(formController.stepOverChildren(), equalTo(FormEntryController.EVENT_PROMPT_NEW_REPEAT));
+        assertThat(formController.getFormIndex().toString(), equalTo("0_1, "));
+    }
+
+    @Test
+    public void stepOverChildren_fromRepeatInstance_stepsToNextInstance() throws Exception {
+        FormController formController = createFormController(ONE_QUESTION_REPEAT);
+        formController.jumpToIndex(formController.getIndexFromXPath("promptNewRepeat./data/person[2]"));
+        formController.newRepeat();
+        formController.jumpToIndex(FormIndex.createBeginningOfFormIndex());
+        stepToIndex(formController, "0_0, ");
+
+        assertThat(formController.stepOverChildren(), equalTo(FormEntryController.EVENT_REPEAT));
+        assertThat(formController.getFormIndex().toString(), equalTo("0_1, "));
+    }
+
+    @Test
+    public void stepOverChildren_fromNestedRepeatInstance_stepsToItsNewRepeatPrompt() throws Exception {
+        FormController formController = createFormController(ONE_QUESTION_NESTED_REPEAT);
+        stepToIndex(formController, "0_0, 1_0, ");
+
+        assertThat(formController.stepOverChildren(), equalTo(FormEntryController.EVENT_PROMPT_NEW_REPEAT));
+        assertThat(formController.getFormIndex().toString(), equalTo("0_0, 1_1, "));
+    }
+
+    @Test
+    public void stepOverChildren_fromGroupInRepeat_skipsQuestionsInGroup() throws Exception {
+        FormController formController = createFormController(ONE_QUESTION_GROUP_REPEAT);
+        stepToIndex(formController, "0_0, 0, ");
+
+        assertThat(formController.stepOverChildren(), equalTo(FormEntryController.EVENT_PROMPT_NEW_REPEAT));
+        assertThat(formController.getFormIndex().toString(), equalTo("0_1, "));
+    }
+
+    @Test
+    public void stepOverChildren_fromLastGroupInForm_returnsEndOfForm() throws Exception {
+        FormController formController = createFormController(GROUP);
+        stepToIndex(formController, "0, ");
+
+        assertThat(formController.stepOverChildren(), equalTo(FormEntryController.EVENT_END_OF_FORM));
+    }
+    //endregion
+
+    //region getRevision
+    @Test
+    public void getRevision_changesWhenAnAnswerChanges() throws Exception {
+        FormController formController = createFormController(GROUP);
+        FormIndex question = formController.getIndexFromXPath("question./data/group/question");
+
+        int revision = formController.getRevision();
+        formController.saveAnswer(question, new IntegerData(5));
+        assertThat(formController.getRevision(), greaterThan(revision));
+
+        revision = formController.getRevision();
+        formController.answerQuestion(question, new IntegerData(6));
+        assertThat(formController.getRevision(), greaterThan(revision));
+
+        revision = formController.getRevision();
+        formController.saveAnswer(question, null);
+        assertThat(formController.getRevision(), greaterThan(revision));
+    }
+
+    @Test
+    public void getRevision_doesNotChangeWhenTheSameAnswerIsSavedAgain() throws Exception {
+        FormController formController = createFormController(GROUP);
+        FormIndex question = formController.getIndexFromXPath("question./data/group/question");
+
+        int revision = formController.getRevision();
+        formController.saveAnswer(question, null);
+        assertThat(formController.getRevision(), equalTo(revision));
+
+        formController.saveAnswer(question, new IntegerData(5));
+        revision = formController.getRevision();
+        formController.saveAnswer(question, new IntegerData(5));
+        formController.answerQuestion(question, new IntegerData(5));
+        assertThat(formController.getRevision(), equalTo(revision));
+    }
+
+    @Test
+    public void getRevision_changesWhenAValueIsSetByReference() throws Exception {
+        FormController formController = createFormController(GROUP);
+        TreeReference question = formController.getIndexFromXPath("question./data/group/question").getReference();
+
+        int revision = formController.getRevision();
+        formController.setValue(question, new IntegerData(5));
+        assertThat(formController.getRevision(), greaterThan(revision));
+        assertThat((Integer) formController.getAnswer(question).getValue(), equalTo(5));
+
+        revision = formController.getRevision();
+        formController.setValue(question, new IntegerData(5));
+        assertThat(formController.getRevision(), equalTo(revision));
+    }
+
+    @Test
+    public void getRevision_changesWhenARepeatIsAddedOrDeleted() throws Exception {
+        FormController formController = createFormController(ONE_QUESTION_REPEAT);
+        formController.jumpToIndex(formController.getIndexFromXPath("promptNewRepeat./data/person[2]"));
+
+        int revision = formController.getRevision();
+        formController.newRepeat();
+        assertThat(formController.getRevision(), greaterThan(revision));
+
+        revision = formController.getRevision();
+        formController.jumpToIndex(formController.getIndexFromXPath("question./data/person[2]/age"));
+        formController.deleteRepeat();
+        assertThat(formController.getRevision(), greaterThan(revision));
+    }
+    //endregion
+
+    private static void stepToIndex(FormController formController, String index) {
+        int event = formController.getEvent();
+        while (!formController.getFormIndex().toString().equals(index)) {
+            assertThat(event, not(equalTo(FormEntryController.EVENT_END_OF_FORM)));
+            event = formController.stepToNextEvent(true);
+        }
+    }
+
     @NotNull
     private FormController createFormController(String xform) throws IOException {
         ByteArrayInputStream inputStream = new ByteArrayInputStream(xform.getBytes());
@@ -0,0 +1,62 @@
+package org.odk.collect.android.logic;
+
+import org.junit.Test;
+import org.odk.collect.android.javarosawrapper.FormController;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class HierarchyScreenCacheTest {
+
+    @Test
+    public void forFormController_returnsTheSameCacheForTheSameFormController() {
+        FormController formController = mock(FormController.class);
+
+        assertThat(HierarchyScreenCache.forFormController(formController), sameInstance(HierarchyScreenCache.forFormController(formController)));
+    }
+
+    @Test
+    public void get_whenRevisionIsUnchanged_returnsCachedElements() {
+        FormController formController = mock(FormController.class);
+        when(formController.getRevision()).thenReturn(3);
+        HierarchyScreenCache cache = HierarchyScreenCache.forFormController(formController);
+
+        List<HierarchyElement> elements = new ArrayList<>();
+        cache.put("screen", 3, elements);
+
+        assertThat(cache.get("screen", 3), sameInstance(elements));
+        assertThat(cache.get("other", 3), nullValue());
+    }
+
+    @Test
+    public void get_afterRevisionChanges_returnsNullUntilTheScreenIsRebuilt() {
+        FormController formController = mock(FormController.class);
+        when(formController.getRevision()).thenReturn(3);
+        HierarchyScreenCache cache = HierarchyScreenCache.forFormController(formController);
+        cache.put("screen", 3, new ArrayList<>());
+
+        assertThat(cache.get("screen", 4), nullValue());
+
+        List<HierarchyElement> rebuilt = new ArrayList<>();
+        cache.put("screen", 4, rebuilt);
+        assertThat(cache.get("screen", 4), sameInstance(rebuilt));
+        assertThat(cache.get("screen", 3), nullValue());
+    }
+
+    @Test
+    public void put_atANewRevision_discardsScreensFromTheOldRevision() {
+        FormController formController = mock(FormController.class);
+        HierarchyScreenCache cache = HierarchyScreenCache.forFormController(formController);
+        cache.put("screen", 0, new ArrayList<>());
+
+        cache.put("other", 1, new ArrayList<>());
+
+        assertThat(cache.get("screen", 1), nullValue());
+    }
+}
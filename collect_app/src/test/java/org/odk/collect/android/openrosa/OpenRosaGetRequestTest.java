@@ -10,6 +10,7 @@ import org.odk.collect.shared.strings.Md5;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.nio.charset.Charset;
 import java.util.zip.GZIPOutputStream;
@@ -96,6 +97,20 @@ public abstract class OpenRosaGetRequestTest {
         assertThat(result.getHash(), equalTo(Md5.getMd5Hash(new ByteArrayInputStream("I AM BODY".getBytes()))));
     }
 
+    @Test
+    public void whenContentTypeIsXML_andBodyIsClosedBeforeItIsAllRead_hashIsOfTheWholeBody() throws Exception {
+        mockWebServer.enqueue(new MockResponse()
+                .addHeader("Content-Type", "text/xml")
+                .setBody("<manifest/>\n\n"));
+
+        HttpGetResult result = subject.executeGetRequest(mockWebServer.url("").uri(), "text/xml", null);
+        InputStream inputStream = result.getInputStream();
+        inputStream.read(new byte["<manifest/>".length()]);
+        inputStream.close();
+
+        assertThat(result.getHash(), equalTo(Md5.getMd5Hash(new ByteArrayInputStream("<manifest/>\n\n".getBytes()))));
+    }
+
     @Test(expected = Exception.class)
     public void withContentType_whenResponseHasDifferentContentType_throwsException() throws Exception {
         mockWebServer.enqueue(new MockResponse()
@@ -152,6 +167,63 @@ public abstract class OpenRosaGetRequestTest {
         assertThat(result2.getStatusCode(), equalTo(304));
     }
 
+    @Test
+    public void rangeRequest_sendsRangeHeaderAndReturnsPartialBody() throws Exception {
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(206)
+                .addHeader("Content-Range", "bytes 5-8/9")
+                .setBody("BODY"));
+
+        HttpGetResult result = subject.executeRangeGetRequest(mockWebServer.url("").uri(), 5, null);
+        assertThat(result.getStatusCode(), equalTo(206));
+        assertThat(IOUtils.toString(result.getInputStream(), Charset.defaultCharset()), equalTo("BODY"));
+
+        RecordedRequest request = mockWebServer.takeRequest();
+        assertThat(request.getHeader("Range"), equalTo("bytes=5-"));
+    }
+
+    @Test
+    public void rangeRequest_whenServerIgnoresRange_returnsWholeBody() throws Exception {
+        mockWebServer.enqueue(new MockResponse()
+                .setBody("I AM BODY"));
+
+        HttpGetResult result = subject.executeRangeGetRequest(mockWebServer.url("").uri(), 5, null);
+        assertThat(result.getStatusCode(), equalTo(200));
+        assertThat(IOUtils.toString(result.getInputStream(), Charset.defaultCharset()), equalTo("I AM BODY"));
+    }
+
+    @Test
+    public void conditionalRequest_sendsValidatorsAndReturnsNotModified() throws Exception {
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(304)
+                .addHeader("ETag", "\"v1\""));
+
+        HttpGetResult result = subject.executeConditionalGetRequest(mockWebServer.url("").uri(), null, null,
+                "\"v1\"", "Wed, 21 Oct 2015 07:28:00 GMT");
+        assertThat(result.getStatusCode(), equalTo(304));
+        assertThat(result.getInputStream(), nullValue());
+        assertThat(result.getHeader("etag"), equalTo("\"v1\""));
+
+        RecordedRequest request = mockWebServer.takeRequest();
+        assertThat(request.getHeader("If-None-Match"), equalTo("\"v1\""));
+        assertThat(request.getHeader("If-Modified-Since"), equalTo("Wed, 21 Oct 2015 07:28:00 GMT"));
+    }
+
+    @Test
+    public void conditionalRequest_whenResourceHasChanged_returnsBody() throws Exception {
+        mockWebServer.enqueue(new MockResponse()
+                .addHeader("ETag", "\"v2\"")
+                .setBody("I AM BODY"));
+
+        HttpGetResult result = subject.executeConditionalGetRequest(mockWebServer.url("").uri(), null, null, "\"v1\"", null);
+        assertThat(result.getStatusCode(), equalTo(200));
+        assertThat(result.getHeader("ETag"), equalTo("\"v2\""));
+        assertThat(IOUtils.toString(result.getInputStream(), Charset.defaultCharset()), equalTo("I AM BODY"));
+
+        RecordedRequest request = mockWebServer.takeRequest();
+        assertThat(request.getHeader("If-Modified-Since"), nullValue());
+    }
+
     private static byte[] gzip(String data) throws IOException {
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length());
         GZIPOutputStream gzipStream = new GZIPOutputStream(outputStream);
@@ -0,0 +1,142 @@
+package org.odk.collect.android.openrosa;
+
+import org.junit.Test;
+import org.odk.collect.forms.FormListItem;
+import org.odk.collect.forms.MediaFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class OpenRosaResponseParserImplTest {
+
+    private final OpenRosaResponseParserImpl parser = new OpenRosaResponseParserImpl();
+
+    @Test
+    public void parseFormList_returnsForms() throws Exception {
+        List<FormListItem> formList = parser.parseFormList(stream(
+                "<?xml version=\"1.0\"?>",
+                "<xforms xmlns=\"http://openrosa.org/xforms/xformsList\">",
+                "<xform><formID> one </formID>",
+                "<name>The First Form</name>",
+                "<majorMinorVersion></majorMinorVersion>",
+                "<version>  </version>",
+                "<hash>md5:b71c92bec48730119eab982044a8adff</hash>",
+                "<downloadUrl>https://example.com/formXml?formId=one&amp;a=b</downloadUrl>",
+                "<manifestUrl>https://example.com/manifest?formId=one</manifestUrl>",
+                "</xform>",
+                "<xform><formID>two</formID>",
+                "<name><![CDATA[The Second Form]]></name>",
+                "<version>2</version>",
+                "<downloadUrl>https://example.com/formXml?formId=two</downloadUrl>",
+                "</xform>",
+                "</xforms>"
+        ));
+
+        assertThat(formList.size(), is(2));
+
+        FormListItem first = formList.get(0);
+        assertThat(first.getFormID(), is("one"));
+        assertThat(first.getName(), is("The First Form"));
+        assertThat(first.getVersion(), is(nullValue()));
+        assertThat(first.getHashWithPrefix(), is("md5:b71c92bec48730119eab982044a8adff"));
+        assertThat(first.getDownloadURL(), is("https://example.com/formXml?formId=one&a=b"));
+        assertThat(first.getManifestURL(), is("https://example.com/manifest?formId=one"));
+
+        FormListItem second = formList.get(1);
+        assertThat(second.getFormID(), is("two"));
+        assertThat(second.getName(), is("The Second Form"));
+        assertThat(second.getVersion(), is("2"));
+        assertThat(second.getHashWithPrefix(), is(nullValue()));
+        assertThat(second.getManifestURL(), is(nullValue()));
+    }
+
+    @Test
+    public void parseFormList_skipsElementsFromOtherNamespaces() throws Exception {
+        List<FormListItem> formList = parser.parseFormList(stream(
+                "<xforms xmlns=\"http://openrosa.org/xforms/xformsList\" xmlns:ext=\"http://example.com/ext\">",
+                "<ext:xform><formID>ignored</formID></ext:xform>",
+                "<xform><formID>one</formID>",
+                "<ext:name><nested>Not the name</nested></ext:name>",
+                "<name>The First Form</name>",
+                "<downloadUrl>https://example.com/formXml?formId=one</downloadUrl>",
+                "</xform>",
+                "</xforms>"
+        ));
+
+        assertThat(formList.size(), is(1));
+        assertThat(formList.get(0).getFormID(), is("one"));
+        assertThat(formList.get(0).getName(), is("The First Form"));
+    }
+
+    @Test
+    public void parseFormList_whenFormIsMissingDownloadUrl_returnsNull() throws Exception {
+        List<FormListItem> formList = parser.parseFormList(stream(
+                "<xforms xmlns=\"http://openrosa.org/xforms/xformsList\">",
+                "<xform><formID>one</formID><name>The First Form</name></xform>",
+                "</xforms>"
+        ));
+
+        assertThat(formList, is(nullValue()));
+    }
+
+    @Test
+    public void parseFormList_whenRootIsNotFormList_returnsNull() throws Exception {
+        assertThat(parser.parseFormList(stream("<xml></xml>")), is(nullValue()));
+        assertThat(parser.parseFormList(stream("<xforms></xforms>")), is(nullValue()));
+    }
+
+    @Test
+    public void parseFormList_passesFormsToConsumerAsTheyAreRead() throws Exception {
+        List<String> formIds = new ArrayList<>();
+        boolean valid = parser.parseFormList(stream(
+                "<xforms xmlns=\"http://openrosa.org/xforms/xformsList\">",
+                "<xform><formID>one</formID><name>One</name><downloadUrl>http://one</downloadUrl></xform>",
+                "<xform><formID>two</formID><name>Two</name><downloadUrl>http://two</downloadUrl></xform>",
+                "</xforms>"
+        ), item -> formIds.add(item.getFormID()));
+
+        assertThat(valid, is(true));
+        assertThat(formIds, contains("one", "two"));
+    }
+
+    @Test
+    public void parseManifest_returnsMediaFiles() throws Exception {
+        List<MediaFile> mediaFiles = parser.parseManifest(stream(
+                "<manifest xmlns=\"http://openrosa.org/xforms/xformsManifest\">",
+                "<mediaFile>",
+                "<filename>badger.png</filename>",
+                "<hash>md5:a1b2c3</hash>",
+                "<downloadUrl>https://example.com/badger.png</downloadUrl>",
+                "</mediaFile>",
+                "</manifest>"
+        ));
+
+        assertThat(mediaFiles.size(), is(1));
+        assertThat(mediaFiles.get(0).getFilename(), is("badger.png"));
+        assertThat(mediaFiles.get(0).getHash(), is("md5:a1b2c3"));
+        assertThat(mediaFiles.get(0).getDownloadUrl(), is("https://example.com/badger.png"));
+    }
+
+    @Test
+    public void parseManifest_whenMediaFileIsMissingHash_returnsNull() throws Exception {
+        List<MediaFile> mediaFiles = parser.parseManifest(stream(
+                "<manifest xmlns=\"http://openrosa.org/xforms/xformsManifest\">",
+                "<mediaFile><filename>badger.png</filename><downloadUrl>https://example.com/badger.png</downloadUrl></mediaFile>",
+                "</manifest>"
+        ));
+
+        assertThat(mediaFiles, is(nullValue()));
+    }
+
+    private static InputStream stream(String... lines) {
+        return new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -2,21 +2,24 @@ package org.odk.collect.android.openrosa;
 
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
+import org.apache.commons.io.IOUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.odk.collect.shared.TempFiles;
 
 import org.odk.collect.android.TestSettingsProvider;
-import org.odk.collect.android.utilities.DocumentFetchResult;
 import org.odk.collect.android.utilities.WebCredentialsUtils;
 
 import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -33,7 +36,7 @@ public class OpenRosaXmlFetcherTest {
     }
 
     @Test
-    public void getXML_returnsResultWith0Status() throws Exception {
+    public void fetchXML_returnsResultWith0Status() throws Exception {
         HashMap<String, String> headers = new HashMap<>();
         headers.put(OpenRosaConstants.VERSION_HEADER, "1.0");
         when(httpInterface.executeGetRequest(any(), any(), any())).thenReturn(new HttpGetResult(
@@ -43,20 +46,56 @@ public class OpenRosaXmlFetcherTest {
                 200
         ));
 
-        DocumentFetchResult result = openRosaXMLFetcher.getXML("http://testurl");
+        XmlFetchResult result = openRosaXMLFetcher.fetchXML("http://testurl", null);
         assertThat(result.responseCode, equalTo(0));
         assertThat(result.isOpenRosaResponse, equalTo(true));
         assertThat(result.errorMessage, nullValue());
     }
 
     @Test
-    public void getXML_whenUnsuccessful_returnsResultWithStatusAndErrorMessage() throws Exception {
+    public void fetchXML_whenUnsuccessful_returnsResultWithStatusAndErrorMessage() throws Exception {
         when(httpInterface.executeGetRequest(any(), any(), any())).thenReturn(new HttpGetResult(null, new HashMap<>(), "", 500));
 
-        DocumentFetchResult result = openRosaXMLFetcher.getXML("http://testurl");
+        XmlFetchResult result = openRosaXMLFetcher.fetchXML("http://testurl", null);
         assertThat(result.responseCode, equalTo(500));
-        assertThat(result.errorMessage, equalTo("getXML failed while accessing http://testurl with status code: 500"));
+        assertThat(result.errorMessage, equalTo("fetchXML failed while accessing http://testurl with status code: 500"));
     }
-}
 
+    @Test
+    public void fetchXML_withCache_whenDocumentHasNotChanged_usesCachedDocument() throws Exception {
+        XmlResponseCache cache = new XmlResponseCache(TempFiles.createTempDir());
+
+        HashMap<String, String> headers = new HashMap<>();
+        headers.put(OpenRosaConstants.VERSION_HEADER, "1.0");
+        headers.put("ETag", "\"v1\"");
+        when(httpInterface.executeGetRequest(any(), any(), any())).thenReturn(new HttpGetResult(
+                new ByteArrayInputStream("<manifest/>".getBytes()),
+                headers,
+                "hash",
+                200
+        ));
+        openRosaXMLFetcher.fetchXML("http://testurl", cache);
+
+        when(httpInterface.executeConditionalGetRequest(any(), any(), any(), eq("\"v1\""), any()))
+                .thenReturn(new HttpGetResult(null, new HashMap<>(), "", 304));
 
+        XmlFetchResult result = openRosaXMLFetcher.fetchXML("http://testurl", cache);
+        assertThat(result.errorMessage, nullValue());
+        assertThat(result.isOpenRosaResponse, equalTo(true));
+        assertThat(IOUtils.toString(result.inputStream, StandardCharsets.UTF_8), equalTo("<manifest/>"));
+    }
+
+    @Test
+    public void fetchXML_withCache_whenResponseHasNoValidators_doesNotCacheIt() throws Exception {
+        XmlResponseCache cache = new XmlResponseCache(TempFiles.createTempDir());
+        when(httpInterface.executeGetRequest(any(), any(), any())).thenReturn(new HttpGetResult(
+                new ByteArrayInputStream("<manifest/>".getBytes()),
+                new HashMap<>(),
+                "hash",
+                200
+        ));
+
+        openRosaXMLFetcher.fetchXML("http://testurl", cache);
+        assertThat(cache.get("http://testurl"), nullValue());
+    }
+}
@@ -0,0 +1,84 @@
+package org.odk.collect.android.openrosa;
+
+import org.junit.Test;
+import org.odk.collect.shared.TempFiles;
+import org.odk.collect.shared.strings.Md5;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class XmlResponseCacheTest {
+
+    private final File cacheDir = TempFiles.createTempDir();
+
+    @Test
+    public void get_returnsWhatWasPut() {
+        XmlResponseCache cache = new XmlResponseCache(cacheDir);
+        cache.put("http://a", createEntry("<a/>"));
+
+        XmlResponseCache.Entry entry = cache.get("http://a");
+        assertThat(new String(entry.body), equalTo("<a/>"));
+        assertThat(entry.eTag, equalTo("\"v1\""));
+    }
+
+    @Test
+    public void put_whenThereAreTooManyEntries_dropsTheOldest() {
+        XmlResponseCache cache = new XmlResponseCache(cacheDir, 2, Long.MAX_VALUE);
+        cache.put("http://a", createEntry("<a/>"));
+        makeEntriesOlder();
+        cache.put("http://b", createEntry("<b/>"));
+        cache.put("http://c", createEntry("<c/>"));
+
+        assertThat(cache.get("http://a"), nullValue());
+        assertThat(cache.get("http://b"), notNullValue());
+        assertThat(cache.get("http://c"), notNullValue());
+    }
+
+    @Test
+    public void put_whenBodiesAreTooBig_dropsTheOldest() {
+        XmlResponseCache cache = new XmlResponseCache(cacheDir, Integer.MAX_VALUE, 10);
+        cache.put("http://a", createEntry("<aaaa/>"));
+        makeEntriesOlder();
+        cache.put("http://b", createEntry("<bbbb/>"));
+
+        assertThat(cache.get("http://a"), nullValue());
+        assertThat(cache.get("http://b"), notNullValue());
+    }
+
+    @Test
+    public void put_keepsRecentlyReadEntriesOverOlderOnes() {
+        XmlResponseCache cache = new XmlResponseCache(cacheDir, 2, Long.MAX_VALUE);
+        cache.put("http://a", createEntry("<a/>"));
+        cache.put("http://b", createEntry("<b/>"));
+        makeEntriesOlder();
+        cache.get("http://a");
+        cache.put("http://c", createEntry("<c/>"));
+
+        assertThat(cache.get("http://a"), notNullValue());
+        assertThat(cache.get("http://b"), nullValue());
+    }
+
+    @Test
+    public void put_neverDropsTheEntryThatWasJustPut() {
+        XmlResponseCache cache = new XmlResponseCache(cacheDir, 1, 1);
+        cache.put("http://a", createEntry("<a/>"));
+
+        assertThat(cache.get("http://a"), notNullValue());
+    }
+
+    private void makeEntriesOlder() {
+        for (File file : cacheDir.listFiles()) {
+            file.setLastModified(file.lastModified() - 60_000);
+        }
+    }
+
+    private static XmlResponseCache.Entry createEntry(String body) {
+        String hash = Md5.getMd5Hash(new ByteArrayInputStream(body.getBytes()));
+        return new XmlResponseCache.Entry("\"v1\"", null, true, hash, body.getBytes());
+    }
+}
@@ -0,0 +1,46 @@
+package org.odk.collect.android.preferences.keys;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.configure.StructureAndTypeSettingsValidator;
+import org.odk.collect.android.configure.qr.AppConfigurationKeys;
+
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+@RunWith(AndroidJUnit4.class)
+public class GeneralKeysTest {
+
+    @Test
+    public void defaults_uploadOneInstanceAtATime() {
+        Map<String, Object> defaults = GeneralKeys.getDefaults();
+
+        assertThat(defaults.get(GeneralKeys.KEY_MAX_CONCURRENT_SUBMISSIONS), is(1));
+        assertThat(defaults.get(GeneralKeys.KEY_MAX_CONCURRENT_SUBMISSIONS_PER_SERVER), is(1));
+    }
+
+    @Test
+    public void concurrentSubmissionSettings_areValidatedAsIntegers() throws Exception {
+        StructureAndTypeSettingsValidator validator = new StructureAndTypeSettingsValidator(GeneralKeys.getDefaults(), AdminKeys.getDefaults());
+
+        assertThat(validator.isValid(settings(new JSONObject()
+                .put(GeneralKeys.KEY_MAX_CONCURRENT_SUBMISSIONS, 4)
+                .put(GeneralKeys.KEY_MAX_CONCURRENT_SUBMISSIONS_PER_SERVER, 2))), is(true));
+        assertThat(validator.isValid(settings(new JSONObject()
+                .put(GeneralKeys.KEY_MAX_CONCURRENT_SUBMISSIONS, "4"))), is(false));
+        assertThat(validator.isValid(settings(new JSONObject()
+                .put(GeneralKeys.KEY_MAX_CONCURRENT_SUBMISSIONS_PER_SERVER, "2"))), is(false));
+    }
+
+    private static String settings(JSONObject general) throws Exception {
+        return new JSONObject()
+                .put(AppConfigurationKeys.GENERAL, general)
+                .put(AppConfigurationKeys.ADMIN, new JSONObject())
+                .toString();
+    }
+}
@@ -0,0 +1,97 @@
+package org.odk.collect.android.tasks;
+
+import org.javarosa.core.services.transport.payload.ByteArrayPayload;
+import org.javarosa.core.services.transport.payload.IDataPayload;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.odk.collect.android.formentry.audit.AuditEvent;
+import org.odk.collect.android.formentry.audit.AuditEventFileWriter;
+import org.odk.collect.android.utilities.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static java.util.Collections.singletonList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.is;
+
+public class SaveFormToDiskTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void writeFile_replacesExistingFileAndLeavesNoTempFile() throws IOException {
+        File instanceDir = temporaryFolder.newFolder("instance");
+        File instanceFile = new File(instanceDir, "instance.xml");
+        FileUtils.write(instanceFile, "<old/>".getBytes(StandardCharsets.UTF_8));
+
+        SaveFormToDisk.writeFile(payload("<data>new</data>"), instanceFile.getAbsolutePath());
+
+        assertThat(new String(FileUtils.read(instanceFile), StandardCharsets.UTF_8), is("<data>new</data>"));
+        assertThat(instanceDir.list(), arrayContaining("instance.xml"));
+    }
+
+    @Test
+    public void writeFile_createsMissingParentDirectories() throws IOException {
+        File instanceFile = new File(temporaryFolder.getRoot(), "instances/form_2021/form_2021.xml");
+
+        SaveFormToDisk.writeFile(payload("<data/>"), instanceFile.getAbsolutePath());
+
+        assertThat(new String(FileUtils.read(instanceFile), StandardCharsets.UTF_8), is("<data/>"));
+    }
+
+    @Test
+    public void copyFile_replacesDestinationWithSourceContents() throws IOException {
+        File instanceFile = temporaryFolder.newFile("instance.xml");
+        SaveFormToDisk.writeFile(payload("<data>answer</data>"), instanceFile.getAbsolutePath());
+
+        File mediaDir = temporaryFolder.newFolder("form-media");
+        File lastSavedFile = new File(mediaDir, FileUtils.LAST_SAVED_FILENAME);
+        FileUtils.write(lastSavedFile, FileUtils.STUB_XML.getBytes(StandardCharsets.UTF_8));
+
+        SaveFormToDisk.copyFile(instanceFile, lastSavedFile.getAbsolutePath());
+
+        assertThat(new String(FileUtils.read(lastSavedFile), StandardCharsets.UTF_8), is("<data>answer</data>"));
+        assertThat(mediaDir.list(), arrayContaining(FileUtils.LAST_SAVED_FILENAME));
+    }
+
+    @Test
+    public void copyFile_whenPayloadWasEmpty_deletesDestination() throws IOException {
+        File instanceFile = temporaryFolder.newFile("instance.xml");
+        SaveFormToDisk.writeFile(payload(""), instanceFile.getAbsolutePath());
+        assertThat(instanceFile.exists(), is(false));
+
+        File mediaDir = temporaryFolder.newFolder("form-media");
+        File lastSavedFile = new File(mediaDir, FileUtils.LAST_SAVED_FILENAME);
+        FileUtils.write(lastSavedFile, FileUtils.STUB_XML.getBytes(StandardCharsets.UTF_8));
+
+        SaveFormToDisk.copyFile(instanceFile, lastSavedFile.getAbsolutePath());
+
+        assertThat(lastSavedFile.exists(), is(false));
+        assertThat(mediaDir.list().length, is(0));
+    }
+
+    @Test
+    public void awaitAuditEventsWritten_afterAFlush_seesEveryFlushedEvent() throws IOException {
+        File auditFile = temporaryFolder.newFile("audit.csv");
+        AuditEventFileWriter writer = new AuditEventFileWriter(auditFile, false, false, false, false);
+        for (int i = 0; i < 50; i++) {
+            writer.writeEvents(singletonList(new AuditEvent(i, AuditEvent.AuditEventType.FORM_RESUME)));
+        }
+
+        assertThat(SaveFormToDisk.awaitAuditEventsWritten(SaveFormToDisk.AUDIT_WRITE_TIMEOUT_MS), is(true));
+
+        List<String> lines = org.apache.commons.io.FileUtils.readLines(auditFile, StandardCharsets.UTF_8);
+        assertThat(lines.size(), is(51));
+        assertThat(lines.get(50), is("form resume,,49,"));
+    }
+
+    private static ByteArrayPayload payload(String xml) {
+        return new ByteArrayPayload(xml.getBytes(StandardCharsets.UTF_8), null, IDataPayload.PAYLOAD_TYPE_XML);
+    }
+}
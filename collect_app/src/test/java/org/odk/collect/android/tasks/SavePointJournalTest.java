@@ -0,0 +1,107 @@
+package org.odk.collect.android.tasks;
+
+import org.javarosa.core.model.data.StringData;
+import org.javarosa.core.model.instance.TreeElement;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.odk.collect.android.utilities.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class SavePointJournalTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File snapshotFile;
+    private File journalFile;
+
+    @Before
+    public void setup() throws IOException {
+        snapshotFile = temporaryFolder.newFile("instance.xml.save");
+        FileUtils.write(snapshotFile, "<data/>".getBytes(StandardCharsets.UTF_8));
+        journalFile = new File(temporaryFolder.getRoot(), "instance.xml.save.journal");
+    }
+
+    @Test
+    public void collectValues_keysLeavesByNameAndMultiplicity() {
+        Map<String, String> values = SavePointJournal.collectValues(buildInstance("Ana", "Bo", "Cy"));
+
+        assertThat(values, hasEntry("/data[0]/name[0]", "Ana"));
+        assertThat(values, hasEntry("/data[0]/person[1]/name[0]", "Cy"));
+    }
+
+    @Test
+    public void replay_appliesChangesInOrder() throws IOException {
+        Map<String, String> changes = new HashMap<>();
+        changes.put("/data[0]/person[1]/name[0]", "Dee");
+        SavePointJournal.append(journalFile, snapshotFile, changes);
+
+        changes.clear();
+        changes.put("/data[0]/person[1]/name[0]", "Eve");
+        changes.put("/data[0]/name[0]", null);
+        SavePointJournal.append(journalFile, snapshotFile, changes);
+
+        TreeElement savedRoot = buildInstance("Ana", "Bo", "Cy");
+        assertThat(SavePointJournal.replay(journalFile, snapshotFile, savedRoot), is(true));
+
+        assertThat(savedRoot.getChild("person", 1).getChild("name", 0).getValue().uncast().getString(), is("Eve"));
+        assertThat(savedRoot.getChild("name", 0).getValue(), is(nullValue()));
+    }
+
+    @Test
+    public void replay_whenSnapshotWasReplaced_ignoresJournal() throws IOException {
+        Map<String, String> changes = new HashMap<>();
+        changes.put("/data[0]/name[0]", "Dee");
+        SavePointJournal.append(journalFile, snapshotFile, changes);
+
+        FileUtils.write(snapshotFile, "<data><name>Ana</name></data>".getBytes(StandardCharsets.UTF_8));
+
+        TreeElement savedRoot = buildInstance("Ana", "Bo", "Cy");
+        assertThat(SavePointJournal.replay(journalFile, snapshotFile, savedRoot), is(false));
+        assertThat(savedRoot.getChild("name", 0).getValue().uncast().getString(), is("Ana"));
+    }
+
+    @Test
+    public void replay_whenNodeDoesNotExist_ignoresJournal() throws IOException {
+        Map<String, String> changes = new HashMap<>();
+        changes.put("/data[0]/name[0]", "Dee");
+        changes.put("/data[0]/person[2]/name[0]", "Eve");
+        SavePointJournal.append(journalFile, snapshotFile, changes);
+
+        TreeElement savedRoot = buildInstance("Ana", "Bo", "Cy");
+        assertThat(SavePointJournal.replay(journalFile, snapshotFile, savedRoot), is(false));
+        assertThat(savedRoot.getChild("name", 0).getValue().uncast().getString(), is("Ana"));
+    }
+
+    private static TreeElement buildInstance(String name, String firstPerson, String secondPerson) {
+        TreeElement root = new TreeElement("data", 0);
+        root.addChild(leaf("name", name));
+        root.addChild(person(0, firstPerson));
+        root.addChild(person(1, secondPerson));
+        return root;
+    }
+
+    private static TreeElement person(int multiplicity, String name) {
+        TreeElement person = new TreeElement("person", multiplicity);
+        person.addChild(leaf("name", name));
+        return person;
+    }
+
+    private static TreeElement leaf(String name, String value) {
+        TreeElement leaf = new TreeElement(name, 0);
+        leaf.setValue(new StringData(value));
+        return leaf;
+    }
+}
@@ -0,0 +1,87 @@
+package org.odk.collect.android.upload;
+
+import org.junit.Test;
+import org.odk.collect.forms.instances.Instance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class ConcurrentSubmissionRunnerTest {
+
+    @Test
+    public void run_returnsResultsInInstanceOrder() {
+        List<Instance> instances = buildInstances(10);
+
+        List<Long> results = new ConcurrentSubmissionRunner(4, 4).run(instances, instance -> "server",
+                instance -> {
+                    // Finish later instances first
+                    sleep(50 - instance.getDbId() * 5);
+                    return instance.getDbId();
+                }, (finishedCount, total) -> { }, () -> false);
+
+        assertThat(results, contains(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L));
+    }
+
+    @Test
+    public void run_neverUploadsMoreThanTheLimitToOneServer() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        new ConcurrentSubmissionRunner(4, 2).run(buildInstances(12), instance -> "server",
+                instance -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    sleep(20);
+                    running.decrementAndGet();
+                    return null;
+                }, (finishedCount, total) -> { }, () -> false);
+
+        assertThat(maxRunning.get(), lessThanOrEqualTo(2));
+    }
+
+    @Test
+    public void run_whenCancelled_doesNotStartRemainingUploads() {
+        AtomicInteger started = new AtomicInteger();
+
+        List<Long> results = new ConcurrentSubmissionRunner(1, 1).run(buildInstances(3), instance -> "server",
+                instance -> {
+                    started.incrementAndGet();
+                    return instance.getDbId();
+                }, (finishedCount, total) -> { }, () -> started.get() >= 1);
+
+        assertThat(started.get(), is(1));
+        assertThat(results, is(asList(0L, null, null)));
+    }
+
+    @Test
+    public void run_reportsProgressForEveryInstance() {
+        AtomicInteger lastFinishedCount = new AtomicInteger();
+
+        new ConcurrentSubmissionRunner(3, 3).run(buildInstances(5), instance -> "server " + instance.getDbId() % 2,
+                instance -> null, (finishedCount, total) -> lastFinishedCount.accumulateAndGet(finishedCount, Math::max), () -> false);
+
+        assertThat(lastFinishedCount.get(), is(5));
+    }
+
+    private static List<Instance> buildInstances(int count) {
+        List<Instance> instances = new ArrayList<>();
+        for (long i = 0; i < count; i++) {
+            instances.add(new Instance.Builder().dbId(i).build());
+        }
+        return instances;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package org.odk.collect.android.utilities;
+
+import android.util.Base64;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.javarosawrapper.FormController.InstanceMetadata;
+import org.odk.collect.android.utilities.EncryptionUtils.EncryptedFormInformation;
+import org.odk.collect.shared.TempFiles;
+import org.odk.collect.shared.strings.Md5;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+@RunWith(AndroidJUnit4.class)
+public class EncryptionUtilsTest {
+
+    private static final String INSTANCE_ID = "uuid:round-trip";
+    private static final String SUBMISSION = "<data id=\"form\"><meta><instanceID>" + INSTANCE_ID + "</instanceID></meta></data>";
+
+    private File instanceXml;
+    private File submissionXml;
+    private final Map<String, byte[]> plaintexts = new HashMap<>();
+    private KeyPair keyPair;
+
+    @Before
+    public void setup() throws Exception {
+        File instanceDir = TempFiles.createTempDir();
+        instanceXml = new File(instanceDir, "instance.xml");
+        submissionXml = new File(instanceDir, "submission.xml");
+        FileUtils.writeStringToFile(instanceXml, SUBMISSION, "UTF-8");
+        FileUtils.writeStringToFile(submissionXml, SUBMISSION, "UTF-8");
+        plaintexts.put(submissionXml.getName(), SUBMISSION.getBytes(StandardCharsets.UTF_8));
+
+        // Sizes around and above the encryption buffer so files are encrypted in several chunks
+        Random random = new Random(0);
+        int[] sizes = {0, 1000, 64 * 1024, 200 * 1024 + 7};
+        for (int i = 0; i < sizes.length; i++) {
+            byte[] contents = new byte[sizes[i]];
+            random.nextBytes(contents);
+            File mediaFile = new File(instanceDir, "media" + i + ".jpg");
+            FileUtils.writeByteArrayToFile(mediaFile, contents);
+            plaintexts.put(mediaFile.getName(), contents);
+        }
+
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(EncryptionUtils.RSA_ALGORITHM);
+        keyPairGenerator.initialize(2048);
+        keyPair = keyPairGenerator.generateKeyPair();
+    }
+
+    @Test
+    public void generateEncryptedSubmission_canBeDecryptedAndSignedInTheSameOrderAsBefore() throws Exception {
+        EncryptedFormInformation formInfo = EncryptionUtils.createEncryptedFormInformation("form", "1",
+                new InstanceMetadata(INSTANCE_ID, null, null), keyPair.getPublic());
+
+        EncryptionUtils.generateEncryptedSubmission(instanceXml, submissionXml, formInfo);
+
+        String manifest = FileUtils.readFileToString(submissionXml, "UTF-8");
+        assertManifestElementsAreInOrder(manifest, "base64EncryptedKey", "instanceID", "media", "encryptedXmlFile", "base64EncryptedElementSignature");
+
+        List<String> mediaFileNames = new ArrayList<>();
+        Matcher matcher = Pattern.compile("<(?:\\w+:)?file>([^<]+)\\.enc</(?:\\w+:)?file>").matcher(manifest);
+        while (matcher.find()) {
+            mediaFileNames.add(matcher.group(1));
+        }
+        assertThat(mediaFileNames, containsInAnyOrder("media0.jpg", "media1.jpg", "media2.jpg", "media3.jpg"));
+
+        // Media files are encrypted in the order they are listed and submission.xml is last
+        List<String> encryptedFileNames = new ArrayList<>(mediaFileNames);
+        encryptedFileNames.add(submissionXml.getName());
+
+        byte[] ivSeed = getIvSeed(formInfo.symmetricKey.getEncoded());
+        StringBuilder expectedSignatureSource = new StringBuilder()
+                .append("form\n")
+                .append("1\n")
+                .append(formInfo.base64RsaEncryptedSymmetricKey).append('\n')
+                .append(INSTANCE_ID).append('\n');
+        for (int i = 0; i < encryptedFileNames.size(); i++) {
+            String fileName = encryptedFileNames.get(i);
+            ++ivSeed[i % ivSeed.length];
+
+            Cipher cipher = Cipher.getInstance(EncryptionUtils.SYMMETRIC_ALGORITHM);
+            cipher.init(Cipher.DECRYPT_MODE, formInfo.symmetricKey, new IvParameterSpec(ivSeed));
+            byte[] encrypted = FileUtils.readFileToByteArray(new File(instanceXml.getParentFile(), fileName + ".enc"));
+            byte[] decrypted = cipher.doFinal(encrypted);
+            assertThat(fileName, Arrays.equals(decrypted, plaintexts.get(fileName)), is(true));
+
+            expectedSignatureSource.append(fileName).append("::").append(Md5.toHex(md5(plaintexts.get(fileName)))).append('\n');
+        }
+
+        assertThat(formInfo.elementSignatureSource.toString(), equalTo(expectedSignatureSource.toString()));
+
+        Cipher rsaCipher = Cipher.getInstance(EncryptionUtils.ASYMMETRIC_ALGORITHM);
+        rsaCipher.init(Cipher.DECRYPT_MODE, keyPair.getPrivate());
+        byte[] signature = rsaCipher.doFinal(Base64.decode(getElementText(manifest, "base64EncryptedElementSignature"), Base64.NO_WRAP));
+        assertThat(Arrays.equals(signature, md5(expectedSignatureSource.toString().getBytes(StandardCharsets.UTF_8))), is(true));
+    }
+
+    private byte[] getIvSeed(byte[] symmetricKey) throws Exception {
+        MessageDigest md = MessageDigest.getInstance("MD5");
+        md.update(INSTANCE_ID.getBytes(StandardCharsets.UTF_8));
+        md.update(symmetricKey);
+        byte[] digest = md.digest();
+
+        byte[] ivSeed = new byte[EncryptionUtils.IV_BYTE_LENGTH];
+        for (int i = 0; i < ivSeed.length; i++) {
+            ivSeed[i] = digest[i % digest.length];
+        }
+        return ivSeed;
+    }
+
+    private static void assertManifestElementsAreInOrder(String manifest, String... elementNames) {
+        int previous = -1;
+        for (String elementName : elementNames) {
+            int index = manifest.indexOf(elementName + ">");
+            assertThat(elementName, index, greaterThan(previous));
+            previous = index;
+        }
+    }
+
+    private static String getElementText(String xml, String elementName) {
+        Matcher matcher = Pattern.compile("<(?:\\w+:)?" + elementName + ">([^<]*)<").matcher(xml);
+        assertThat(elementName, matcher.find(), is(true));
+        return matcher.group(1);
+    }
+
+    private static byte[] md5(byte[] bytes) throws Exception {
+        return MessageDigest.getInstance("MD5").digest(bytes);
+    }
+}
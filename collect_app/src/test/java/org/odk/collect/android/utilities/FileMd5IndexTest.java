@@ -0,0 +1,130 @@
+package org.odk.collect.android.utilities;
+
+import org.junit.Test;
+import org.odk.collect.shared.TempFiles;
+import org.odk.collect.shared.strings.Md5;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class FileMd5IndexTest {
+
+    private final File indexFile = new File(TempFiles.createTempDir(), "md5.index");
+
+    @Test
+    public void getMd5Hash_returnsHashOfFile() throws IOException {
+        File file = createFile("blah");
+
+        assertThat(new FileMd5Index(indexFile).getMd5Hash(file), is(Md5.getMd5Hash(file)));
+    }
+
+    @Test
+    public void getMd5Hash_whenFileIsUnchanged_returnsRememberedHash() throws IOException {
+        File file = createFile("blah");
+        FileMd5Index index = new FileMd5Index(indexFile);
+        String originalHash = index.getMd5Hash(file);
+
+        // Same size and modified time so the index has no way of noticing the change
+        long lastModified = file.lastModified();
+        org.apache.commons.io.FileUtils.write(file, "bleh", "UTF-8");
+        file.setLastModified(lastModified);
+
+        assertThat(index.getMd5Hash(file), is(originalHash));
+    }
+
+    @Test
+    public void getMd5Hash_whenFileChanges_returnsNewHash() throws IOException {
+        File file = createFile("blah");
+        FileMd5Index index = new FileMd5Index(indexFile);
+        index.getMd5Hash(file);
+
+        org.apache.commons.io.FileUtils.write(file, "something longer", "UTF-8");
+
+        assertThat(index.getMd5Hash(file), is(Md5.getMd5Hash(file)));
+    }
+
+    @Test
+    public void getMd5Hash_whenFileDoesNotExist_returnsNull() {
+        File file = new File(TempFiles.createTempDir(), "missing.xml");
+
+        assertThat(new FileMd5Index(indexFile).getMd5Hash(file), is(nullValue()));
+    }
+
+    @Test
+    public void hashesArePersistedBetweenInstances() throws IOException {
+        File file = createFile("blah");
+        FileMd5Index index = new FileMd5Index(indexFile);
+        String originalHash = index.getMd5Hash(file);
+        index.flush();
+
+        long lastModified = file.lastModified();
+        org.apache.commons.io.FileUtils.write(file, "bleh", "UTF-8");
+        file.setLastModified(lastModified);
+
+        assertThat(new FileMd5Index(indexFile).getMd5Hash(file), is(originalHash));
+    }
+
+    @Test
+    public void getMd5Hashes_returnsHashesKeyedByPathAndLeavesOutMissingFiles() throws IOException {
+        File file = createFile("blah");
+        File missingFile = new File(TempFiles.createTempDir(), "missing.xml");
+
+        Map<String, String> hashes = new FileMd5Index(indexFile).getMd5Hashes(asList(file, missingFile));
+
+        assertThat(hashes.size(), is(1));
+        assertThat(hashes.get(file.getAbsolutePath()), is(Md5.getMd5Hash(file)));
+    }
+
+    @Test
+    public void getMd5Hash_doesNotWriteIndexUntilFlushed() throws IOException {
+        File file = createFile("blah");
+        FileMd5Index index = new FileMd5Index(indexFile);
+        index.getMd5Hash(file);
+        index.getMd5Hash(createFile("bleh"));
+
+        assertThat(indexFile.exists(), is(false));
+
+        index.flush();
+        assertThat(indexFile.exists(), is(true));
+    }
+
+    @Test
+    public void getMd5Hashes_writesIndexOnce() throws IOException {
+        File file = createFile("blah");
+        new FileMd5Index(indexFile).getMd5Hashes(asList(file));
+
+        long lastModified = file.lastModified();
+        org.apache.commons.io.FileUtils.write(file, "bleh", "UTF-8");
+        file.setLastModified(lastModified);
+
+        assertThat(new FileMd5Index(indexFile).getMd5Hash(file), is(not(Md5.getMd5Hash(file))));
+    }
+
+    @Test
+    public void getInstance_returnsSameIndexForSameFile() {
+        assertThat(FileMd5Index.getInstance(indexFile), is(sameInstance(FileMd5Index.getInstance(new File(indexFile.getPath())))));
+    }
+
+    @Test
+    public void put_whenFileIsUnchanged_returnsRecordedHash() throws IOException {
+        File file = createFile("blah");
+        FileMd5Index index = new FileMd5Index(indexFile);
+        index.put(file, "recorded");
+
+        assertThat(index.getMd5Hash(file), is("recorded"));
+    }
+
+    private File createFile(String contents) throws IOException {
+        File file = new File(TempFiles.createTempDir(), "form.xml");
+        org.apache.commons.io.FileUtils.write(file, contents, "UTF-8");
+        return file;
+    }
+}
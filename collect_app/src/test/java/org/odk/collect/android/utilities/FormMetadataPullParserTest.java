@@ -0,0 +1,155 @@
+package org.odk.collect.android.utilities;
+
+import org.javarosa.xform.parse.XFormParseException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class FormMetadataPullParserTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void parse_returnsSameMetadataAsFullParse() throws IOException {
+        File form = writeForm(
+                "        <model>\n" +
+                "            <instance>\n" +
+                "                <data id=\"relative-refs\" orx:version=\"3\">\n" +
+                "                    <my-group>\n" +
+                "                        <name />\n" +
+                "                        <location1 />\n" +
+                "                    </my-group>\n" +
+                "                    <location2 />\n" +
+                "                </data>\n" +
+                "            </instance>\n" +
+                "            <instance id=\"cities\">\n" +
+                "                <root><item><name>Nairobi</name></item></root>\n" +
+                "            </instance>\n" +
+                "            <submission action=\"https://example.com\" base64RsaPublicKey=\" key \" method=\"post\"/>\n" +
+                "            <bind nodeset=\"/data/my-group/name\" type=\"string\" />\n" +
+                "            <bind nodeset=\"/data/location2\" type=\"geopoint\" id=\"loc2\" />\n" +
+                "            <bind nodeset=\"/data/my-group/location1\" type=\"geopoint\" />\n" +
+                "        </model>\n",
+                "        <group ref=\"/data/my-group\">\n" +
+                "            <input ref=\"name\"> <label>Name</label> </input>\n" +
+                "            <input ref=\"./location1\"> <label>Location</label> </input>\n" +
+                "        </group>\n" +
+                "        <input bind=\"loc2\"> <label>Location</label> </input>\n");
+
+        HashMap<String, String> metadata = FormMetadataPullParser.parse(form);
+
+        assertThat(metadata, is(FileUtils.getMetadataFromFormDef(form)));
+        assertThat(metadata.get(FileUtils.VERSION), is("3"));
+        assertThat(metadata.get(FileUtils.BASE64_RSA_PUBLIC_KEY), is("key"));
+        assertThat(metadata.get(FileUtils.GEOMETRY_XPATH), is("/data/my-group/location1"));
+    }
+
+    @Test
+    public void parse_whenGeopointIsOnlyInRepeat_returnsNoGeometryXpath() throws IOException {
+        File form = writeForm(
+                "        <model>\n" +
+                "            <instance>\n" +
+                "                <data id=\"repeat\">\n" +
+                "                    <my-repeat jr:template=\"\">\n" +
+                "                        <location />\n" +
+                "                    </my-repeat>\n" +
+                "                </data>\n" +
+                "            </instance>\n" +
+                "            <bind nodeset=\"/data/my-repeat/location\" type=\"geopoint\" />\n" +
+                "        </model>\n",
+                "        <group ref=\"/data/my-repeat\">\n" +
+                "            <repeat nodeset=\"/data/my-repeat\">\n" +
+                "                <input ref=\"/data/my-repeat/location\"> <label>Location</label> </input>\n" +
+                "            </repeat>\n" +
+                "        </group>\n");
+
+        HashMap<String, String> metadata = FormMetadataPullParser.parse(form);
+
+        assertThat(metadata.get(FileUtils.FORMID), is("repeat"));
+        assertThat(metadata.get(FileUtils.GEOMETRY_XPATH), is(nullValue()));
+    }
+
+    @Test
+    public void parse_whenSetGeopointIsInBody_returnsNull() throws IOException {
+        File form = writeForm(
+                "        <model>\n" +
+                "            <instance>\n" +
+                "                <data id=\"set-geopoint\">\n" +
+                "                    <location1 />\n" +
+                "                    <name />\n" +
+                "                </data>\n" +
+                "            </instance>\n" +
+                "            <bind nodeset=\"/data/location1\" type=\"geopoint\" />\n" +
+                "        </model>\n",
+                "        <input ref=\"/data/name\">\n" +
+                "            <label>Name</label>\n" +
+                "            <odk:setgeopoint ref=\"/data/location1\" event=\"xforms-value-changed\"/>\n" +
+                "        </input>\n");
+
+        assertThat(FormMetadataPullParser.parse(form), is(nullValue()));
+    }
+
+    @Test
+    public void parse_whenRefNeedsToBeEvaluated_returnsNull() throws IOException {
+        File form = writeForm(
+                "        <model>\n" +
+                "            <instance>\n" +
+                "                <data id=\"predicate\">\n" +
+                "                    <location />\n" +
+                "                </data>\n" +
+                "            </instance>\n" +
+                "            <bind nodeset=\"/data/location\" type=\"geopoint\" />\n" +
+                "        </model>\n",
+                "        <input ref=\"/data/*[1]\"> <label>Location</label> </input>\n");
+
+        assertThat(FormMetadataPullParser.parse(form), is(nullValue()));
+    }
+
+    @Test(expected = XFormParseException.class)
+    public void parse_whenXmlIsMalformed_throwsException() throws IOException {
+        File form = temporaryFolder.newFile("malformed.xml");
+        FileUtils.write(form, "<h:html><h:head>".getBytes(StandardCharsets.UTF_8));
+
+        FormMetadataPullParser.parse(form);
+    }
+
+    @Test
+    public void normalizeRef_resolvesRelativeRefsAgainstContext() {
+        assertThat(FormMetadataPullParser.normalizeRef(" /data/./name ", null), is("/data/name"));
+        assertThat(FormMetadataPullParser.normalizeRef("name", "/data/group"), is("/data/group/name"));
+        assertThat(FormMetadataPullParser.normalizeRef("name", null), is(nullValue()));
+        assertThat(FormMetadataPullParser.normalizeRef("../name", "/data/group"), is(nullValue()));
+        assertThat(FormMetadataPullParser.normalizeRef("/data/name[1]", null), is(nullValue()));
+    }
+
+    private File writeForm(String model, String body) throws IOException {
+        String form = "<?xml version=\"1.0\"?>\n" +
+                "<h:html xmlns=\"http://www.w3.org/2002/xforms\"\n" +
+                "    xmlns:h=\"http://www.w3.org/1999/xhtml\"\n" +
+                "    xmlns:jr=\"http://openrosa.org/javarosa\"\n" +
+                "    xmlns:odk=\"http://www.opendatakit.org/xforms\"\n" +
+                "    xmlns:orx=\"http://openrosa.org/xforms\">\n" +
+                "    <h:head>\n" +
+                "        <h:title>Form</h:title>\n" +
+                model +
+                "    </h:head>\n" +
+                "    <h:body>\n" +
+                body +
+                "    </h:body>\n" +
+                "</h:html>";
+
+        File file = temporaryFolder.newFile();
+        FileUtils.write(file, form.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,175 @@
+package org.odk.collect.android.utilities;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.forms.Form;
+import org.odk.collect.formstest.InMemFormsRepository;
+import org.odk.collect.shared.TempFiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContainingInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.odk.collect.formstest.FormUtils.createXFormBody;
+
+@RunWith(AndroidJUnit4.class)
+public class FormsDirDiskFormsSynchronizerTest {
+
+    private final InMemFormsRepository formsRepository = new InMemFormsRepository();
+    private File formsDir;
+    private File cacheDir;
+    private FormsDirDiskFormsSynchronizer synchronizer;
+
+    @Before
+    public void setup() {
+        formsDir = TempFiles.createTempDir();
+        cacheDir = TempFiles.createTempDir();
+        synchronizer = new FormsDirDiskFormsSynchronizer(formsRepository, formsDir.getAbsolutePath(), cacheDir.getAbsolutePath());
+    }
+
+    @Test
+    public void synchronize_addsNewForms() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            writeForm("form" + i + ".xml", createXFormBody("form" + i, "1"));
+        }
+
+        synchronizer.synchronize();
+
+        assertThat(formsRepository.getAll().size(), is(10));
+        assertThat(formsRepository.getOneByPath(new File(formsDir, "form3.xml").getAbsolutePath()).getFormId(), is("form3"));
+    }
+
+    @Test
+    public void synchronize_removesFormsWhoseFilesWereDeleted() throws IOException {
+        File deletedForm = writeForm("deleted.xml", createXFormBody("deleted", "1"));
+        writeForm("kept.xml", createXFormBody("kept", "1"));
+        synchronizer.synchronize();
+
+        deletedForm.delete();
+        synchronizer.synchronize();
+
+        assertThat(formsRepository.getAll().size(), is(1));
+        assertThat(formsRepository.getAll().get(0).getFormId(), is("kept"));
+    }
+
+    @Test
+    public void synchronize_updatesFormsWhoseFilesChanged() throws IOException {
+        File changedForm = writeForm("changed.xml", createXFormBody("changed", "1", "Original"));
+        writeForm("unchanged.xml", createXFormBody("unchanged", "1", "Unchanged"));
+        synchronizer.synchronize();
+
+        writeForm("changed.xml", createXFormBody("changed", "1", "A much longer title"));
+        synchronizer.synchronize();
+
+        assertThat(formsRepository.getAll().size(), is(2));
+        Form form = formsRepository.getOneByPath(changedForm.getAbsolutePath());
+        assertThat(form.getDisplayName(), is("A much longer title"));
+    }
+
+    @Test
+    public void synchronize_renamesFormsThatCanNotBeParsedAndReportsThem() throws IOException {
+        writeForm("good.xml", createXFormBody("good", "1"));
+        writeForm("bad.xml", "<h:html><h:head>");
+
+        String errors = synchronizer.synchronizeAndReturnError();
+
+        assertThat(errors.isEmpty(), is(false));
+        assertThat(formsRepository.getAll().size(), is(1));
+        assertThat(formsDir.list(), is(arrayContainingInAnyOrder("good.xml", "bad.xml.bad")));
+    }
+
+    @Test
+    public void synchronize_readsMetadataWithoutBuildingTheForm() throws IOException {
+        // JavaRosa would reject the calculate but only the header is needed for the database
+        File form = writeForm("form.xml", INVALID_CALCULATE_FORM);
+
+        synchronizer.synchronize();
+
+        assertThat(formsRepository.getOneByPath(form.getAbsolutePath()).getFormId(), is("invalid-calculate"));
+        assertThat(cacheDir.list((dir, name) -> name.endsWith(".formdef")).length, is(0));
+    }
+
+    @Test
+    public void synchronize_whenSeveralFormsWithExternalInstancesNeedBuilding_addsThemAll() throws IOException {
+        // The setgeopoint actions mean each form is built with JavaRosa on the parsing threads
+        for (int i = 0; i < 12; i++) {
+            writeForm("external" + i + ".xml", createExternalInstanceForm("external" + i));
+            File mediaDir = new File(formsDir, "external" + i + FileUtils.MEDIA_SUFFIX);
+            mediaDir.mkdirs();
+            org.apache.commons.io.FileUtils.write(new File(mediaDir, "external-data.xml"), EXTERNAL_INSTANCE, StandardCharsets.UTF_8);
+        }
+
+        String errors = synchronizer.synchronizeAndReturnError();
+
+        assertThat(errors, is(""));
+        assertThat(formsRepository.getAll().size(), is(12));
+        for (int i = 0; i < 12; i++) {
+            Form form = formsRepository.getOneByPath(new File(formsDir, "external" + i + ".xml").getAbsolutePath());
+            assertThat(form.getFormId(), is("external" + i));
+            assertThat(form.getGeometryXpath(), is("/data/location"));
+        }
+    }
+
+    private File writeForm(String name, String xform) throws IOException {
+        File file = new File(formsDir, name);
+        org.apache.commons.io.FileUtils.write(file, xform, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static final String INVALID_CALCULATE_FORM = "<h:html xmlns=\"http://www.w3.org/2002/xforms\" xmlns:h=\"http://www.w3.org/1999/xhtml\">\n" +
+            "    <h:head>\n" +
+            "        <h:title>Invalid calculate</h:title>\n" +
+            "        <model>\n" +
+            "            <instance>\n" +
+            "                <data id=\"invalid-calculate\">\n" +
+            "                    <q1/>\n" +
+            "                </data>\n" +
+            "            </instance>\n" +
+            "            <bind nodeset=\"/data/q1\" type=\"string\" calculate=\"1 +\"/>\n" +
+            "        </model>\n" +
+            "    </h:head>\n" +
+            "    <h:body/>\n" +
+            "</h:html>";
+
+    private static String createExternalInstanceForm(String formId) {
+        return "<h:html xmlns=\"http://www.w3.org/2002/xforms\" xmlns:h=\"http://www.w3.org/1999/xhtml\" xmlns:odk=\"http://www.opendatakit.org/xforms\">\n" +
+                "    <h:head>\n" +
+                "        <h:title>" + formId + "</h:title>\n" +
+                "        <model>\n" +
+                "            <instance>\n" +
+                "                <data id=\"" + formId + "\">\n" +
+                "                    <location/>\n" +
+                "                    <first/>\n" +
+                "                </data>\n" +
+                "            </instance>\n" +
+                "            <instance id=\"external-xml\" src=\"jr://file/external-data.xml\" />\n" +
+                "            <bind nodeset=\"/data/location\" type=\"geopoint\" />\n" +
+                "            <bind nodeset=\"/data/first\" type=\"string\" />\n" +
+                "            <odk:setgeopoint ref=\"/data/location\" event=\"odk-instance-first-load\"/>\n" +
+                "        </model>\n" +
+                "    </h:head>\n" +
+                "    <h:body>\n" +
+                "        <select1 ref=\"/data/first\">\n" +
+                "            <label>First</label>\n" +
+                "            <itemset nodeset=\"instance('external-xml')/root/item\">\n" +
+                "                <value ref=\"name\"/>\n" +
+                "                <label ref=\"label\"/>\n" +
+                "            </itemset>\n" +
+                "        </select1>\n" +
+                "    </h:body>\n" +
+                "</h:html>";
+    }
+
+    private static final String EXTERNAL_INSTANCE = "<root>\n" +
+            "    <item>\n" +
+            "        <label>A</label>\n" +
+            "        <name>a</name>\n" +
+            "    </item>\n" +
+            "</root>";
+}
@@ -1,6 +1,7 @@
 package org.odk.collect.forms;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.InputStream;
 import java.util.List;
@@ -20,4 +21,14 @@ public interface FormSource {
 
     @NotNull
     InputStream fetchMediaFile(String mediaFileURL) throws FormSourceException;
+
+    /**
+     * Fetches the rest of a media file from the given byte offset so that a download that was
+     * cut off can be resumed.
+     *
+     * @return the bytes from the offset onwards, or null if the source can't fetch part of the
+     * file and it has to be downloaded again from the start
+     */
+    @Nullable
+    InputStream fetchMediaFile(String mediaFileURL, long offset) throws FormSourceException;
 }
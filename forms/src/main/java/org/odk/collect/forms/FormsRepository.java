@@ -3,6 +3,7 @@ package org.odk.collect.forms;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface FormsRepository {
@@ -21,6 +22,10 @@ public interface FormsRepository {
 
     List<Form> getAll();
 
+    List<Form> getAllByMd5Hashes(Collection<String> hashes);
+
+    List<Form> getAllByPaths(Collection<String> paths);
+
     List<Form> getAllByFormIdAndVersion(String formId, @Nullable String version);
 
     List<Form> getAllByFormId(String formId);
@@ -31,6 +36,14 @@ public interface FormsRepository {
 
     Form save(@NotNull Form form);
 
+    /**
+     * Saves all the forms at once. Implementations backed by a database do this in a single
+     * transaction.
+     *
+     * @return the saved forms in the same order
+     */
+    List<Form> saveAll(@NotNull List<Form> forms);
+
     void delete(Long id);
 
     void softDelete(Long id);
@@ -2,6 +2,7 @@ package org.odk.collect.forms.instances;
 
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -26,6 +27,8 @@ public interface InstancesRepository {
 
     List<Instance> getAll();
 
+    List<Instance> getAllByPaths(Collection<String> instancePaths);
+
     List<Instance> getAllNotDeleted();
 
     List<Instance> getAllByStatus(String... status);
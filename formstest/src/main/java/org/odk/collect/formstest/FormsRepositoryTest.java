@@ -11,8 +11,10 @@ import java.io.IOException;
 import java.util.List;
 import java.util.function.Supplier;
 
+import static java.util.Arrays.asList;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
@@ -215,6 +217,25 @@ public abstract class FormsRepositoryTest {
         assertThat(formsRepository.get(originalForm.getDbId()).getMD5Hash(), is(expectedHash));
     }
 
+    @Test
+    public void saveAll_addsAndUpdatesFormsAndReturnsThemInOrder() {
+        FormsRepository formsRepository = buildSubject();
+        Form existingForm = formsRepository.save(FormUtils.buildForm("1", "1", getFormFilesPath())
+                .displayName("original")
+                .build());
+
+        List<Form> savedForms = formsRepository.saveAll(asList(
+                FormUtils.buildForm("2", "1", getFormFilesPath()).build(),
+                new Form.Builder(existingForm).displayName("changed").build()
+        ));
+
+        assertThat(savedForms.size(), is(2));
+        assertThat(savedForms.get(0).getFormId(), is("2"));
+        assertThat(savedForms.get(0).getDbId(), notNullValue());
+        assertThat(formsRepository.getAll().size(), is(2));
+        assertThat(formsRepository.get(existingForm.getDbId()).getDisplayName(), is("changed"));
+    }
+
     @Test
     public void delete_deletesFiles() throws Exception {
         FormsRepository formsRepository = buildSubject();
@@ -314,6 +335,27 @@ public abstract class FormsRepositoryTest {
         assertThat(formsRepository.getOneByPath(form2.getFormFilePath()).getFormId(), is("id2"));
     }
 
+    @Test
+    public void getAllByMd5Hashes_returnsMatchingForms() {
+        FormsRepository formsRepository = buildSubject();
+        Form form1 = formsRepository.save(FormUtils.buildForm("id1", "version", getFormFilesPath()).build());
+        formsRepository.save(FormUtils.buildForm("id2", "version", getFormFilesPath()).build());
+        Form form3 = formsRepository.save(FormUtils.buildForm("id3", "version", getFormFilesPath()).build());
+
+        List<Form> forms = formsRepository.getAllByMd5Hashes(asList(form1.getMD5Hash(), form3.getMD5Hash(), "missing"));
+        assertThat(forms, containsInAnyOrder(form1, form3));
+    }
+
+    @Test
+    public void getAllByPaths_returnsMatchingForms() {
+        FormsRepository formsRepository = buildSubject();
+        formsRepository.save(FormUtils.buildForm("id1", "version", getFormFilesPath()).build());
+        Form form2 = formsRepository.save(FormUtils.buildForm("id2", "version", getFormFilesPath()).build());
+
+        List<Form> forms = formsRepository.getAllByPaths(asList(form2.getFormFilePath(), getFormFilesPath() + "/missing.xml"));
+        assertThat(forms, contains(form2));
+    }
+
     @Test
     public void getAllFormId_returnsMatchingForms() {
         FormsRepository formsRepository = buildSubject();
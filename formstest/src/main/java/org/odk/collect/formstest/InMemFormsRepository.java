@@ -10,6 +10,7 @@ import org.odk.collect.shared.TempFiles;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
@@ -73,6 +74,16 @@ public class InMemFormsRepository implements FormsRepository {
         return new ArrayList<>(forms); // Avoid anything  mutating the list externally
     }
 
+    @Override
+    public List<Form> getAllByMd5Hashes(Collection<String> hashes) {
+        return forms.stream().filter(f -> hashes.contains(f.getMD5Hash())).collect(toList());
+    }
+
+    @Override
+    public List<Form> getAllByPaths(Collection<String> paths) {
+        return forms.stream().filter(f -> paths.contains(f.getFormFilePath())).collect(toList());
+    }
+
     @Override
     public List<Form> getAllByFormIdAndVersion(String jrFormId, @Nullable String jrVersion) {
         return forms.stream().filter(f -> f.getFormId().equals(jrFormId) && Objects.equals(f.getVersion(), jrVersion)).collect(toList());
@@ -132,6 +143,11 @@ public class InMemFormsRepository implements FormsRepository {
         }
     }
 
+    @Override
+    public List<Form> saveAll(@NotNull List<Form> forms) {
+        return forms.stream().map(this::save).collect(toList());
+    }
+
     @Override
     public void delete(Long id) {
         Optional<Form> formToRemove = forms.stream().filter(f -> f.getDbId().equals(id)).findFirst();
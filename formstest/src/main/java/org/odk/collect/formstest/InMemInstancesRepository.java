@@ -8,6 +8,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 import java.util.function.Supplier;
@@ -70,6 +71,13 @@ public final class InMemInstancesRepository implements InstancesRepository {
         return new ArrayList<>(instances);
     }
 
+    @Override
+    public List<Instance> getAllByPaths(Collection<String> instancePaths) {
+        return instances.stream()
+                .filter(instance -> instancePaths.contains(instance.getInstanceFilePath()))
+                .collect(Collectors.toList());
+    }
+
     @Override
     public List<Instance> getAllNotDeleted() {
         return instances.stream()
@@ -22,7 +22,9 @@ import java.io.File;
 import java.util.List;
 import java.util.function.Supplier;
 
+import static java.util.Arrays.asList;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
@@ -119,6 +121,17 @@ public abstract class InstancesRepositoryTest {
         assertThat(instancesRepository.getCountByStatus(Instance.STATUS_INCOMPLETE, Instance.STATUS_SUBMITTED), is(4));
     }
 
+    @Test
+    public void getAllByPaths_returnsMatchingInstances() {
+        InstancesRepository instancesRepository = buildSubject();
+        Instance instance1 = instancesRepository.save(InstanceUtils.buildInstance("formid", "1", getInstancesDir()).build());
+        instancesRepository.save(InstanceUtils.buildInstance("formid", "1", getInstancesDir()).build());
+        Instance instance3 = instancesRepository.save(InstanceUtils.buildInstance("formid", "1", getInstancesDir()).build());
+
+        List<Instance> instances = instancesRepository.getAllByPaths(asList(instance1.getInstanceFilePath(), instance3.getInstanceFilePath()));
+        assertThat(instances, containsInAnyOrder(instance1, instance3));
+    }
+
     @Test
     public void getAllByFormId_includesAllVersionsForFormId() {
         InstancesRepository instancesRepository = buildSubject();
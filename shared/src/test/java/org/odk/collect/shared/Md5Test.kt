@@ -23,4 +23,12 @@ class Md5Test {
             Assert.assertEquals(expectedResult, Md5.getMd5Hash(tempFile, bufSize))
         }
     }
+
+    @Test
+    fun toHexPadsDigestWithLeadingZeros() {
+        val digest = ByteArray(16)
+        digest[15] = 0x0f
+
+        Assert.assertEquals("0000000000000000000000000000000f", Md5.toHex(digest))
+    }
 }